@@ -0,0 +1,37 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core;
+
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * An interface for the asynchronous access of {@link Cluster}s: each method starts the
+ * lookup of the {@link ClusterDictionary} method of the same name and returns at once.
+ * Errors of the lookup, including an {@link IllegalArgumentException} for non valid
+ * params, are thrown by {@link Future#get()} as the cause of an
+ * {@link java.util.concurrent.ExecutionException}.
+ * 
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public interface AsyncClusterDictionary {
+	/**
+	 * @see ClusterDictionary#getClustersMatching(String)
+	 */
+	public Future<List<? extends Cluster>> getClustersMatching (String domainRegex);
+	/**
+	 * @see ClusterDictionary#getClusterById(Long)
+	 */
+	public Future<Cluster> getClusterById (Long id);
+	/**
+	 * @see ClusterDictionary#getAllClusterNames()
+	 */
+	public Future<List<String>> getAllClusterNames ();
+}
@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * An interface for the asynchronous access of {@link ClusterMember}s: each method starts
+ * the lookup of the {@link ClusterMemberDictionary} method of the same name and returns
+ * at once. Errors of the lookup, including an {@link IllegalArgumentException} for non
+ * valid params, are thrown by {@link Future#get()} as the cause of an
+ * {@link java.util.concurrent.ExecutionException}.
+ * 
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public interface AsyncClusterMemberDictionary {
+	/**
+	 * @see ClusterMemberDictionary#getClustersFor(String)
+	 */
+	public Future<List<ClusterMember>> getClustersFor (String lemma);
+	/**
+	 * @see ClusterMemberDictionary#getClustersForLemmata(Collection)
+	 */
+	public Future<Map<String, List<ClusterMember>>> getClustersForLemmata (Collection<String> lemmata);
+	/**
+	 * @see ClusterMemberDictionary#getClustersFor(Long)
+	 */
+	public Future<List<Cluster>> getClustersFor (Long id);
+	/**
+	 * @see ClusterMemberDictionary#getClusterItemsForCluster(Long)
+	 */
+	public Future<List<? extends ClusterMember>> getClusterItemsForCluster (Long clusterId);
+	/**
+	 * @see ClusterMemberDictionary#getClusterItemsForItem(Item)
+	 */
+	public Future<List<? extends ClusterMember>> getClusterItemsForItem (Item item);
+	/**
+	 * @see ClusterMemberDictionary#getDomainsFor(String)
+	 */
+	public Future<Map<String, Item>> getDomainsFor (String lemma);
+	/**
+	 * @see ClusterMemberDictionary#getDomainsForLemmata(Collection)
+	 */
+	public Future<Map<String, Map<String, Item>>> getDomainsForLemmata (Collection<String> lemmata);
+	/**
+	 * @see ClusterMemberDictionary#getItemsForDomain(String)
+	 */
+	public Future<List<Item>> getItemsForDomain (String domain);
+}
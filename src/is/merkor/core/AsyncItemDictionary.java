@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * An interface for the asynchronous access of {@link Item}s: each method starts the
+ * lookup of the {@link ItemDictionary} method of the same name and returns at once.
+ * Errors of the lookup, including an {@link IllegalArgumentException} for non valid
+ * params, are thrown by {@link Future#get()} as the cause of an
+ * {@link java.util.concurrent.ExecutionException}.
+ * 
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public interface AsyncItemDictionary {
+	/**
+	 * @see ItemDictionary#getAllItems()
+	 */
+	public Future<List<? extends Item>> getAllItems ();
+	/**
+	 * @see ItemDictionary#getItemsFor(String)
+	 */
+	public Future<List<? extends Item>> getItemsFor (String lemma);
+	/**
+	 * @see ItemDictionary#getItemsForLemmata(Collection)
+	 */
+	public Future<Map<String, List<Item>>> getItemsForLemmata (Collection<String> lemmata);
+	/**
+	 * @see ItemDictionary#getItemsFor(String, String)
+	 */
+	public Future<List<? extends Item>> getItemsFor (String lemma, String wordclass);
+	/**
+	 * @see ItemDictionary#getItemsMatching(String)
+	 */
+	public Future<List<? extends Item>> getItemsMatching (String regex);
+}
@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * An interface for the asynchronous access of {@link Relation}s: each method starts the
+ * lookup of the {@link RelationDictionary} method of the same name and returns at once.
+ * Errors of the lookup, including an {@link IllegalArgumentException} for non valid
+ * params, are thrown by {@link Future#get()} as the cause of an
+ * {@link java.util.concurrent.ExecutionException}.
+ * <p>
+ * There is no asynchronous variant of {@link RelationDictionary#iterateRelationsFor(Item, double)},
+ * the iterator reads ahead by itself.
+ * 
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public interface AsyncRelationDictionary {
+	/**
+	 * @see RelationDictionary#getRelationsFor(String)
+	 */
+	public Future<List<RelationObject>> getRelationsFor (String lemma);
+	/**
+	 * @see RelationDictionary#getRelationsFor(Item)
+	 */
+	public Future<List<? extends Relation>> getRelationsFor (Item item);
+	/**
+	 * @see RelationDictionary#getRelationsForLemmata(Collection)
+	 */
+	public Future<Map<String, List<RelationObject>>> getRelationsForLemmata (Collection<String> lemmata);
+	/**
+	 * @see RelationDictionary#getRelationsFor(String, double, int, int)
+	 */
+	public Future<List<RelationObject>> getRelationsFor (String lemma, double minConfidence, int offset, int limit);
+	/**
+	 * @see RelationDictionary#getRelationsFor(Item, double, int, int)
+	 */
+	public Future<List<Relation>> getRelationsFor (Item item, double minConfidence, int offset, int limit);
+	/**
+	 * @see RelationDictionary#getRelationsFor(String, String)
+	 */
+	public Future<List<RelationObject>> getRelationsFor (String lemma1, String lemma2);
+	/**
+	 * @see RelationDictionary#getRelationsFor(Item, Item)
+	 */
+	public Future<List<Relation>> getRelationsFor (Item item1, Item item2);
+	/**
+	 * @see RelationDictionary#getRelationsHavingLeft(String, RelationType)
+	 */
+	public Future<List<RelationObject>> getRelationsHavingLeft (String lemma, RelationType type);
+	/**
+	 * @see RelationDictionary#getRelationsHavingLeft(Item, RelationType)
+	 */
+	public Future<List<Relation>> getRelationsHavingLeft (Item item, RelationType type);
+	/**
+	 * @see RelationDictionary#getRelationsHavingRight(String, RelationType)
+	 */
+	public Future<List<RelationObject>> getRelationsHavingRight (String lemma, RelationType type);
+	/**
+	 * @see RelationDictionary#getRelationsHavingRight(Item, RelationType)
+	 */
+	public Future<List<Relation>> getRelationsHavingRight (Item item, RelationType type);
+}
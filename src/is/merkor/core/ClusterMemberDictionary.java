@@ -8,6 +8,7 @@
  *******************************************************************************/
 package is.merkor.core;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -28,6 +29,17 @@ public interface ClusterMemberDictionary {
 	 */
 	public List<ClusterMember> getClustersFor (String lemma);
 	
+	/**
+	 * Retrieves all clusters for many lemmata at once, as {@link #getClustersFor(String)}
+	 * does for one lemma. Each lemma is looked up only once.
+	 * 
+	 * @param lemmata the lemmata to find clusters for, none may be {@code null} or empty
+	 * @return a Map from each distinct lemma, in the iteration order of lemmata, to its
+	 * 			clusterMembers, an empty List for a lemma having no clusters.
+	 * @throws IllegalArgumentException if param is {@code null} or contains {@code null} or empty lemmata.
+	 */
+	public Map<String, List<ClusterMember>> getClustersForLemmata (Collection<String> lemmata);
+	
 	/**
 	 * Retrieves all clusters for an {@link Item}
 	 * having {@code id} as its id.
@@ -69,6 +81,17 @@ public interface ClusterMemberDictionary {
 	 */
 	public Map<String, Item> getDomainsFor (String lemma);
 	
+	/**
+	 * Retrieves the domain names for many lemmata at once, as {@link #getDomainsFor(String)}
+	 * does for one lemma. Each lemma is looked up only once.
+	 * 
+	 * @param lemmata the lemmata to find domain names for, none may be {@code null} or empty.
+	 * @return a Map from each distinct lemma, in the iteration order of lemmata, to its Map 
+	 * 			of domain names and Items, an empty Map for a lemma having no domains.
+	 * @throws IllegalArgumentException if param is {@code null} or contains {@code null} or empty lemmata.
+	 */
+	public Map<String, Map<String, Item>> getDomainsForLemmata (Collection<String> lemmata);
+	
 	/**
 	 * Retrieves all Items belonging to {@code domain}. 
 	 * 
@@ -8,7 +8,9 @@
  *******************************************************************************/
 package is.merkor.core;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -37,6 +39,17 @@ public interface ItemDictionary {
 	 */
 	public List<? extends Item> getItemsFor (String lemma);
 	
+	/**
+	 * Retrieve the {@link Item}s of many lemmata at once, as {@link #getItemsFor(String)} 
+	 * does for one lemma. Each lemma is looked up only once.
+	 * 
+	 * @param lemmata the lemmata to retrieve Items for, none may be {@code null} or empty.
+	 * @return a Map from each distinct lemma, in the iteration order of lemmata, to its Items,
+	 * 			an empty List for a lemma having no Items.
+	 * @throws IllegalArgumentException if param is {@code null} or contains {@code null} or empty lemmata.
+	 */
+	public Map<String, List<Item>> getItemsForLemmata (Collection<String> lemmata);
+	
 	/**
 	 * Retrieve all {@link Item}s having {@code lemma} as attribute lemma and {@code wordclass}
 	 * as wordclass (part-of-speech).
@@ -8,7 +8,10 @@
  *******************************************************************************/
 package is.merkor.core;
 
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 /**
  * An interface for the access of {@link Relation}s.
@@ -41,6 +44,66 @@ public interface RelationDictionary {
 	 */
 	public List<? extends Relation> getRelationsFor (Item item);
 	
+	/**
+	 * Retrieves all {@link Relation}s for many lemmata at once, as {@link #getRelationsFor(String)}
+	 * does for one lemma. Each lemma is looked up only once.
+	 * 
+	 * @param lemmata the lemmata for which to retrieve relations, none may be {@code null} or empty.
+	 * @return a Map from each distinct lemma, in the iteration order of lemmata, to its
+	 * 			RelationObjects, an empty List for a lemma having no relations.
+	 * @throws IllegalArgumentException if param is {@code null} or contains {@code null} or empty lemmata.
+	 */
+	public Map<String, List<RelationObject>> getRelationsForLemmata (Collection<String> lemmata);
+	
+	/**
+	 * Retrieves one page of the {@link Relation}s for each sense of {@code lemma}: the relations
+	 * having a confidence of at least {@code minConfidence}, sorted by confidence descending,
+	 * without the first {@code offset} relations and at most {@code limit} relations.
+	 * Senses having no relations on the page are left out.
+	 * 
+	 * @param lemma the lemma for which to retrieve relations, may not be {@code null} or emtpy.
+	 * @param minConfidence the minimum confidence of the relations, {@code Double.NEGATIVE_INFINITY}
+	 * 			for relations of any confidence.
+	 * @param offset the number of relations to skip for each sense, may not be negative.
+	 * @param limit the maximum number of relations for each sense, must be positive.
+	 * @return a List of RelationObjects containing the relations on the page, or an empty
+	 * 			List if nothing is found.
+	 * @throws IllegalArgumentException if lemma is {@code null} or empty, minConfidence is NaN,
+	 * 			offset is negative or limit is not positive.
+	 */
+	public List<RelationObject> getRelationsFor (String lemma, double minConfidence, int offset, int limit);
+	
+	/**
+	 * Retrieves one page of the {@link Relation}s for {@code item}: the relations having a 
+	 * confidence of at least {@code minConfidence}, sorted by confidence descending, without 
+	 * the first {@code offset} relations and at most {@code limit} relations.
+	 * 
+	 * @param item the item for which to retrieve relations, may not be {@code null}.
+	 * @param minConfidence the minimum confidence of the relations, {@code Double.NEGATIVE_INFINITY}
+	 * 			for relations of any confidence.
+	 * @param offset the number of relations to skip, may not be negative.
+	 * @param limit the maximum number of relations, must be positive.
+	 * @return a sorted List of the relations on the page, or an empty List if nothing is found.
+	 * @throws IllegalArgumentException if item is {@code null}, minConfidence is NaN,
+	 * 			offset is negative or limit is not positive.
+	 */
+	public List<Relation> getRelationsFor (Item item, double minConfidence, int offset, int limit);
+	
+	/**
+	 * Returns an iterator over the {@link Relation}s for {@code item} having a confidence of at
+	 * least {@code minConfidence}, sorted by confidence descending. The relations are read while
+	 * iterating, so the first relations are available at once and the relations of an item
+	 * with very many relations are never all held in memory. The iterator does not support
+	 * {@code remove()}.
+	 * 
+	 * @param item the item for which to retrieve relations, may not be {@code null}.
+	 * @param minConfidence the minimum confidence of the relations, {@code Double.NEGATIVE_INFINITY}
+	 * 			for relations of any confidence.
+	 * @return an Iterator over the relations of item, without elements if nothing is found.
+	 * @throws IllegalArgumentException if item is {@code null} or minConfidence is NaN.
+	 */
+	public Iterator<Relation> iterateRelationsFor (Item item, double minConfidence);
+	
 	/**
 	 * Retrieves the {@link Relation} connecting {@code lemma1} and
 	 * {@code lemma2}. In some cases different senses of the two lemmata might be related, hence
@@ -67,6 +67,12 @@ public class Main {
 			return results;
 		}
 		
+		if (cmdLine.hasOption("build_indexes"))
+			return queries.buildIndexes();
+		String snapshotFile = cmdLine.getOptionValue("export_snapshot");
+		if (null != snapshotFile)
+			return queries.exportSnapshot(snapshotFile);
+		
 		// info on lexical items wanted? ///////////////////////	
 		String value = cmdLine.getOptionValue("items");
 		if (value != null) {
@@ -8,26 +8,30 @@
  *******************************************************************************/
 package is.merkor.core.cli;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 
 import java.util.List;
 import java.util.Map;
 
-import redis.clients.jedis.Jedis;
-
 import is.merkor.core.Cluster;
 import is.merkor.core.ClusterMember;
 import is.merkor.core.Item;
 import is.merkor.core.Relation;
 import is.merkor.core.RelationObject;
 import is.merkor.core.RelationType;
+import is.merkor.core.memory.MemorySnapshot;
 import is.merkor.core.redis.data.RedisCluster;
 import is.merkor.core.redis.data.RedisClusterMember;
 import is.merkor.core.redis.data.RedisRelationType;
 import is.merkor.core.redis.dictionaries.RedisClusterDictionary;
 import is.merkor.core.redis.dictionaries.RedisClusterMemberDictionary;
+import is.merkor.core.redis.dictionaries.RedisContext;
+import is.merkor.core.redis.dictionaries.RedisIndexBuilder;
 import is.merkor.core.redis.dictionaries.RedisItemDictionary;
 import is.merkor.core.redis.dictionaries.RedisRelationDictionary;
+import is.merkor.core.redis.dictionaries.RedisStoreLoader;
 import is.merkor.core.util.RelationTypeMap;
 
 /**
@@ -43,18 +47,44 @@ public class MerkorCommandLineQueries {
 	private RedisRelationDictionary relDict;
 	private RedisClusterDictionary clusterDict;
 	private RedisClusterMemberDictionary clusterMembDict;
+	private RedisIndexBuilder indexBuilder;
+	private RedisStoreLoader storeLoader;
 	
 	private List<String> results;
 	
 	public MerkorCommandLineQueries (final String host, final int port) throws Exception {
-		Jedis jedis = new Jedis(host, port);
+		RedisContext context = new RedisContext(host, port);
 		
-		itemDict = new RedisItemDictionary(jedis);
-		relDict = new RedisRelationDictionary(jedis);
-		clusterDict = new RedisClusterDictionary(jedis);
-		clusterMembDict = new RedisClusterMemberDictionary(jedis);
+		itemDict = new RedisItemDictionary(context);
+		relDict = new RedisRelationDictionary(context);
+		clusterDict = new RedisClusterDictionary(context);
+		clusterMembDict = new RedisClusterMemberDictionary(context);
+		indexBuilder = new RedisIndexBuilder(context);
+		storeLoader = new RedisStoreLoader(context);
 		
 	}
+	/**
+	 * Builds the index structures of the MerkOr data in Redis, returns a message when done.
+	 */
+	public List<String> buildIndexes () {
+		results = new ArrayList<String>();
+		indexBuilder.buildIndexes();
+		results.add("Indexes built.");
+		return results;
+	}
+	/**
+	 * Writes the MerkOr data in Redis to the snapshot file {@code fileName}, returns a message when done.
+	 */
+	public List<String> exportSnapshot (String fileName) {
+		results = new ArrayList<String>();
+		try {
+			MemorySnapshot.write(storeLoader.load(), new File(fileName));
+			results.add("Snapshot written to " + fileName + ".");
+		} catch (IOException e) {
+			results.add("Couldn't write snapshot: " + e.getMessage());
+		}
+		return results;
+	}
 	/**
 	 * Returns a list of redisItems as strings having {@code lemma} as lemma.
 	 */
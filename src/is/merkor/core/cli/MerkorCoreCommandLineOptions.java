@@ -24,6 +24,8 @@ public class MerkorCoreCommandLineOptions {
 	private static Option help;
 	private static Option help_h;
 	private static Option clusters;
+	private static Option build_indexes;
+	private static Option export_snapshot;
 	
 	private static Option host;
 	private static Option port;
@@ -50,6 +52,8 @@ public class MerkorCoreCommandLineOptions {
 		options.addOption(help);
 		options.addOption(help_h);
 		options.addOption(clusters);
+		options.addOption(build_indexes);
+		options.addOption(export_snapshot);
 		options.addOption(host);
 		options.addOption(port);
 		options.addOption(items);
@@ -71,6 +75,7 @@ public class MerkorCoreCommandLineOptions {
 		help = new Option("help", "print this message");
 		help_h = new Option("h", "print this message");
 		clusters = new Option("clusters", "get all cluster names");
+		build_indexes = new Option("build_indexes", "(re)build the index structures of the MerkOr data in Redis");
 	}
 	private static void createArgumentOptions() {
 		host   = OptionBuilder.withArgName("Redis host")
@@ -81,6 +86,10 @@ public class MerkorCoreCommandLineOptions {
 			.hasArg()
 			.withDescription("the port for Redis (default=6379)")
 			.create("port");
+		export_snapshot = OptionBuilder.withArgName("file")
+			.hasArg()
+			.withDescription("export the MerkOr data from Redis to a snapshot file for the in-memory dictionaries")
+			.create("export_snapshot");
 		items   = OptionBuilder.withArgName("lemma")
 			.hasArg()
 			.withDescription("get all lexical items having given lemma as lemma")
@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.memory;
+
+import is.merkor.core.RelationType;
+import is.merkor.core.util.Wordclass;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A {@link MemoryStore} holding its data in primitive arrays on the heap,
+ * created by {@link MemoryStoreBuilder}.
+ *
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+final class HeapStore extends MemoryStore {
+
+	// items, sorted by id
+	private final long[] itemIds;
+	private final int[] itemLemmata;
+	private final byte[] itemWordclasses;
+	// lemmata, sorted, and their items
+	private final String[] lemmata;
+	private final Map<String, Integer> lemmaIndex;
+	private final int[] lemmaOffsets;
+	private final int[] lemmaItems;
+	// relations
+	private final long[] relationIds;
+	private final int[] relationFrom;
+	private final int[] relationTo;
+	private final double[] relationScores;
+	private final int[] relationTypes;
+	private final RelationType[] types;
+	// relations per item
+	private final int[] itemRelationOffsets;
+	private final int[] itemRelations;
+	// top relations per relation type id
+	private final long[] topTypeIds;
+	private final int[] topOffsets;
+	private final int[] topRelations;
+	// clusters, sorted by id, their members and the clusters of each item
+	private final long[] clusterIds;
+	private final String[] clusterNames;
+	private final int[] memberOffsets;
+	private final int[] memberItems;
+	private final double[] memberValues;
+	private final int[] itemClusterOffsets;
+	private final int[] itemClusters;
+
+	/*
+	 * Constructs a new store from the arrays created by MemoryStoreBuilder. The arrays
+	 * are not copied and must not be changed afterwards.
+	 */
+	HeapStore (final long[] itemIds, final int[] itemLemmata, final byte[] itemWordclasses,
+			final String[] lemmata, final Map<String, Integer> lemmaIndex, final int[] lemmaOffsets, final int[] lemmaItems,
+			final long[] relationIds, final int[] relationFrom, final int[] relationTo, final double[] relationScores,
+			final int[] relationTypes, final RelationType[] types, final int[] itemRelationOffsets, final int[] itemRelations,
+			final long[] topTypeIds, final int[] topOffsets, final int[] topRelations,
+			final long[] clusterIds, final String[] clusterNames, final int[] memberOffsets, final int[] memberItems,
+			final double[] memberValues, final int[] itemClusterOffsets, final int[] itemClusters) {
+		this.itemIds = itemIds;
+		this.itemLemmata = itemLemmata;
+		this.itemWordclasses = itemWordclasses;
+		this.lemmata = lemmata;
+		this.lemmaIndex = lemmaIndex;
+		this.lemmaOffsets = lemmaOffsets;
+		this.lemmaItems = lemmaItems;
+		this.relationIds = relationIds;
+		this.relationFrom = relationFrom;
+		this.relationTo = relationTo;
+		this.relationScores = relationScores;
+		this.relationTypes = relationTypes;
+		this.types = types;
+		this.itemRelationOffsets = itemRelationOffsets;
+		this.itemRelations = itemRelations;
+		this.topTypeIds = topTypeIds;
+		this.topOffsets = topOffsets;
+		this.topRelations = topRelations;
+		this.clusterIds = clusterIds;
+		this.clusterNames = clusterNames;
+		this.memberOffsets = memberOffsets;
+		this.memberItems = memberItems;
+		this.memberValues = memberValues;
+		this.itemClusterOffsets = itemClusterOffsets;
+		this.itemClusters = itemClusters;
+	}
+
+	@Override
+	public int getItemCount () {
+		return itemIds.length;
+	}
+	@Override
+	public int getRelationCount () {
+		return relationIds.length;
+	}
+	@Override
+	public int getClusterCount () {
+		return clusterIds.length;
+	}
+
+	@Override
+	int indexOfItem (final long id) {
+		int index = Arrays.binarySearch(itemIds, id);
+		return index < 0 ? -1 : index;
+	}
+	@Override
+	long getItemId (final int item) {
+		return itemIds[item];
+	}
+	@Override
+	int getLemmaOf (final int item) {
+		return itemLemmata[item];
+	}
+	@Override
+	String getWordclass (final int item) {
+		return Wordclass.VALUES.get(itemWordclasses[item]);
+	}
+
+	@Override
+	int indexOfLemma (final String lemma) {
+		Integer index = lemmaIndex.get(lemma);
+		return null == index ? -1 : index;
+	}
+	@Override
+	int getLemmaCount () {
+		return lemmata.length;
+	}
+	@Override
+	String getLemma (final int lemma) {
+		return lemmata[lemma];
+	}
+	@Override
+	int getLemmaStart (final int lemma) {
+		return lemmaOffsets[lemma];
+	}
+	@Override
+	int getLemmaEnd (final int lemma) {
+		return lemmaOffsets[lemma + 1];
+	}
+	@Override
+	int getLemmaItem (final int position) {
+		return lemmaItems[position];
+	}
+
+	@Override
+	long getRelationId (final int relation) {
+		return relationIds[relation];
+	}
+	@Override
+	int getRelationFrom (final int relation) {
+		return relationFrom[relation];
+	}
+	@Override
+	int getRelationTo (final int relation) {
+		return relationTo[relation];
+	}
+	@Override
+	double getRelationScore (final int relation) {
+		return relationScores[relation];
+	}
+	@Override
+	int getRelationTypeIndex (final int relation) {
+		return relationTypes[relation];
+	}
+	@Override
+	int getTypeCount () {
+		return types.length;
+	}
+	@Override
+	RelationType getType (final int type) {
+		return types[type];
+	}
+
+	@Override
+	int getItemRelationStart (final int item) {
+		return itemRelationOffsets[item];
+	}
+	@Override
+	int getItemRelationEnd (final int item) {
+		return itemRelationOffsets[item + 1];
+	}
+	@Override
+	int getItemRelation (final int position) {
+		return itemRelations[position];
+	}
+
+	@Override
+	int getTopTypeCount () {
+		return topTypeIds.length;
+	}
+	@Override
+	long getTopTypeId (final int index) {
+		return topTypeIds[index];
+	}
+	@Override
+	int getTopStart (final long typeId) {
+		int index = Arrays.binarySearch(topTypeIds, typeId);
+		return index < 0 ? 0 : topOffsets[index];
+	}
+	@Override
+	int getTopEnd (final long typeId) {
+		int index = Arrays.binarySearch(topTypeIds, typeId);
+		return index < 0 ? 0 : topOffsets[index + 1];
+	}
+	@Override
+	int getTopRelation (final int position) {
+		return topRelations[position];
+	}
+
+	@Override
+	int indexOfCluster (final long id) {
+		int index = Arrays.binarySearch(clusterIds, id);
+		return index < 0 ? -1 : index;
+	}
+	@Override
+	long getClusterId (final int cluster) {
+		return clusterIds[cluster];
+	}
+	@Override
+	String getClusterName (final int cluster) {
+		return clusterNames[cluster];
+	}
+	@Override
+	int getMemberStart (final int cluster) {
+		return memberOffsets[cluster];
+	}
+	@Override
+	int getMemberEnd (final int cluster) {
+		return memberOffsets[cluster + 1];
+	}
+	@Override
+	int getMemberItem (final int position) {
+		return memberItems[position];
+	}
+	@Override
+	double getMemberValue (final int position) {
+		return memberValues[position];
+	}
+	@Override
+	int getItemClusterStart (final int item) {
+		return itemClusterOffsets[item];
+	}
+	@Override
+	int getItemClusterEnd (final int item) {
+		return itemClusterOffsets[item + 1];
+	}
+	@Override
+	int getItemCluster (final int position) {
+		return itemClusters[position];
+	}
+}
@@ -0,0 +1,301 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.memory;
+
+import is.merkor.core.RelationType;
+import is.merkor.core.redis.data.RedisRelationType;
+import is.merkor.core.util.Wordclass;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * A {@link MemoryStore} reading directly from the sections of a memory-mapped
+ * snapshot file, see {@link MemorySnapshot}. Numbers are read with absolute gets
+ * from views of the mapped buffers, which never change their position, so a store
+ * can be shared by any number of threads. Strings are decoded on each access,
+ * only the few relation types are decoded when the store is created.
+ *
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+final class MappedStore extends MemoryStore {
+
+	private final LongBuffer itemIds;
+	private final IntBuffer itemLemmata;
+	private final ByteBuffer itemWordclasses;
+	private final IntBuffer lemmaStringOffsets;
+	private final ByteBuffer lemmaStrings;
+	private final IntBuffer lemmaOffsets;
+	private final IntBuffer lemmaItems;
+	private final LongBuffer relationIds;
+	private final IntBuffer relationFrom;
+	private final IntBuffer relationTo;
+	private final DoubleBuffer relationScores;
+	private final IntBuffer relationTypes;
+	private final RelationType[] types;
+	private final IntBuffer itemRelationOffsets;
+	private final IntBuffer itemRelations;
+	private final LongBuffer topTypeIds;
+	private final IntBuffer topOffsets;
+	private final IntBuffer topRelations;
+	private final LongBuffer clusterIds;
+	private final IntBuffer clusterNameOffsets;
+	private final ByteBuffer clusterNames;
+	private final IntBuffer memberOffsets;
+	private final IntBuffer memberItems;
+	private final DoubleBuffer memberValues;
+	private final IntBuffer itemClusterOffsets;
+	private final IntBuffer itemClusters;
+
+	/*
+	 * Constructs a new store on the sections of a snapshot, indexed by the section constants
+	 * of MemorySnapshot.
+	 */
+	MappedStore (final ByteBuffer[] sections) {
+		itemIds = sections[MemorySnapshot.ITEM_IDS].asLongBuffer();
+		itemLemmata = sections[MemorySnapshot.ITEM_LEMMATA].asIntBuffer();
+		itemWordclasses = sections[MemorySnapshot.ITEM_WORDCLASSES];
+		lemmaStringOffsets = sections[MemorySnapshot.LEMMA_STRING_OFFSETS].asIntBuffer();
+		lemmaStrings = sections[MemorySnapshot.LEMMA_STRINGS];
+		lemmaOffsets = sections[MemorySnapshot.LEMMA_OFFSETS].asIntBuffer();
+		lemmaItems = sections[MemorySnapshot.LEMMA_ITEMS].asIntBuffer();
+		relationIds = sections[MemorySnapshot.RELATION_IDS].asLongBuffer();
+		relationFrom = sections[MemorySnapshot.RELATION_FROM].asIntBuffer();
+		relationTo = sections[MemorySnapshot.RELATION_TO].asIntBuffer();
+		relationScores = sections[MemorySnapshot.RELATION_SCORES].asDoubleBuffer();
+		relationTypes = sections[MemorySnapshot.RELATION_TYPES].asIntBuffer();
+		itemRelationOffsets = sections[MemorySnapshot.ITEM_RELATION_OFFSETS].asIntBuffer();
+		itemRelations = sections[MemorySnapshot.ITEM_RELATIONS].asIntBuffer();
+		topTypeIds = sections[MemorySnapshot.TOP_TYPE_IDS].asLongBuffer();
+		topOffsets = sections[MemorySnapshot.TOP_OFFSETS].asIntBuffer();
+		topRelations = sections[MemorySnapshot.TOP_RELATIONS].asIntBuffer();
+		clusterIds = sections[MemorySnapshot.CLUSTER_IDS].asLongBuffer();
+		clusterNameOffsets = sections[MemorySnapshot.CLUSTER_NAME_OFFSETS].asIntBuffer();
+		clusterNames = sections[MemorySnapshot.CLUSTER_NAMES];
+		memberOffsets = sections[MemorySnapshot.MEMBER_OFFSETS].asIntBuffer();
+		memberItems = sections[MemorySnapshot.MEMBER_ITEMS].asIntBuffer();
+		memberValues = sections[MemorySnapshot.MEMBER_VALUES].asDoubleBuffer();
+		itemClusterOffsets = sections[MemorySnapshot.ITEM_CLUSTER_OFFSETS].asIntBuffer();
+		itemClusters = sections[MemorySnapshot.ITEM_CLUSTERS].asIntBuffer();
+
+		LongBuffer typeIds = sections[MemorySnapshot.TYPE_IDS].asLongBuffer();
+		IntBuffer typeNameOffsets = sections[MemorySnapshot.TYPE_NAME_OFFSETS].asIntBuffer();
+		types = new RelationType[typeIds.limit()];
+		for (int i = 0; i < types.length; i++) {
+			String name = decode(sections[MemorySnapshot.TYPE_NAMES], typeNameOffsets, i);
+			types[i] = new RedisRelationType(typeIds.get(i), name, name);
+		}
+	}
+
+	@Override
+	public int getItemCount () {
+		return itemIds.limit();
+	}
+	@Override
+	public int getRelationCount () {
+		return relationIds.limit();
+	}
+	@Override
+	public int getClusterCount () {
+		return clusterIds.limit();
+	}
+
+	@Override
+	int indexOfItem (final long id) {
+		return binarySearch(itemIds, id);
+	}
+	@Override
+	long getItemId (final int item) {
+		return itemIds.get(item);
+	}
+	@Override
+	int getLemmaOf (final int item) {
+		return itemLemmata.get(item);
+	}
+	@Override
+	String getWordclass (final int item) {
+		return Wordclass.VALUES.get(itemWordclasses.get(item));
+	}
+
+	@Override
+	int indexOfLemma (final String lemma) {
+		// the lemmata are sorted by String.compareTo()
+		int low = 0;
+		int high = getLemmaCount() - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = getLemma(mid).compareTo(lemma);
+			if (cmp < 0)
+				low = mid + 1;
+			else if (cmp > 0)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+	@Override
+	int getLemmaCount () {
+		return lemmaStringOffsets.limit() - 1;
+	}
+	@Override
+	String getLemma (final int lemma) {
+		return decode(lemmaStrings, lemmaStringOffsets, lemma);
+	}
+	@Override
+	int getLemmaStart (final int lemma) {
+		return lemmaOffsets.get(lemma);
+	}
+	@Override
+	int getLemmaEnd (final int lemma) {
+		return lemmaOffsets.get(lemma + 1);
+	}
+	@Override
+	int getLemmaItem (final int position) {
+		return lemmaItems.get(position);
+	}
+
+	@Override
+	long getRelationId (final int relation) {
+		return relationIds.get(relation);
+	}
+	@Override
+	int getRelationFrom (final int relation) {
+		return relationFrom.get(relation);
+	}
+	@Override
+	int getRelationTo (final int relation) {
+		return relationTo.get(relation);
+	}
+	@Override
+	double getRelationScore (final int relation) {
+		return relationScores.get(relation);
+	}
+	@Override
+	int getRelationTypeIndex (final int relation) {
+		return relationTypes.get(relation);
+	}
+	@Override
+	int getTypeCount () {
+		return types.length;
+	}
+	@Override
+	RelationType getType (final int type) {
+		return types[type];
+	}
+
+	@Override
+	int getItemRelationStart (final int item) {
+		return itemRelationOffsets.get(item);
+	}
+	@Override
+	int getItemRelationEnd (final int item) {
+		return itemRelationOffsets.get(item + 1);
+	}
+	@Override
+	int getItemRelation (final int position) {
+		return itemRelations.get(position);
+	}
+
+	@Override
+	int getTopTypeCount () {
+		return topTypeIds.limit();
+	}
+	@Override
+	long getTopTypeId (final int index) {
+		return topTypeIds.get(index);
+	}
+	@Override
+	int getTopStart (final long typeId) {
+		int index = binarySearch(topTypeIds, typeId);
+		return index < 0 ? 0 : topOffsets.get(index);
+	}
+	@Override
+	int getTopEnd (final long typeId) {
+		int index = binarySearch(topTypeIds, typeId);
+		return index < 0 ? 0 : topOffsets.get(index + 1);
+	}
+	@Override
+	int getTopRelation (final int position) {
+		return topRelations.get(position);
+	}
+
+	@Override
+	int indexOfCluster (final long id) {
+		return binarySearch(clusterIds, id);
+	}
+	@Override
+	long getClusterId (final int cluster) {
+		return clusterIds.get(cluster);
+	}
+	@Override
+	String getClusterName (final int cluster) {
+		return decode(clusterNames, clusterNameOffsets, cluster);
+	}
+	@Override
+	int getMemberStart (final int cluster) {
+		return memberOffsets.get(cluster);
+	}
+	@Override
+	int getMemberEnd (final int cluster) {
+		return memberOffsets.get(cluster + 1);
+	}
+	@Override
+	int getMemberItem (final int position) {
+		return memberItems.get(position);
+	}
+	@Override
+	double getMemberValue (final int position) {
+		return memberValues.get(position);
+	}
+	@Override
+	int getItemClusterStart (final int item) {
+		return itemClusterOffsets.get(item);
+	}
+	@Override
+	int getItemClusterEnd (final int item) {
+		return itemClusterOffsets.get(item + 1);
+	}
+	@Override
+	int getItemCluster (final int position) {
+		return itemClusters.get(position);
+	}
+
+	/*
+	 * Returns the index of key in the sorted buffer, or -1 if it is not contained.
+	 */
+	private static int binarySearch (final LongBuffer buffer, final long key) {
+		int low = 0;
+		int high = buffer.limit() - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			long value = buffer.get(mid);
+			if (value < key)
+				low = mid + 1;
+			else if (value > key)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+	/*
+	 * Decodes string number index of a string section.
+	 */
+	private static String decode (final ByteBuffer strings, final IntBuffer offsets, final int index) {
+		int start = offsets.get(index);
+		byte[] bytes = new byte[offsets.get(index + 1) - start];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = strings.get(start + i);
+		return new String(bytes, MemorySnapshot.UTF8);
+	}
+}
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.memory;
+
+import is.merkor.core.Cluster;
+import is.merkor.core.ClusterDictionary;
+import is.merkor.core.redis.dictionaries.MerkorRedisConstants;
+import is.merkor.core.util.Glob;
+import is.merkor.core.util.MerkorLogger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.Logger;
+
+/**
+ * An implementation of the {@link ClusterDictionary} interface on a {@link MemoryStore},
+ * with the same results as {@link is.merkor.core.redis.dictionaries.RedisClusterDictionary}.
+ *
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public class MemoryClusterDictionary implements ClusterDictionary {
+	private final MemoryStore store;
+
+	private static Logger logger;
+
+	/**
+	 * Constructs a new dictionary on {@code store}.
+	 */
+	public MemoryClusterDictionary (final MemoryStore store) {
+		MerkorLogger.configureLogger();
+		logger = Logger.getLogger(MemoryClusterDictionary.class);
+		validateObject(store, "store");
+		this.store = store;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see is.merkor.core.ClusterDictionary#getClustersMatching(java.lang.String)
+	 */
+	@Override
+	public List<? extends Cluster> getClustersMatching (final String domainRegex) {
+		validateString(domainRegex, "domainRegex");
+		List<Cluster> clusters = new ArrayList<Cluster>();
+		for (int cluster : clustersMatching(store, domainRegex))
+			clusters.add(store.createCluster(cluster));
+		return clusters;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see is.merkor.core.ClusterDictionary#getClusterById(java.lang.Long)
+	 */
+	@Override
+	public Cluster getClusterById (final Long id) {
+		validateObject(id, "id");
+		int cluster = store.indexOfCluster(id);
+		return cluster < 0 ? null : store.createCluster(cluster);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see is.merkor.core.ClusterDictionary#getAllClusterNames()
+	 */
+	@Override
+	public List<String> getAllClusterNames () {
+		Set<String> uniqueNames = new TreeSet<String>();
+		for (int cluster = 0; cluster < store.getClusterCount(); cluster++)
+			uniqueNames.add(store.getClusterName(cluster));
+		return new ArrayList<String>(uniqueNames);
+	}
+
+	/*
+	 * Returns the indices of the clusters whose names match domainRegex, in lower or
+	 * upper case. As in Redis, the pattern is matched against the cluster keys
+	 * (merkor_is_cluster_<name>_<id>), after replacing .* and .? by their glob equivalents.
+	 */
+	static List<Integer> clustersMatching (final MemoryStore store, final String domainRegex) {
+		Pattern lower = Glob.toRegex(MerkorRedisConstants.CLUSTER_ID_IS + makeRedisConform(domainRegex.toLowerCase()) + "_[0123456789]*");
+		Pattern upper = Glob.toRegex(MerkorRedisConstants.CLUSTER_ID_IS + makeRedisConform(domainRegex.toUpperCase()) + "_[0123456789]*");
+		List<Integer> clusters = new ArrayList<Integer>();
+		for (int cluster = 0; cluster < store.getClusterCount(); cluster++) {
+			String key = MerkorRedisConstants.CLUSTER_ID_IS + store.getClusterName(cluster) + "_" + store.getClusterId(cluster);
+			if (lower.matcher(key).matches() || upper.matcher(key).matches())
+				clusters.add(cluster);
+		}
+		return clusters;
+	}
+	private static String makeRedisConform (String regex) {
+		regex = regex.replaceAll("\\.\\*", "\\*");
+		regex = regex.replaceAll("\\.\\?", "\\?");
+		return regex;
+	}
+
+	private void validateString (final String lemma, final String paramName) {
+		if (null == lemma || lemma.isEmpty()) {
+			IllegalArgumentException e = new IllegalArgumentException();
+			logger.error("param " + paramName + " must not be null or empty!", e);
+			throw e;
+		}
+	}
+	private void validateObject (final Object obj, final String paramName) {
+		if (null == obj) {
+			IllegalArgumentException e = new IllegalArgumentException();
+			logger.error("param " + paramName + " must not be null!", e);
+			throw e;
+		}
+	}
+}
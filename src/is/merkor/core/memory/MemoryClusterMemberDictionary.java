@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.memory;
+
+import is.merkor.core.Cluster;
+import is.merkor.core.ClusterMember;
+import is.merkor.core.ClusterMemberDictionary;
+import is.merkor.core.Item;
+import is.merkor.core.redis.data.RedisClusterMember;
+import is.merkor.core.util.MerkorLogger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * An implementation of the {@link ClusterMemberDictionary} interface on a {@link MemoryStore},
+ * with the same results as {@link is.merkor.core.redis.dictionaries.RedisClusterMemberDictionary}.
+ *
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public class MemoryClusterMemberDictionary implements ClusterMemberDictionary {
+	private final MemoryStore store;
+
+	private static Logger logger;
+
+	/**
+	 * Constructs a new dictionary on {@code store}.
+	 */
+	public MemoryClusterMemberDictionary (final MemoryStore store) {
+		MerkorLogger.configureLogger();
+		logger = Logger.getLogger(MemoryClusterMemberDictionary.class);
+		validateObject(store, "store");
+		this.store = store;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see is.merkor.core.ClusterMemberDictionary#getClustersFor(java.lang.String)
+	 */
+	@Override
+	public List<ClusterMember> getClustersFor (final String lemma) {
+		validateLemma(lemma);
+		List<ClusterMember> clusterList = new ArrayList<ClusterMember>();
+		int lemmaIndex = store.indexOfLemma(lemma);
+		if (lemmaIndex < 0)
+			return clusterList;
+		for (int i = store.getLemmaStart(lemmaIndex); i < store.getLemmaEnd(lemmaIndex); i++) {
+			int item = store.getLemmaItem(i);
+			addClusterMembers(item, store.createItem(item), clusterList);
+		}
+		return clusterList;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see is.merkor.core.ClusterMemberDictionary#getClustersForLemmata(java.util.Collection)
+	 */
+	@Override
+	public Map<String, List<ClusterMember>> getClustersForLemmata (final Collection<String> lemmata) {
+		validateLemmata(lemmata);
+		Map<String, List<ClusterMember>> result = new LinkedHashMap<String, List<ClusterMember>>();
+		for (String lemma : lemmata) {
+			if (!result.containsKey(lemma))
+				result.put(lemma, getClustersFor(lemma));
+		}
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see is.merkor.core.ClusterMemberDictionary#getClustersFor(java.lang.Long)
+	 */
+	@Override
+	public List<Cluster> getClustersFor (final Long itemId) {
+		validateObject(itemId, "id");
+		List<Cluster> clusterList = new ArrayList<Cluster>();
+		int item = store.indexOfItem(itemId);
+		if (item < 0)
+			return clusterList;
+		for (int i = store.getItemClusterStart(item); i < store.getItemClusterEnd(item); i++)
+			clusterList.add(store.createCluster(store.getItemCluster(i)));
+		return clusterList;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see is.merkor.core.ClusterMemberDictionary#getClusterItemsForCluster(java.lang.Long)
+	 */
+	@Override
+	public List<? extends ClusterMember> getClusterItemsForCluster (final Long clusterId) {
+		validateObject(clusterId, "clusterId");
+		List<ClusterMember> itemList = new ArrayList<ClusterMember>();
+		int cluster = store.indexOfCluster(clusterId);
+		if (cluster < 0)
+			return itemList;
+		Cluster redisCluster = store.createCluster(cluster);
+		for (int i = store.getMemberStart(cluster); i < store.getMemberEnd(cluster); i++)
+			itemList.add(new RedisClusterMember(store.createItem(store.getMemberItem(i)), redisCluster, store.getMemberValue(i)));
+		return itemList;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see is.merkor.core.ClusterMemberDictionary#getClusterItemsForItem(is.merkor.core.Item)
+	 */
+	@Override
+	public List<? extends ClusterMember> getClusterItemsForItem (final Item item) {
+		validateObject(item, "item");
+		List<ClusterMember> itemList = new ArrayList<ClusterMember>();
+		addClusterMembers(store.indexOfItem(item.getId()), item, itemList);
+		return itemList;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see is.merkor.core.ClusterMemberDictionary#getDomainsFor(java.lang.String)
+	 */
+	@Override
+	public Map<String, Item> getDomainsFor (final String lemma) {
+		validateLemma(lemma);
+		String domain;
+		Map<String, Item> domainMap = new HashMap<String, Item>();
+		for (ClusterMember clusterObj : getClustersFor(lemma)) {
+			domain = clusterObj.getCluster().getName();
+			// not all clusters have been named - if not, use lemma of the center item
+			if (domain.isEmpty())
+				domain = clusterObj.getCluster().getCenter().getLemma();
+			domainMap.put(domain, clusterObj.getItem());
+		}
+		return domainMap;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see is.merkor.core.ClusterMemberDictionary#getDomainsForLemmata(java.util.Collection)
+	 */
+	@Override
+	public Map<String, Map<String, Item>> getDomainsForLemmata (final Collection<String> lemmata) {
+		validateLemmata(lemmata);
+		Map<String, Map<String, Item>> result = new LinkedHashMap<String, Map<String, Item>>();
+		for (String lemma : lemmata) {
+			if (!result.containsKey(lemma))
+				result.put(lemma, getDomainsFor(lemma));
+		}
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see is.merkor.core.ClusterMemberDictionary#getItemsForDomain(java.lang.String)
+	 */
+	@Override
+	public List<Item> getItemsForDomain (final String domain) {
+		validateObject(domain, "domain");
+		List<Item> itemList = new ArrayList<Item>();
+		for (int cluster : MemoryClusterDictionary.clustersMatching(store, domain)) {
+			for (int i = store.getMemberStart(cluster); i < store.getMemberEnd(cluster); i++)
+				itemList.add(store.createItem(store.getMemberItem(i)));
+		}
+		Collections.sort(itemList);
+		return itemList;
+	}
+
+	/*
+	 * Adds a clusterMember (with value 0.0, as in Redis) for each cluster item
+	 * (an index, may be -1) belongs to.
+	 */
+	private void addClusterMembers (final int item, final Item clusterItem, final List<ClusterMember> itemList) {
+		if (item < 0)
+			return;
+		for (int i = store.getItemClusterStart(item); i < store.getItemClusterEnd(item); i++)
+			itemList.add(new RedisClusterMember(clusterItem, store.createCluster(store.getItemCluster(i)), 0.0));
+	}
+
+	private void validateLemma (final String lemma) {
+		if (null == lemma || lemma.isEmpty()) {
+			IllegalArgumentException e = new IllegalArgumentException();
+			logger.error("param 'lemma' must not be empty!", e);
+			throw e;
+		}
+	}
+	private void validateLemmata (final Collection<String> lemmata) {
+		validateObject(lemmata, "lemmata");
+		for (String lemma : lemmata)
+			validateLemma(lemma);
+	}
+	private void validateObject (final Object obj, final String paramName) {
+		if (null == obj) {
+			IllegalArgumentException e = new IllegalArgumentException();
+			logger.error("param " + paramName + " must not be null!", e);
+			throw e;
+		}
+	}
+}
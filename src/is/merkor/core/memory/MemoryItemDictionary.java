@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.memory;
+
+import is.merkor.core.Item;
+import is.merkor.core.ItemDictionary;
+import is.merkor.core.redis.data.RedisItem;
+import is.merkor.core.redis.dictionaries.MerkorRedisConstants;
+import is.merkor.core.util.Glob;
+import is.merkor.core.util.MerkorLogger;
+import is.merkor.core.util.Wordclass;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.Logger;
+
+/**
+ * An implementation of the {@link ItemDictionary} interface on a {@link MemoryStore},
+ * with the same results as {@link is.merkor.core.redis.dictionaries.RedisItemDictionary}.
+ *
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public class MemoryItemDictionary implements ItemDictionary {
+	private final MemoryStore store;
+
+	private static Logger logger;
+
+	/**
+	 * Constructs a new dictionary on {@code store}.
+	 */
+	public MemoryItemDictionary (final MemoryStore store) {
+		MerkorLogger.configureLogger();
+		logger = Logger.getLogger(MemoryItemDictionary.class);
+		validateObject(store, "store");
+		this.store = store;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see is.merkor.core.ItemDictionary#getAllItems()
+	 */
+	@Override
+	public List<? extends Item> getAllItems () {
+		List<RedisItem> items = new ArrayList<RedisItem>(store.getItemCount());
+		for (int i = 0; i < store.getItemCount(); i++)
+			items.add(store.createItem(store.getLemmaItem(i)));
+		return items;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see is.merkor.core.ItemDictionary#getItemsFor(java.lang.String)
+	 */
+	@Override
+	public List<? extends Item> getItemsFor (final String lemma) {
+		validateLemma(lemma);
+		List<RedisItem> items = new ArrayList<RedisItem>();
+		addItems(store.indexOfLemma(lemma), null, items);
+		return items;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see is.merkor.core.ItemDictionary#getItemsForLemmata(java.util.Collection)
+	 */
+	@Override
+	public Map<String, List<Item>> getItemsForLemmata (final Collection<String> lemmata) {
+		validateLemmata(lemmata);
+		Map<String, List<Item>> result = new LinkedHashMap<String, List<Item>>();
+		for (String lemma : lemmata) {
+			if (!result.containsKey(lemma))
+				result.put(lemma, new ArrayList<Item>(getItemsFor(lemma)));
+		}
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see is.merkor.core.ItemDictionary#getItemsFor(java.lang.String, java.lang.String)
+	 */
+	@Override
+	public List<? extends Item> getItemsFor (final String lemma, final String wordclass) {
+		validateLemma(lemma);
+		validateWordclass(wordclass);
+		List<RedisItem> items = new ArrayList<RedisItem>();
+		addItems(store.indexOfLemma(lemma), wordclass, items);
+		return items;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see is.merkor.core.ItemDictionary#getItemsMatching(java.lang.String)
+	 */
+	@Override
+	public List<? extends Item> getItemsMatching (final String regex) {
+		validateLemma(regex);
+		// a Redis key pattern, matched against the lemma keys
+		Pattern pattern = Glob.toRegex(MerkorRedisConstants.LEMMA_KEY_PREFIX_IS + regex);
+		// only the lemmata starting with the literal prefix of the pattern can match
+		String prefix = Glob.literalPrefix(regex);
+		List<RedisItem> items = new ArrayList<RedisItem>();
+		for (int lemma = store.lemmaRangeStart(prefix); lemma < store.getLemmaCount(); lemma++) {
+			String lemmaString = store.getLemma(lemma);
+			if (!lemmaString.startsWith(prefix))
+				break;
+			if (pattern.matcher(MerkorRedisConstants.LEMMA_KEY_PREFIX_IS + lemmaString).matches())
+				addItems(lemma, null, items);
+		}
+		return items;
+	}
+
+	public Item getItemFor (final Long id) {
+		validateObject(id, "id");
+		int item = store.indexOfItem(id);
+		return item < 0 ? null : store.createItem(item);
+	}
+
+	/*
+	 * Adds the items of lemma having wordclass (any if null) to items, lemma may be -1.
+	 */
+	private void addItems (final int lemma, final String wordclass, final List<RedisItem> items) {
+		if (lemma < 0)
+			return;
+		for (int i = store.getLemmaStart(lemma); i < store.getLemmaEnd(lemma); i++) {
+			int item = store.getLemmaItem(i);
+			if (null == wordclass || store.getWordclass(item).equals(wordclass))
+				items.add(store.createItem(item));
+		}
+	}
+
+	private void validateLemma (final String lemma) {
+		if (null == lemma || lemma.isEmpty()) {
+			IllegalArgumentException e = new IllegalArgumentException();
+			logger.error("param 'lemma' must not be empty!", e);
+			throw e;
+		}
+	}
+	private void validateLemmata (final Collection<String> lemmata) {
+		validateObject(lemmata, "lemmata");
+		for (String lemma : lemmata)
+			validateLemma(lemma);
+	}
+	private void validateWordclass (final String wordclass) {
+		if (null == wordclass || !Wordclass.VALUES.contains(wordclass)) {
+			IllegalArgumentException e = new IllegalArgumentException();
+			logger.error("param 'wordclass' must not be null " +
+					"and it has to match one of " + Wordclass.VALUES.toString() + "!", e);
+			throw e;
+		}
+	}
+	private void validateObject (final Object obj, final String paramName) {
+		if (null == obj) {
+			IllegalArgumentException e = new IllegalArgumentException();
+			logger.error("param " + paramName + " must not be null!", e);
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,501 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.memory;
+
+import is.merkor.core.Item;
+import is.merkor.core.Relation;
+import is.merkor.core.RelationDictionary;
+import is.merkor.core.RelationObject;
+import is.merkor.core.RelationType;
+import is.merkor.core.redis.data.RelationRecord;
+import is.merkor.core.util.MerkorLogger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+/**
+ * An implementation of the {@link RelationDictionary} interface on a {@link MemoryStore},
+ * with the same results as {@link is.merkor.core.redis.dictionaries.RedisRelationDictionary}.
+ * Items are looked up by their id, as in the Redis dictionary.
+ *
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public class MemoryRelationDictionary implements RelationDictionary {
+	private final MemoryStore store;
+	// reads the items of relation records, their types are always known
+	private final RelationRecord.Resolver recordResolver = new RelationRecord.Resolver() {
+		public Item getItem (final long id) {
+			int item = store.indexOfItem(id);
+			return item < 0 ? null : store.createItem(item);
+		}
+		public RelationType getType (final String relation, final String leftWordclass) {
+			for (int i = 0; i < store.getTypeCount(); i++) {
+				if (store.getType(i).getDescription().equals(relation))
+					return store.getType(i);
+			}
+			return null;
+		}
+	};
+
+	private static Logger logger;
+
+	/**
+	 * Constructs a new dictionary on {@code store}.
+	 */
+	public MemoryRelationDictionary (final MemoryStore store) {
+		MerkorLogger.configureLogger();
+		logger = Logger.getLogger(MemoryRelationDictionary.class);
+		validateObject(store, "store");
+		this.store = store;
+	}
+
+	/* (non-Javadoc)
+	 * @see is.merkor.core.RelationDictionary#getRelationsFor(java.lang.String)
+	 */
+	@Override
+	public List<RelationObject> getRelationsFor (final String lemma) {
+		validateLemma(lemma);
+		List<RelationObject> list = new ArrayList<RelationObject>();
+		int lemmaIndex = store.indexOfLemma(lemma);
+		if (lemmaIndex < 0)
+			return list;
+		for (int i = store.getLemmaStart(lemmaIndex); i < store.getLemmaEnd(lemmaIndex); i++) {
+			int item = store.getLemmaItem(i);
+			List<Relation> relations = createRelations(item, Integer.MAX_VALUE);
+			if (!relations.isEmpty())
+				list.add(new RelationObject(store.createItem(item), relations));
+		}
+		return list;
+	}
+
+	/* (non-Javadoc)
+	 * @see is.merkor.core.RelationDictionary#getRelationsForLemmata(java.util.Collection)
+	 */
+	@Override
+	public Map<String, List<RelationObject>> getRelationsForLemmata (final Collection<String> lemmata) {
+		validateObject(lemmata, "lemmata");
+		for (String lemma : lemmata)
+			validateLemma(lemma);
+		Map<String, List<RelationObject>> result = new LinkedHashMap<String, List<RelationObject>>();
+		for (String lemma : lemmata) {
+			if (!result.containsKey(lemma))
+				result.put(lemma, getRelationsFor(lemma));
+		}
+		return result;
+	}
+
+	/* (non-Javadoc)
+	 * @see is.merkor.core.RelationDictionary#getRelationsFor(is.merkor.core.Item)
+	 */
+	@Override
+	public List<? extends Relation> getRelationsFor (final Item item) {
+		validateObject(item, "item");
+		return createRelations(store.indexOfItem(item.getId()), Integer.MAX_VALUE);
+	}
+
+	/* (non-Javadoc)
+	 * @see is.merkor.core.RelationDictionary#getRelationsFor(java.lang.String, double, int, int)
+	 */
+	@Override
+	public List<RelationObject> getRelationsFor (final String lemma, final double minConfidence, final int offset, final int limit) {
+		validateLemma(lemma);
+		validatePage(minConfidence, offset, limit);
+		List<RelationObject> list = new ArrayList<RelationObject>();
+		int lemmaIndex = store.indexOfLemma(lemma);
+		if (lemmaIndex < 0)
+			return list;
+		for (int i = store.getLemmaStart(lemmaIndex); i < store.getLemmaEnd(lemmaIndex); i++) {
+			int item = store.getLemmaItem(i);
+			List<Relation> relations = createRelations(item, minConfidence, offset, limit);
+			if (!relations.isEmpty())
+				list.add(new RelationObject(store.createItem(item), relations));
+		}
+		return list;
+	}
+
+	/* (non-Javadoc)
+	 * @see is.merkor.core.RelationDictionary#getRelationsFor(is.merkor.core.Item, double, int, int)
+	 */
+	@Override
+	public List<Relation> getRelationsFor (final Item item, final double minConfidence, final int offset, final int limit) {
+		validateObject(item, "item");
+		validatePage(minConfidence, offset, limit);
+		return createRelations(store.indexOfItem(item.getId()), minConfidence, offset, limit);
+	}
+
+	/* (non-Javadoc)
+	 * @see is.merkor.core.RelationDictionary#iterateRelationsFor(is.merkor.core.Item, double)
+	 */
+	@Override
+	public Iterator<Relation> iterateRelationsFor (final Item item, final double minConfidence) {
+		validateObject(item, "item");
+		validateConfidence(minConfidence);
+		final int index = store.indexOfItem(item.getId());
+		final int end = index < 0 ? 0 : getRelationEnd(index, minConfidence);
+		// the relations are created while iterating
+		return new Iterator<Relation>() {
+			private int position = index < 0 ? 0 : store.getItemRelationStart(index);
+			
+			public boolean hasNext () {
+				return position < end;
+			}
+			public Relation next () {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				return store.createRelation(store.getItemRelation(position++));
+			}
+			public void remove () {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Same as {@link #getRelationsFor(Item, double, int, int)} for the item having {@code itemId},
+	 * returning lightweight relation records, see 
+	 * {@link is.merkor.core.redis.dictionaries.RedisRelationDictionary#getRelationRecordsFor(Long, double, int, int)}.
+	 * @throws IllegalArgumentException if itemId is {@code null}, minConfidence is NaN, offset is
+	 * 			negative or limit is not positive.
+	 */
+	public List<RelationRecord> getRelationRecordsFor (final Long itemId, final double minConfidence, final int offset, final int limit) {
+		validateObject(itemId, "itemId");
+		validatePage(minConfidence, offset, limit);
+		List<RelationRecord> records = new ArrayList<RelationRecord>();
+		int item = store.indexOfItem(itemId);
+		if (item < 0)
+			return records;
+		int scoreEnd = getRelationEnd(item, minConfidence);
+		long start = (long)store.getItemRelationStart(item) + offset;
+		int end = (int)Math.min(start + limit, scoreEnd);
+		for (int i = (int)Math.min(start, scoreEnd); i < end; i++) {
+			int relation = store.getItemRelation(i);
+			RelationType type = store.getRelationType(relation);
+			records.add(new RelationRecord(store.getRelationId(relation), 
+					store.getItemId(store.getRelationFrom(relation)), store.getItemId(store.getRelationTo(relation)), 
+					store.getRelationScore(relation), type.getDescription(), type, recordResolver));
+		}
+		return records;
+	}
+
+	public List<Relation> getMostRelatedWords (final Item item, final int nrOfWords) {
+		validateObject(item, "item");
+		validatePositiveNumber(nrOfWords, "nrOfWords");
+		return createRelations(store.indexOfItem(item.getId()), nrOfWords);
+	}
+
+	public List<RelationObject> getMostRelatedWords (final String lemma, final int nrOfWords) {
+		validateLemma(lemma);
+		validatePositiveNumber(nrOfWords, "nrOfWords");
+		List<RelationObject> list = new ArrayList<RelationObject>();
+		int lemmaIndex = store.indexOfLemma(lemma);
+		if (lemmaIndex < 0)
+			return list;
+		for (int i = store.getLemmaStart(lemmaIndex); i < store.getLemmaEnd(lemmaIndex); i++) {
+			int item = store.getLemmaItem(i);
+			List<Relation> relations = createRelations(item, nrOfWords);
+			if (!relations.isEmpty())
+				list.add(new RelationObject(store.createItem(item), relations));
+		}
+		return list;
+	}
+	
+	/**
+	 * Returns the 'nrOfWords' relations with the highest scores among the relations of all
+	 * items of parameter lemma, sorted by score descending (equal scores of different items
+	 * by ascending item id). The relation lists of the items are merged until nrOfWords
+	 * relations are found, only these relations are created.
+	 */
+	public List<Relation> getGlobalMostRelatedWords (final String lemma, final int nrOfWords) {
+		validateLemma(lemma);
+		validatePositiveNumber(nrOfWords, "nrOfWords");
+		List<Relation> relations = new ArrayList<Relation>();
+		int lemmaIndex = store.indexOfLemma(lemma);
+		if (lemmaIndex < 0)
+			return relations;
+		int start = store.getLemmaStart(lemmaIndex);
+		final int[] positions = new int[store.getLemmaEnd(lemmaIndex) - start];
+		int[] ends = new int[positions.length];
+		final long[] itemIds = new long[positions.length];
+		for (int i = 0; i < positions.length; i++) {
+			int item = store.getLemmaItem(start + i);
+			itemIds[i] = store.getItemId(item);
+			positions[i] = store.getItemRelationStart(item);
+			ends[i] = store.getItemRelationEnd(item);
+		}
+		// the items by the score of their next relation, equal scores by ascending item id
+		PriorityQueue<Integer> heap = new PriorityQueue<Integer>(Math.max(1, positions.length), new Comparator<Integer>() {
+			public int compare (final Integer i1, final Integer i2) {
+				int result = Double.compare(store.getRelationScore(store.getItemRelation(positions[i2])),
+						store.getRelationScore(store.getItemRelation(positions[i1])));
+				if (result == 0)
+					result = itemIds[i1] < itemIds[i2] ? -1 : (itemIds[i1] > itemIds[i2] ? 1 : 0);
+				return result;
+			}
+		});
+		for (int i = 0; i < positions.length; i++) {
+			if (positions[i] < ends[i])
+				heap.add(i);
+		}
+		// a relation between two items of lemma is contained in both of their lists
+		Set<Integer> taken = new HashSet<Integer>();
+		while (relations.size() < nrOfWords && !heap.isEmpty()) {
+			int i = heap.poll();
+			int relation = store.getItemRelation(positions[i]++);
+			if (taken.add(relation))
+				relations.add(store.createRelation(relation));
+			if (positions[i] < ends[i])
+				heap.add(i);
+		}
+		return relations;
+	}
+
+	/* (non-Javadoc)
+	 * @see is.merkor.core.RelationDictionary#getRelationsFor(java.lang.String, java.lang.String)
+	 */
+	@Override
+	public List<RelationObject> getRelationsFor (final String lemma1, final String lemma2) {
+		validateLemma(lemma1);
+		validateLemma(lemma2);
+		List<RelationObject> list = new ArrayList<RelationObject>();
+		int lemmaIndex1 = store.indexOfLemma(lemma1);
+		int lemmaIndex2 = store.indexOfLemma(lemma2);
+		if (lemmaIndex1 < 0 || lemmaIndex2 < 0)
+			return list;
+		int nrOfItems1 = store.getLemmaEnd(lemmaIndex1) - store.getLemmaStart(lemmaIndex1);
+		int nrOfItems2 = store.getLemmaEnd(lemmaIndex2) - store.getLemmaStart(lemmaIndex2);
+
+		for (int i = store.getLemmaStart(lemmaIndex1); i < store.getLemmaEnd(lemmaIndex1); i++) {
+			int item1 = store.getLemmaItem(i);
+			for (int j = store.getLemmaStart(lemmaIndex2); j < store.getLemmaEnd(lemmaIndex2); j++) {
+				int item2 = store.getLemmaItem(j);
+				List<Relation> relations = createCommonRelations(item2, item1);
+				if (!relations.isEmpty()) {
+					// to be able to show the item for the lemma with more than one
+					// item, this item is choosen as the item of the relationObject
+					if (nrOfItems1 > 1 && nrOfItems2 == 1)
+						list.add(new RelationObject(store.createItem(item1), relations));
+					else
+						list.add(new RelationObject(store.createItem(item2), relations));
+				}
+			}
+		}
+		return list;
+	}
+
+	/* (non-Javadoc)
+	 * @see is.merkor.core.RelationDictionary#getRelationsFor(is.merkor.core.Item, is.merkor.core.Item)
+	 */
+	@Override
+	public List<Relation> getRelationsFor (final Item item1, final Item item2) {
+		validateObject(item1, "item1");
+		validateObject(item2, "item2");
+		return createCommonRelations(store.indexOfItem(item1.getId()), store.indexOfItem(item2.getId()));
+	}
+
+	/* (non-Javadoc)
+	 * @see is.merkor.core.RelationDictionary#getRelationsHavingLeft(java.lang.String, is.merkor.core.RelationType)
+	 */
+	@Override
+	public List<RelationObject> getRelationsHavingLeft (final String lemma, final RelationType type) {
+		validateLemma(lemma);
+		validateObject(type, "type");
+		return getOneSidedRelations(lemma, type, true);
+	}
+
+	/* (non-Javadoc)
+	 * @see is.merkor.core.RelationDictionary#getRelationsHavingLeft(is.merkor.core.Item, is.merkor.core.RelationType)
+	 */
+	@Override
+	public List<Relation> getRelationsHavingLeft (final Item item, final RelationType type) {
+		validateObject(item, "item");
+		validateObject(type, "type");
+		return getOneSidedRelations(item, type, true);
+	}
+
+	/* (non-Javadoc)
+	 * @see is.merkor.core.RelationDictionary#getRelationsHavingRight(java.lang.String, is.merkor.core.RelationType)
+	 */
+	@Override
+	public List<RelationObject> getRelationsHavingRight (final String lemma, final RelationType type) {
+		validateLemma(lemma);
+		validateObject(type, "type");
+		return getOneSidedRelations(lemma, type, false);
+	}
+
+	/* (non-Javadoc)
+	 * @see is.merkor.core.RelationDictionary#getRelationsHavingRight(is.merkor.core.Item, is.merkor.core.RelationType)
+	 */
+	@Override
+	public List<Relation> getRelationsHavingRight (final Item item, final RelationType type) {
+		return getOneSidedRelations(item, type, false);
+	}
+	/**
+	 * Returns a list of the 'nrOfRelations' top relations having the relationType type.
+	 * @throws IllegalArgumentException if param 'type' is {@code null} or param 'nrOfRelations'
+	 * is not positive.
+	 */
+	public List<Relation> getMostRelated (final RelationType type, final int nrOfRelations) {
+		validatePositiveNumber(nrOfRelations, "nrOfRelations");
+		validateObject(type, "type");
+		List<Relation> relations = new ArrayList<Relation>();
+		int start = store.getTopStart(type.getId());
+		int end = Math.min(store.getTopEnd(type.getId()), start + nrOfRelations);
+		for (int i = start; i < end; i++)
+			relations.add(store.createRelation(store.getTopRelation(i)));
+		return relations;
+	}
+
+	/*
+	 * Returns the first max relations of item (an index, may be -1), sorted by score descending.
+	 */
+	private List<Relation> createRelations (final int item, final int max) {
+		return createRelations(item, Double.NEGATIVE_INFINITY, 0, max);
+	}
+	/*
+	 * Returns the relations of item (an index, may be -1) having a score of at least minConfidence, 
+	 * sorted by score descending, without the first 'offset' and at most 'limit' relations.
+	 */
+	private List<Relation> createRelations (final int item, final double minConfidence, final int offset, final int limit) {
+		List<Relation> relations = new ArrayList<Relation>();
+		if (item < 0)
+			return relations;
+		int scoreEnd = getRelationEnd(item, minConfidence);
+		long start = (long)store.getItemRelationStart(item) + offset;
+		int end = (int)Math.min(start + limit, scoreEnd);
+		for (int i = (int)Math.min(start, scoreEnd); i < end; i++)
+			relations.add(store.createRelation(store.getItemRelation(i)));
+		return relations;
+	}
+	/*
+	 * Returns the end of the relations of item (an index) having a score of at least minConfidence:
+	 * the postings are sorted by score descending, so this is the first one below minConfidence.
+	 */
+	private int getRelationEnd (final int item, final double minConfidence) {
+		int low = store.getItemRelationStart(item);
+		int high = store.getItemRelationEnd(item);
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (store.getRelationScore(store.getItemRelation(mid)) >= minConfidence)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+	/*
+	 * Returns the relations of item1 which are relations of item2 as well, in the order
+	 * of item1. Both items are indices and may be -1.
+	 */
+	private List<Relation> createCommonRelations (final int item1, final int item2) {
+		List<Relation> relations = new ArrayList<Relation>();
+		if (item1 < 0 || item2 < 0)
+			return relations;
+		Set<Integer> relations2 = new HashSet<Integer>();
+		for (int i = store.getItemRelationStart(item2); i < store.getItemRelationEnd(item2); i++)
+			relations2.add(store.getItemRelation(i));
+		for (int i = store.getItemRelationStart(item1); i < store.getItemRelationEnd(item1); i++) {
+			if (relations2.contains(store.getItemRelation(i)))
+				relations.add(store.createRelation(store.getItemRelation(i)));
+		}
+		return relations;
+	}
+	/*
+	 * Returns a list of relationObjects, each containing an item for parameter lemma and
+	 * a list of relations where an item of the lemma is the left (or right) element
+	 * and the relationType is 'type'.
+	 */
+	private List<RelationObject> getOneSidedRelations (final String lemma, final RelationType type, final boolean left) {
+		List<RelationObject> resultObjects = new ArrayList<RelationObject>();
+		int lemmaIndex = store.indexOfLemma(lemma);
+		if (lemmaIndex < 0)
+			return resultObjects;
+		for (int i = store.getLemmaStart(lemmaIndex); i < store.getLemmaEnd(lemmaIndex); i++) {
+			int item = store.getLemmaItem(i);
+			List<Relation> relations = new ArrayList<Relation>();
+			for (int j = store.getItemRelationStart(item); j < store.getItemRelationEnd(item); j++) {
+				int relation = store.getItemRelation(j);
+				int sideItem = left ? store.getRelationFrom(relation) : store.getRelationTo(relation);
+				// items are matched by identity, as in the Redis dictionary
+				if (sideItem == item && store.getRelationType(relation).getId().equals(type.getId()))
+					relations.add(store.createRelation(relation));
+			}
+			if (!relations.isEmpty())
+				resultObjects.add(new RelationObject(store.createItem(item), relations));
+		}
+		return resultObjects;
+	}
+	/*
+	 * Returns the relations of item where item is the left (or right) element
+	 * and the relationType is 'type'.
+	 */
+	private List<Relation> getOneSidedRelations (final Item item, final RelationType type, final boolean left) {
+		List<Relation> relations = new ArrayList<Relation>();
+		int itemIndex = store.indexOfItem(item.getId());
+		if (itemIndex < 0)
+			return relations;
+		for (int i = store.getItemRelationStart(itemIndex); i < store.getItemRelationEnd(itemIndex); i++) {
+			int relation = store.getItemRelation(i);
+			int sideItem = left ? store.getRelationFrom(relation) : store.getRelationTo(relation);
+			// compared by equals(), as in the Redis dictionary
+			if (store.getRelationType(relation).getId().equals(type.getId()) && store.createItem(sideItem).equals(item))
+				relations.add(store.createRelation(relation));
+		}
+		return relations;
+	}
+
+	private void validateLemma (final String lemma) {
+		if (null == lemma || lemma.isEmpty()) {
+			IllegalArgumentException e = new IllegalArgumentException();
+			logger.error("param 'lemma' must not be empty!", e);
+			throw e;
+		}
+	}
+	private void validateObject (final Object obj, final String paramName) {
+		if (null == obj) {
+			IllegalArgumentException e = new IllegalArgumentException();
+			logger.error("param " + paramName + " must not be null!", e);
+			throw e;
+		}
+	}
+	private void validatePositiveNumber (final int number, final String paramName) {
+		if (number <= 0) {
+			IllegalArgumentException e = new IllegalArgumentException();
+			logger.error("param " + paramName + " must be positive!", e);
+			throw e;
+		}
+	}
+	private void validateConfidence (final double minConfidence) {
+		if (Double.isNaN(minConfidence)) {
+			IllegalArgumentException e = new IllegalArgumentException();
+			logger.error("param minConfidence must not be NaN!", e);
+			throw e;
+		}
+	}
+	private void validatePage (final double minConfidence, final int offset, final int limit) {
+		validateConfidence(minConfidence);
+		if (offset < 0) {
+			IllegalArgumentException e = new IllegalArgumentException();
+			logger.error("param offset must not be negative!", e);
+			throw e;
+		}
+		validatePositiveNumber(limit, "limit");
+	}
+}
@@ -0,0 +1,377 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.memory;
+
+import is.merkor.core.RelationType;
+import is.merkor.core.util.MerkorLogger;
+import is.merkor.core.util.Wordclass;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Writes a {@link MemoryStore} to a binary snapshot file and opens snapshot files as
+ * stores reading directly from the memory-mapped file. Opening a snapshot only maps the
+ * file and reads its header, no data is parsed or copied to the heap, so dictionaries on
+ * a snapshot are ready in milliseconds and processes opening the same file share its pages.
+ * <p>
+ * Usage:
+ * <pre>
+ * MemorySnapshot.write(new RedisStoreLoader(new RedisContext(host, port)).load(), file);
+ * ...
+ * RelationDictionary relDict = new MemoryRelationDictionary(MemorySnapshot.open(file));
+ * </pre>
+ * A snapshot is exported from Redis on the command line with {@code -export_snapshot <file>}.
+ * <p>
+ * <ul>File format (all numbers big-endian):
+ *    <li>header: magic number, format version, number of sections</li>
+ *    <li>section table: byte offset and byte length of each section</li>
+ *    <li>sections, each starting at a multiple of 8: the arrays of the store, see the
+ *        section constants. Strings are stored as UTF-8 in one byte section each, with a
+ *        section of int offsets (one more than strings) into it.</li>
+ * </ul>
+ *
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public final class MemorySnapshot {
+	static final int MAGIC = 0x4D4B4F52; // "MKOR"
+	static final int VERSION = 1;
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// sections of a snapshot, in the order of the file
+	static final int ITEM_IDS = 0;
+	static final int ITEM_LEMMATA = 1;
+	static final int ITEM_WORDCLASSES = 2;
+	static final int LEMMA_STRING_OFFSETS = 3;
+	static final int LEMMA_STRINGS = 4;
+	static final int LEMMA_OFFSETS = 5;
+	static final int LEMMA_ITEMS = 6;
+	static final int RELATION_IDS = 7;
+	static final int RELATION_FROM = 8;
+	static final int RELATION_TO = 9;
+	static final int RELATION_SCORES = 10;
+	static final int RELATION_TYPES = 11;
+	static final int TYPE_IDS = 12;
+	static final int TYPE_NAME_OFFSETS = 13;
+	static final int TYPE_NAMES = 14;
+	static final int ITEM_RELATION_OFFSETS = 15;
+	static final int ITEM_RELATIONS = 16;
+	static final int TOP_TYPE_IDS = 17;
+	static final int TOP_OFFSETS = 18;
+	static final int TOP_RELATIONS = 19;
+	static final int CLUSTER_IDS = 20;
+	static final int CLUSTER_NAME_OFFSETS = 21;
+	static final int CLUSTER_NAMES = 22;
+	static final int MEMBER_OFFSETS = 23;
+	static final int MEMBER_ITEMS = 24;
+	static final int MEMBER_VALUES = 25;
+	static final int ITEM_CLUSTER_OFFSETS = 26;
+	static final int ITEM_CLUSTERS = 27;
+	static final int SECTION_COUNT = 28;
+
+	private static final int HEADER_SIZE = 12 + SECTION_COUNT * 16;
+
+	private static Logger logger;
+
+	static {
+		MerkorLogger.configureLogger();
+		logger = Logger.getLogger(MemorySnapshot.class);
+	}
+
+	private MemorySnapshot () {
+	}
+
+	/**
+	 * Writes all data of {@code store} to {@code file}, replacing the file if it exists.
+	 * @throws IllegalArgumentException if a param is {@code null}
+	 * @throws IOException if writing fails
+	 */
+	public static void write (final MemoryStore store, final File file) throws IOException {
+		validateObject(store, "store");
+		validateObject(file, "file");
+		long[] offsets = new long[SECTION_COUNT];
+		long[] lengths = new long[SECTION_COUNT];
+		SectionOutput out = new SectionOutput(new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file))));
+		try {
+			out.skip(HEADER_SIZE);
+			int items = store.getItemCount();
+			int lemmata = store.getLemmaCount();
+			int relations = store.getRelationCount();
+			int clusters = store.getClusterCount();
+
+			// items
+			out.begin(ITEM_IDS, offsets);
+			for (int i = 0; i < items; i++)
+				out.writeLong(store.getItemId(i));
+			out.end(ITEM_IDS, offsets, lengths);
+			out.begin(ITEM_LEMMATA, offsets);
+			for (int i = 0; i < items; i++)
+				out.writeInt(store.getLemmaOf(i));
+			out.end(ITEM_LEMMATA, offsets, lengths);
+			out.begin(ITEM_WORDCLASSES, offsets);
+			for (int i = 0; i < items; i++)
+				out.writeByte(Wordclass.VALUES.indexOf(store.getWordclass(i)));
+			out.end(ITEM_WORDCLASSES, offsets, lengths);
+
+			// lemmata
+			byte[][] lemmaBytes = new byte[lemmata][];
+			for (int i = 0; i < lemmata; i++)
+				lemmaBytes[i] = store.getLemma(i).getBytes(UTF8);
+			writeStrings(out, lemmaBytes, LEMMA_STRING_OFFSETS, LEMMA_STRINGS, offsets, lengths);
+			out.begin(LEMMA_OFFSETS, offsets);
+			for (int i = 0; i < lemmata; i++)
+				out.writeInt(store.getLemmaStart(i));
+			out.writeInt(lemmata == 0 ? 0 : store.getLemmaEnd(lemmata - 1));
+			out.end(LEMMA_OFFSETS, offsets, lengths);
+			out.begin(LEMMA_ITEMS, offsets);
+			for (int i = 0; i < items; i++)
+				out.writeInt(store.getLemmaItem(i));
+			out.end(LEMMA_ITEMS, offsets, lengths);
+
+			// relations and relation types
+			out.begin(RELATION_IDS, offsets);
+			for (int i = 0; i < relations; i++)
+				out.writeLong(store.getRelationId(i));
+			out.end(RELATION_IDS, offsets, lengths);
+			out.begin(RELATION_FROM, offsets);
+			for (int i = 0; i < relations; i++)
+				out.writeInt(store.getRelationFrom(i));
+			out.end(RELATION_FROM, offsets, lengths);
+			out.begin(RELATION_TO, offsets);
+			for (int i = 0; i < relations; i++)
+				out.writeInt(store.getRelationTo(i));
+			out.end(RELATION_TO, offsets, lengths);
+			out.begin(RELATION_SCORES, offsets);
+			for (int i = 0; i < relations; i++)
+				out.writeDouble(store.getRelationScore(i));
+			out.end(RELATION_SCORES, offsets, lengths);
+			out.begin(RELATION_TYPES, offsets);
+			for (int i = 0; i < relations; i++)
+				out.writeInt(store.getRelationTypeIndex(i));
+			out.end(RELATION_TYPES, offsets, lengths);
+			out.begin(TYPE_IDS, offsets);
+			byte[][] typeNames = new byte[store.getTypeCount()][];
+			for (int i = 0; i < store.getTypeCount(); i++) {
+				RelationType type = store.getType(i);
+				out.writeLong(type.getId());
+				typeNames[i] = type.getName().getBytes(UTF8);
+			}
+			out.end(TYPE_IDS, offsets, lengths);
+			writeStrings(out, typeNames, TYPE_NAME_OFFSETS, TYPE_NAMES, offsets, lengths);
+
+			// relations per item and top relations
+			out.begin(ITEM_RELATION_OFFSETS, offsets);
+			for (int i = 0; i < items; i++)
+				out.writeInt(store.getItemRelationStart(i));
+			out.writeInt(items == 0 ? 0 : store.getItemRelationEnd(items - 1));
+			out.end(ITEM_RELATION_OFFSETS, offsets, lengths);
+			int postings = items == 0 ? 0 : store.getItemRelationEnd(items - 1);
+			out.begin(ITEM_RELATIONS, offsets);
+			for (int i = 0; i < postings; i++)
+				out.writeInt(store.getItemRelation(i));
+			out.end(ITEM_RELATIONS, offsets, lengths);
+			int topTypes = store.getTopTypeCount();
+			out.begin(TOP_TYPE_IDS, offsets);
+			for (int i = 0; i < topTypes; i++)
+				out.writeLong(store.getTopTypeId(i));
+			out.end(TOP_TYPE_IDS, offsets, lengths);
+			out.begin(TOP_OFFSETS, offsets);
+			for (int i = 0; i < topTypes; i++)
+				out.writeInt(store.getTopStart(store.getTopTypeId(i)));
+			int topPostings = topTypes == 0 ? 0 : store.getTopEnd(store.getTopTypeId(topTypes - 1));
+			out.writeInt(topPostings);
+			out.end(TOP_OFFSETS, offsets, lengths);
+			out.begin(TOP_RELATIONS, offsets);
+			for (int i = 0; i < topPostings; i++)
+				out.writeInt(store.getTopRelation(i));
+			out.end(TOP_RELATIONS, offsets, lengths);
+
+			// clusters
+			out.begin(CLUSTER_IDS, offsets);
+			byte[][] clusterNames = new byte[clusters][];
+			for (int i = 0; i < clusters; i++) {
+				out.writeLong(store.getClusterId(i));
+				clusterNames[i] = store.getClusterName(i).getBytes(UTF8);
+			}
+			out.end(CLUSTER_IDS, offsets, lengths);
+			writeStrings(out, clusterNames, CLUSTER_NAME_OFFSETS, CLUSTER_NAMES, offsets, lengths);
+			out.begin(MEMBER_OFFSETS, offsets);
+			for (int i = 0; i < clusters; i++)
+				out.writeInt(store.getMemberStart(i));
+			int members = clusters == 0 ? 0 : store.getMemberEnd(clusters - 1);
+			out.writeInt(members);
+			out.end(MEMBER_OFFSETS, offsets, lengths);
+			out.begin(MEMBER_ITEMS, offsets);
+			for (int i = 0; i < members; i++)
+				out.writeInt(store.getMemberItem(i));
+			out.end(MEMBER_ITEMS, offsets, lengths);
+			out.begin(MEMBER_VALUES, offsets);
+			for (int i = 0; i < members; i++)
+				out.writeDouble(store.getMemberValue(i));
+			out.end(MEMBER_VALUES, offsets, lengths);
+			out.begin(ITEM_CLUSTER_OFFSETS, offsets);
+			for (int i = 0; i < items; i++)
+				out.writeInt(store.getItemClusterStart(i));
+			int itemClusters = items == 0 ? 0 : store.getItemClusterEnd(items - 1);
+			out.writeInt(itemClusters);
+			out.end(ITEM_CLUSTER_OFFSETS, offsets, lengths);
+			out.begin(ITEM_CLUSTERS, offsets);
+			for (int i = 0; i < itemClusters; i++)
+				out.writeInt(store.getItemCluster(i));
+			out.end(ITEM_CLUSTERS, offsets, lengths);
+		} finally {
+			out.close();
+		}
+
+		// the header, now that the positions of all sections are known
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.writeInt(MAGIC);
+			raf.writeInt(VERSION);
+			raf.writeInt(SECTION_COUNT);
+			for (int i = 0; i < SECTION_COUNT; i++) {
+				raf.writeLong(offsets[i]);
+				raf.writeLong(lengths[i]);
+			}
+		} finally {
+			raf.close();
+		}
+		logger.info("wrote snapshot of " + store + " to " + file);
+	}
+
+	/**
+	 * Opens the snapshot {@code file}, written by {@link #write(MemoryStore, File)}, as a
+	 * read-only store. The file is mapped into memory and must not be changed while the
+	 * store is in use.
+	 * @throws IllegalArgumentException if param 'file' is {@code null}
+	 * @throws IOException if the file can not be read or is not a valid snapshot
+	 */
+	public static MemoryStore open (final File file) throws IOException {
+		validateObject(file, "file");
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long size = channel.size();
+			if (size < HEADER_SIZE)
+				throw invalid(file, "file too short");
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			if (header.getInt() != MAGIC)
+				throw invalid(file, "not a MerkOr snapshot");
+			int version = header.getInt();
+			if (version != VERSION)
+				throw invalid(file, "unsupported version " + version);
+			if (header.getInt() != SECTION_COUNT)
+				throw invalid(file, "wrong number of sections");
+			// the mapping stays valid after the channel is closed
+			MappedByteBuffer[] sections = new MappedByteBuffer[SECTION_COUNT];
+			for (int i = 0; i < SECTION_COUNT; i++) {
+				long offset = header.getLong();
+				long length = header.getLong();
+				if (offset < HEADER_SIZE || length < 0 || length > Integer.MAX_VALUE || offset + length > size)
+					throw invalid(file, "section " + i + " out of bounds");
+				sections[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+			}
+			MappedStore store = new MappedStore(sections);
+			logger.info("opened snapshot " + file + ": " + store);
+			return store;
+		} finally {
+			raf.close();
+		}
+	}
+
+	/*
+	 * Writes strings as a section of int offsets into the section of their concatenated bytes.
+	 */
+	private static void writeStrings (final SectionOutput out, final byte[][] strings, final int offsetSection,
+			final int stringSection, final long[] offsets, final long[] lengths) throws IOException {
+		out.begin(offsetSection, offsets);
+		int position = 0;
+		for (byte[] string : strings) {
+			out.writeInt(position);
+			position += string.length;
+		}
+		out.writeInt(position);
+		out.end(offsetSection, offsets, lengths);
+		out.begin(stringSection, offsets);
+		for (byte[] string : strings)
+			out.write(string);
+		out.end(stringSection, offsets, lengths);
+	}
+	private static IOException invalid (final File file, final String message) {
+		IOException e = new IOException(file + " is not a valid MerkOr snapshot: " + message);
+		logger.error(e.getMessage(), e);
+		return e;
+	}
+	private static void validateObject (final Object obj, final String paramName) {
+		if (null == obj) {
+			IllegalArgumentException e = new IllegalArgumentException();
+			logger.error("param " + paramName + " must not be null!", e);
+			throw e;
+		}
+	}
+
+	/*
+	 * A data output keeping track of its position (beyond the int range of DataOutputStream.size()),
+	 * starting each section at a multiple of 8.
+	 */
+	private static class SectionOutput {
+		private final DataOutputStream out;
+		private long position = 0;
+
+		SectionOutput (final DataOutputStream out) {
+			this.out = out;
+		}
+		void begin (final int section, final long[] offsets) throws IOException {
+			skip((int)((8 - position % 8) % 8));
+			offsets[section] = position;
+		}
+		void end (final int section, final long[] offsets, final long[] lengths) {
+			lengths[section] = position - offsets[section];
+		}
+		void skip (final int bytes) throws IOException {
+			for (int i = 0; i < bytes; i++)
+				out.writeByte(0);
+			position += bytes;
+		}
+		void writeByte (final int value) throws IOException {
+			out.writeByte(value);
+			position += 1;
+		}
+		void writeInt (final int value) throws IOException {
+			out.writeInt(value);
+			position += 4;
+		}
+		void writeLong (final long value) throws IOException {
+			out.writeLong(value);
+			position += 8;
+		}
+		void writeDouble (final double value) throws IOException {
+			out.writeDouble(value);
+			position += 8;
+		}
+		void write (final byte[] bytes) throws IOException {
+			out.write(bytes);
+			position += bytes.length;
+		}
+		void close () throws IOException {
+			out.close();
+		}
+	}
+}
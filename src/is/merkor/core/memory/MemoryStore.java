@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.memory;
+
+import is.merkor.core.RelationType;
+import is.merkor.core.redis.data.RedisCluster;
+import is.merkor.core.redis.data.RedisItem;
+import is.merkor.core.redis.data.RedisPair;
+import is.merkor.core.redis.data.RedisRelation;
+
+/**
+ * The complete MerkOr data in compact primitive structures. Items, relations
+ * and clusters are addressed by their index in the store (0 to count - 1), the lists
+ * belonging to an item or cluster are stored as consecutive ranges of one shared array
+ * (compressed sparse rows), so a lookup is a binary search or a hash lookup followed
+ * by an array scan, without any locking.
+ * <p>
+ * <ul>Contents:
+ *    <li>items: sorted by id, with an index into the interned lemmata and a wordclass code</li>
+ *    <li>lemmata: sorted, each with the range of its items (sorted like {@link RedisItem}s)</li>
+ *    <li>relations: id, from and to item, confidence score and relation type</li>
+ *    <li>relation types: id and name, referenced by index from the relations</li>
+ *    <li>relations per item: sorted by score descending, as the sorted relation sets in Redis</li>
+ *    <li>top relations per relation type id: sorted by score descending</li>
+ *    <li>clusters: sorted by id, with name and the members sorted by value descending,
+ *        and the clusters of each item</li>
+ * </ul>
+ * A store is immutable and can be shared by any number of dictionaries and threads.
+ * It is either held on the heap, created by a {@link MemoryStoreBuilder}, or read directly
+ * from a memory-mapped file, see {@link MemorySnapshot}. Objects returned by the dictionaries
+ * are created on each request, as instances of the classes in {@link is.merkor.core.redis.data},
+ * so they compare equal to the objects returned by the Redis dictionaries.
+ *
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public abstract class MemoryStore {
+
+	/*
+	 * Stores are implemented in this package only.
+	 */
+	MemoryStore () {
+	}
+
+	/**
+	 * @return the number of lexical items in this store
+	 */
+	public abstract int getItemCount ();
+	/**
+	 * @return the number of relations in this store
+	 */
+	public abstract int getRelationCount ();
+	/**
+	 * @return the number of clusters in this store
+	 */
+	public abstract int getClusterCount ();
+
+	/*
+	 * Returns the index of the item having id as its id, or -1 if there is none.
+	 */
+	abstract int indexOfItem (long id);
+	abstract long getItemId (int item);
+	abstract int getLemmaOf (int item);
+	abstract String getWordclass (int item);
+
+	/*
+	 * Returns the index of lemma, or -1 if there is no item having lemma as its lemma.
+	 */
+	abstract int indexOfLemma (String lemma);
+	abstract int getLemmaCount ();
+	abstract String getLemma (int lemma);
+	/*
+	 * The items of lemma are getLemmaItem(i) for getLemmaStart(lemma) <= i < getLemmaEnd(lemma).
+	 * The items of all lemmata together, starting with 0, are all items in the order of RedisItem.
+	 */
+	abstract int getLemmaStart (int lemma);
+	abstract int getLemmaEnd (int lemma);
+	abstract int getLemmaItem (int position);
+
+	abstract long getRelationId (int relation);
+	abstract int getRelationFrom (int relation);
+	abstract int getRelationTo (int relation);
+	abstract double getRelationScore (int relation);
+	abstract int getRelationTypeIndex (int relation);
+	abstract int getTypeCount ();
+	abstract RelationType getType (int type);
+
+	/*
+	 * The relations of item, sorted by score descending, are getItemRelation(i) for
+	 * getItemRelationStart(item) <= i < getItemRelationEnd(item).
+	 */
+	abstract int getItemRelationStart (int item);
+	abstract int getItemRelationEnd (int item);
+	abstract int getItemRelation (int position);
+
+	/*
+	 * The relation type ids having top relations are getTopTypeId(i) for 0 <= i < getTopTypeCount(),
+	 * sorted ascending. The top relations of the relation type with id typeId are
+	 * getTopRelation(i) for getTopStart(typeId) <= i < getTopEnd(typeId), both are 0 for an unknown type.
+	 */
+	abstract int getTopTypeCount ();
+	abstract long getTopTypeId (int index);
+	abstract int getTopStart (long typeId);
+	abstract int getTopEnd (long typeId);
+	abstract int getTopRelation (int position);
+
+	/*
+	 * Returns the index of the cluster having id as its id, or -1 if there is none.
+	 */
+	abstract int indexOfCluster (long id);
+	abstract long getClusterId (int cluster);
+	abstract String getClusterName (int cluster);
+	/*
+	 * The members of cluster, sorted by value descending, are getMemberItem(i) with the
+	 * value getMemberValue(i) for getMemberStart(cluster) <= i < getMemberEnd(cluster).
+	 */
+	abstract int getMemberStart (int cluster);
+	abstract int getMemberEnd (int cluster);
+	abstract int getMemberItem (int position);
+	abstract double getMemberValue (int position);
+	/*
+	 * The clusters of item, sorted by id, are getItemCluster(i) for
+	 * getItemClusterStart(item) <= i < getItemClusterEnd(item).
+	 */
+	abstract int getItemClusterStart (int item);
+	abstract int getItemClusterEnd (int item);
+	abstract int getItemCluster (int position);
+
+	/*
+	 * Returns the index of the first lemma not less than prefix. As the lemmata are sorted,
+	 * all lemmata starting with prefix follow consecutively from this index.
+	 */
+	int lemmaRangeStart (final String prefix) {
+		int low = 0;
+		int high = getLemmaCount();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (getLemma(mid).compareTo(prefix) < 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+	RelationType getRelationType (final int relation) {
+		return getType(getRelationTypeIndex(relation));
+	}
+	RedisItem createItem (final int item) {
+		return new RedisItem(getItemId(item), getLemma(getLemmaOf(item)), getWordclass(item));
+	}
+	RedisRelation createRelation (final int relation) {
+		RedisPair pair = new RedisPair(createItem(getRelationFrom(relation)), createItem(getRelationTo(relation)));
+		return new RedisRelation(getRelationId(relation), pair, getRelationType(relation), getRelationScore(relation));
+	}
+	RedisCluster createCluster (final int cluster) {
+		return new RedisCluster(getClusterId(cluster), getClusterName(cluster));
+	}
+
+	@Override
+	public String toString () {
+		return "memory store: [items=" + getItemCount() + ", relations=" + getRelationCount()
+				+ ", clusters=" + getClusterCount() + "]";
+	}
+}
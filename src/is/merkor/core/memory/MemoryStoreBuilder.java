@@ -0,0 +1,446 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.memory;
+
+import is.merkor.core.RelationType;
+import is.merkor.core.redis.data.RedisRelationType;
+import is.merkor.core.redis.dictionaries.RedisRelationTypeRegistry;
+import is.merkor.core.util.MerkorLogger;
+import is.merkor.core.util.Wordclass;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Collects the MerkOr data, in any order, and creates a {@link MemoryStore} from it.
+ * The data is added as it is represented on the Redis server (see
+ * {@link is.merkor.core.redis.dictionaries.MerkorRedisConstants}): items, relation types,
+ * relations, the members of the sorted relation set of each item, the top relations
+ * of each relation type, clusters and their members.
+ * <p>
+ * Lists sorted by score are ordered as Redis orders sorted sets in ZREVRANGE: by score
+ * descending and, for equal scores, by key descending. Relations, postings and cluster
+ * members referring to unknown items, relations or clusters are left out with a warning,
+ * as the Redis dictionaries do.
+ * <p>
+ * A builder is not thread-safe, the built store is.
+ *
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public class MemoryStoreBuilder {
+
+	private final LongArray itemIds = new LongArray();
+	private final List<String> itemLemmata = new ArrayList<String>();
+	private final List<String> itemWordclasses = new ArrayList<String>();
+
+	private final Map<String, Long> typeIds = new HashMap<String, Long>();
+
+	private final LongArray relationIds = new LongArray();
+	private final LongArray relationFrom = new LongArray();
+	private final LongArray relationTo = new LongArray();
+	private final List<String> relationNames = new ArrayList<String>();
+	private final DoubleArray relationScores = new DoubleArray();
+
+	private final LongArray postingItems = new LongArray();
+	private final LongArray postingRelations = new LongArray();
+	private final DoubleArray postingScores = new DoubleArray();
+
+	private final LongArray topTypes = new LongArray();
+	private final LongArray topRelations = new LongArray();
+	private final DoubleArray topScores = new DoubleArray();
+
+	private final LongArray clusterIds = new LongArray();
+	private final List<String> clusterNames = new ArrayList<String>();
+	private final LongArray memberClusters = new LongArray();
+	private final LongArray memberItems = new LongArray();
+	private final DoubleArray memberValues = new DoubleArray();
+
+	private static Logger logger;
+
+	/**
+	 * Constructs a new, empty builder.
+	 */
+	public MemoryStoreBuilder () {
+		MerkorLogger.configureLogger();
+		logger = Logger.getLogger(MemoryStoreBuilder.class);
+	}
+
+	/**
+	 * Adds the lexical item {@code id} (merkor_is_id_&lt;id&gt;).
+	 *
+	 * @throws IllegalArgumentException if {@code lemma} is null or {@code wordclass} is not
+	 * one of {@link Wordclass#VALUES}
+	 */
+	public MemoryStoreBuilder addItem (final long id, final String lemma, final String wordclass) {
+		if (null == lemma || !Wordclass.VALUES.contains(wordclass)) {
+			IllegalArgumentException e = new IllegalArgumentException();
+			logger.error("item " + id + ": lemma must not be null and wordclass has to match one of "
+					+ Wordclass.VALUES.toString() + "!", e);
+			throw e;
+		}
+		itemIds.add(id);
+		itemLemmata.add(lemma);
+		itemWordclasses.add(wordclass);
+		return this;
+	}
+	/**
+	 * Adds the id of the relation type described by {@code description} (merkor_is_reltype_&lt;description&gt;).
+	 */
+	public MemoryStoreBuilder addRelationType (final String description, final long id) {
+		typeIds.put(description, id);
+		return this;
+	}
+	/**
+	 * Adds the relation {@code id} (merkor_is_rel_&lt;id&gt;) between the items {@code fromItem}
+	 * and {@code toItem}.
+	 */
+	public MemoryStoreBuilder addRelation (final long id, final long fromItem, final long toItem,
+			final String relation, final double score) {
+		relationIds.add(id);
+		relationFrom.add(fromItem);
+		relationTo.add(toItem);
+		relationNames.add(relation);
+		relationScores.add(score);
+		return this;
+	}
+	/**
+	 * Adds the relation {@code relationId} to the relations of the item {@code itemId}
+	 * (a member of sorted_rel_set_merkor_is_id_&lt;itemId&gt;).
+	 */
+	public MemoryStoreBuilder addItemRelation (final long itemId, final long relationId, final double score) {
+		postingItems.add(itemId);
+		postingRelations.add(relationId);
+		postingScores.add(score);
+		return this;
+	}
+	/**
+	 * Adds the relation {@code relationId} to the top relations of the relation type {@code typeId}
+	 * (a member of merkor_is_top_by_reltype_&lt;typeId&gt;).
+	 */
+	public MemoryStoreBuilder addTopRelation (final long typeId, final long relationId, final double score) {
+		topTypes.add(typeId);
+		topRelations.add(relationId);
+		topScores.add(score);
+		return this;
+	}
+	/**
+	 * Adds the cluster {@code id} named {@code name} (merkor_is_cluster_&lt;name&gt;_&lt;id&gt;).
+	 */
+	public MemoryStoreBuilder addCluster (final long id, final String name) {
+		clusterIds.add(id);
+		clusterNames.add(name);
+		return this;
+	}
+	/**
+	 * Adds the item {@code itemId} to the members of the cluster {@code clusterId}.
+	 */
+	public MemoryStoreBuilder addClusterMember (final long clusterId, final long itemId, final double value) {
+		memberClusters.add(clusterId);
+		memberItems.add(itemId);
+		memberValues.add(value);
+		return this;
+	}
+
+	/**
+	 * Creates a new store containing all data added so far.
+	 */
+	public MemoryStore build () {
+		// items, sorted by id
+		Integer[] itemOrder = sortedIndices(itemIds.size(), new Comparator<Integer>() {
+			public int compare (final Integer i1, final Integer i2) {
+				return compareLongs(itemIds.get(i1), itemIds.get(i2));
+			}
+		});
+		TreeSet<String> lemmaSet = new TreeSet<String>(itemLemmata);
+		String[] lemmata = lemmaSet.toArray(new String[lemmaSet.size()]);
+		Map<String, Integer> lemmaIndex = new HashMap<String, Integer>(lemmata.length * 2);
+		for (int i = 0; i < lemmata.length; i++)
+			lemmaIndex.put(lemmata[i], i);
+
+		LongArray ids = new LongArray();
+		List<Integer> sourceItems = new ArrayList<Integer>(itemOrder.length);
+		for (Integer i : itemOrder) {
+			if (ids.size() > 0 && ids.get(ids.size() - 1) == itemIds.get(i)) {
+				logger.warn("item " + itemIds.get(i) + " added more than once, keeping the first!");
+				continue;
+			}
+			ids.add(itemIds.get(i));
+			sourceItems.add(i);
+		}
+		long[] items = ids.toArray();
+		int[] itemLemmaIndices = new int[items.length];
+		byte[] wordclasses = new byte[items.length];
+		int[] lemmaOffsets = new int[lemmata.length + 1];
+		for (int i = 0; i < items.length; i++) {
+			itemLemmaIndices[i] = lemmaIndex.get(itemLemmata.get(sourceItems.get(i)));
+			wordclasses[i] = (byte)Wordclass.VALUES.indexOf(itemWordclasses.get(sourceItems.get(i)));
+			lemmaOffsets[itemLemmaIndices[i] + 1]++;
+		}
+		// the items of each lemma, ascending by id as they are visited in id order
+		int[] lemmaItems = new int[items.length];
+		int[] lemmaFill = cumulate(lemmaOffsets);
+		for (int i = 0; i < items.length; i++)
+			lemmaItems[lemmaFill[itemLemmaIndices[i]]++] = i;
+
+		// relations and their types
+		Map<Long, Integer> relationIndex = new HashMap<Long, Integer>();
+		Map<String, Integer> typeIndex = new HashMap<String, Integer>();
+		List<RelationType> types = new ArrayList<RelationType>();
+		RedisRelationTypeRegistry registry = RedisRelationTypeRegistry.fromDescriptions(typeIds);
+		LongArray relIds = new LongArray();
+		int[] relFrom = new int[relationIds.size()];
+		int[] relTo = new int[relationIds.size()];
+		double[] relScores = new double[relationIds.size()];
+		int[] relTypes = new int[relationIds.size()];
+		for (int i = 0; i < relationIds.size(); i++) {
+			int from = indexOf(items, relationFrom.get(i));
+			int to = indexOf(items, relationTo.get(i));
+			if (from < 0 || to < 0) {
+				logger.warn("relation " + relationIds.get(i) + ": items not found!");
+				continue;
+			}
+			if (relationIndex.containsKey(relationIds.get(i))) {
+				logger.warn("relation " + relationIds.get(i) + " added more than once, keeping the first!");
+				continue;
+			}
+			String name = relationNames.get(i);
+			long typeId = getTypeId(registry, name, wordclasses[from]);
+			String typeKey = typeId + "\t" + name;
+			Integer type = typeIndex.get(typeKey);
+			if (null == type) {
+				type = types.size();
+				typeIndex.put(typeKey, type);
+				types.add(new RedisRelationType(typeId, name, name));
+			}
+			int relation = relIds.size();
+			relationIndex.put(relationIds.get(i), relation);
+			relIds.add(relationIds.get(i));
+			relFrom[relation] = from;
+			relTo[relation] = to;
+			relScores[relation] = relationScores.get(i);
+			relTypes[relation] = type;
+		}
+		int relationCount = relIds.size();
+		long[] relIdArray = relIds.toArray();
+
+		// relations per item
+		int[] postingItemIndices = new int[postingItems.size()];
+		int[] postingRelIndices = new int[postingItems.size()];
+		for (int i = 0; i < postingItems.size(); i++) {
+			postingItemIndices[i] = indexOf(items, postingItems.get(i));
+			Integer relation = relationIndex.get(postingRelations.get(i));
+			postingRelIndices[i] = null == relation ? -1 : relation;
+			if (postingItemIndices[i] < 0 || postingRelIndices[i] < 0)
+				logger.warn("relation " + postingRelations.get(i) + " of item " + postingItems.get(i) + " not found!");
+		}
+		int[] itemRelationOffsets = new int[items.length + 1];
+		int[] itemRelations = sortPostings(postingItemIndices, postingRelIndices, postingScores, relIdArray, itemRelationOffsets);
+
+		// top relations per relation type
+		Integer[] topOrder = sortedIndices(topTypes.size(), new Comparator<Integer>() {
+			public int compare (final Integer i1, final Integer i2) {
+				return compareLongs(topTypes.get(i1), topTypes.get(i2));
+			}
+		});
+		LongArray topTypeIds = new LongArray();
+		for (Integer i : topOrder) {
+			if (topTypeIds.size() == 0 || topTypeIds.get(topTypeIds.size() - 1) != topTypes.get(i))
+				topTypeIds.add(topTypes.get(i));
+		}
+		long[] topTypeArray = topTypeIds.toArray();
+		int[] topTypeIndices = new int[topTypes.size()];
+		int[] topRelIndices = new int[topTypes.size()];
+		for (int i = 0; i < topTypes.size(); i++) {
+			topTypeIndices[i] = Arrays.binarySearch(topTypeArray, topTypes.get(i));
+			Integer relation = relationIndex.get(topRelations.get(i));
+			topRelIndices[i] = null == relation ? -1 : relation;
+			if (topRelIndices[i] < 0)
+				logger.warn("top relation " + topRelations.get(i) + " of type " + topTypes.get(i) + " not found!");
+		}
+		int[] topOffsets = new int[topTypeArray.length + 1];
+		int[] tops = sortPostings(topTypeIndices, topRelIndices, topScores, relIdArray, topOffsets);
+
+		// clusters, their members and the clusters of each item
+		Integer[] clusterOrder = sortedIndices(clusterIds.size(), new Comparator<Integer>() {
+			public int compare (final Integer i1, final Integer i2) {
+				return compareLongs(clusterIds.get(i1), clusterIds.get(i2));
+			}
+		});
+		LongArray clusters = new LongArray();
+		List<String> names = new ArrayList<String>();
+		for (Integer i : clusterOrder) {
+			if (clusters.size() > 0 && clusters.get(clusters.size() - 1) == clusterIds.get(i)) {
+				logger.warn("cluster " + clusterIds.get(i) + " added more than once, keeping the first!");
+				continue;
+			}
+			clusters.add(clusterIds.get(i));
+			names.add(clusterNames.get(i));
+		}
+		long[] clusterArray = clusters.toArray();
+		final int[] memberClusterIndices = new int[memberClusters.size()];
+		final int[] memberItemIndices = new int[memberClusters.size()];
+		for (int i = 0; i < memberClusters.size(); i++) {
+			memberClusterIndices[i] = indexOf(clusterArray, memberClusters.get(i));
+			memberItemIndices[i] = indexOf(items, memberItems.get(i));
+			if (memberClusterIndices[i] < 0 || memberItemIndices[i] < 0)
+				logger.warn("member " + memberItems.get(i) + " of cluster " + memberClusters.get(i) + " not found!");
+		}
+		int[] memberOffsets = new int[clusterArray.length + 1];
+		int[] memberOrder = sortEntries(memberClusterIndices, memberItemIndices, memberValues, items, memberOffsets);
+		int[] members = new int[memberOrder.length];
+		double[] values = new double[memberOrder.length];
+		int[] itemClusterOffsets = new int[items.length + 1];
+		for (int i = 0; i < memberOrder.length; i++) {
+			members[i] = memberItemIndices[memberOrder[i]];
+			values[i] = memberValues.get(memberOrder[i]);
+			itemClusterOffsets[members[i] + 1]++;
+		}
+		// visiting the clusters in id order keeps the clusters of each item sorted by id
+		int[] itemClusters = new int[memberOrder.length];
+		int[] itemClusterFill = cumulate(itemClusterOffsets);
+		for (int cluster = 0; cluster < clusterArray.length; cluster++) {
+			for (int i = memberOffsets[cluster]; i < memberOffsets[cluster + 1]; i++)
+				itemClusters[itemClusterFill[members[i]]++] = cluster;
+		}
+
+		return new HeapStore(items, itemLemmaIndices, wordclasses, lemmata, lemmaIndex, lemmaOffsets, lemmaItems,
+				relIdArray, Arrays.copyOf(relFrom, relationCount),
+				Arrays.copyOf(relTo, relationCount), Arrays.copyOf(relScores, relationCount),
+				Arrays.copyOf(relTypes, relationCount), types.toArray(new RelationType[types.size()]),
+				itemRelationOffsets, itemRelations, topTypeArray, topOffsets, tops,
+				clusterArray, names.toArray(new String[names.size()]), memberOffsets, members, values,
+				itemClusterOffsets, itemClusters);
+	}
+
+	/*
+	 * Returns the type id for relation as the Redis relation parser determines it, 
+	 * unknown relations get 0.
+	 */
+	private long getTypeId (final RedisRelationTypeRegistry registry, final String relation, final byte fromWordclass) {
+		RelationType type = registry.getRelationType(relation, Wordclass.VALUES.get(fromWordclass));
+		return null == type ? 0L : type.getId();
+	}
+	/*
+	 * Sorts the relation lists given as (owner, relation, score) entries, owners being
+	 * indices into offsets and relations indices into relIds. Fills offsets with the start 
+	 * of the list of each owner and returns the relations of all owners in order. 
+	 * Entries with an index of -1 are left out.
+	 */
+	private int[] sortPostings (final int[] owners, final int[] relations, final DoubleArray scores, 
+			final long[] relIds, final int[] offsets) {
+		int[] order = sortEntries(owners, relations, scores, relIds, offsets);
+		int[] result = new int[order.length];
+		for (int i = 0; i < order.length; i++)
+			result[i] = relations[order[i]];
+		return result;
+	}
+	/*
+	 * Sorts the entries (owner, element, score) by owner, then by score descending and then
+	 * by the key of the element descending, as Redis sorts ZREVRANGE replies. The key of an
+	 * element is given by its id in elementIds. Fills offsets and returns the entry indices
+	 * in sorted order, leaving out entries with an owner or element of -1.
+	 */
+	private int[] sortEntries (final int[] owners, final int[] elements, final DoubleArray scores,
+			final long[] elementIds, final int[] offsets) {
+		final String[] keys = new String[owners.length];
+		int valid = 0;
+		for (int i = 0; i < owners.length; i++) {
+			if (owners[i] >= 0 && elements[i] >= 0) {
+				keys[i] = Long.toString(elementIds[elements[i]]);
+				offsets[owners[i] + 1]++;
+				valid++;
+			}
+		}
+		Integer[] order = sortedIndices(owners.length, new Comparator<Integer>() {
+			public int compare (final Integer i1, final Integer i2) {
+				int result = owners[i1] - owners[i2];
+				if (0 == result)
+					result = Double.compare(scores.get(i2), scores.get(i1));
+				if (0 == result && null != keys[i1] && null != keys[i2])
+					result = keys[i2].compareTo(keys[i1]);
+				return result;
+			}
+		});
+		cumulate(offsets);
+		int[] result = new int[valid];
+		int n = 0;
+		for (Integer i : order) {
+			if (null != keys[i])
+				result[n++] = i;
+		}
+		return result;
+	}
+	/*
+	 * Turns the counts in offsets[1..n] into start offsets, offsets[n] becoming the total.
+	 * Returns a copy of the start offsets to be used as fill pointers.
+	 */
+	private static int[] cumulate (final int[] offsets) {
+		for (int i = 1; i < offsets.length; i++)
+			offsets[i] += offsets[i - 1];
+		return Arrays.copyOf(offsets, offsets.length);
+	}
+	private static int indexOf (final long[] sortedIds, final long id) {
+		int index = Arrays.binarySearch(sortedIds, id);
+		return index < 0 ? -1 : index;
+	}
+	private static int compareLongs (final long l1, final long l2) {
+		return l1 < l2 ? -1 : (l1 == l2 ? 0 : 1);
+	}
+	private static Integer[] sortedIndices (final int size, final Comparator<Integer> comparator) {
+		Integer[] indices = new Integer[size];
+		for (int i = 0; i < size; i++)
+			indices[i] = i;
+		Arrays.sort(indices, comparator);
+		return indices;
+	}
+
+	/*
+	 * Growable arrays of primitive values, to keep large datasets unboxed while collecting.
+	 */
+	private static class LongArray {
+		private long[] values = new long[16];
+		private int size;
+
+		void add (final long value) {
+			if (size == values.length)
+				values = Arrays.copyOf(values, size * 2);
+			values[size++] = value;
+		}
+		long get (final int index) {
+			return values[index];
+		}
+		int size () {
+			return size;
+		}
+		long[] toArray () {
+			return Arrays.copyOf(values, size);
+		}
+	}
+	private static class DoubleArray {
+		private double[] values = new double[16];
+		private int size;
+
+		void add (final double value) {
+			if (size == values.length)
+				values = Arrays.copyOf(values, size * 2);
+			values[size++] = value;
+		}
+		double get (final int index) {
+			return values[index];
+		}
+	}
+}
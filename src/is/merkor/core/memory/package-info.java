@@ -0,0 +1,5 @@
+/**
+* Contains implementations of dictionaries on the complete MerkOr data held in memory
+*/
+
+package is.merkor.core.memory;
\ No newline at end of file
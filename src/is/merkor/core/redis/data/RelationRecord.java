@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.redis.data;
+
+import org.apache.commons.lang.builder.HashCodeBuilder;
+
+import is.merkor.core.Item;
+import is.merkor.core.RelationType;
+
+/**
+ * A lightweight relation holding only the ids of the relation and its items and the
+ * confidence score, for callers not needing lemmata and wordclasses, like graph algorithms
+ * or score statistics. The items are read on the first call of {@link #getFrom()} or
+ * {@link #getTo()}. The type is known at once, except for relation types sharing a
+ * description (coord_noun and coord_adj): these depend on the wordclass of the left item,
+ * which is read on the first call of {@link #getType()}.
+ * <p>
+ * Records are created by the relation dictionaries, see e.g.
+ * {@link is.merkor.core.redis.dictionaries.RedisRelationDictionary#getRelationRecordsFor(Long, double, int, int)}.
+ *
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public final class RelationRecord {
+
+	/**
+	 * Reads the items and shared relation types of records on first access.
+	 */
+	public interface Resolver {
+		/**
+		 * Returns the item having {@code id}, or null if there is none.
+		 */
+		public Item getItem (long id);
+		/**
+		 * Returns the type of a relation described by {@code relation} having a left item
+		 * of {@code leftWordclass}.
+		 */
+		public RelationType getType (String relation, String leftWordclass);
+	}
+
+	private final long id;
+	private final long fromId;
+	private final long toId;
+	private final double confidence;
+	private final String relation;
+	private final Resolver resolver;
+	private volatile RelationType type;
+	private volatile Item from;
+	private volatile Item to;
+
+	/**
+	 * Constructs a new record. {@code type} may be null if it depends on the wordclass
+	 * of the left item, it is then read by {@code resolver} together with the left item.
+	 */
+	public RelationRecord (final long id, final long fromId, final long toId, final double confidence,
+			final String relation, final RelationType type, final Resolver resolver) {
+		if (null == relation || null == resolver)
+			throw new IllegalArgumentException("params must not be null!");
+
+		this.id = id;
+		this.fromId = fromId;
+		this.toId = toId;
+		this.confidence = confidence;
+		this.relation = relation;
+		this.type = type;
+		this.resolver = resolver;
+	}
+
+	public long getId () {
+		return id;
+	}
+	public long getFromId () {
+		return fromId;
+	}
+	public long getToId () {
+		return toId;
+	}
+	public double getConfidence () {
+		return confidence;
+	}
+	/**
+	 * Returns the relation field of this relation, the description of its type.
+	 */
+	public String getRelation () {
+		return relation;
+	}
+	/**
+	 * Returns the type of this relation, reading the left item first if the type depends
+	 * on its wordclass.
+	 */
+	public RelationType getType () {
+		RelationType result = type;
+		if (null == result) {
+			Item left = getFrom();
+			result = resolver.getType(relation, null == left ? null : left.getWordclass());
+			type = result;
+		}
+		return result;
+	}
+	/**
+	 * Returns the id of the type of this relation, see {@link #getType()}.
+	 */
+	public long getTypeId () {
+		return getType().getId();
+	}
+	/**
+	 * Returns the left item of this relation, read on the first call, or null if it
+	 * does not exist.
+	 */
+	public Item getFrom () {
+		Item result = from;
+		if (null == result) {
+			result = resolver.getItem(fromId);
+			from = result;
+		}
+		return result;
+	}
+	/**
+	 * Returns the right item of this relation, read on the first call, or null if it
+	 * does not exist.
+	 */
+	public Item getTo () {
+		Item result = to;
+		if (null == result) {
+			result = resolver.getItem(toId);
+			to = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns {@code true} if the specified object is also a relation record having the same
+	 * ids, confidence and relation field.
+	 */
+	@Override
+	public boolean equals (final Object obj) {
+		if (this == obj)
+			return true;
+		if (null == obj || getClass() != obj.getClass())
+			return false;
+		RelationRecord record = (RelationRecord)obj;
+		return id == record.id && fromId == record.fromId && toId == record.toId
+			&& Double.compare(confidence, record.confidence) == 0 && relation.equals(record.relation);
+	}
+	@Override
+	public int hashCode () {
+		return new HashCodeBuilder()
+			.append(id)
+			.append(fromId)
+			.append(toId)
+			.append(confidence)
+			.toHashCode();
+	}
+
+	/**
+	 * Returns a string representation of this record, without reading its items:
+	 * <p>
+	 * {@code "Relation record: [" + fromId + " " + relation + " " + toId + " (" + confidence + ")]"}
+	 */
+	@Override
+	public String toString () {
+		return "Relation record: [" + fromId + " " + relation + " " + toId + " (" + confidence + ")]";
+	}
+}
@@ -40,6 +40,13 @@ public class MerkorRedisConstants {
 	 * with their confidence scores.
 	 */
 	public static final String SORTED_REL_SET_ID = "sorted_rel_set_";
+	/**
+	 * The prefix for one-sided relation sets, built by {@link RedisIndexBuilder}.
+	 * The value for sorted_rel_set_side_<item id>_<type id>_<L|R> is a sorted set of 
+	 * the ids of the relations of the relation type where the item is the left (L) or
+	 * right (R) element, with their confidence scores.
+	 */
+	public static final String SIDE_REL_SET_ID = "sorted_rel_set_side_";
 	/**
 	 * The prefix for relation type values in MerkOr_IS_general.
 	 * The value of the relation type key is a string (= id of the relation type).
@@ -63,4 +70,36 @@ public class MerkorRedisConstants {
 	 * The value for the lexical item in_cluster is a set of cluster ids.
 	 */
 	public static final String IN_CLUSTER_IS = "in_cluster_";
+	
+	/**
+	 * The key of the index of all lexical items, built by {@link RedisIndexBuilder}.
+	 * The value is a set of all lexical item keys (merkor_is_id_<id>).
+	 */
+	public static final String INDEX_ITEMS = "merkor_is_index_items";
+	/**
+	 * The key of the index of all lemmata, built by {@link RedisIndexBuilder}.
+	 * The value is a sorted set of all lemma keys (merkor_is_lemma_<lemma>), all with 
+	 * score 0, so wildcard patterns can be narrowed to the range of their literal prefix 
+	 * with ZRANGEBYLEX.
+	 */
+	public static final String INDEX_LEMMATA = "merkor_is_index_lemmata";
+	/**
+	 * The key of the index of all clusters, built by {@link RedisIndexBuilder}.
+	 * The value is a hash having cluster ids as fields and cluster keys 
+	 * (merkor_is_cluster_<name>_<id>) as values.
+	 */
+	public static final String INDEX_CLUSTERS = "merkor_is_index_clusters";
+	/**
+	 * The key of the index of all relation types, built by {@link RedisIndexBuilder}.
+	 * The value is a set of all relation type keys (merkor_is_reltype_<description>).
+	 */
+	public static final String INDEX_REL_TYPES = "merkor_is_index_reltypes";
+	/**
+	 * The key marking the one-sided relation sets ({@link #SIDE_REL_SET_ID}) as complete, 
+	 * written by {@link RedisIndexBuilder} after all sets are written.
+	 * The value is the number of one-sided relation sets. The sets are only read while
+	 * this key exists, and not by a context whose {@link RedisCacheInvalidator} has seen a 
+	 * change of the relation data since this key was last written.
+	 */
+	public static final String INDEX_SIDE_RELATIONS = "merkor_is_index_side_relations";
 }
@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.redis.dictionaries;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import is.merkor.core.AsyncClusterDictionary;
+import is.merkor.core.Cluster;
+
+/**
+ * An implementation of the {@link AsyncClusterDictionary} interface running the lookups
+ * of a {@link RedisClusterDictionary} on the executor of its {@link RedisContext},
+ * see {@link RedisAsyncItemDictionary}.
+ * 
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public class RedisAsyncClusterDictionary implements AsyncClusterDictionary {
+	
+	private final RedisClusterDictionary dictionary;
+	private final RedisContext context;
+	
+	/**
+	 * Constructs a new dictionary using the connections and the executor of {@code context}.
+	 */
+	public RedisAsyncClusterDictionary (final RedisContext context) {
+		dictionary = new RedisClusterDictionary(context);
+		this.context = context;
+	}
+	
+	/* (non-Javadoc)
+	 * @see is.merkor.core.AsyncClusterDictionary#getClustersMatching(java.lang.String)
+	 */
+	@Override
+	public Future<List<? extends Cluster>> getClustersMatching (final String domainRegex) {
+		return context.getExecutor().submit(new Callable<List<? extends Cluster>>() {
+			public List<? extends Cluster> call () {
+				return dictionary.getClustersMatching(domainRegex);
+			}
+		});
+	}
+	/* (non-Javadoc)
+	 * @see is.merkor.core.AsyncClusterDictionary#getClusterById(java.lang.Long)
+	 */
+	@Override
+	public Future<Cluster> getClusterById (final Long id) {
+		return context.getExecutor().submit(new Callable<Cluster>() {
+			public Cluster call () {
+				return dictionary.getClusterById(id);
+			}
+		});
+	}
+	/* (non-Javadoc)
+	 * @see is.merkor.core.AsyncClusterDictionary#getAllClusterNames()
+	 */
+	@Override
+	public Future<List<String>> getAllClusterNames () {
+		return context.getExecutor().submit(new Callable<List<String>>() {
+			public List<String> call () {
+				return dictionary.getAllClusterNames();
+			}
+		});
+	}
+}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.redis.dictionaries;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import is.merkor.core.AsyncClusterMemberDictionary;
+import is.merkor.core.Cluster;
+import is.merkor.core.ClusterMember;
+import is.merkor.core.Item;
+
+/**
+ * An implementation of the {@link AsyncClusterMemberDictionary} interface running the lookups
+ * of a {@link RedisClusterMemberDictionary} on the executor of its {@link RedisContext},
+ * see {@link RedisAsyncItemDictionary}.
+ * 
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public class RedisAsyncClusterMemberDictionary implements AsyncClusterMemberDictionary {
+	
+	private final RedisClusterMemberDictionary dictionary;
+	private final RedisContext context;
+	
+	/**
+	 * Constructs a new dictionary using the connections and the executor of {@code context}.
+	 */
+	public RedisAsyncClusterMemberDictionary (final RedisContext context) {
+		dictionary = new RedisClusterMemberDictionary(context);
+		this.context = context;
+	}
+	
+	/* (non-Javadoc)
+	 * @see is.merkor.core.AsyncClusterMemberDictionary#getClustersFor(java.lang.String)
+	 */
+	@Override
+	public Future<List<ClusterMember>> getClustersFor (final String lemma) {
+		return context.getExecutor().submit(new Callable<List<ClusterMember>>() {
+			public List<ClusterMember> call () {
+				return dictionary.getClustersFor(lemma);
+			}
+		});
+	}
+	/* (non-Javadoc)
+	 * @see is.merkor.core.AsyncClusterMemberDictionary#getClustersForLemmata(java.util.Collection)
+	 */
+	@Override
+	public Future<Map<String, List<ClusterMember>>> getClustersForLemmata (final Collection<String> lemmata) {
+		return context.getExecutor().submit(new Callable<Map<String, List<ClusterMember>>>() {
+			public Map<String, List<ClusterMember>> call () {
+				return dictionary.getClustersForLemmata(lemmata);
+			}
+		});
+	}
+	/* (non-Javadoc)
+	 * @see is.merkor.core.AsyncClusterMemberDictionary#getClustersFor(java.lang.Long)
+	 */
+	@Override
+	public Future<List<Cluster>> getClustersFor (final Long id) {
+		return context.getExecutor().submit(new Callable<List<Cluster>>() {
+			public List<Cluster> call () {
+				return dictionary.getClustersFor(id);
+			}
+		});
+	}
+	/* (non-Javadoc)
+	 * @see is.merkor.core.AsyncClusterMemberDictionary#getClusterItemsForCluster(java.lang.Long)
+	 */
+	@Override
+	public Future<List<? extends ClusterMember>> getClusterItemsForCluster (final Long clusterId) {
+		return context.getExecutor().submit(new Callable<List<? extends ClusterMember>>() {
+			public List<? extends ClusterMember> call () {
+				return dictionary.getClusterItemsForCluster(clusterId);
+			}
+		});
+	}
+	/* (non-Javadoc)
+	 * @see is.merkor.core.AsyncClusterMemberDictionary#getClusterItemsForItem(is.merkor.core.Item)
+	 */
+	@Override
+	public Future<List<? extends ClusterMember>> getClusterItemsForItem (final Item item) {
+		return context.getExecutor().submit(new Callable<List<? extends ClusterMember>>() {
+			public List<? extends ClusterMember> call () {
+				return dictionary.getClusterItemsForItem(item);
+			}
+		});
+	}
+	/* (non-Javadoc)
+	 * @see is.merkor.core.AsyncClusterMemberDictionary#getDomainsFor(java.lang.String)
+	 */
+	@Override
+	public Future<Map<String, Item>> getDomainsFor (final String lemma) {
+		return context.getExecutor().submit(new Callable<Map<String, Item>>() {
+			public Map<String, Item> call () {
+				return dictionary.getDomainsFor(lemma);
+			}
+		});
+	}
+	/* (non-Javadoc)
+	 * @see is.merkor.core.AsyncClusterMemberDictionary#getDomainsForLemmata(java.util.Collection)
+	 */
+	@Override
+	public Future<Map<String, Map<String, Item>>> getDomainsForLemmata (final Collection<String> lemmata) {
+		return context.getExecutor().submit(new Callable<Map<String, Map<String, Item>>>() {
+			public Map<String, Map<String, Item>> call () {
+				return dictionary.getDomainsForLemmata(lemmata);
+			}
+		});
+	}
+	/* (non-Javadoc)
+	 * @see is.merkor.core.AsyncClusterMemberDictionary#getItemsForDomain(java.lang.String)
+	 */
+	@Override
+	public Future<List<Item>> getItemsForDomain (final String domain) {
+		return context.getExecutor().submit(new Callable<List<Item>>() {
+			public List<Item> call () {
+				return dictionary.getItemsForDomain(domain);
+			}
+		});
+	}
+}
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.redis.dictionaries;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import is.merkor.core.AsyncItemDictionary;
+import is.merkor.core.Item;
+
+/**
+ * An implementation of the {@link AsyncItemDictionary} interface running the lookups
+ * of a {@link RedisItemDictionary} on the executor of its {@link RedisContext}.
+ * Each running lookup holds a thread and a connection of the context, lookups exceeding
+ * the connections of the context wait in the queue of the executor.
+ * 
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public class RedisAsyncItemDictionary implements AsyncItemDictionary {
+	
+	private final RedisItemDictionary dictionary;
+	private final RedisContext context;
+	
+	/**
+	 * Constructs a new dictionary using the connections and the executor of {@code context}.
+	 */
+	public RedisAsyncItemDictionary (final RedisContext context) {
+		dictionary = new RedisItemDictionary(context);
+		this.context = context;
+	}
+	
+	/* (non-Javadoc)
+	 * @see is.merkor.core.AsyncItemDictionary#getAllItems()
+	 */
+	@Override
+	public Future<List<? extends Item>> getAllItems () {
+		return context.getExecutor().submit(new Callable<List<? extends Item>>() {
+			public List<? extends Item> call () {
+				return dictionary.getAllItems();
+			}
+		});
+	}
+	/* (non-Javadoc)
+	 * @see is.merkor.core.AsyncItemDictionary#getItemsFor(java.lang.String)
+	 */
+	@Override
+	public Future<List<? extends Item>> getItemsFor (final String lemma) {
+		return context.getExecutor().submit(new Callable<List<? extends Item>>() {
+			public List<? extends Item> call () {
+				return dictionary.getItemsFor(lemma);
+			}
+		});
+	}
+	/* (non-Javadoc)
+	 * @see is.merkor.core.AsyncItemDictionary#getItemsForLemmata(java.util.Collection)
+	 */
+	@Override
+	public Future<Map<String, List<Item>>> getItemsForLemmata (final Collection<String> lemmata) {
+		return context.getExecutor().submit(new Callable<Map<String, List<Item>>>() {
+			public Map<String, List<Item>> call () {
+				return dictionary.getItemsForLemmata(lemmata);
+			}
+		});
+	}
+	/* (non-Javadoc)
+	 * @see is.merkor.core.AsyncItemDictionary#getItemsFor(java.lang.String, java.lang.String)
+	 */
+	@Override
+	public Future<List<? extends Item>> getItemsFor (final String lemma, final String wordclass) {
+		return context.getExecutor().submit(new Callable<List<? extends Item>>() {
+			public List<? extends Item> call () {
+				return dictionary.getItemsFor(lemma, wordclass);
+			}
+		});
+	}
+	/* (non-Javadoc)
+	 * @see is.merkor.core.AsyncItemDictionary#getItemsMatching(java.lang.String)
+	 */
+	@Override
+	public Future<List<? extends Item>> getItemsMatching (final String regex) {
+		return context.getExecutor().submit(new Callable<List<? extends Item>>() {
+			public List<? extends Item> call () {
+				return dictionary.getItemsMatching(regex);
+			}
+		});
+	}
+}
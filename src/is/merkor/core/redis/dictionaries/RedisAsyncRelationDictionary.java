@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.redis.dictionaries;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import is.merkor.core.AsyncRelationDictionary;
+import is.merkor.core.Item;
+import is.merkor.core.Relation;
+import is.merkor.core.RelationObject;
+import is.merkor.core.RelationType;
+
+/**
+ * An implementation of the {@link AsyncRelationDictionary} interface running the lookups
+ * of a {@link RedisRelationDictionary} on the executor of its {@link RedisContext},
+ * see {@link RedisAsyncItemDictionary}.
+ * 
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public class RedisAsyncRelationDictionary implements AsyncRelationDictionary {
+	
+	private final RedisRelationDictionary dictionary;
+	private final RedisContext context;
+	
+	/**
+	 * Constructs a new dictionary using the connections and the executor of {@code context}.
+	 */
+	public RedisAsyncRelationDictionary (final RedisContext context) {
+		dictionary = new RedisRelationDictionary(context);
+		this.context = context;
+	}
+	
+	/* (non-Javadoc)
+	 * @see is.merkor.core.AsyncRelationDictionary#getRelationsFor(java.lang.String)
+	 */
+	@Override
+	public Future<List<RelationObject>> getRelationsFor (final String lemma) {
+		return context.getExecutor().submit(new Callable<List<RelationObject>>() {
+			public List<RelationObject> call () {
+				return dictionary.getRelationsFor(lemma);
+			}
+		});
+	}
+	/* (non-Javadoc)
+	 * @see is.merkor.core.AsyncRelationDictionary#getRelationsFor(is.merkor.core.Item)
+	 */
+	@Override
+	public Future<List<? extends Relation>> getRelationsFor (final Item item) {
+		return context.getExecutor().submit(new Callable<List<? extends Relation>>() {
+			public List<? extends Relation> call () {
+				return dictionary.getRelationsFor(item);
+			}
+		});
+	}
+	/* (non-Javadoc)
+	 * @see is.merkor.core.AsyncRelationDictionary#getRelationsForLemmata(java.util.Collection)
+	 */
+	@Override
+	public Future<Map<String, List<RelationObject>>> getRelationsForLemmata (final Collection<String> lemmata) {
+		return context.getExecutor().submit(new Callable<Map<String, List<RelationObject>>>() {
+			public Map<String, List<RelationObject>> call () {
+				return dictionary.getRelationsForLemmata(lemmata);
+			}
+		});
+	}
+	/* (non-Javadoc)
+	 * @see is.merkor.core.AsyncRelationDictionary#getRelationsFor(java.lang.String, double, int, int)
+	 */
+	@Override
+	public Future<List<RelationObject>> getRelationsFor (final String lemma, final double minConfidence, final int offset, final int limit) {
+		return context.getExecutor().submit(new Callable<List<RelationObject>>() {
+			public List<RelationObject> call () {
+				return dictionary.getRelationsFor(lemma, minConfidence, offset, limit);
+			}
+		});
+	}
+	/* (non-Javadoc)
+	 * @see is.merkor.core.AsyncRelationDictionary#getRelationsFor(is.merkor.core.Item, double, int, int)
+	 */
+	@Override
+	public Future<List<Relation>> getRelationsFor (final Item item, final double minConfidence, final int offset, final int limit) {
+		return context.getExecutor().submit(new Callable<List<Relation>>() {
+			public List<Relation> call () {
+				return dictionary.getRelationsFor(item, minConfidence, offset, limit);
+			}
+		});
+	}
+	/* (non-Javadoc)
+	 * @see is.merkor.core.AsyncRelationDictionary#getRelationsFor(java.lang.String, java.lang.String)
+	 */
+	@Override
+	public Future<List<RelationObject>> getRelationsFor (final String lemma1, final String lemma2) {
+		return context.getExecutor().submit(new Callable<List<RelationObject>>() {
+			public List<RelationObject> call () {
+				return dictionary.getRelationsFor(lemma1, lemma2);
+			}
+		});
+	}
+	/* (non-Javadoc)
+	 * @see is.merkor.core.AsyncRelationDictionary#getRelationsFor(is.merkor.core.Item, is.merkor.core.Item)
+	 */
+	@Override
+	public Future<List<Relation>> getRelationsFor (final Item item1, final Item item2) {
+		return context.getExecutor().submit(new Callable<List<Relation>>() {
+			public List<Relation> call () {
+				return dictionary.getRelationsFor(item1, item2);
+			}
+		});
+	}
+	/* (non-Javadoc)
+	 * @see is.merkor.core.AsyncRelationDictionary#getRelationsHavingLeft(java.lang.String, is.merkor.core.RelationType)
+	 */
+	@Override
+	public Future<List<RelationObject>> getRelationsHavingLeft (final String lemma, final RelationType type) {
+		return context.getExecutor().submit(new Callable<List<RelationObject>>() {
+			public List<RelationObject> call () {
+				return dictionary.getRelationsHavingLeft(lemma, type);
+			}
+		});
+	}
+	/* (non-Javadoc)
+	 * @see is.merkor.core.AsyncRelationDictionary#getRelationsHavingLeft(is.merkor.core.Item, is.merkor.core.RelationType)
+	 */
+	@Override
+	public Future<List<Relation>> getRelationsHavingLeft (final Item item, final RelationType type) {
+		return context.getExecutor().submit(new Callable<List<Relation>>() {
+			public List<Relation> call () {
+				return dictionary.getRelationsHavingLeft(item, type);
+			}
+		});
+	}
+	/* (non-Javadoc)
+	 * @see is.merkor.core.AsyncRelationDictionary#getRelationsHavingRight(java.lang.String, is.merkor.core.RelationType)
+	 */
+	@Override
+	public Future<List<RelationObject>> getRelationsHavingRight (final String lemma, final RelationType type) {
+		return context.getExecutor().submit(new Callable<List<RelationObject>>() {
+			public List<RelationObject> call () {
+				return dictionary.getRelationsHavingRight(lemma, type);
+			}
+		});
+	}
+	/* (non-Javadoc)
+	 * @see is.merkor.core.AsyncRelationDictionary#getRelationsHavingRight(is.merkor.core.Item, is.merkor.core.RelationType)
+	 */
+	@Override
+	public Future<List<Relation>> getRelationsHavingRight (final Item item, final RelationType type) {
+		return context.getExecutor().submit(new Callable<List<Relation>>() {
+			public List<Relation> call () {
+				return dictionary.getRelationsHavingRight(item, type);
+			}
+		});
+	}
+}
@@ -0,0 +1,279 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.redis.dictionaries;
+
+import is.merkor.core.util.MerkorLogger;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.util.SafeEncoder;
+
+/**
+ * Keeps the caches of a {@link RedisContext} consistent with the Redis server by
+ * listening to keyspace notifications for the MerkOr keys. Each change of a lexical
+ * item hash evicts the item and all cached relation lists containing it, each change
+ * of a relation hash evicts the relation lists containing that relation, and each change
+ * of a sorted relation set evicts the relation list of its item. A change of a relation
+ * type clears all caches and makes the context read the relation types again. A change of
+ * a lemma key makes the lemma known to the missing lemma cache and the lemma filter.
+ * <p>
+ * The one-sided relation sets built by {@link RedisIndexBuilder} are not updated: after a change
+ * of the relation data (items, relations, sorted relation sets or relation types) the context
+ * reads the relations without these sets, until {@link MerkorRedisConstants#INDEX_SIDE_RELATIONS}
+ * is written again by a rebuild of the indexes. The invalidator does not write to Redis.
+ * <p>
+ * Only the notifications of the database of the context are received. The subscription 
+ * uses a connection of its own, it is not taken from the connections of the context.
+ * <p>
+ * Keyspace notifications are available since Redis 2.8 and have to be enabled on the
+ * server ('notify-keyspace-events', at least 'K' and the classes of the changing commands),
+ * either in the server configuration or by {@link #start(boolean)}. The caches are
+ * cleared and the relation types are read again each time the subscription is (re-)established,
+ * since notifications sent while not subscribed are lost.
+ * <p>
+ * Usage:
+ * <pre>
+ * RedisContext context = new RedisContext(host, port);
+ * RedisCacheInvalidator invalidator = new RedisCacheInvalidator(context);
+ * invalidator.start(true);
+ * ...
+ * invalidator.stop();
+ * </pre>
+ *
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public class RedisCacheInvalidator {
+	/**
+	 * Time to wait before subscribing again after the subscription connection was lost, in milliseconds.
+	 */
+	public static final long RECONNECT_DELAY = 1000L;
+	// keyspace notification classes needed: K = keyspace events, A = all commands
+	private static final String NOTIFY_CONFIG = "notify-keyspace-events";
+	private static final String NOTIFY_FLAGS = "KA";
+	private static final String SORTED_REL_SET_IS = MerkorRedisConstants.SORTED_REL_SET_ID + MerkorRedisConstants.ID_KEY_PREFIX_IS;
+	
+	private final RedisContext context;
+	private final String[] patterns;
+	private final AtomicLong invalidationCount = new AtomicLong();
+	private volatile boolean running;
+	private volatile JedisPubSub subscriber;
+	private Thread thread;
+	private static Logger logger;
+	
+	/**
+	 * Constructs a new invalidator for the caches of {@code context}. 
+	 * Call {@link #start(boolean)} to begin listening.
+	 * 
+	 * @param context the context whose caches should be kept consistent
+	 */
+	public RedisCacheInvalidator (final RedisContext context) {
+		MerkorLogger.configureLogger();
+		logger = Logger.getLogger(RedisCacheInvalidator.class);
+		this.context = context;
+		String keyspace = "__keyspace@" + context.getDatabase() + "__:";
+		patterns = new String[] {
+			keyspace + MerkorRedisConstants.ID_KEY_PREFIX_IS + "*",
+			keyspace + MerkorRedisConstants.REL_ID_PREFIX_IS + "*",
+			keyspace + SORTED_REL_SET_IS + "*",
+			keyspace + MerkorRedisConstants.REL_TYPE_PREFIX + "*",
+			keyspace + MerkorRedisConstants.LEMMA_KEY_PREFIX_IS + "*",
+			keyspace + MerkorRedisConstants.INDEX_SIDE_RELATIONS
+		};
+	}
+	
+	/**
+	 * Subscribes to the keyspace notifications of the MerkOr keys on a separate 
+	 * connection and daemon thread. If {@code configureServer} is true, keyspace
+	 * notifications are enabled on the server (CONFIG SET), keeping any event classes
+	 * already configured.
+	 * 
+	 * @param configureServer true to enable keyspace notifications on the server
+	 * @throws IllegalStateException if the invalidator is already running
+	 */
+	public synchronized void start (final boolean configureServer) {
+		if (running) {
+			logger.error("cache invalidator already running!");
+			throw new IllegalStateException("cache invalidator already running!");
+		}
+		if (configureServer)
+			enableNotifications();
+		running = true;
+		thread = new Thread(new Runnable() {
+			public void run () {
+				listen();
+			}
+		}, "merkor-cache-invalidator");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Unsubscribes from the keyspace notifications and waits for the listening thread to end.
+	 */
+	public synchronized void stop () {
+		if (!running)
+			return;
+		running = false;
+		JedisPubSub current = subscriber;
+		if (null != current && current.isSubscribed()) {
+			try {
+				current.punsubscribe();
+			} catch (JedisException e) {
+				logger.warn("unsubscribing failed: " + e.getMessage());
+			}
+		}
+		thread.interrupt();
+		try {
+			thread.join(RECONNECT_DELAY);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		thread = null;
+	}
+	
+	/**
+	 * @return true if the invalidator is currently subscribed to keyspace notifications
+	 */
+	public boolean isSubscribed () {
+		JedisPubSub current = subscriber;
+		return null != current && current.isSubscribed();
+	}
+	
+	/**
+	 * @return the number of keyspace notifications that caused an invalidation
+	 */
+	public long getInvalidationCount () {
+		return invalidationCount.get();
+	}
+	
+	/*
+	 * Evicts the cache entries affected by a change of {@code key}.
+	 */
+	protected void invalidate (final String key) {
+		if (key.startsWith(SORTED_REL_SET_IS)) {
+			Long id = parseId(key, SORTED_REL_SET_IS);
+			if (null != id)
+				context.invalidateRelationList(id);
+		}
+		else if (key.startsWith(MerkorRedisConstants.ID_KEY_PREFIX_IS)) {
+			Long id = parseId(key, MerkorRedisConstants.ID_KEY_PREFIX_IS);
+			if (null != id)
+				context.invalidateItem(id);
+		}
+		else if (key.startsWith(MerkorRedisConstants.REL_ID_PREFIX_IS)) {
+			Long id = parseId(key, MerkorRedisConstants.REL_ID_PREFIX_IS);
+			if (null != id)
+				context.invalidateRelation(id);
+		}
+		else if (key.startsWith(MerkorRedisConstants.REL_TYPE_PREFIX))
+			context.invalidateRelationTypes();
+		else if (key.startsWith(MerkorRedisConstants.LEMMA_KEY_PREFIX_IS))
+			context.invalidateLemma(key.substring(MerkorRedisConstants.LEMMA_KEY_PREFIX_IS.length()));
+		else
+			return;
+		if (!key.startsWith(MerkorRedisConstants.LEMMA_KEY_PREFIX_IS))
+			context.invalidateSideRelations();
+		invalidationCount.incrementAndGet();
+	}
+	
+	private void listen () {
+		while (running) {
+			Jedis jedis = new Jedis(context.getHost(), context.getPort(), 0);
+			try {
+				JedisPubSub pubSub = new KeyspaceListener();
+				subscriber = pubSub;
+				jedis.psubscribe(pubSub, patterns);
+			} catch (JedisException e) {
+				if (running)
+					logger.warn("keyspace subscription lost: " + e.getMessage());
+			} finally {
+				subscriber = null;
+				try {
+					jedis.disconnect();
+				} catch (JedisException e) {
+					// connection already gone
+				}
+			}
+			// notifications may have been missed
+			context.clearCaches();
+			if (running) {
+				try {
+					Thread.sleep(RECONNECT_DELAY);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+	}
+	
+	private void enableNotifications () {
+		RedisCommandChannel channel = context.getChannel();
+		try {
+			List<?> reply = (List<?>)channel.sendCommand("CONFIG", "GET", NOTIFY_CONFIG);
+			String flags = reply.size() > 1 ? SafeEncoder.encode((byte[])reply.get(1)) : "";
+			for (char flag : NOTIFY_FLAGS.toCharArray()) {
+				if (flags.indexOf(flag) < 0)
+					flags += flag;
+			}
+			channel.sendCommand("CONFIG", "SET", NOTIFY_CONFIG, flags);
+		} catch (JedisConnectionException e) {
+			context.returnBrokenChannel(channel);
+			throw e;
+		} finally {
+			context.returnChannel(channel);
+		}
+	}
+	
+	private Long parseId (final String key, final String prefix) {
+		try {
+			return Long.parseLong(key.substring(prefix.length()));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+	
+	/*
+	 * Receives keyspace notifications, channel names have the form __keyspace@<db>__:<key>.
+	 */
+	private class KeyspaceListener extends JedisPubSub {
+		@Override
+		public void onPMessage (final String pattern, final String channel, final String message) {
+			String key = channel.substring(channel.indexOf(':') + 1);
+			if (key.equals(MerkorRedisConstants.INDEX_SIDE_RELATIONS)) {
+				// the marker is set by RedisIndexBuilder when the sets are complete
+				if ("set".equals(message))
+					context.validateSideRelations();
+			}
+			else
+				invalidate(key);
+		}
+		@Override
+		public void onPSubscribe (final String pattern, final int subscribedChannels) {
+			// everything cached before the subscription may be stale, clear once all patterns are subscribed
+			if (subscribedChannels == patterns.length)
+				context.invalidateRelationTypes();
+		}
+		@Override
+		public void onMessage (final String channel, final String message) {}
+		@Override
+		public void onSubscribe (final String channel, final int subscribedChannels) {}
+		@Override
+		public void onUnsubscribe (final String channel, final int subscribedChannels) {}
+		@Override
+		public void onPUnsubscribe (final String pattern, final int subscribedChannels) {}
+	}
+}
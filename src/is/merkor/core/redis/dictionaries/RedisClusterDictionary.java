@@ -57,6 +57,16 @@ public class RedisClusterDictionary implements ClusterDictionary {
 		MerkorLogger.configureLogger();
 		logger = Logger.getLogger(RedisRelationParser.class);
 	}
+	/**
+	 * Constructs a new dictionary using the connections of {@code context}.
+	 * Dictionaries sharing a context share its connection pool and can be
+	 * used concurrently by several threads.
+	 */
+	public RedisClusterDictionary (final RedisContext context) {
+		parser = new RedisClusterParser(context);
+		MerkorLogger.configureLogger();
+		logger = Logger.getLogger(RedisRelationParser.class);
+	}
 	/*
 	 * (non-Javadoc)
 	 * @see is.merkor.core.ClusterDictionary#getClustersMatching(java.lang.String)
@@ -8,6 +8,7 @@
  *******************************************************************************/
 package is.merkor.core.redis.dictionaries;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -60,6 +61,16 @@ public class RedisClusterMemberDictionary implements ClusterMemberDictionary {
 		MerkorLogger.configureLogger();
 		logger = Logger.getLogger(RedisRelationParser.class);
 	}
+	/**
+	 * Constructs a new dictionary using the connections of {@code context}.
+	 * Dictionaries sharing a context share its connection pool and can be
+	 * used concurrently by several threads.
+	 */
+	public RedisClusterMemberDictionary (final RedisContext context) {
+		parser = new RedisClusterMemberParser(context);
+		MerkorLogger.configureLogger();
+		logger = Logger.getLogger(RedisRelationParser.class);
+	}
 	/*
 	 * (non-Javadoc)
 	 * @see is.merkor.core.ClusterMemberDictionary#getClustersFor(java.lang.String)
@@ -69,6 +80,15 @@ public class RedisClusterMemberDictionary implements ClusterMemberDictionary {
 		validateLemma(lemma);
 		return parser.getClustersFor(lemma);
 	}
+	/*
+	 * (non-Javadoc)
+	 * @see is.merkor.core.ClusterMemberDictionary#getClustersForLemmata(java.util.Collection)
+	 */
+	@Override
+	public Map<String, List<ClusterMember>> getClustersForLemmata (final Collection<String> lemmata) {
+		validateLemmata(lemmata);
+		return parser.getClustersForLemmata(lemmata);
+	}
 	/*
 	 * (non-Javadoc)
 	 * @see is.merkor.core.ClusterMemberDictionary#getClustersFor(java.lang.Long)
@@ -105,6 +125,15 @@ public class RedisClusterMemberDictionary implements ClusterMemberDictionary {
 		validateLemma(lemma);
 		return parser.getDomainsFor(lemma);
 	}
+	/*
+	 * (non-Javadoc)
+	 * @see is.merkor.core.ClusterMemberDictionary#getDomainsForLemmata(java.util.Collection)
+	 */
+	@Override
+	public Map<String, Map<String, Item>> getDomainsForLemmata (final Collection<String> lemmata) {
+		validateLemmata(lemmata);
+		return parser.getDomainsForLemmata(lemmata);
+	}
 	/*
 	 * (non-Javadoc)
 	 * @see is.merkor.core.ClusterMemberDictionary#getItemsForDomain(java.lang.String)
@@ -122,6 +151,11 @@ public class RedisClusterMemberDictionary implements ClusterMemberDictionary {
 			throw e;
 		}
 	}
+	private void validateLemmata (final Collection<String> lemmata) {
+		validateObject(lemmata, "lemmata");
+		for (String lemma : lemmata)
+			validateLemma(lemma);
+	}
 	private void validateObject (final Object obj, final String paramName) {
 		if (null == obj) {
 			IllegalArgumentException e = new IllegalArgumentException();
@@ -14,10 +14,13 @@ import is.merkor.core.Item;
 import is.merkor.core.redis.data.RedisCluster;
 import is.merkor.core.redis.data.RedisClusterMember;
 import is.merkor.core.redis.data.RedisItem;
+import is.merkor.core.util.MerkorLogger;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -25,7 +28,10 @@ import java.util.Set;
 import org.apache.log4j.Logger;
 
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
 import redis.clients.jedis.Tuple;
+import redis.clients.jedis.exceptions.JedisConnectionException;
 
 /**
  * Parses data from Redis and provides methods to retrieve {@link Cluster}s and 
@@ -37,8 +43,8 @@ import redis.clients.jedis.Tuple;
  */
 public class RedisClusterMemberParser {
 	
-	private Jedis jedis;
-	private RedisItemDictionary itemDict;
+	private RedisContext context;
+	private RedisKeyIndex keyIndex;
 	private RedisItemParser itemParser;
 	private RedisClusterDictionary clusterDict;
 	
@@ -49,59 +55,86 @@ public class RedisClusterMemberParser {
 	 * Jedis (localhost).
 	 */
 	protected RedisClusterMemberParser () throws Exception {
-		jedis = new Jedis("localhost");
-		if (!RedisConnectionCheck.checkConnection(jedis)) {
-			Exception e = new Exception();
-			logger.error("Jedis connection for \"localhost\" failed!");
-			throw e;
-		}
-		itemDict = new RedisItemDictionary();
-		itemParser = new RedisItemParser();
-		clusterDict = new RedisClusterDictionary();
+		this(new RedisContext());
 	}
 	/*
 	 * Constructs a new parser using {@code host} and {@code port}
 	 * to instantiate the contained Jedis object.
 	 */
 	protected RedisClusterMemberParser (final String host, final int port) throws Exception {
-		jedis = new Jedis(host, port);
-		if (!RedisConnectionCheck.checkConnection(jedis)) {
-			Exception e = new Exception();
-			logger.error("Jedis connection for host " + host + " and port " + port + " failed!");
-			throw e;
-		}
-		itemDict = new RedisItemDictionary(host, port);
-		itemParser = new RedisItemParser(host, port);
-		clusterDict = new RedisClusterDictionary(host, port);
+		this(new RedisContext(host, port));
 	}
 	/*
 	 * Constructs a new parser using {@code jedis}.
 	 */
 	protected RedisClusterMemberParser (final Jedis jedis) throws Exception {
-		this.jedis = jedis;
-		if (!RedisConnectionCheck.checkConnection(jedis)) {
-			Exception e = new Exception();
-			logger.error("Jedis connection with given Jedis object failed!");
-			throw e;
-		}
-		itemDict = new RedisItemDictionary(jedis);
-		itemParser = new RedisItemParser(jedis);
-		clusterDict = new RedisClusterDictionary(jedis);
-		
+		this(new RedisContext(jedis));
+	}
+	/*
+	 * Constructs a new parser using the connections of {@code context}.
+	 */
+	protected RedisClusterMemberParser (final RedisContext context) {
+		MerkorLogger.configureLogger();
+		logger = Logger.getLogger(RedisClusterMemberParser.class);
+		this.context = context;
+		keyIndex = new RedisKeyIndex(context);
+		itemParser = new RedisItemParser(context);
+		clusterDict = new RedisClusterDictionary(context);
 	}
 	/*
-	 * Get all clusterMembers having {@code lemma} as the lemma of its item
+	 * Get all clusterMembers having {@code lemma} as the lemma of its item, sorted
+	 * by item. The clusters of all items are read in one pipeline.
 	 */
 	protected List<ClusterMember> getClustersFor (final String lemma) {
+		return getClustersForLemmata(Collections.singletonList(lemma)).get(lemma);
+	}
+	
+	/*
+	 * Get all clusterMembers for each lemma in lemmata: the items of all lemmata and
+	 * then the clusters of all items are read in one pipeline each.
+	 */
+	protected Map<String, List<ClusterMember>> getClustersForLemmata (final Collection<String> lemmata) {
+		Map<String, List<RedisItem>> itemsByLemma = itemParser.getItemsForLemmata(lemmata);
+		List<String> clusterSetKeys = new ArrayList<String>();
+		for (List<RedisItem> itemList : itemsByLemma.values()) {
+			Collections.sort(itemList);
+			for (RedisItem item : itemList)
+				clusterSetKeys.add(MerkorRedisConstants.IN_CLUSTER_IS + itemParser.getRedisKeyForItem(item));
+		}
+		List<Set<String>> clusterKeys = new ArrayList<Set<String>>(clusterSetKeys.size());
+		Jedis jedis = context.getResource();
+		try {
+			for (int start = 0; start < clusterSetKeys.size(); start += RedisItemParser.PIPELINE_BATCH_SIZE) {
+				List<String> batch = clusterSetKeys.subList(start, Math.min(start + RedisItemParser.PIPELINE_BATCH_SIZE, clusterSetKeys.size()));
+				List<Response<Set<String>>> responses = new ArrayList<Response<Set<String>>>(batch.size());
+				Pipeline pipeline = jedis.pipelined();
+				for (String key : batch)
+					responses.add(pipeline.smembers(key));
+				pipeline.sync();
+				for (Response<Set<String>> response : responses)
+					clusterKeys.add(response.get());
+			}
+		} catch (JedisConnectionException e) {
+			context.returnBrokenResource(jedis);
+			throw e;
+		} finally {
+			context.returnResource(jedis);
+		}
 		
-		List<ClusterMember> clusterList = new ArrayList<ClusterMember>();
-		List<RedisItem> itemList = (List<RedisItem>)itemDict.getItemsFor(lemma);
-		
-		for (RedisItem item : itemList) {
-			List<ClusterMember> clusterItemList = getClusterItemsForItem(item);
-			clusterList.addAll(clusterItemList);
+		Map<String, List<ClusterMember>> result = new LinkedHashMap<String, List<ClusterMember>>();
+		int i = 0;
+		for (Map.Entry<String, List<RedisItem>> entry : itemsByLemma.entrySet()) {
+			List<ClusterMember> clusterList = new ArrayList<ClusterMember>();
+			for (RedisItem item : entry.getValue()) {
+				for (String cluster : clusterKeys.get(i++)) {
+					ClusterMember member = parseClusterMemberString(cluster, item);
+					if (null != member)
+						clusterList.add(member);
+				}
+			}
+			result.put(entry.getKey(), clusterList);
 		}
-		return clusterList;
+		return result;
 	}
 	
 	/*
@@ -110,7 +143,7 @@ public class RedisClusterMemberParser {
 	protected List<Cluster> getClustersFor (final Long item_id) {
 		List<Cluster> clusterList = new ArrayList<Cluster>();
 		// get all cluster names + ids as strings for the key (prefix +) item_id
-		Set<String> clusterSet = jedis.smembers(MerkorRedisConstants.IN_CLUSTER_IS + MerkorRedisConstants.ID_KEY_PREFIX_IS + item_id);
+		Set<String> clusterSet = smembers(MerkorRedisConstants.IN_CLUSTER_IS + MerkorRedisConstants.ID_KEY_PREFIX_IS + item_id);
 		for (String cluster : clusterSet) {
 			Cluster c = parseClusterString(cluster);
 			if (null != c)
@@ -139,13 +172,30 @@ public class RedisClusterMemberParser {
 		
 		// collect clusterMembers as tuples containing clusterMember id 
 		// and its score in the cluster, sorted by score descending
-		Set<Tuple> clusterMembers = jedis.zrevrangeWithScores(clusterKey, 0, -1);
+		Set<Tuple> clusterMembers;
+		Jedis jedis = context.getResource();
+		try {
+			clusterMembers = jedis.zrevrangeWithScores(clusterKey, 0, -1);
+		} catch (JedisConnectionException e) {
+			context.returnBrokenResource(jedis);
+			throw e;
+		} finally {
+			context.returnResource(jedis);
+		}
+		List<String> itemKeys = new ArrayList<String>(clusterMembers.size());
+		for (Tuple tup : clusterMembers)
+			itemKeys.add(tup.getElement());
+		
+		Map<Long, RedisItem> itemMap = new HashMap<Long, RedisItem>();
+		for (RedisItem item : itemParser.createRedisItemsFromIdKeys(itemKeys))
+			itemMap.put(item.getId(), item);
 		
 		for (Tuple tup : clusterMembers) {
 			String item_key = tup.getElement();
 			Double value = tup.getScore();
-			Item item = itemParser.createRedisItemFromIdKey(item_key);
-			itemList.add(new RedisClusterMember(item, cluster, value));
+			Item item = itemMap.get(parseItemId(item_key));
+			if (null != item)
+				itemList.add(new RedisClusterMember(item, cluster, value));
 		}
 		
 		return itemList;
@@ -158,7 +208,7 @@ public class RedisClusterMemberParser {
 	protected List<ClusterMember> getClusterItemsForItem (final Item item) {
 		List<ClusterMember> itemList = new ArrayList<ClusterMember>();
 		String item_key = itemParser.getRedisKeyForItem(item);
-		Set<String> clusterKeys = jedis.smembers(MerkorRedisConstants.IN_CLUSTER_IS + item_key);
+		Set<String> clusterKeys = smembers(MerkorRedisConstants.IN_CLUSTER_IS + item_key);
 		for (String cluster : clusterKeys) {
 			ClusterMember member = parseClusterMemberString(cluster, item);
 			if (null != member)
@@ -205,7 +255,18 @@ public class RedisClusterMemberParser {
 	 * having the structure <domainName, item>.
 	 */
 	protected Map<String, Item> getDomainsFor (final String lemma) {
-		List<ClusterMember> clusterList = getClustersFor(lemma);
+		return createDomainMap(getClustersFor(lemma));
+	}
+	/*
+	 * Returns a map of domains for each lemma in lemmata, see getDomainsFor(String).
+	 */
+	protected Map<String, Map<String, Item>> getDomainsForLemmata (final Collection<String> lemmata) {
+		Map<String, Map<String, Item>> result = new LinkedHashMap<String, Map<String, Item>>();
+		for (Map.Entry<String, List<ClusterMember>> entry : getClustersForLemmata(lemmata).entrySet())
+			result.put(entry.getKey(), createDomainMap(entry.getValue()));
+		return result;
+	}
+	private Map<String, Item> createDomainMap (final List<ClusterMember> clusterList) {
 		String domain;
 		Map<String, Item> domainMap = new HashMap<String, Item>();
 		for (ClusterMember clusterObj : clusterList) {
@@ -219,26 +280,9 @@ public class RedisClusterMemberParser {
 	}
 	
 	private String getClusterKeyForId (final Long id) {
-		String clusterKey = "";
-		Set<String> possibleClusters = jedis.keys(MerkorRedisConstants.CLUSTER_ID_IS + "*" + id);
-		for (String s : possibleClusters) {
-			Long cluster_id = 0L;
-			String[] idArr = s.split("_");
-			if (idArr.length == 5) {
-				String name = idArr[3];
-				cluster_id = Long.parseLong(idArr[4]);
-				if (cluster_id.equals(id)) {
-					clusterKey = MerkorRedisConstants.CLUSTER_ID_IS + name + "_" + id;
-				}
-					
-			}
-			else if (idArr.length == 6) {
-				String name = idArr[3] + "_" + idArr[4];
-				cluster_id = Long.parseLong(idArr[5]);
-				if (cluster_id.equals(id))
-					clusterKey = MerkorRedisConstants.CLUSTER_ID_IS + name + "_" + id;
-			}
-		}
+		String clusterKey = keyIndex.clusterKeyForId(id);
+		if (null == clusterKey)
+			clusterKey = "";
 		return clusterKey;
 	}
 	
@@ -250,18 +294,48 @@ public class RedisClusterMemberParser {
 		String redisValidLower = makeRedisConform(domain.toLowerCase());
 		String redisValidUpper = makeRedisConform(domain.toUpperCase());
 		
-		Set<String> clusterKeys = jedis.keys(MerkorRedisConstants.CLUSTER_ID_IS + redisValidLower + "_[0123456789]*");
-		clusterKeys.addAll(jedis.keys(MerkorRedisConstants.CLUSTER_ID_IS + redisValidUpper + "_[0123456789]*"));
+		Set<String> clusterKeys = keyIndex.clusterKeysMatching(MerkorRedisConstants.CLUSTER_ID_IS + redisValidLower + "_[0123456789]*");
+		clusterKeys.addAll(keyIndex.clusterKeysMatching(MerkorRedisConstants.CLUSTER_ID_IS + redisValidUpper + "_[0123456789]*"));
 		
-		for (String key : clusterKeys) {
-			Set<String> itemKeys = jedis.zrevrange(key, 0, -1);
-			for (String it_key : itemKeys)
-				itemList.add(itemParser.createRedisItemFromIdKey(it_key));
+		// collect the members of all matching clusters in one pipeline
+		List<Response<Set<String>>> responses = new ArrayList<Response<Set<String>>>(clusterKeys.size());
+		Jedis jedis = context.getResource();
+		try {
+			Pipeline pipeline = jedis.pipelined();
+			for (String key : clusterKeys)
+				responses.add(pipeline.zrevrange(key, 0, -1));
+			pipeline.sync();
+		} catch (JedisConnectionException e) {
+			context.returnBrokenResource(jedis);
+			throw e;
+		} finally {
+			context.returnResource(jedis);
 		}
+		
+		List<String> itemKeys = new ArrayList<String>();
+		for (Response<Set<String>> response : responses)
+			itemKeys.addAll(response.get());
+		itemList.addAll(itemParser.createRedisItemsFromIdKeys(itemKeys));
 		Collections.sort(itemList);
 		return itemList;
 	}
 	
+	private Set<String> smembers (final String key) {
+		Jedis jedis = context.getResource();
+		try {
+			return jedis.smembers(key);
+		} catch (JedisConnectionException e) {
+			context.returnBrokenResource(jedis);
+			throw e;
+		} finally {
+			context.returnResource(jedis);
+		}
+	}
+	
+	private Long parseItemId (final String item_key) {
+		return Long.parseLong(item_key.substring(item_key.lastIndexOf('_') + 1));
+	}
+	
 	private String makeRedisConform (String regex) {
 		regex = regex.replaceAll("\\.\\*", "\\*");
 		regex = regex.replaceAll("\\.\\?", "\\?");
@@ -32,7 +32,8 @@ import redis.clients.jedis.Jedis;
  */
 public class RedisClusterParser {
 	
-	private Jedis jedis;
+	private RedisContext context;
+	private RedisKeyIndex keyIndex;
 	
 	private static Logger logger;
 	
@@ -41,41 +42,29 @@ public class RedisClusterParser {
 	 * Jedis (localhost).
 	 */
 	protected RedisClusterParser () throws Exception {
-		jedis = new Jedis("localhost");
-		MerkorLogger.configureLogger();
-		logger = Logger.getLogger(RedisClusterParser.class);
-		if (!RedisConnectionCheck.checkConnection(jedis)) {
-			Exception e = new Exception();
-			logger.error("Jedis connection for \"localhost\" failed!");
-			throw e;
-		}
+		this(new RedisContext());
 	}
 	/*
 	 * Constructs a new parser using {@code host} and {@code port}
 	 * to instantiate the contained Jedis object.
 	 */
 	protected RedisClusterParser (final String host, final int port) throws Exception {
-		jedis = new Jedis(host, port);
-		MerkorLogger.configureLogger();
-		logger = Logger.getLogger(RedisClusterParser.class);
-		if (!RedisConnectionCheck.checkConnection(jedis)) {
-			Exception e = new Exception();
-			logger.error("Jedis connection for host " + host + " and port " + port + " failed!");
-			throw e;
-		}
+		this(new RedisContext(host, port));
 	}
 	/*
 	 * Constructs a new parser using {@code jedis}.
 	 */
 	protected RedisClusterParser (final Jedis jedis) throws Exception {
-		this.jedis = jedis;
+		this(new RedisContext(jedis));
+	}
+	/*
+	 * Constructs a new parser using the connections of {@code context}.
+	 */
+	protected RedisClusterParser (final RedisContext context) {
 		MerkorLogger.configureLogger();
 		logger = Logger.getLogger(RedisClusterParser.class);
-		if (!RedisConnectionCheck.checkConnection(jedis)) {
-			Exception e = new Exception();
-			logger.error("Jedis connection with given Jedis object failed!");
-			throw e;
-		}
+		this.context = context;
+		keyIndex = new RedisKeyIndex(context);
 	}
 	
 	/*
@@ -87,8 +76,8 @@ public class RedisClusterParser {
 		lowerRegex = makeRedisConform(lowerRegex);
 		upperRegex = makeRedisConform(upperRegex);
 		// get both upper and lower case versions of cluster names
-		Set<String> clusterKeys = jedis.keys(MerkorRedisConstants.CLUSTER_ID_IS + lowerRegex + "_[0123456789]*");
-		clusterKeys.addAll(jedis.keys(MerkorRedisConstants.CLUSTER_ID_IS + upperRegex + "_[0123456789]*"));
+		Set<String> clusterKeys = keyIndex.clusterKeysMatching(MerkorRedisConstants.CLUSTER_ID_IS + lowerRegex + "_[0123456789]*");
+		clusterKeys.addAll(keyIndex.clusterKeysMatching(MerkorRedisConstants.CLUSTER_ID_IS + upperRegex + "_[0123456789]*"));
 		
 		return extractClusters(clusterKeys);
 	}
@@ -96,11 +85,11 @@ public class RedisClusterParser {
 	 * Return the cluster having param id as its id, returns null if no cluster is found.
 	 */
 	protected Cluster getClusterById (final Long id) {
-		Set<String> clusterKeys = jedis.keys(MerkorRedisConstants.CLUSTER_ID_IS + "*_" + id);
+		String key = keyIndex.clusterKeyForId(id);
 		RedisCluster cluster = null;
 		String[] keyArr;
 
-		for (String key : clusterKeys) {
+		if (null != key) {
 			keyArr = key.split("_");
 			if (keyArr.length == 5) {
 				cluster = new RedisCluster(id, keyArr[3]);
@@ -117,7 +106,7 @@ public class RedisClusterParser {
 	 * Returns a list of all cluster names as strings.
 	 */
 	protected List<String> getAllClusterNames() {
-		Set<String> clusterKeys = jedis.keys(MerkorRedisConstants.CLUSTER_ID_IS + "*");
+		Set<String> clusterKeys = keyIndex.clusterKeysMatching(MerkorRedisConstants.CLUSTER_ID_IS + "*");
 		Set<String> uniqueNames = new TreeSet<String>();
 		
 		String[] keyArr;
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.redis.dictionaries;
+
+import java.io.IOException;
+import java.net.Socket;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.util.RedisInputStream;
+import redis.clients.util.RedisOutputStream;
+import redis.clients.util.SafeEncoder;
+
+/**
+ * Sends commands the bundled Jedis version does not know of (e.g. SCRIPT LOAD 
+ * and EVALSHA) over the connection of a Jedis object. Commands are written in 
+ * the Redis protocol as they are given, replies are parsed by the Jedis 
+ * {@link Protocol}: bulk and status replies are returned as byte arrays, integer 
+ * replies as Long and multi bulk replies as lists of these. Error replies are 
+ * thrown as {@link redis.clients.jedis.exceptions.JedisDataException}.
+ * <p>
+ * A channel does not open a connection of its own, {@link RedisContext} hands out 
+ * channels on the connection the current thread borrowed from its pool.
+ *
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public class RedisCommandChannel {
+
+	private final Jedis jedis;
+	private final Protocol protocol = new Protocol();
+
+	private RedisOutputStream outputStream;
+	private RedisInputStream inputStream;
+
+	/*
+	 * Constructs a new channel sending its commands over the connection of {@code jedis}.
+	 */
+	protected RedisCommandChannel (final Jedis jedis) {
+		this.jedis = jedis;
+	}
+	
+	protected Jedis getJedis () {
+		return jedis;
+	}
+
+	/*
+	 * Sends the command {@code args} (command name followed by its arguments) and
+	 * returns the reply.
+	 */
+	protected synchronized Object sendCommand (final String... args) {
+		try {
+			connect();
+			outputStream.write(Protocol.ASTERISK_BYTE);
+			outputStream.writeIntCrLf(args.length);
+			for (String arg : args) {
+				byte[] bytes = SafeEncoder.encode(arg);
+				outputStream.write(Protocol.DOLLAR_BYTE);
+				outputStream.writeIntCrLf(bytes.length);
+				outputStream.write(bytes);
+				outputStream.writeCrLf();
+			}
+			outputStream.flush();
+		} catch (IOException e) {
+			throw new JedisConnectionException(e);
+		}
+		return protocol.read(inputStream);
+	}
+
+	/*
+	 * Jedis connects lazily and flushes each of its commands, after a reply has been read 
+	 * the socket can be shared by the Jedis object and the channel.
+	 */
+	private void connect () throws IOException {
+		if (null != outputStream)
+			return;
+		jedis.getClient().connect();
+		Socket socket = jedis.getClient().getSocket();
+		outputStream = new RedisOutputStream(socket.getOutputStream());
+		inputStream = new RedisInputStream(socket.getInputStream());
+	}
+}
@@ -0,0 +1,637 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.redis.dictionaries;
+
+import is.merkor.core.Relation;
+import is.merkor.core.redis.data.RedisItem;
+import is.merkor.core.util.BloomFilter;
+import is.merkor.core.util.LruCache;
+import is.merkor.core.util.MerkorLogger;
+import is.merkor.core.util.SingleFlight;
+import is.merkor.core.util.WeakInterner;
+import is.merkor.core.util.Wordclass;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Protocol;
+
+/**
+ * The connections to a Redis server containing MerkOr data, shared by the Redis dictionaries.
+ * A context holds a bounded pool of Jedis connections: the dictionaries borrow a 
+ * connection for each query and give it back afterwards, so one context and the 
+ * dictionaries constructed with it can be used concurrently by several threads, 
+ * using at most {@code maxConnections} connections to Redis. Commands the bundled 
+ * Jedis version does not know of are sent over the same connections 
+ * (see {@link RedisCommandChannel}).
+ * <p>
+ * Construct one context per Redis server and pass it to the dictionaries:
+ * <pre>
+ * RedisContext context = new RedisContext("localhost", 6379);
+ * RelationDictionary relDict = new RedisRelationDictionary(context);
+ * ItemDictionary itemDict = new RedisItemDictionary(context);
+ * </pre>
+ * 
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public class RedisContext {
+	
+	/**
+	 * The default maximum number of connections of a context.
+	 */
+	public static final int DEFAULT_MAX_CONNECTIONS = 8;
+	/**
+	 * The default time in milliseconds a query waits for a free connection.
+	 */
+	public static final long DEFAULT_WAIT_TIMEOUT = 10000L;
+	/**
+	 * The default maximum number of lexical items in the item cache.
+	 */
+	public static final int DEFAULT_ITEM_CACHE_SIZE = 100000;
+	/**
+	 * The default maximum number of relations in the relation list cache.
+	 */
+	public static final int DEFAULT_RELATION_CACHE_SIZE = 1000000;
+	/**
+	 * The default maximum number of lemmata in the cache of lemmata not found.
+	 */
+	public static final int DEFAULT_MISSING_LEMMA_CACHE_SIZE = 100000;
+	/**
+	 * The default time in milliseconds a lemma not found is remembered.
+	 */
+	public static final long DEFAULT_MISSING_LEMMA_TTL = 60000L;
+	/**
+	 * The false positive rate of the lemma filter.
+	 */
+	public static final double LEMMA_FILTER_FALSE_POSITIVE_RATE = 0.01;
+	/**
+	 * The time in milliseconds an idle thread of the executor is kept.
+	 */
+	public static final long EXECUTOR_KEEP_ALIVE = 60000L;
+	
+	private final String host;
+	private final int port;
+	private final int database;
+	private final int maxConnections;
+	private final RedisResourcePool<Jedis> jedisPool;
+	// lexical items by id, shared by all parsers of this context
+	private volatile LruCache<Long, RedisItem> itemCache = new LruCache<Long, RedisItem>(DEFAULT_ITEM_CACHE_SIZE);
+	// canonical lexical items by id and lemma strings, held as long as they are referenced
+	private final WeakInterner<Long, RedisItem> canonicalItems = new WeakInterner<Long, RedisItem>();
+	private final WeakInterner<String, String> canonicalLemmata = new WeakInterner<String, String>();
+	// relation lists by item id, weighted by their length
+	private volatile LruCache<Long, List<Relation>> relationCache = createRelationCache(DEFAULT_RELATION_CACHE_SIZE, 0);
+	// lemmata not found in Redis, expiring after a short time
+	private volatile LruCache<String, Boolean> missingLemmaCache = 
+			new LruCache<String, Boolean>(DEFAULT_MISSING_LEMMA_CACHE_SIZE, DEFAULT_MISSING_LEMMA_TTL);
+	// all lemmata of the Redis server if enabled, built on first use and dropped by clearCaches()
+	private volatile boolean lemmaFilterEnabled = false;
+	private volatile BloomFilter lemmaFilter;
+	// ids of the items owning cached relation lists, by the ids of the items and relations 
+	// contained in the lists, used to invalidate exactly the lists affected by a change
+	private final Map<Long, Set<Long>> listsByItem = new HashMap<Long, Set<Long>>();
+	private final Map<Long, Set<Long>> listsByRelation = new HashMap<Long, Set<Long>>();
+	// incremented by each invalidation, data read before an invalidation is not cached
+	private long cacheGeneration = 0;
+	// the reads of relation lists and of the items of lemmata currently running, shared by concurrent 
+	// callers; forgotten on each invalidation, so later callers do not get data read before it
+	private final SingleFlight<Long, List<Relation>> relationLoads = new SingleFlight<Long, List<Relation>>();
+	private final SingleFlight<String, List<RedisItem>> lemmaLoads = new SingleFlight<String, List<RedisItem>>();
+	// loaded on first use, dropped by clearCaches()
+	private volatile RedisRelationTypeRegistry relationTypes;
+	// set when the relation data changed after the one-sided relation sets were built
+	private volatile boolean sideRelationsStale = false;
+	private ExecutorService executor;
+	
+	private static Logger logger;
+	
+	/**
+	 * Constructs a new context using default settings for
+	 * Jedis (localhost).
+	 */
+	public RedisContext () throws Exception {
+		this("localhost", Protocol.DEFAULT_PORT);
+	}
+	/**
+	 * Constructs a new context for the Redis server on {@code host} and {@code port}, 
+	 * using at most DEFAULT_MAX_CONNECTIONS connections.
+	 */
+	public RedisContext (final String host, final int port) throws Exception {
+		this(host, port, DEFAULT_MAX_CONNECTIONS);
+	}
+	/**
+	 * Constructs a new context for the Redis server on {@code host} and {@code port}, 
+	 * using at most {@code maxConnections} connections.
+	 * 
+	 * @throws IllegalArgumentException if maxConnections is less than 1
+	 * @throws Exception if the connection to Redis fails
+	 */
+	public RedisContext (final String host, final int port, final int maxConnections) throws Exception {
+		MerkorLogger.configureLogger();
+		logger = Logger.getLogger(RedisContext.class);
+		if (maxConnections < 1) {
+			logger.error("maxConnections has to be at least 1, was " + maxConnections);
+			throw new IllegalArgumentException("maxConnections has to be at least 1, was " + maxConnections);
+		}
+		this.host = host;
+		this.port = port;
+		this.database = 0;
+		this.maxConnections = maxConnections;
+		jedisPool = createJedisPool(maxConnections);
+		checkConnection("Jedis connection for host " + host + " and port " + port + " failed!");
+	}
+	/**
+	 * Constructs a new context using {@code jedis} as its only connection. 
+	 * Queries from different threads are then executed one after the other. 
+	 */
+	public RedisContext (final Jedis jedis) throws Exception {
+		MerkorLogger.configureLogger();
+		logger = Logger.getLogger(RedisContext.class);
+		this.host = jedis.getClient().getHost();
+		this.port = jedis.getClient().getPort();
+		this.database = jedis.getClient().getDB().intValue();
+		this.maxConnections = 1;
+		jedisPool = createJedisPool(1);
+		jedisPool.add(jedis);
+		checkConnection("Jedis connection with given Jedis object failed!");
+	}
+	
+	public String getHost () {
+		return host;
+	}
+	public int getPort () {
+		return port;
+	}
+	/**
+	 * Returns the Redis database of this context: 0, or the database selected by the 
+	 * Jedis object of {@link #RedisContext(Jedis)}.
+	 */
+	public int getDatabase () {
+		return database;
+	}
+	
+	/**
+	 * Returns the cache of lexical items of this context, e.g. to read its hit and miss counts.
+	 * All items read from Redis by the dictionaries of this context are cached here, 
+	 * so frequently referenced items are read from Redis only once.
+	 */
+	public LruCache<Long, RedisItem> getItemCache () {
+		return itemCache;
+	}
+	/**
+	 * Replaces the item cache by a new, empty cache holding at most {@code maxItems} items,
+	 * each item expiring {@code ttlMillis} milliseconds after being cached (0: no expiration).
+	 * A maxItems of 0 disables the item cache.
+	 */
+	public void setItemCache (final int maxItems, final long ttlMillis) {
+		itemCache = new LruCache<Long, RedisItem>(maxItems, ttlMillis);
+	}
+	
+	/**
+	 * Returns the cache of relation lists of this context. The complete relation list 
+	 * of an item is cached after it has been read, the weight of a list is its length,
+	 * so a few items with very many relations cannot displace all other lists.
+	 */
+	public LruCache<Long, List<Relation>> getRelationCache () {
+		return relationCache;
+	}
+	/**
+	 * Replaces the relation list cache by a new, empty cache holding lists of at most 
+	 * {@code maxRelations} relations in total, each list expiring {@code ttlMillis} 
+	 * milliseconds after being cached (0: no expiration). A maxRelations of 0 disables
+	 * the relation list cache.
+	 */
+	public void setRelationCache (final int maxRelations, final long ttlMillis) {
+		LruCache<Long, List<Relation>> oldCache = relationCache;
+		relationCache = createRelationCache(maxRelations, ttlMillis);
+		oldCache.clear();
+	}
+	/**
+	 * Returns the cache of lemmata not found in Redis, e.g. to read its hit and miss counts.
+	 * Lookups of these lemmata are answered without a round-trip until they expire.
+	 */
+	public LruCache<String, Boolean> getMissingLemmaCache () {
+		return missingLemmaCache;
+	}
+	/**
+	 * Replaces the cache of lemmata not found by a new, empty cache holding at most 
+	 * {@code maxLemmata} lemmata, each expiring {@code ttlMillis} milliseconds after being
+	 * cached (0: no expiration). A maxLemmata of 0 disables the cache.
+	 */
+	public void setMissingLemmaCache (final int maxLemmata, final long ttlMillis) {
+		missingLemmaCache = new LruCache<String, Boolean>(maxLemmata, ttlMillis);
+	}
+	/**
+	 * Enables or disables the lemma filter, a Bloom filter of all lemmata of the Redis server:
+	 * lookups of lemmata not in the filter are answered without a round-trip. If enabled,
+	 * the filter is built at once, scanning all lemma keys (with SCAN, not the lemma index,
+	 * which may be outdated), and built again on first use after {@link #clearCaches()}.
+	 * Lemmata added later are only found if a {@link RedisCacheInvalidator} is running
+	 * or the caches are cleared.
+	 */
+	public void setLemmaFilter (final boolean enabled) {
+		lemmaFilterEnabled = enabled;
+		lemmaFilter = enabled ? buildLemmaFilter() : null;
+	}
+	/**
+	 * Returns the lemma filter, or null if it is not enabled, see {@link #setLemmaFilter(boolean)}.
+	 */
+	public BloomFilter getLemmaFilter () {
+		BloomFilter filter = lemmaFilter;
+		if (null == filter && lemmaFilterEnabled) {
+			filter = buildLemmaFilter();
+			lemmaFilter = filter;
+		}
+		return filter;
+	}
+	/**
+	 * Returns the relation types of the Redis server, read once on first use. They are read
+	 * again only after a {@link RedisCacheInvalidator} has seen a relation type key change.
+	 */
+	public RedisRelationTypeRegistry getRelationTypes () {
+		RedisRelationTypeRegistry registry = relationTypes;
+		if (null == registry) {
+			registry = RedisRelationTypeRegistry.fromRedis(this);
+			relationTypes = registry;
+		}
+		return registry;
+	}
+	
+	/**
+	 * Returns the reads of relation lists currently running, by item id, e.g. to read the
+	 * number of shared reads: concurrent lookups of the relations of the same item not 
+	 * in the relation list cache share one read of the list.
+	 */
+	public SingleFlight<Long, List<Relation>> getRelationLoads () {
+		return relationLoads;
+	}
+	/**
+	 * Returns the reads of the items of lemmata currently running, by lemma: concurrent 
+	 * lookups of the items of the same lemma share one read.
+	 */
+	public SingleFlight<String, List<RedisItem>> getLemmaLoads () {
+		return lemmaLoads;
+	}
+	
+	/**
+	 * Removes all entries from the item, relation list and missing lemma caches and the 
+	 * lemma filter.
+	 */
+	public void clearCaches () {
+		synchronized (listsByItem) {
+			cacheGeneration++;
+			relationLoads.forgetAll();
+			lemmaLoads.forgetAll();
+		}
+		itemCache.clear();
+		relationCache.clear();
+		missingLemmaCache.clear();
+		lemmaFilter = null;
+	}
+	
+	/**
+	 * Returns the executor running background work of the dictionaries, like reading 
+	 * the next chunk of a relation iterator or the lookups of the asynchronous dictionaries.
+	 * It runs at most as many tasks at a time as the context has connections, further tasks
+	 * wait in its queue for a thread instead of waiting for a connection. It is created on
+	 * first use, its threads are daemon threads ending after EXECUTOR_KEEP_ALIVE milliseconds
+	 * without work and are stopped by {@link #close()}.
+	 */
+	public synchronized ExecutorService getExecutor () {
+		if (null == executor) {
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(maxConnections, maxConnections, 
+					EXECUTOR_KEEP_ALIVE, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), 
+					new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+				
+				public Thread newThread (final Runnable runnable) {
+					Thread thread = new Thread(runnable, "merkor-redis-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			pool.allowCoreThreadTimeOut(true);
+			executor = pool;
+		}
+		return executor;
+	}
+	
+	/**
+	 * Closes all connections currently not in use and stops the threads of the executor.
+	 */
+	public void close () {
+		synchronized (this) {
+			if (null != executor) {
+				executor.shutdown();
+				executor = null;
+			}
+		}
+		jedisPool.close();
+	}
+	
+	/*
+	 * Returns a connection for the current thread, waiting up to DEFAULT_WAIT_TIMEOUT
+	 * for a free one. Each call has to be followed by returnResource(), if the 
+	 * current thread already holds a connection, the same is returned.
+	 */
+	protected Jedis getResource () {
+		return jedisPool.borrow();
+	}
+	protected void returnResource (final Jedis jedis) {
+		jedisPool.giveBack(jedis);
+	}
+	/*
+	 * Marks the connection of the current thread as broken (e.g. after a 
+	 * JedisConnectionException), it is closed instead of being reused.
+	 * returnResource() has to be called nevertheless.
+	 */
+	protected void returnBrokenResource (final Jedis jedis) {
+		jedisPool.markBroken(jedis);
+	}
+	
+	/*
+	 * Same as getResource() etc. for a {@link RedisCommandChannel}. The channel sends its 
+	 * commands over the connection of the current thread, so it counts against maxConnections 
+	 * like any other query.
+	 */
+	protected RedisCommandChannel getChannel () {
+		return new RedisCommandChannel(getResource());
+	}
+	protected void returnChannel (final RedisCommandChannel channel) {
+		returnResource(channel.getJedis());
+	}
+	protected void returnBrokenChannel (final RedisCommandChannel channel) {
+		returnBrokenResource(channel.getJedis());
+	}
+	
+	private void checkConnection (final String message) throws Exception {
+		Jedis jedis = getResource();
+		try {
+			if (!RedisConnectionCheck.checkConnection(jedis)) {
+				returnBrokenResource(jedis);
+				Exception e = new Exception();
+				logger.error(message);
+				throw e;
+			}
+		} finally {
+			returnResource(jedis);
+		}
+	}
+	
+	/*
+	 * Returns the current cache generation, to be read before reading data from Redis
+	 * which is to be cached.
+	 */
+	protected long getCacheGeneration () {
+		synchronized (listsByItem) {
+			return cacheGeneration;
+		}
+	}
+	/*
+	 * Returns the item having id, lemma and wordclass: an item already read is returned
+	 * instead of a new one as long as it is referenced (e.g. by a cached relation list),
+	 * so all relations share one instance per item. New items share the lemma strings
+	 * and wordclass strings of other items. Items with missing fields have to be skipped 
+	 * by the caller, they are not shared.
+	 * 
+	 * @throws IllegalArgumentException if a param is {@code null}
+	 */
+	protected RedisItem createItem (final Long id, final String lemma, final String wordclass) {
+		if (null == id || null == lemma || null == wordclass) {
+			IllegalArgumentException e = new IllegalArgumentException();
+			logger.error("id, lemma and wordclass of item " + id + " must not be null!", e);
+			throw e;
+		}
+		RedisItem item = canonicalItems.get(id);
+		if (null != item && item.getLemma().equals(lemma) && item.getWordclass().equals(wordclass))
+			return item;
+		int wordclassIndex = Wordclass.VALUES.indexOf(wordclass);
+		item = new RedisItem(id, canonicalLemmata.intern(lemma, lemma), 
+				wordclassIndex < 0 ? wordclass : Wordclass.VALUES.get(wordclassIndex));
+		canonicalItems.put(id, item);
+		return item;
+	}
+	/*
+	 * Caches {@code item} unless a cache invalidation happened since {@code generation}
+	 * was read, in this case the item might be outdated.
+	 */
+	protected void cacheItem (final RedisItem item, final long generation) {
+		synchronized (listsByItem) {
+			if (generation == cacheGeneration)
+				itemCache.put(item.getId(), item);
+		}
+	}
+	/*
+	 * Caches {@code relations} as relation list of the item with id {@code itemId}, unless 
+	 * a cache invalidation happened since {@code generation} was read.
+	 */
+	protected void cacheRelations (final Long itemId, final List<Relation> relations, final long generation) {
+		synchronized (listsByItem) {
+			if (generation != cacheGeneration)
+				return;
+			// owners of evicted lists are removed by the cache's removal listener
+			if (!relationCache.put(itemId, relations))
+				return;
+			for (Relation rel : relations) {
+				addListOwner(listsByItem, rel.getPair().getFrom().getId(), itemId);
+				addListOwner(listsByItem, rel.getPair().getTo().getId(), itemId);
+				addListOwner(listsByRelation, rel.getId(), itemId);
+			}
+		}
+	}
+	/*
+	 * Returns true if {@code lemma} is known not to exist: it is not in the lemma filter
+	 * or it was not found a short time ago.
+	 */
+	protected boolean isMissingLemma (final String lemma) {
+		BloomFilter filter = getLemmaFilter();
+		if (null != filter && !filter.mightContain(lemma))
+			return true;
+		return null != missingLemmaCache.get(lemma);
+	}
+	/*
+	 * Remembers that {@code lemma} was not found, unless a cache invalidation happened 
+	 * since {@code generation} was read.
+	 */
+	protected void cacheMissingLemma (final String lemma, final long generation) {
+		synchronized (listsByItem) {
+			if (generation == cacheGeneration)
+				missingLemmaCache.put(lemma, Boolean.TRUE);
+		}
+	}
+	/*
+	 * Forgets that {@code lemma} was not found and adds it to the lemma filter, after
+	 * the lemma key has been changed.
+	 */
+	protected void invalidateLemma (final String lemma) {
+		synchronized (listsByItem) {
+			cacheGeneration++;
+			relationLoads.forgetAll();
+			lemmaLoads.forgetAll();
+		}
+		missingLemmaCache.remove(lemma);
+		BloomFilter filter = lemmaFilter;
+		if (null != filter)
+			filter.put(lemma);
+	}
+	/*
+	 * Drops the relation types and clears all caches, after a relation type key has been
+	 * changed. The relation types are read again on next use.
+	 */
+	protected void invalidateRelationTypes () {
+		relationTypes = null;
+		clearCaches();
+	}
+	/*
+	 * Stops this context from reading the one-sided relation sets built by RedisIndexBuilder,
+	 * after the relation data has been changed. Other clients are not affected.
+	 */
+	protected void invalidateSideRelations () {
+		if (!sideRelationsStale) {
+			sideRelationsStale = true;
+			logger.warn("relation data changed, the one-sided relation sets are not used until the indexes are rebuilt");
+		}
+	}
+	/*
+	 * Reads the one-sided relation sets again, after they have been rebuilt.
+	 */
+	protected void validateSideRelations () {
+		sideRelationsStale = false;
+	}
+	/*
+	 * Returns true if the relation data has changed since the one-sided relation sets were built.
+	 */
+	protected boolean isSideRelationsStale () {
+		return sideRelationsStale;
+	}
+	/*
+	 * Removes the item with id {@code itemId}, its relation list and all relation 
+	 * lists containing the item from the caches.
+	 */
+	protected void invalidateItem (final Long itemId) {
+		Set<Long> owners;
+		synchronized (listsByItem) {
+			cacheGeneration++;
+			relationLoads.forgetAll();
+			lemmaLoads.forgetAll();
+			owners = copyListOwners(listsByItem, itemId);
+		}
+		itemCache.remove(itemId);
+		relationCache.remove(itemId);
+		for (Long owner : owners)
+			relationCache.remove(owner);
+	}
+	/*
+	 * Removes the relation list of the item with id {@code itemId} from the cache.
+	 */
+	protected void invalidateRelationList (final Long itemId) {
+		synchronized (listsByItem) {
+			cacheGeneration++;
+			relationLoads.forgetAll();
+			lemmaLoads.forgetAll();
+		}
+		relationCache.remove(itemId);
+	}
+	/*
+	 * Removes all relation lists containing the relation with id {@code relationId} from the cache.
+	 */
+	protected void invalidateRelation (final Long relationId) {
+		Set<Long> owners;
+		synchronized (listsByItem) {
+			cacheGeneration++;
+			relationLoads.forgetAll();
+			lemmaLoads.forgetAll();
+			owners = copyListOwners(listsByRelation, relationId);
+		}
+		for (Long owner : owners)
+			relationCache.remove(owner);
+	}
+	
+	private BloomFilter buildLemmaFilter () {
+		Set<String> lemmaKeys = new RedisKeyIndex(this).scan(MerkorRedisConstants.LEMMA_KEY_PREFIX_IS + "*");
+		BloomFilter filter = new BloomFilter(lemmaKeys.size(), LEMMA_FILTER_FALSE_POSITIVE_RATE);
+		for (String key : lemmaKeys)
+			filter.put(key.substring(MerkorRedisConstants.LEMMA_KEY_PREFIX_IS.length()));
+		logger.info("built lemma filter of " + lemmaKeys.size() + " lemmata: " + filter);
+		return filter;
+	}
+	private LruCache<Long, List<Relation>> createRelationCache (final int maxRelations, final long ttlMillis) {
+		LruCache<Long, List<Relation>> cache = new LruCache<Long, List<Relation>>(maxRelations, ttlMillis, 
+				new LruCache.Weigher<List<Relation>>() {
+			@Override
+			public int weigh (final List<Relation> relations) {
+				// empty lists are cached as well
+				return Math.max(1, relations.size());
+			}
+		});
+		cache.setRemovalListener(new LruCache.RemovalListener<Long, List<Relation>>() {
+			@Override
+			public void onRemoval (final Long itemId, final List<Relation> relations) {
+				synchronized (listsByItem) {
+					for (Relation rel : relations) {
+						removeListOwner(listsByItem, rel.getPair().getFrom().getId(), itemId);
+						removeListOwner(listsByItem, rel.getPair().getTo().getId(), itemId);
+						removeListOwner(listsByRelation, rel.getId(), itemId);
+					}
+				}
+			}
+		});
+		return cache;
+	}
+	private static void addListOwner (final Map<Long, Set<Long>> index, final Long id, final Long owner) {
+		Set<Long> owners = index.get(id);
+		if (null == owners) {
+			owners = new HashSet<Long>(4);
+			index.put(id, owners);
+		}
+		owners.add(owner);
+	}
+	private static void removeListOwner (final Map<Long, Set<Long>> index, final Long id, final Long owner) {
+		Set<Long> owners = index.get(id);
+		if (null != owners && owners.remove(owner) && owners.isEmpty())
+			index.remove(id);
+	}
+	private static Set<Long> copyListOwners (final Map<Long, Set<Long>> index, final Long id) {
+		Set<Long> owners = index.get(id);
+		return (null == owners) ? Collections.<Long>emptySet() : new HashSet<Long>(owners);
+	}
+	private RedisResourcePool<Jedis> createJedisPool (final int maxConnections) {
+		return new RedisResourcePool<Jedis>(maxConnections, DEFAULT_WAIT_TIMEOUT) {
+			@Override
+			protected Jedis create () {
+				Jedis jedis = new Jedis(host, port);
+				if (database != 0)
+					jedis.select(database);
+				return jedis;
+			}
+			@Override
+			protected void destroy (final Jedis jedis) {
+				try {
+					jedis.disconnect();
+				} catch (Exception e) {
+					logger.warn("closing connection to " + host + ":" + port + " failed: " + e.getMessage());
+				}
+			}
+		};
+	}
+}
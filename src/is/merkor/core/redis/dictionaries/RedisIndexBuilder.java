@@ -0,0 +1,298 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.redis.dictionaries;
+
+import is.merkor.core.RelationType;
+import is.merkor.core.util.MerkorLogger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.Tuple;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+/**
+ * Builds the index structures of the MerkOr data in Redis: the set of all lexical item 
+ * keys, the lexicographically sorted set of all lemma keys, the hash of all cluster keys by cluster id,
+ * the set of all relation type keys and the one-sided relation sets of each item by relation type and side (see {@link MerkorRedisConstants}). 
+ * With these indexes the dictionaries do not need to iterate the keyspace to find items and clusters,
+ * and queries for relations having an item as their left or right element only read the
+ * relations they return.
+ * <p>
+ * The indexes have to be rebuilt each time the MerkOr data in Redis is changed. 
+ * They are written to temporary keys first and then renamed, so readers always see
+ * a complete index. The one-sided relation sets are too many to be renamed, instead 
+ * {@link MerkorRedisConstants#INDEX_SIDE_RELATIONS} is deleted while they are rebuilt 
+ * and written when they are complete. The sets are not kept up to date: rebuild them after
+ * each change, a context having a running {@link RedisCacheInvalidator} does not read them 
+ * from the first change of the relation data until this key is written again.
+ * 
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public class RedisIndexBuilder {
+	
+	private static final String TMP_SUFFIX = "_tmp";
+	
+	private RedisContext context;
+	private RedisKeyIndex keyIndex;
+	
+	private static Logger logger;
+	
+	/**
+	 * Constructs a new index builder using default settings for
+	 * Jedis (localhost).
+	 */
+	public RedisIndexBuilder () throws Exception {
+		this(new RedisContext());
+	}
+	/**
+	 * Constructs a new index builder using {@code host} and {@code port}
+	 * to instantiate the contained Jedis object.
+	 */
+	public RedisIndexBuilder (final String host, final int port) throws Exception {
+		this(new RedisContext(host, port));
+	}
+	/**
+	 * Constructs a new index builder using {@code jedis}.
+	 */
+	public RedisIndexBuilder (final Jedis jedis) throws Exception {
+		this(new RedisContext(jedis));
+	}
+	/**
+	 * Constructs a new index builder using the connections of {@code context}.
+	 */
+	public RedisIndexBuilder (final RedisContext context) {
+		MerkorLogger.configureLogger();
+		logger = Logger.getLogger(RedisIndexBuilder.class);
+		this.context = context;
+		keyIndex = new RedisKeyIndex(context);
+	}
+	
+	/**
+	 * Scans the keyspace (with SCAN, not blocking the server) and (re)builds all indexes.
+	 */
+	public void buildIndexes () {
+		Set<String> itemKeys = keyIndex.scan(MerkorRedisConstants.ID_KEY_PREFIX_IS + "[0123456789]*");
+		writeSet(MerkorRedisConstants.INDEX_ITEMS, itemKeys);
+		logger.info("indexed " + itemKeys.size() + " lexical items");
+		
+		Set<String> lemmaKeys = keyIndex.scan(MerkorRedisConstants.LEMMA_KEY_PREFIX_IS + "*");
+		writeSortedSet(MerkorRedisConstants.INDEX_LEMMATA, lemmaKeys);
+		logger.info("indexed " + lemmaKeys.size() + " lemmata");
+		
+		Set<String> clusterKeys = keyIndex.scan(MerkorRedisConstants.CLUSTER_ID_IS + "*_[0123456789]*");
+		writeClusterHash(clusterKeys);
+		logger.info("indexed " + clusterKeys.size() + " clusters");
+		
+		Set<String> typeKeys = keyIndex.scan(MerkorRedisConstants.REL_TYPE_PREFIX + "*");
+		writeSet(MerkorRedisConstants.INDEX_REL_TYPES, typeKeys);
+		logger.info("indexed " + typeKeys.size() + " relation types");
+		
+		int sideSets = writeSideRelationSets(itemKeys);
+		logger.info("indexed the relations of " + itemKeys.size() + " lexical items in " + sideSets + " one-sided relation sets");
+	}
+	
+	/**
+	 * Deletes all indexes, the dictionaries then scan the keyspace instead.
+	 */
+	public void dropIndexes () {
+		Jedis jedis = context.getResource();
+		try {
+			jedis.del(MerkorRedisConstants.INDEX_ITEMS, MerkorRedisConstants.INDEX_LEMMATA, 
+					MerkorRedisConstants.INDEX_CLUSTERS, MerkorRedisConstants.INDEX_REL_TYPES, 
+					MerkorRedisConstants.INDEX_SIDE_RELATIONS);
+			deleteKeys(jedis, keyIndex.scan(MerkorRedisConstants.SIDE_REL_SET_ID + "*"));
+		} catch (JedisConnectionException e) {
+			context.returnBrokenResource(jedis);
+			throw e;
+		} finally {
+			context.returnResource(jedis);
+		}
+	}
+	
+	private void writeSet (final String indexKey, final Set<String> members) {
+		Jedis jedis = context.getResource();
+		try {
+			writeSet(jedis, indexKey, members);
+		} catch (JedisConnectionException e) {
+			context.returnBrokenResource(jedis);
+			throw e;
+		} finally {
+			context.returnResource(jedis);
+		}
+	}
+	private void writeSet (final Jedis jedis, final String indexKey, final Set<String> members) {
+		String tmpKey = indexKey + TMP_SUFFIX;
+		jedis.del(tmpKey);
+		List<String> memberList = new ArrayList<String>(members);
+		for (int start = 0; start < memberList.size(); start += RedisItemParser.PIPELINE_BATCH_SIZE) {
+			int end = Math.min(start + RedisItemParser.PIPELINE_BATCH_SIZE, memberList.size());
+			Pipeline pipeline = jedis.pipelined();
+			for (String member : memberList.subList(start, end))
+				pipeline.sadd(tmpKey, member);
+			pipeline.sync();
+		}
+		replace(jedis, tmpKey, indexKey, members.isEmpty());
+	}
+	
+	private void writeSortedSet (final String indexKey, final Set<String> members) {
+		Jedis jedis = context.getResource();
+		try {
+			writeSortedSet(jedis, indexKey, members);
+		} catch (JedisConnectionException e) {
+			context.returnBrokenResource(jedis);
+			throw e;
+		} finally {
+			context.returnResource(jedis);
+		}
+	}
+	/*
+	 * Writes members with equal scores, so the sorted set is ordered by the bytes of the members.
+	 */
+	private void writeSortedSet (final Jedis jedis, final String indexKey, final Set<String> members) {
+		String tmpKey = indexKey + TMP_SUFFIX;
+		jedis.del(tmpKey);
+		List<String> memberList = new ArrayList<String>(members);
+		for (int start = 0; start < memberList.size(); start += RedisItemParser.PIPELINE_BATCH_SIZE) {
+			int end = Math.min(start + RedisItemParser.PIPELINE_BATCH_SIZE, memberList.size());
+			Pipeline pipeline = jedis.pipelined();
+			for (String member : memberList.subList(start, end))
+				pipeline.zadd(tmpKey, 0, member);
+			pipeline.sync();
+		}
+		replace(jedis, tmpKey, indexKey, members.isEmpty());
+	}
+	
+	private void writeClusterHash (final Set<String> clusterKeys) {
+		Jedis jedis = context.getResource();
+		try {
+			writeClusterHash(jedis, clusterKeys);
+		} catch (JedisConnectionException e) {
+			context.returnBrokenResource(jedis);
+			throw e;
+		} finally {
+			context.returnResource(jedis);
+		}
+	}
+	private void writeClusterHash (final Jedis jedis, final Set<String> clusterKeys) {
+		String tmpKey = MerkorRedisConstants.INDEX_CLUSTERS + TMP_SUFFIX;
+		jedis.del(tmpKey);
+		Pipeline pipeline = jedis.pipelined();
+		for (String key : clusterKeys) {
+			String id = key.substring(key.lastIndexOf('_') + 1);
+			pipeline.hset(tmpKey, id, key);
+		}
+		pipeline.sync();
+		replace(jedis, tmpKey, MerkorRedisConstants.INDEX_CLUSTERS, clusterKeys.isEmpty());
+	}
+	
+	private int writeSideRelationSets (final Set<String> itemKeys) {
+		Jedis jedis = context.getResource();
+		try {
+			return writeSideRelationSets(jedis, itemKeys);
+		} catch (JedisConnectionException e) {
+			context.returnBrokenResource(jedis);
+			throw e;
+		} finally {
+			context.returnResource(jedis);
+		}
+	}
+	/*
+	 * Splits the sorted relation set of each item into one-sided relation sets by relation 
+	 * type and side, keeping the scores. The relation types are resolved by the relation
+	 * type registry, as in RedisRelationParser. Returns the number of sets written.
+	 */
+	private int writeSideRelationSets (final Jedis jedis, final Set<String> itemKeys) {
+		jedis.del(MerkorRedisConstants.INDEX_SIDE_RELATIONS);
+		deleteKeys(jedis, keyIndex.scan(MerkorRedisConstants.SIDE_REL_SET_ID + "*"));
+		RedisRelationTypeRegistry types = context.getRelationTypes();
+		
+		Set<String> sideKeys = new HashSet<String>();
+		List<String> itemList = new ArrayList<String>(itemKeys);
+		for (int start = 0; start < itemList.size(); start += RedisItemParser.PIPELINE_BATCH_SIZE) {
+			List<String> batch = itemList.subList(start, Math.min(start + RedisItemParser.PIPELINE_BATCH_SIZE, itemList.size()));
+			// 1) the sorted relation sets of the items
+			List<Response<Set<Tuple>>> relSets = new ArrayList<Response<Set<Tuple>>>(batch.size());
+			Pipeline pipeline = jedis.pipelined();
+			for (String itemKey : batch)
+				relSets.add(pipeline.zrevrangeWithScores(MerkorRedisConstants.SORTED_REL_SET_ID + itemKey, 0, -1));
+			pipeline.sync();
+			// 2) items and relation names of their relations
+			Map<String, Response<List<String>>> relFields = new HashMap<String, Response<List<String>>>();
+			pipeline = jedis.pipelined();
+			for (Response<Set<Tuple>> relSet : relSets) {
+				for (Tuple rel : relSet.get()) {
+					if (!relFields.containsKey(rel.getElement()))
+						relFields.put(rel.getElement(), pipeline.hmget(rel.getElement(), "from_item", "to_item", "relation"));
+				}
+			}
+			pipeline.sync();
+			// 3) wordclasses of the left items of relations with a shared description
+			Map<String, Response<String>> wordclasses = new HashMap<String, Response<String>>();
+			pipeline = jedis.pipelined();
+			for (Response<List<String>> fields : relFields.values()) {
+				String fromItem = fields.get().get(0);
+				if (types.isShared(fields.get().get(2)) && null != fromItem && !wordclasses.containsKey(fromItem))
+					wordclasses.put(fromItem, pipeline.hget(fromItem, "wordclass"));
+			}
+			pipeline.sync();
+			// 4) the one-sided sets
+			pipeline = jedis.pipelined();
+			for (int i = 0; i < batch.size(); i++) {
+				String itemKey = batch.get(i);
+				String itemId = itemKey.substring(MerkorRedisConstants.ID_KEY_PREFIX_IS.length());
+				for (Tuple rel : relSets.get(i).get()) {
+					List<String> fields = relFields.get(rel.getElement()).get();
+					if (null == fields.get(0) || null == fields.get(1) || null == fields.get(2))
+						continue;
+					Response<String> wordclass = wordclasses.get(fields.get(0));
+					RelationType type = types.getRelationType(fields.get(2), null == wordclass ? null : wordclass.get());
+					Long typeId = null == type ? 0L : type.getId();
+					if (itemKey.equals(fields.get(0)))
+						sideKeys.add(addToSideSet(pipeline, itemId, typeId, "LEFT", rel));
+					if (itemKey.equals(fields.get(1)))
+						sideKeys.add(addToSideSet(pipeline, itemId, typeId, "RIGHT", rel));
+				}
+			}
+			pipeline.sync();
+		}
+		jedis.set(MerkorRedisConstants.INDEX_SIDE_RELATIONS, String.valueOf(sideKeys.size()));
+		context.validateSideRelations();
+		return sideKeys.size();
+	}
+	private String addToSideSet (final Pipeline pipeline, final String itemId, final Long typeId, final String side, final Tuple rel) {
+		String key = RedisKeyIndex.sideRelationKey(itemId, typeId, side);
+		pipeline.zadd(key, rel.getScore(), rel.getElement());
+		return key;
+	}
+	private void deleteKeys (final Jedis jedis, final Set<String> keys) {
+		List<String> keyList = new ArrayList<String>(keys);
+		for (int start = 0; start < keyList.size(); start += RedisItemParser.PIPELINE_BATCH_SIZE) {
+			List<String> batch = keyList.subList(start, Math.min(start + RedisItemParser.PIPELINE_BATCH_SIZE, keyList.size()));
+			jedis.del(batch.toArray(new String[batch.size()]));
+		}
+	}
+	
+	private void replace (final Jedis jedis, final String tmpKey, final String indexKey, final boolean empty) {
+		if (empty)
+			jedis.del(indexKey);
+		else
+			jedis.rename(tmpKey, indexKey);
+	}
+}
@@ -8,8 +8,12 @@
  *******************************************************************************/
 package is.merkor.core.redis.dictionaries;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 
@@ -61,6 +65,16 @@ public class RedisItemDictionary implements ItemDictionary {
 		MerkorLogger.configureLogger();
 		logger = Logger.getLogger(RedisRelationParser.class);
 	}
+	/**
+	 * Constructs a new dictionary using the connections of {@code context}.
+	 * Dictionaries sharing a context share its connection pool and can be
+	 * used concurrently by several threads.
+	 */
+	public RedisItemDictionary (final RedisContext context) {
+		parser = new RedisItemParser(context);
+		MerkorLogger.configureLogger();
+		logger = Logger.getLogger(RedisRelationParser.class);
+	}
 	/*
 	 * (non-Javadoc)
 	 * @see is.merkor.core.ItemDictionary#getAllItems()
@@ -84,6 +98,22 @@ public class RedisItemDictionary implements ItemDictionary {
 		return items;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see is.merkor.core.ItemDictionary#getItemsForLemmata(java.util.Collection)
+	 */
+	@Override
+	public Map<String, List<Item>> getItemsForLemmata (final Collection<String> lemmata) {
+		validateLemmata(lemmata);
+		Map<String, List<Item>> result = new LinkedHashMap<String, List<Item>>();
+		for (Map.Entry<String, List<RedisItem>> entry : parser.getItemsForLemmata(lemmata).entrySet()) {
+			List<RedisItem> items = entry.getValue();
+			Collections.sort(items);
+			result.put(entry.getKey(), new ArrayList<Item>(items));
+		}
+		return result;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see is.merkor.core.ItemDictionary#getItemsFor(java.lang.String, java.lang.String)
@@ -121,6 +151,11 @@ public class RedisItemDictionary implements ItemDictionary {
 			throw e;
 		}
 	}
+	private void validateLemmata (final Collection<String> lemmata) {
+		validateObject(lemmata, "lemmata");
+		for (String lemma : lemmata)
+			validateLemma(lemma);
+	}
 	private void validateWordclass (final String wordclass) {
 		if (null == wordclass || !Wordclass.VALUES.contains(wordclass)) {
 			IllegalArgumentException e = new IllegalArgumentException();
@@ -17,19 +17,36 @@ package is.merkor.core.redis.dictionaries;
  */
 import is.merkor.core.Item;
 import is.merkor.core.redis.data.RedisItem;
+import is.merkor.core.util.LruCache;
 import is.merkor.core.util.MerkorLogger;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import org.apache.log4j.Logger;
 
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisConnectionException;
 
 public class RedisItemParser {
-	// connection to Redis
-	private Jedis jedis;
+	// max number of commands sent to Redis in one pipeline
+	protected static final int PIPELINE_BATCH_SIZE = 1000;
+	// hash fields of a lexical item
+	private static final String[] ITEM_FIELDS = {"lemma", "wordclass"};
+	
+	// connections to Redis
+	private RedisContext context;
+	private RedisKeyIndex keyIndex;
 	private static Logger logger;
 	
 	/*
@@ -37,41 +54,29 @@ public class RedisItemParser {
 	 * Jedis (localhost).
 	 */
 	protected RedisItemParser () throws Exception {
-		MerkorLogger.configureLogger();
-		logger = Logger.getLogger(RedisItemParser.class);
-		jedis = new Jedis("localhost");
-		if (!RedisConnectionCheck.checkConnection(jedis)) {
-			Exception e = new Exception();
-			logger.error("Jedis connection for \"localhost\" failed!");
-			throw e;
-		}
+		this(new RedisContext());
 	}
 	/*
 	 * Constructs a new parser using {@code host} and {@code port}
 	 * to instantiate the contained Jedis object.
 	 */
 	protected RedisItemParser (final String host, final int port) throws Exception {
-		jedis = new Jedis(host, port);
-		MerkorLogger.configureLogger();
-		logger = Logger.getLogger(RedisItemParser.class);
-		if (!RedisConnectionCheck.checkConnection(jedis)) {
-			Exception e = new Exception();
-			logger.error("Jedis connection for host " + host + " and port " + port + " failed!");
-			throw e;
-		}
+		this(new RedisContext(host, port));
 	}
 	/*
 	 * Constructs a new parser using {@code jedis}.
 	 */
 	protected RedisItemParser (final Jedis jedis) throws Exception {
-		this.jedis = jedis;
+		this(new RedisContext(jedis));
+	}
+	/*
+	 * Constructs a new parser using the connections of {@code context}.
+	 */
+	protected RedisItemParser (final RedisContext context) {
 		MerkorLogger.configureLogger();
 		logger = Logger.getLogger(RedisItemParser.class);
-		if (!RedisConnectionCheck.checkConnection(jedis)) {
-			Exception e = new Exception();
-			logger.error("Jedis connection with given Jedis object failed!");
-			throw e;
-		}
+		this.context = context;
+		keyIndex = new RedisKeyIndex(context);
 	}
 	
 	/*
@@ -82,12 +87,7 @@ public class RedisItemParser {
 	 */
 	protected List<? extends Item> collectAllItems () {
 		
-		Set<String> keys = jedis.keys(MerkorRedisConstants.ID_KEY_PREFIX_IS + "[0123456789]*");
-		List<RedisItem> itemList = new ArrayList<RedisItem>();
-		for (String key : keys) {
-			itemList.add(createRedisItemFromIdKey(key));
-		}
-		return itemList;
+		return createRedisItemsFromIdKeys(keyIndex.itemKeys());
 	}
 	
 	/*
@@ -98,13 +98,80 @@ public class RedisItemParser {
 	 * @return a list of redisItems, or an empty list if nothing is found
 	 */
 	protected List<? extends Item> getItemsFor (final String lemma) {
-		List<RedisItem> itemList = new ArrayList<RedisItem>();
-		Set<String> lemma_ids = jedis.smembers(MerkorRedisConstants.LEMMA_KEY_PREFIX_IS + lemma);
+		// concurrent lookups of the same lemma share one read, each caller gets its own list
+		return new ArrayList<RedisItem>(context.getLemmaLoads().get(lemma, new Callable<List<RedisItem>>() {
+			public List<RedisItem> call () {
+				return createRedisItemsFromIdKeys(getIdKeysFor(lemma));
+			}
+		}));
+	}
+	
+	/*
+	 * Gets the items of each lemma in {@code lemmata}: the item keys of all distinct lemmata
+	 * are read in one pipeline (per PIPELINE_BATCH_SIZE lemmata), then all items are 
+	 * created together, see createRedisItemsFromIdKeys().
+	 * 
+	 * @param lemmata the lemmata to search items for
+	 * @return a map from each distinct lemma, in the iteration order of lemmata, to its 
+	 * 			redisItems (an empty list if nothing is found)
+	 */
+	protected Map<String, List<RedisItem>> getItemsForLemmata (final Collection<String> lemmata) {
+		List<String> lemmaList = new ArrayList<String>(new LinkedHashSet<String>(lemmata));
+		// lemmata known not to exist are not read
+		List<String> readList = new ArrayList<String>(lemmaList.size());
+		for (String lemma : lemmaList) {
+			if (!context.isMissingLemma(lemma))
+				readList.add(lemma);
+		}
+		long generation = context.getCacheGeneration();
+		Map<String, Set<String>> idKeysByLemma = new HashMap<String, Set<String>>();
+		if (!readList.isEmpty()) {
+			Jedis jedis = context.getResource();
+			try {
+				for (int start = 0; start < readList.size(); start += PIPELINE_BATCH_SIZE) {
+					List<String> batch = readList.subList(start, Math.min(start + PIPELINE_BATCH_SIZE, readList.size()));
+					List<Response<Set<String>>> responses = new ArrayList<Response<Set<String>>>(batch.size());
+					Pipeline pipeline = jedis.pipelined();
+					for (String lemma : batch)
+						responses.add(pipeline.smembers(MerkorRedisConstants.LEMMA_KEY_PREFIX_IS + lemma));
+					pipeline.sync();
+					for (int i = 0; i < batch.size(); i++)
+						idKeysByLemma.put(batch.get(i), responses.get(i).get());
+				}
+			} catch (JedisConnectionException e) {
+				context.returnBrokenResource(jedis);
+				throw e;
+			} finally {
+				context.returnResource(jedis);
+			}
+		}
+		List<Set<String>> idKeys = new ArrayList<Set<String>>(lemmaList.size());
+		for (String lemma : lemmaList) {
+			Set<String> keys = idKeysByLemma.get(lemma);
+			if (null == keys)
+				keys = Collections.emptySet();
+			else if (keys.isEmpty())
+				context.cacheMissingLemma(lemma, generation);
+			idKeys.add(keys);
+		}
+		Set<String> allIdKeys = new LinkedHashSet<String>();
+		for (Set<String> keys : idKeys)
+			allIdKeys.addAll(keys);
+		Map<Long, RedisItem> itemMap = new HashMap<Long, RedisItem>();
+		for (RedisItem item : createRedisItemsFromIdKeys(allIdKeys))
+			itemMap.put(item.getId(), item);
 		
-		for (String id : lemma_ids) {
-			itemList.add(createRedisItemFromIdKey(id));
+		Map<String, List<RedisItem>> result = new LinkedHashMap<String, List<RedisItem>>();
+		for (int i = 0; i < lemmaList.size(); i++) {
+			List<RedisItem> itemList = new ArrayList<RedisItem>(idKeys.get(i).size());
+			for (String key : idKeys.get(i)) {
+				RedisItem item = itemMap.get(parseItemId(key));
+				if (null != item)
+					itemList.add(item);
+			}
+			result.put(lemmaList.get(i), itemList);
 		}
-		return itemList;
+		return result;
 	}
 	
 	/*
@@ -117,11 +184,10 @@ public class RedisItemParser {
 	 */
 	protected List<? extends Item> getItemsFor (final String lemma, final String wordclass) {
 		List<RedisItem> itemList = new ArrayList<RedisItem>();
-		Set<String> lemma_ids = jedis.smembers(MerkorRedisConstants.LEMMA_KEY_PREFIX_IS + lemma);
 		
-		for (String id : lemma_ids) {
-			if (jedis.hget(id, "wordclass").equals(wordclass))
-				itemList.add(createRedisItemFromIdKey(id));
+		for (RedisItem item : createRedisItemsFromIdKeys(getIdKeysFor(lemma))) {
+			if (item.getWordclass().equals(wordclass))
+				itemList.add(item);
 		}
 		return itemList;
 	}
@@ -134,35 +200,138 @@ public class RedisItemParser {
 	 * @return a list of redisItems, or an empty list if nothing is found
 	 */
 	protected List<? extends Item> getItemsMatching (final String regex) {
-		Set<String> keys = jedis.keys(MerkorRedisConstants.LEMMA_KEY_PREFIX_IS + regex);
-		List<RedisItem> itemList = new ArrayList<RedisItem>();
-		for (String key : keys) {
-			Set<String> id_keys = jedis.smembers(key);
-			for (String id : id_keys)
-				itemList.add(createRedisItemFromIdKey(id));
+		Set<String> keys = keyIndex.lemmaKeysMatching(MerkorRedisConstants.LEMMA_KEY_PREFIX_IS + regex);
+		// collect the id keys of all matching lemmata in one pipeline
+		List<String> lemmaKeys = new ArrayList<String>(keys);
+		Set<String> id_keys = new LinkedHashSet<String>();
+		Jedis jedis = context.getResource();
+		try {
+			for (int start = 0; start < lemmaKeys.size(); start += PIPELINE_BATCH_SIZE) {
+				List<String> batch = lemmaKeys.subList(start, Math.min(start + PIPELINE_BATCH_SIZE, lemmaKeys.size()));
+				List<Response<Set<String>>> responses = new ArrayList<Response<Set<String>>>(batch.size());
+				Pipeline pipeline = jedis.pipelined();
+				for (String key : batch)
+					responses.add(pipeline.smembers(key));
+				pipeline.sync();
+				for (Response<Set<String>> response : responses)
+					id_keys.addAll(response.get());
+			}
+		} catch (JedisConnectionException e) {
+			context.returnBrokenResource(jedis);
+			throw e;
+		} finally {
+			context.returnResource(jedis);
 		}
-		return itemList;	
+		return createRedisItemsFromIdKeys(id_keys);	
 	}
 
-	protected RedisItem createRedisItemFromIdKey (final String id_key) {
-		String item_id = id_key.substring(id_key.lastIndexOf('_') + 1, id_key.length());
-		String item_lemma = jedis.hget(id_key, "lemma");
-		String item_wordclass = jedis.hget(id_key, "wordclass");
-		Long long_id = Long.parseLong(item_id);
-		
-		return new RedisItem(long_id, item_lemma, item_wordclass);
+	/*
+	 * Creates {@link RedisItem}s for all keys in {@code id_keys}. Items found in the item 
+	 * cache of the context are taken from there, the lemma and wordclass of the other 
+	 * items are fetched with one HMGET per key, sent to Redis in pipelined batches,
+	 * so the whole collection costs at most one round-trip per PIPELINE_BATCH_SIZE keys.
+	 * Keys that do not exist on the server are skipped.
+	 * 
+	 * @param id_keys a collection of lexical item keys (merkor_is_id_<id>)
+	 * @return a list of redisItems in the iteration order of id_keys
+	 */
+	protected List<RedisItem> createRedisItemsFromIdKeys (final Collection<String> id_keys) {
+		LruCache<Long, RedisItem> cache = context.getItemCache();
+		long generation = context.getCacheGeneration();
+		List<String> keys = new ArrayList<String>(id_keys);
+		RedisItem[] items = new RedisItem[keys.size()];
+		List<Integer> missing = new ArrayList<Integer>();
+		for (int i = 0; i < keys.size(); i++) {
+			items[i] = cache.get(parseItemId(keys.get(i)));
+			if (null == items[i])
+				missing.add(i);
+		}
+		if (!missing.isEmpty()) {
+			Jedis jedis = context.getResource();
+			try {
+				for (int start = 0; start < missing.size(); start += PIPELINE_BATCH_SIZE) {
+					List<Integer> batch = missing.subList(start, Math.min(start + PIPELINE_BATCH_SIZE, missing.size()));
+					List<Response<List<String>>> responses = new ArrayList<Response<List<String>>>(batch.size());
+					Pipeline pipeline = jedis.pipelined();
+					for (Integer index : batch)
+						responses.add(pipeline.hmget(keys.get(index), ITEM_FIELDS));
+					pipeline.sync();
+					
+					for (int i = 0; i < batch.size(); i++) {
+						String key = keys.get(batch.get(i));
+						List<String> fields = responses.get(i).get();
+						if (null == fields.get(0) || null == fields.get(1)) {
+							logger.warn("parsing for item '" + key + "' failed, null values!");
+							continue;
+						}
+						RedisItem item = context.createItem(parseItemId(key), fields.get(0), fields.get(1));
+						context.cacheItem(item, generation);
+						items[batch.get(i)] = item;
+					}
+				}
+			} catch (JedisConnectionException e) {
+				context.returnBrokenResource(jedis);
+				throw e;
+			} finally {
+				context.returnResource(jedis);
+			}
+		}
+		List<RedisItem> itemList = new ArrayList<RedisItem>(items.length);
+		for (RedisItem item : items) {
+			if (null != item)
+				itemList.add(item);
+		}
+		return itemList;
+	}
+	
+	/*
+	 * Returns the cached item for the id of {@code item}, or caches {@code item} if 
+	 * there is none. Used for items parsed outside of this parser, {@code generation}
+	 * is the cache generation read before parsing.
+	 */
+	protected RedisItem cacheItem (final RedisItem item, final long generation) {
+		RedisItem cached = context.getItemCache().get(item.getId());
+		if (null != cached)
+			return cached;
+		context.cacheItem(item, generation);
+		return item;
 	}
 
 	protected Item getItemFor (final Long id) {
 		Item item = null;
-		Set<String> keys = jedis.keys(MerkorRedisConstants.ID_KEY_PREFIX_IS + id);
-		if (!keys.isEmpty()) {
-			for (String key : keys)
-				item = createRedisItemFromIdKey(key);		
-		}
+		List<String> keys = Collections.singletonList(MerkorRedisConstants.ID_KEY_PREFIX_IS + id);
+		for (RedisItem redisItem : createRedisItemsFromIdKeys(keys))
+			item = redisItem;
 		return item;
 	}
 	
+	/*
+	 * Returns the keys of the items of lemma, without a round-trip for a lemma known
+	 * not to exist, see RedisContext.isMissingLemma().
+	 */
+	private Set<String> getIdKeysFor (final String lemma) {
+		if (context.isMissingLemma(lemma))
+			return Collections.emptySet();
+		long generation = context.getCacheGeneration();
+		Set<String> idKeys;
+		Jedis jedis = context.getResource();
+		try {
+			idKeys = jedis.smembers(MerkorRedisConstants.LEMMA_KEY_PREFIX_IS + lemma);
+		} catch (JedisConnectionException e) {
+			context.returnBrokenResource(jedis);
+			throw e;
+		} finally {
+			context.returnResource(jedis);
+		}
+		if (idKeys.isEmpty())
+			context.cacheMissingLemma(lemma, generation);
+		return idKeys;
+	}
+	
+	private Long parseItemId (final String id_key) {
+		return Long.parseLong(id_key.substring(id_key.lastIndexOf('_') + 1, id_key.length()));
+	}
+	
 	protected String getRedisKeyForItem (final Item item) {
 		return MerkorRedisConstants.ID_KEY_PREFIX_IS + item.getId();
 	}
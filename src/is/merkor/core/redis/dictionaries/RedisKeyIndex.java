@@ -0,0 +1,263 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.redis.dictionaries;
+
+import is.merkor.core.util.Glob;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.util.SafeEncoder;
+
+/**
+ * Finds keys of the MerkOr data without the blocking KEYS command. 
+ * If the index structures built by {@link RedisIndexBuilder} exist, they are used 
+ * (see {@link MerkorRedisConstants#INDEX_ITEMS}, {@link MerkorRedisConstants#INDEX_LEMMATA},
+ * {@link MerkorRedisConstants#INDEX_CLUSTERS} and {@link MerkorRedisConstants#INDEX_REL_TYPES}), otherwise the keyspace is iterated 
+ * incrementally with SCAN, so that the server is never blocked for more than 
+ * SCAN_COUNT keys at a time. Lemma patterns are narrowed to the range of their literal 
+ * prefix in the sorted lemma index with ZRANGEBYLEX, only the keys in this range are
+ * matched against the whole pattern.
+ * <p>
+ * Patterns are glob-style patterns as used by KEYS and SCAN.
+ *
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public class RedisKeyIndex {
+	
+	// number of elements the server looks at per SCAN/SSCAN call
+	protected static final int SCAN_COUNT = 1000;
+	
+	private final RedisContext context;
+	
+	/*
+	 * Constructs a new key index reading from the Redis server of {@code context}.
+	 */
+	protected RedisKeyIndex (final RedisContext context) {
+		this.context = context;
+	}
+	
+	/*
+	 * Returns the keys of all lexical items (merkor_is_id_<id>).
+	 */
+	protected Set<String> itemKeys () {
+		Jedis jedis = context.getResource();
+		try {
+			if (jedis.exists(MerkorRedisConstants.INDEX_ITEMS))
+				return jedis.smembers(MerkorRedisConstants.INDEX_ITEMS);
+		} catch (JedisConnectionException e) {
+			context.returnBrokenResource(jedis);
+			throw e;
+		} finally {
+			context.returnResource(jedis);
+		}
+		return scan(MerkorRedisConstants.ID_KEY_PREFIX_IS + "[0123456789]*");
+	}
+	
+	/*
+	 * Returns the keys of all relation types (merkor_is_reltype_<description>).
+	 */
+	protected Set<String> relationTypeKeys () {
+		Jedis jedis = context.getResource();
+		try {
+			if (jedis.exists(MerkorRedisConstants.INDEX_REL_TYPES))
+				return jedis.smembers(MerkorRedisConstants.INDEX_REL_TYPES);
+		} catch (JedisConnectionException e) {
+			context.returnBrokenResource(jedis);
+			throw e;
+		} finally {
+			context.returnResource(jedis);
+		}
+		return scan(MerkorRedisConstants.REL_TYPE_PREFIX + "*");
+	}
+	
+	/*
+	 * Returns all lemma keys (merkor_is_lemma_<lemma>) matching {@code pattern}.
+	 */
+	protected Set<String> lemmaKeysMatching (final String pattern) {
+		String indexType = typeOf(MerkorRedisConstants.INDEX_LEMMATA);
+		if (indexType.equals("zset"))
+			return zrangeByPrefix(MerkorRedisConstants.INDEX_LEMMATA, pattern);
+		// a set, as written by earlier versions of RedisIndexBuilder
+		if (indexType.equals("set"))
+			return sscan(MerkorRedisConstants.INDEX_LEMMATA, pattern);
+		return scan(pattern);
+	}
+	
+	/*
+	 * Returns all cluster keys (merkor_is_cluster_<name>_<id>) matching {@code pattern}.
+	 */
+	protected Set<String> clusterKeysMatching (final String pattern) {
+		List<String> indexedKeys = null;
+		Jedis jedis = context.getResource();
+		try {
+			if (jedis.exists(MerkorRedisConstants.INDEX_CLUSTERS))
+				indexedKeys = jedis.hvals(MerkorRedisConstants.INDEX_CLUSTERS);
+		} catch (JedisConnectionException e) {
+			context.returnBrokenResource(jedis);
+			throw e;
+		} finally {
+			context.returnResource(jedis);
+		}
+		if (null == indexedKeys)
+			return scan(pattern);
+		
+		Pattern regex = Glob.toRegex(pattern);
+		Set<String> keys = new LinkedHashSet<String>();
+		for (String key : indexedKeys) {
+			if (regex.matcher(key).matches())
+				keys.add(key);
+		}
+		return keys;
+	}
+	
+	/*
+	 * Returns the key of the cluster having {@code id} as its id, or null if 
+	 * no such cluster exists.
+	 */
+	protected String clusterKeyForId (final Long id) {
+		Jedis jedis = context.getResource();
+		try {
+			if (jedis.exists(MerkorRedisConstants.INDEX_CLUSTERS))
+				return jedis.hget(MerkorRedisConstants.INDEX_CLUSTERS, id.toString());
+		} catch (JedisConnectionException e) {
+			context.returnBrokenResource(jedis);
+			throw e;
+		} finally {
+			context.returnResource(jedis);
+		}
+		for (String key : scan(MerkorRedisConstants.CLUSTER_ID_IS + "*_" + id))
+			return key;
+		return null;
+	}
+	
+	/*
+	 * Returns the key of the one-sided relation set of the item with id itemId and the
+	 * relation type with id typeId, side is "LEFT" or "RIGHT".
+	 */
+	protected static String sideRelationKey (final String itemId, final Long typeId, final String side) {
+		return MerkorRedisConstants.SIDE_REL_SET_ID + itemId + "_" + typeId + "_" + side.charAt(0);
+	}
+	
+	/*
+	 * Iterates the whole keyspace with SCAN and returns all keys matching {@code pattern}.
+	 */
+	protected Set<String> scan (final String pattern) {
+		return iterate(null, pattern);
+	}
+	
+	/*
+	 * Iterates the set {@code key} with SSCAN and returns all members matching {@code pattern}.
+	 */
+	protected Set<String> sscan (final String key, final String pattern) {
+		return iterate(key, pattern);
+	}
+	
+	/*
+	 * Returns all members of the sorted set {@code key}, having equal scores, matching 
+	 * {@code pattern}. Only the members starting with the literal prefix of the pattern are
+	 * read, with ZRANGEBYLEX in pages of SCAN_COUNT members.
+	 */
+	protected Set<String> zrangeByPrefix (final String key, final String pattern) {
+		String prefix = Glob.literalPrefix(pattern);
+		boolean literal = Glob.isLiteral(pattern);
+		Pattern regex = literal ? null : Glob.toRegex(pattern);
+		String min = "[" + prefix;
+		String max = literal ? min : successor(prefix);
+		
+		Set<String> result = new LinkedHashSet<String>();
+		while (true) {
+			List<?> reply = sendCommand("ZRANGEBYLEX", key, min, max, "LIMIT", "0", String.valueOf(SCAN_COUNT));
+			String member = null;
+			for (Object bytes : reply) {
+				member = SafeEncoder.encode((byte[])bytes);
+				if (literal || regex.matcher(member).matches())
+					result.add(member);
+			}
+			if (reply.size() < SCAN_COUNT)
+				break;
+			min = "(" + member;
+		}
+		return result;
+	}
+	
+	/*
+	 * Returns the exclusive ZRANGEBYLEX upper bound of all strings starting with prefix:
+	 * the prefix with its last character incremented, "+" if there is no such string.
+	 */
+	private static String successor (final String prefix) {
+		StringBuilder bound = new StringBuilder(prefix);
+		while (bound.length() > 0) {
+			int last = bound.length() - 1;
+			char c = bound.charAt(last);
+			if (c < Character.MAX_VALUE) {
+				bound.setCharAt(last, (char)(c + 1));
+				return "(" + bound;
+			}
+			bound.setLength(last);
+		}
+		return "+";
+	}
+	
+	private Set<String> iterate (final String key, final String pattern) {
+		Set<String> result = new LinkedHashSet<String>();
+		String cursor = "0";
+		do {
+			List<String> args = new ArrayList<String>();
+			if (null == key) {
+				args.add("SCAN");
+			} else {
+				args.add("SSCAN");
+				args.add(key);
+			}
+			args.add(cursor);
+			args.add("MATCH");
+			args.add(pattern);
+			args.add("COUNT");
+			args.add(String.valueOf(SCAN_COUNT));
+			
+			List<?> reply = sendCommand(args.toArray(new String[args.size()]));
+			cursor = SafeEncoder.encode((byte[])reply.get(0));
+			for (Object member : (List<?>)reply.get(1))
+				result.add(SafeEncoder.encode((byte[])member));
+		} while (!cursor.equals("0"));
+		
+		return result;
+	}
+	
+	private List<?> sendCommand (final String... args) {
+		RedisCommandChannel channel = context.getChannel();
+		try {
+			return (List<?>)channel.sendCommand(args);
+		} catch (JedisConnectionException e) {
+			context.returnBrokenChannel(channel);
+			throw e;
+		} finally {
+			context.returnChannel(channel);
+		}
+	}
+	
+	private String typeOf (final String indexKey) {
+		Jedis jedis = context.getResource();
+		try {
+			return jedis.type(indexKey);
+		} catch (JedisConnectionException e) {
+			context.returnBrokenResource(jedis);
+			throw e;
+		} finally {
+			context.returnResource(jedis);
+		}
+	}
+}
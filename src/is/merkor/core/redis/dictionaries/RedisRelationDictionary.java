@@ -8,7 +8,10 @@
  *******************************************************************************/
 package is.merkor.core.redis.dictionaries;
 
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 
@@ -19,6 +22,7 @@ import is.merkor.core.Relation;
 import is.merkor.core.RelationDictionary;
 import is.merkor.core.RelationObject;
 import is.merkor.core.RelationType;
+import is.merkor.core.redis.data.RelationRecord;
 import is.merkor.core.util.MerkorLogger;
 
 /**
@@ -31,6 +35,11 @@ import is.merkor.core.util.MerkorLogger;
  */
 public class RedisRelationDictionary implements RelationDictionary {
 	
+	/**
+	 * The default number of relations read at once by {@link #iterateRelationsFor(Item, double)}.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 500;
+	
 	private RedisRelationParser parser;
 	
 	private static Logger logger;
@@ -61,6 +70,30 @@ public class RedisRelationDictionary implements RelationDictionary {
 		MerkorLogger.configureLogger();
 		logger = Logger.getLogger(RedisRelationParser.class);
 	}
+	/**
+	 * Constructs a new dictionary using the connections of {@code context}.
+	 * Dictionaries sharing a context share its connection pool and can be
+	 * used concurrently by several threads.
+	 */
+	public RedisRelationDictionary (final RedisContext context) {
+		parser = new RedisRelationParser(context);
+		MerkorLogger.configureLogger();
+		logger = Logger.getLogger(RedisRelationParser.class);
+	}
+	
+	/**
+	 * Selects how the relation lists of single items (as returned by {@link #getRelationsFor(Item)}
+	 * and used by the lemma based queries) are materialized: by pipelined requests from 
+	 * the client (default), or by a Lua script on the Redis server which returns the whole
+	 * hydrated list in one round-trip. The script needs Redis 2.6 or newer.
+	 * 
+	 * @param useScript {@code true} to use the server side script
+	 * @return {@code true} if the server side script is used after this call, {@code false}
+	 * 			if the client side materialization is used (also if the script could not be loaded).
+	 */
+	public boolean setUseServerScript (final boolean useScript) {
+		return parser.setUseServerScript(useScript);
+	}
 	
 	/* (non-Javadoc)
 	 * @see is.merkor.core.RelationDictionary#getRelationsFor(java.lang.String)
@@ -71,6 +104,17 @@ public class RedisRelationDictionary implements RelationDictionary {
 		return parser.getRelationsFor(lemma);
 	}
 
+	/* (non-Javadoc)
+	 * @see is.merkor.core.RelationDictionary#getRelationsForLemmata(java.util.Collection)
+	 */
+	@Override
+	public Map<String, List<RelationObject>> getRelationsForLemmata (final Collection<String> lemmata) {
+		validateObject(lemmata, "lemmata");
+		for (String lemma : lemmata)
+			validateLemma(lemma);
+		return parser.getRelationsForLemmata(lemmata);
+	}
+
 	/* (non-Javadoc)
 	 * @see is.merkor.core.RelationDictionary#getRelationsFor(is.merkor.core.Item)
 	 */
@@ -80,6 +124,62 @@ public class RedisRelationDictionary implements RelationDictionary {
 		return parser.getRelationsFor(item);
 	}
 	
+	/* (non-Javadoc)
+	 * @see is.merkor.core.RelationDictionary#getRelationsFor(java.lang.String, double, int, int)
+	 */
+	@Override
+	public List<RelationObject> getRelationsFor (final String lemma, final double minConfidence, final int offset, final int limit) {
+		validateLemma(lemma);
+		validatePage(minConfidence, offset, limit);
+		return parser.getRelationsFor(lemma, minConfidence, offset, limit);
+	}
+	
+	/* (non-Javadoc)
+	 * @see is.merkor.core.RelationDictionary#getRelationsFor(is.merkor.core.Item, double, int, int)
+	 */
+	@Override
+	public List<Relation> getRelationsFor (final Item item, final double minConfidence, final int offset, final int limit) {
+		validateObject(item, "item");
+		validatePage(minConfidence, offset, limit);
+		return parser.getRelationsFor(item, minConfidence, offset, limit);
+	}
+	
+	/* (non-Javadoc)
+	 * @see is.merkor.core.RelationDictionary#iterateRelationsFor(is.merkor.core.Item, double)
+	 */
+	@Override
+	public Iterator<Relation> iterateRelationsFor (final Item item, final double minConfidence) {
+		return iterateRelationsFor(item, minConfidence, DEFAULT_CHUNK_SIZE);
+	}
+	
+	/**
+	 * Same as {@link #iterateRelationsFor(Item, double)}, reading the relations in chunks of
+	 * {@code chunkSize} relations. While the relations of one chunk are handed out, the next
+	 * chunk is read in the background.
+	 * @throws IllegalArgumentException if item is {@code null}, minConfidence is NaN or 
+	 * 			chunkSize is not positive.
+	 */
+	public Iterator<Relation> iterateRelationsFor (final Item item, final double minConfidence, final int chunkSize) {
+		validateObject(item, "item");
+		validateConfidence(minConfidence);
+		validatePositiveNumber(chunkSize, "chunkSize");
+		return parser.iterateRelationsFor(item, minConfidence, chunkSize);
+	}
+	
+	/**
+	 * Same as {@link #getRelationsFor(Item, double, int, int)} for the item having {@code itemId},
+	 * returning lightweight relation records: only the ids and scores of the relations are read,
+	 * the items are read on the first access of {@link RelationRecord#getFrom()} or 
+	 * {@link RelationRecord#getTo()}.
+	 * @throws IllegalArgumentException if itemId is {@code null}, minConfidence is NaN, offset is
+	 * 			negative or limit is not positive.
+	 */
+	public List<RelationRecord> getRelationRecordsFor (final Long itemId, final double minConfidence, final int offset, final int limit) {
+		validateObject(itemId, "itemId");
+		validatePage(minConfidence, offset, limit);
+		return parser.getRelationRecordsFor(itemId, minConfidence, offset, limit);
+	}
+	
 	public List<Relation> getMostRelatedWords (final Item item, final int nrOfWords) {
 		validateObject(item, "item");
 		validatePositiveNumber(nrOfWords, "nrOfWords");
@@ -91,6 +191,19 @@ public class RedisRelationDictionary implements RelationDictionary {
 		validatePositiveNumber(nrOfWords, "nrOfWords");
 		return parser.getMostRelatedWords (lemma, nrOfWords);
 	}
+	
+	/**
+	 * Returns the 'nrOfWords' relations with the highest scores among the relations of all
+	 * items of parameter lemma, sorted by score descending (equal scores of different items
+	 * by ascending item id). Unlike 
+	 * {@link #getMostRelatedWords(String, int)}, which returns the top relations of each item,
+	 * the items compete for the nrOfWords places. Only the winning relations are read from Redis.
+	 */
+	public List<Relation> getGlobalMostRelatedWords (final String lemma, final int nrOfWords) {
+		validateLemma(lemma);
+		validatePositiveNumber(nrOfWords, "nrOfWords");
+		return parser.getGlobalMostRelatedWords(lemma, nrOfWords);
+	}
 
 	/* (non-Javadoc)
 	 * @see is.merkor.core.RelationDictionary#getRelationsFor(java.lang.String, java.lang.String)
@@ -181,5 +294,21 @@ public class RedisRelationDictionary implements RelationDictionary {
 			throw e;
 		}
 	}
+	private void validateConfidence (final double minConfidence) {
+		if (Double.isNaN(minConfidence)) {
+			IllegalArgumentException e = new IllegalArgumentException();
+			logger.error("param minConfidence must not be NaN!", e);
+			throw e;
+		}
+	}
+	private void validatePage (final double minConfidence, final int offset, final int limit) {
+		validateConfidence(minConfidence);
+		if (offset < 0) {
+			IllegalArgumentException e = new IllegalArgumentException();
+			logger.error("param offset must not be negative!", e);
+			throw e;
+		}
+		validatePositiveNumber(limit, "limit");
+	}
 
 }
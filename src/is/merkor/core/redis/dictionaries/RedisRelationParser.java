@@ -16,15 +16,36 @@ import is.merkor.core.redis.data.RedisItem;
 import is.merkor.core.redis.data.RedisPair;
 import is.merkor.core.redis.data.RedisRelation;
 import is.merkor.core.redis.data.RedisRelationType;
+import is.merkor.core.redis.data.RelationRecord;
 import is.merkor.core.util.MerkorLogger;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.Tuple;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisException;
 
 /**
  * Provides methods to parse keys and values from MerkOr data on a Redis server,
@@ -35,9 +56,26 @@ import redis.clients.jedis.Jedis;
  */
 
 public class RedisRelationParser {
+	// hash fields of a relation
+	private static final String[] RELATION_FIELDS = {"from_item", "to_item", "relation", "score"};
+	private static final String[] RECORD_FIELDS = {"from_item", "to_item", "relation"};
 
-	private Jedis jedis;
+	private RedisContext context;
 	private RedisItemParser itemParser;
+	// server side materialization of relation lists, see setUseServerScript()
+	private RedisRelationScript script;
+	private volatile boolean useServerScript = false;
+	
+	// reads the items and shared types of relation records
+	private final RelationRecord.Resolver recordResolver = new RelationRecord.Resolver() {
+		public Item getItem (final long id) {
+			return itemParser.getItemFor(id);
+		}
+		public RelationType getType (final String relation, final String leftWordclass) {
+			RelationType type = context.getRelationTypes().getRelationType(relation, leftWordclass);
+			return null == type ? new RedisRelationType(0L, relation, relation) : type;
+		}
+	};
 	
 	private static Logger logger;
 	
@@ -46,45 +84,29 @@ public class RedisRelationParser {
 	 * Jedis (localhost).
 	 */
 	protected RedisRelationParser () throws Exception {
-		jedis = new Jedis("localhost");
-		MerkorLogger.configureLogger();
-		logger = Logger.getLogger(RedisRelationParser.class);
-		if (!RedisConnectionCheck.checkConnection(jedis)) {
-			Exception e = new Exception();
-			logger.error("Jedis connection for \"localhost\" failed!");
-			throw e;
-		}
-		itemParser = new RedisItemParser();
+		this(new RedisContext());
 	}
 	/*
 	 * Constructs a new parser using {@code host} and {@code port}
 	 * to instantiate the contained Jedis object.
 	 */
 	protected RedisRelationParser (final String host, final int port) throws Exception {
-		jedis = new Jedis(host, port);
-		MerkorLogger.configureLogger();
-		logger = Logger.getLogger(RedisRelationParser.class);
-		if (!RedisConnectionCheck.checkConnection(jedis)) {
-			Exception e = new Exception();
-			logger.error("Jedis connection for host " + host + " and port " + port + " failed!");
-			throw e;
-		}
-		itemParser = new RedisItemParser(host, port);
+		this(new RedisContext(host, port));
 	}
 	/*
 	 * Constructs a new parser using {@code jedis}.
 	 */
 	protected RedisRelationParser (final Jedis jedis) throws Exception {
-		this.jedis = jedis;
+		this(new RedisContext(jedis));
+	}
+	/*
+	 * Constructs a new parser using the connections of {@code context}.
+	 */
+	protected RedisRelationParser (final RedisContext context) {
 		MerkorLogger.configureLogger();
 		logger = Logger.getLogger(RedisRelationParser.class);
-		if (!RedisConnectionCheck.checkConnection(jedis)) {
-			Exception e = new Exception();
-			logger.error("Jedis connection with given Jedis object failed!");
-			throw e;
-		}
-		itemParser = new RedisItemParser(jedis);
-		
+		this.context = context;
+		itemParser = new RedisItemParser(context);
 	}
 	
 	/*
@@ -93,14 +115,64 @@ public class RedisRelationParser {
 	 * Therefore, in most cases, there will only be one element in the returned list.
 	 */
 	protected List<RelationObject> getRelationsFor (final String lemma) {
-		List<RelationObject> list = new ArrayList<RelationObject>();
-		List<? extends Item> itemList = itemParser.getItemsFor(lemma);
-		for (Item item : itemList) {
-			RelationObject relObj = createRelationObjectForItem(item);
-			if (null != relObj)
-				list.add(relObj);
+		// the relations of all items are read together instead of item by item
+		return getRelationsForLemmata(Collections.singletonList(lemma)).get(lemma);
+	}
+	/*
+	 * Returns the relationObjects for each lemma in lemmata, as getRelationsFor(String).
+	 * The items of all lemmata are read in one pipeline, the relation ids of all items 
+	 * without a cached relation list in a second one, and the relations of all these
+	 * items are materialized and cached together.
+	 */
+	protected Map<String, List<RelationObject>> getRelationsForLemmata (final Collection<String> lemmata) {
+		Map<String, List<RedisItem>> itemsByLemma = itemParser.getItemsForLemmata(lemmata);
+		Map<Long, List<Relation>> relationsByItem = new HashMap<Long, List<Relation>>();
+		List<Item> uncached = new ArrayList<Item>();
+		for (List<RedisItem> itemList : itemsByLemma.values()) {
+			for (Item item : itemList) {
+				List<Relation> cached = context.getRelationCache().get(item.getId());
+				if (null != cached)
+					relationsByItem.put(item.getId(), cached);
+				else if (!relationsByItem.containsKey(item.getId())) {
+					relationsByItem.put(item.getId(), null);
+					uncached.add(item);
+				}
+			}
 		}
-		return list;
+		if (useServerScript) {
+			for (Item item : uncached)
+				relationsByItem.put(item.getId(), getCachedRelationsFor(item));
+		} else if (!uncached.isEmpty()) {
+			long generation = context.getCacheGeneration();
+			List<Set<String>> relIds = readRelationIds(uncached);
+			Set<String> allRelIds = new LinkedHashSet<String>();
+			for (Set<String> ids : relIds)
+				allRelIds.addAll(ids);
+			Map<String, Relation> relMap = createRelationMap(allRelIds);
+			for (int i = 0; i < uncached.size(); i++) {
+				List<Relation> relations = new ArrayList<Relation>(relIds.get(i).size());
+				for (String relId : relIds.get(i)) {
+					Relation rel = relMap.get(relId);
+					if (null != rel)
+						relations.add(rel);
+				}
+				relations = Collections.unmodifiableList(relations);
+				context.cacheRelations(uncached.get(i).getId(), relations, generation);
+				relationsByItem.put(uncached.get(i).getId(), relations);
+			}
+		}
+		
+		Map<String, List<RelationObject>> result = new LinkedHashMap<String, List<RelationObject>>();
+		for (Map.Entry<String, List<RedisItem>> entry : itemsByLemma.entrySet()) {
+			List<RelationObject> list = new ArrayList<RelationObject>();
+			for (Item item : entry.getValue()) {
+				List<Relation> relations = relationsByItem.get(item.getId());
+				if (!relations.isEmpty())
+					list.add(new RelationObject(item, new ArrayList<Relation>(relations)));
+			}
+			result.put(entry.getKey(), list);
+		}
+		return result;
 	}
 	/*
 	 * Returns a list of relationObjects containing a relation between items
@@ -112,11 +184,30 @@ public class RedisRelationParser {
 		List<? extends Item> itemList1 = itemParser.getItemsFor(lemma1);
 		List<? extends Item> itemList2 = itemParser.getItemsFor(lemma2);
 		
+		// intersect the relation ids of all item pairs, then materialize only the common relations
+		List<Item> allItems = new ArrayList<Item>(itemList1);
+		allItems.addAll(itemList2);
+		List<Set<String>> relIds = readRelationIds(allItems);
+		List<Set<String>> commonIds = new ArrayList<Set<String>>();
+		Set<String> allCommonIds = new LinkedHashSet<String>();
+		for (int i = 0; i < itemList1.size(); i++) {
+			for (int j = 0; j < itemList2.size(); j++) {
+				Set<String> common = intersect(relIds.get(itemList1.size() + j), relIds.get(i));
+				commonIds.add(common);
+				allCommonIds.addAll(common);
+			}
+		}
+		Map<String, Relation> relMap = createRelationMap(allCommonIds);
+		
+		int pair = 0;
 		for (Item item1 : itemList1) {
-			List<? extends Relation> rels1 = getRelationsFor(item1);
 			for (Item item2 : itemList2) {
-				List<? extends Relation> rels2 = getRelationsFor(item2);
-				rels2.retainAll(rels1);
+				List<Relation> rels2 = new ArrayList<Relation>();
+				for (String relId : commonIds.get(pair++)) {
+					Relation rel = relMap.get(relId);
+					if (null != rel)
+						rels2.add(rel);
+				}
 				if (!rels2.isEmpty()) {
 					// to be able to show the item for the lemma with more than one
 					// item, this item is choosen as the item of the relationObject
@@ -135,64 +226,383 @@ public class RedisRelationParser {
 	 * with the most related words of the item.
 	 */
 	protected List<Relation> getRelationsFor (final Item item) {
-		Set<String> relIds = jedis.zrevrange(MerkorRedisConstants.SORTED_REL_SET_ID + MerkorRedisConstants.ID_KEY_PREFIX_IS + item.getId(), 0, -1);
-		List<Relation> relations = new ArrayList<Relation>();
+		return new ArrayList<Relation>(getCachedRelationsFor(item));
+	}
+	/*
+	 * Returns the unmodifiable relation list of item from the relation cache of the context,
+	 * materializing and caching it first if it is not cached. Concurrent calls for the same
+	 * uncached item share one read.
+	 */
+	private List<Relation> getCachedRelationsFor (final Item item) {
+		List<Relation> relations = context.getRelationCache().get(item.getId());
+		if (null != relations)
+			return relations;
+		return context.getRelationLoads().get(item.getId(), new Callable<List<Relation>>() {
+			public List<Relation> call () {
+				// another call may have cached the list since the lookup above
+				List<Relation> cached = context.getRelationCache().get(item.getId());
+				return null != cached ? cached : loadRelationsFor(item);
+			}
+		});
+	}
+	/*
+	 * Materializes the relation list of item and caches it.
+	 */
+	private List<Relation> loadRelationsFor (final Item item) {
+		List<Relation> relations;
+		long generation = context.getCacheGeneration();
+		if (useServerScript)
+			relations = getRelationsByScript(item, generation);
+		else {
+			Set<String> relIds = zrevrange(MerkorRedisConstants.SORTED_REL_SET_ID + MerkorRedisConstants.ID_KEY_PREFIX_IS + item.getId(), 0, -1);
+			relations = createRelations(relIds);
+		}
+		relations = Collections.unmodifiableList(relations);
+		context.cacheRelations(item.getId(), relations, generation);
+		return relations;
+	}
+	/*
+	 * Returns the relations of the cached relation list of item having a score of at least
+	 * minConfidence, without the first 'offset' and at most 'limit' relations, or null 
+	 * if the list is not cached.
+	 */
+	private List<Relation> getCachedRelationPage (final Item item, final double minConfidence, final int offset, final int limit) {
+		List<Relation> relations = context.getRelationCache().get(item.getId());
+		if (null == relations)
+			return null;
+		// the cached list is sorted by score descending: find the first relation below minConfidence
+		int low = 0;
+		int high = relations.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (relations.get(mid).getConfidence() >= minConfidence)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		int start = Math.min(offset, low);
+		return new ArrayList<Relation>(relations.subList(start, (int)Math.min((long)start + limit, low)));
+	}
+	/*
+	 * Switches the materialization of relation lists for single items between the 
+	 * client side pipelines (default) and the server side {@link RedisRelationScript}.
+	 * Returns the mode in use afterwards: if the server does not support scripting,
+	 * the client side is kept.
+	 */
+	protected synchronized boolean setUseServerScript (final boolean useScript) {
+		if (useScript && null == script) {
+			RedisRelationScript newScript = new RedisRelationScript(context);
+			try {
+				newScript.load();
+				script = newScript;
+			} catch (JedisException e) {
+				logger.warn("loading of relation script failed, using client side relation parsing! " + e.getMessage());
+				return false;
+			}
+		}
+		useServerScript = useScript;
+		return useServerScript;
+	}
+	/*
+	 * Returns the relations of item, collected and hydrated by {@link RedisRelationScript}
+	 * in one round-trip.
+	 */
+	private List<Relation> getRelationsByScript (final Item item, final long generation) {
+		List<String> fields = script.relationsFor(
+				MerkorRedisConstants.SORTED_REL_SET_ID + MerkorRedisConstants.ID_KEY_PREFIX_IS + item.getId());
+		int nrOfRelations = fields.size() / RedisRelationScript.FIELDS_PER_RELATION;
+		List<Relation> relations = new ArrayList<Relation>(nrOfRelations);
+		RedisRelationTypeRegistry types = context.getRelationTypes();
+		Map<String, RedisItem> itemMap = new HashMap<String, RedisItem>();
 		
-		for (String relId : relIds) {
-			Relation rel = createRelation(relId);
-			if (null != rel)
-				relations.add(rel);
+		for (int i = 0; i < fields.size(); i += RedisRelationScript.FIELDS_PER_RELATION) {
+			String relation = fields.get(i + 7);
+			RedisItem fromItem = getScriptItem(itemMap, fields.get(i + 1), fields.get(i + 2), fields.get(i + 3), generation);
+			RedisItem toItem = getScriptItem(itemMap, fields.get(i + 4), fields.get(i + 5), fields.get(i + 6), generation);
+			if (null == fromItem || null == toItem || null == relation || null == fields.get(i + 8)) {
+				logger.warn("parsing for relation '" + fields.get(i) + "' failed, null values!");
+				continue;
+			}
+			relations.add(createRelation(fields.get(i), fromItem, toItem, relation, fields.get(i + 8), types));
 		}
 		return relations;
 	}
+	private RedisItem getScriptItem (final Map<String, RedisItem> itemMap, final String key, final String lemma, 
+			final String wordclass, final long generation) {
+		// the script skips relations of items with missing fields, checked as in the client side parsing
+		if (null == key || null == lemma || null == wordclass)
+			return null;
+		RedisItem item = itemMap.get(key);
+		if (null == item) {
+			item = itemParser.cacheItem(context.createItem(parseId(key), lemma, wordclass), generation);
+			itemMap.put(key, item);
+		}
+		return item;
+	}
 	/*
 	 * Returns a list of relations containing 'nrOfWords' top relations for 
 	 * parameter item.
 	 */
 	protected List<Relation> getMostRelatedWords (final Item item, final int nrOfWords) {
-		List<Relation> relations = new ArrayList<Relation>();
-		int max = 1;
-		// counting in redis starts by zero
-		if (nrOfWords > 1)
-			max = nrOfWords - 1;
-		// get the reversed sorted set of relations for 'item'
-		Set<String> relIds = jedis.zrevrange(
-				MerkorRedisConstants.SORTED_REL_SET_ID + MerkorRedisConstants.ID_KEY_PREFIX_IS + item.getId(), 0, max);
-		
-		for (String relId : relIds) {
-			Relation rel = createRelation(relId);
-			if (null != rel)
-				relations.add(rel);
-		}
-		return relations;
+		return getRelationsFor(item, Double.NEGATIVE_INFINITY, 0, nrOfWords);
 	}
 	/*
 	 * Returns a list of relationObjects, each containing the 'nrOfWords' most related
 	 * relations for the corresponding item of parameter lemma.
 	 */
 	protected List<RelationObject> getMostRelatedWords (final String lemma, final int nrOfWords) {
+		return getRelationsFor(lemma, Double.NEGATIVE_INFINITY, 0, nrOfWords);
+	}
+	/*
+	 * Returns the relations of parameter item having a score of at least minConfidence, 
+	 * sorted by score descending, without the first 'offset' and at most 'limit' relations.
+	 */
+	protected List<Relation> getRelationsFor (final Item item, final double minConfidence, final int offset, final int limit) {
+		// a cached relation list contains all relations
+		List<Relation> cached = getCachedRelationPage(item, minConfidence, offset, limit);
+		if (null != cached)
+			return cached;
+		Set<String> relIds;
+		Jedis jedis = context.getResource();
+		try {
+			relIds = jedis.zrevrangeByScore(
+					MerkorRedisConstants.SORTED_REL_SET_ID + MerkorRedisConstants.ID_KEY_PREFIX_IS + item.getId(), 
+					Double.POSITIVE_INFINITY, minConfidence, offset, limit);
+		} catch (JedisConnectionException e) {
+			context.returnBrokenResource(jedis);
+			throw e;
+		} finally {
+			context.returnResource(jedis);
+		}
+		return createRelations(relIds);
+	}
+	/*
+	 * Returns a list of relationObjects, each containing a page of the relations for the
+	 * corresponding item of parameter lemma, as getRelationsFor(Item, double, int, int).
+	 */
+	protected List<RelationObject> getRelationsFor (final String lemma, final double minConfidence, final int offset, final int limit) {
 		List<RelationObject> resultObjects = new ArrayList<RelationObject>();
 		List<RedisItem> itemList = (List<RedisItem>)itemParser.getItemsFor(lemma);
+		// take the pages of items with a cached relation list from the cache ...
+		List<List<Relation>> cachedRels = new ArrayList<List<Relation>>(itemList.size());
+		for (Item item : itemList)
+			cachedRels.add(getCachedRelationPage(item, minConfidence, offset, limit));
+		// ... get the relation ids on the pages of all other items in one pipeline ...
+		List<Response<Set<String>>> responses = new ArrayList<Response<Set<String>>>(itemList.size());
+		Jedis jedis = context.getResource();
+		try {
+			Pipeline pipeline = jedis.pipelined();
+			for (int i = 0; i < itemList.size(); i++) {
+				if (null != cachedRels.get(i))
+					responses.add(null);
+				else
+					responses.add(pipeline.zrevrangeByScore(
+							MerkorRedisConstants.SORTED_REL_SET_ID + MerkorRedisConstants.ID_KEY_PREFIX_IS + itemList.get(i).getId(), 
+							Double.POSITIVE_INFINITY, minConfidence, offset, limit));
+			}
+			pipeline.sync();
+		} catch (JedisConnectionException e) {
+			context.returnBrokenResource(jedis);
+			throw e;
+		} finally {
+			context.returnResource(jedis);
+		}
+		// ... and materialize the relations of all items together
+		Set<String> allRelIds = new LinkedHashSet<String>();
+		for (Response<Set<String>> response : responses) {
+			if (null != response)
+				allRelIds.addAll(response.get());
+		}
+		Map<String, Relation> relMap = createRelationMap(allRelIds);
 		
-		for (Item item : itemList) {
-			List<Relation> rels = getMostRelatedWords(item, nrOfWords);
+		for (int i = 0; i < itemList.size(); i++) {
+			List<Relation> rels = cachedRels.get(i);
+			if (null == rels) {
+				rels = new ArrayList<Relation>();
+				for (String relId : responses.get(i).get()) {
+					Relation rel = relMap.get(relId);
+					if (null != rel)
+						rels.add(rel);
+				}
+			}
 			if (!rels.isEmpty()) {
-				RelationObject relObj = new RelationObject(item, rels);
+				RelationObject relObj = new RelationObject(itemList.get(i), rels);
 				resultObjects.add(relObj);
 			}
 		}
 		return resultObjects;
 	}
+	/*
+	 * Returns relation records for the relations of the item having itemId, selected as by 
+	 * getRelationsFor(Item, double, int, int). The ids and scores are read from the sorted 
+	 * relation set and the item keys and relation fields from the relation hashes, one round 
+	 * trip each, no items are read.
+	 */
+	protected List<RelationRecord> getRelationRecordsFor (final Long itemId, final double minConfidence, final int offset, final int limit) {
+		List<RelationRecord> records = new ArrayList<RelationRecord>();
+		List<Tuple> tuples;
+		List<Response<List<String>>> responses;
+		Jedis jedis = context.getResource();
+		try {
+			tuples = new ArrayList<Tuple>(jedis.zrevrangeByScoreWithScores(
+					MerkorRedisConstants.SORTED_REL_SET_ID + MerkorRedisConstants.ID_KEY_PREFIX_IS + itemId, 
+					Double.POSITIVE_INFINITY, minConfidence, offset, limit));
+			responses = new ArrayList<Response<List<String>>>(tuples.size());
+			if (!tuples.isEmpty()) {
+				Pipeline pipeline = jedis.pipelined();
+				for (Tuple tuple : tuples)
+					responses.add(pipeline.hmget(tuple.getElement(), RECORD_FIELDS));
+				pipeline.sync();
+			}
+		} catch (JedisConnectionException e) {
+			context.returnBrokenResource(jedis);
+			throw e;
+		} finally {
+			context.returnResource(jedis);
+		}
+		RedisRelationTypeRegistry types = context.getRelationTypes();
+		for (int i = 0; i < tuples.size(); i++) {
+			List<String> fields = responses.get(i).get();
+			String relKey = tuples.get(i).getElement();
+			if (null == fields.get(0) || null == fields.get(1) || null == fields.get(2)) {
+				logger.warn("parsing for relation '" + relKey + "' failed, null values!");
+				continue;
+			}
+			String relation = fields.get(2);
+			// a shared type depends on the left item, it is read by the resolver
+			RelationType type = null;
+			if (!types.isShared(relation))
+				type = recordResolver.getType(relation, null);
+			records.add(new RelationRecord(parseId(relKey), parseId(fields.get(0)), parseId(fields.get(1)), 
+					tuples.get(i).getScore(), relation, type, recordResolver));
+		}
+		return records;
+	}
+	/*
+	 * Returns an iterator over the relations of parameter item having a score of at least
+	 * minConfidence, sorted by score descending, reading chunks of chunkSize relations.
+	 * A cached relation list is iterated directly.
+	 */
+	protected Iterator<Relation> iterateRelationsFor (final Item item, final double minConfidence, final int chunkSize) {
+		List<Relation> cached = getCachedRelationPage(item, minConfidence, 0, Integer.MAX_VALUE);
+		if (null != cached)
+			return Collections.unmodifiableList(cached).iterator();
+		return new RelationChunkIterator(
+				MerkorRedisConstants.SORTED_REL_SET_ID + MerkorRedisConstants.ID_KEY_PREFIX_IS + item.getId(), 
+				minConfidence, chunkSize);
+	}
+	/*
+	 * Returns the 'nrOfWords' relations with the highest scores among the relations of all
+	 * items of parameter lemma, sorted by score descending (equal scores of different items
+	 * by ascending item id). The sorted relation sets of the items are read page by page and merged with
+	 * a heap holding one cursor per item: the first pages of all items are read in one 
+	 * pipeline, a cursor running out of relations reads its next, twice as large page.
+	 * Reading stops as soon as nrOfWords relations are taken, and only these are materialized.
+	 * Cached relation lists are merged without reading Redis.
+	 */
+	protected List<Relation> getGlobalMostRelatedWords (final String lemma, final int nrOfWords) {
+		List<? extends Item> itemList = itemParser.getItemsFor(lemma);
+		if (itemList.isEmpty())
+			return new ArrayList<Relation>();
+		int pageSize = (nrOfWords + itemList.size() - 1) / itemList.size();
+		List<RelationCursor> cursors = new ArrayList<RelationCursor>(itemList.size());
+		List<RelationCursor> uncached = new ArrayList<RelationCursor>();
+		for (Item item : itemList) {
+			RelationCursor cursor = new RelationCursor(item.getId(), pageSize, 
+					MerkorRedisConstants.SORTED_REL_SET_ID + MerkorRedisConstants.ID_KEY_PREFIX_IS + item.getId(),
+					context.getRelationCache().get(item.getId()));
+			cursors.add(cursor);
+			if (!cursor.exhausted)
+				uncached.add(cursor);
+		}
+		readPages(uncached);
+		
+		PriorityQueue<RelationCursor> heap = new PriorityQueue<RelationCursor>(cursors.size(), RelationCursor.BY_HEAD);
+		for (RelationCursor cursor : cursors) {
+			if (cursor.hasHead())
+				heap.add(cursor);
+		}
+		// relation keys in result order, with the relation if it was cached
+		Map<String, Relation> winners = new LinkedHashMap<String, Relation>();
+		while (winners.size() < nrOfWords && !heap.isEmpty()) {
+			RelationCursor cursor = heap.poll();
+			String relId = cursor.keys.get(cursor.position);
+			// a relation between two items of lemma is contained in both of their sets
+			if (!winners.containsKey(relId))
+				winners.put(relId, null == cursor.relations ? null : cursor.relations.get(cursor.position));
+			cursor.position++;
+			if (!cursor.hasHead() && !cursor.exhausted && winners.size() < nrOfWords)
+				readPages(Collections.singletonList(cursor));
+			if (cursor.hasHead())
+				heap.add(cursor);
+		}
+		
+		List<String> missing = new ArrayList<String>();
+		for (Map.Entry<String, Relation> entry : winners.entrySet()) {
+			if (null == entry.getValue())
+				missing.add(entry.getKey());
+		}
+		Map<String, Relation> relMap = createRelationMap(missing);
+		List<Relation> relations = new ArrayList<Relation>(winners.size());
+		for (Map.Entry<String, Relation> entry : winners.entrySet()) {
+			Relation rel = null == entry.getValue() ? relMap.get(entry.getKey()) : entry.getValue();
+			if (null != rel)
+				relations.add(rel);
+		}
+		return relations;
+	}
+	/*
+	 * Reads the next page of relation ids and scores of all cursors in one pipeline.
+	 */
+	private void readPages (final List<RelationCursor> cursors) {
+		if (cursors.isEmpty())
+			return;
+		List<Response<Set<Tuple>>> responses = new ArrayList<Response<Set<Tuple>>>(cursors.size());
+		Jedis jedis = context.getResource();
+		try {
+			Pipeline pipeline = jedis.pipelined();
+			for (RelationCursor cursor : cursors)
+				responses.add(pipeline.zrevrangeWithScores(cursor.setKey, cursor.keys.size(), cursor.keys.size() + cursor.pageSize - 1));
+			pipeline.sync();
+		} catch (JedisConnectionException e) {
+			context.returnBrokenResource(jedis);
+			throw e;
+		} finally {
+			context.returnResource(jedis);
+		}
+		for (int i = 0; i < cursors.size(); i++) {
+			RelationCursor cursor = cursors.get(i);
+			Set<Tuple> page = responses.get(i).get();
+			for (Tuple tuple : page) {
+				cursor.keys.add(tuple.getElement());
+				cursor.scores.add(tuple.getScore());
+			}
+			cursor.exhausted = page.size() < cursor.pageSize;
+			cursor.pageSize *= 2;
+		}
+	}
 	/*
 	 * Returns a list of relations (should only be one!) containing
 	 * item1 and item2.
 	 */
 	protected List<Relation> getRelationsFor (final Item item1, final Item item2) {
-		List<Relation> rels1 = getRelationsFor(item1);
-		List<Relation> rels2 = getRelationsFor(item2);
-		rels1.retainAll(rels2);
-		
-		return rels1;
+		List<Relation> cached1 = context.getRelationCache().get(item1.getId());
+		List<Relation> cached2 = context.getRelationCache().get(item2.getId());
+		if (null != cached1 && null != cached2) {
+			// intersect by relation id, as for uncached items, keeping the order of item1
+			Set<Long> relIds2 = new HashSet<Long>(cached2.size());
+			for (Relation rel : cached2)
+				relIds2.add(rel.getId());
+			List<Relation> common = new ArrayList<Relation>();
+			for (Relation rel : cached1) {
+				if (relIds2.contains(rel.getId()))
+					common.add(rel);
+			}
+			return common;
+		}
+		// intersect the relation ids and materialize only the common relations
+		List<Set<String>> relIds = readRelationIds(Arrays.asList(item1, item2));
+		return createRelations(intersect(relIds.get(0), relIds.get(1)));
 	}
 	/*
 	 * Returns a list of relationObjects, each containing an item for parameter lemma and 
@@ -219,65 +629,186 @@ public class RedisRelationParser {
 	 * Returns a list of 'nrOfRels' relations of the certain type 'type'
 	 */
 	protected List<Relation> getMostRelated (final RelationType type, final int nrOfRels) {
-		List<Relation> relations = new ArrayList<Relation>();
-		int max = 1;
-		if (nrOfRels > 1)
-			max = nrOfRels - 1;
-		Set<String> relIds = jedis.zrevrange(MerkorRedisConstants.REL_TYPE_TOP_RELATIONS + type.getId(), 0, max);
+		// counting in redis starts by zero
+		Set<String> relIds = zrevrange(MerkorRedisConstants.REL_TYPE_TOP_RELATIONS + type.getId(), 0, nrOfRels - 1);
+		return createRelations(relIds);
+	}
+	
+	/*
+	 * Materializes the relations for all keys in relIds, keeping their order.
+	 * Relations that cannot be parsed are left out.
+	 */
+	private List<Relation> createRelations (final Collection<String> relIds) {
+		Map<String, Relation> relMap = createRelationMap(relIds);
+		List<Relation> relations = new ArrayList<Relation>(relMap.size());
 		for (String relId : relIds) {
-			Relation rel = createRelation(relId);
+			Relation rel = relMap.get(relId);
 			if (null != rel)
 				relations.add(rel);
 		}
 		return relations;
 	}
-	
-	private RelationObject createRelationObjectForItem (final Item item) {
-		if (getRelationsFor(item).size() > 0)
-			return new RelationObject(item, getRelationsFor(item));
-		else
-			return null;
-	}
-	
-	private Relation createRelation (final String relId) {
-		// parse
-		String fromString = jedis.hget(relId, "from_item");
-		String toString = jedis.hget(relId, "to_item");
-		String relation = jedis.hget(relId, "relation");
-		if (null == relation || null == fromString || null == toString) {
-			logger.warn("parsing for relation '" + relId + "' failed, null values!");
-			return null;
+	/*
+	 * Materializes the relations for all keys in relIds with a fixed number of
+	 * round-trips, regardless of the number of relations: the relation hashes are
+	 * read in one pipeline, then the deduplicated set of referenced items is hydrated 
+	 * in one batch. The relation types are taken from the relation type registry of the context.
+	 * Returns a map of relation key -> relation.
+	 */
+	private Map<String, Relation> createRelationMap (final Collection<String> relIds) {
+		Map<String, Relation> relMap = new HashMap<String, Relation>();
+		List<String> keys = new ArrayList<String>(relIds);
+		List<List<String>> relFields = new ArrayList<List<String>>(keys.size());
+		
+		// 1) relation hashes
+		Jedis jedis = context.getResource();
+		try {
+			for (int start = 0; start < keys.size(); start += RedisItemParser.PIPELINE_BATCH_SIZE) {
+				List<String> batch = keys.subList(start, Math.min(start + RedisItemParser.PIPELINE_BATCH_SIZE, keys.size()));
+				List<Response<List<String>>> responses = new ArrayList<Response<List<String>>>(batch.size());
+				Pipeline pipeline = jedis.pipelined();
+				for (String relId : batch)
+					responses.add(pipeline.hmget(relId, RELATION_FIELDS));
+				pipeline.sync();
+				for (Response<List<String>> response : responses)
+					relFields.add(response.get());
+			}
+		} catch (JedisConnectionException e) {
+			context.returnBrokenResource(jedis);
+			throw e;
+		} finally {
+			context.returnResource(jedis);
 		}
-		Double confidence = Double.parseDouble(jedis.hget(relId, "score"));
-		// create RedisPair
-		RedisItem fromItem = itemParser.createRedisItemFromIdKey(fromString);
-		RedisItem toItem = itemParser.createRedisItemFromIdKey(toString);
-		RedisPair pair = new RedisPair(fromItem, toItem);
-		// create relationType
-		Long typeId = getTypeId(relation, fromItem);
-		RelationType type = new RedisRelationType(typeId, relation, relation);
+		// 2) referenced items
+		Set<String> itemKeys = new LinkedHashSet<String>();
+		for (int i = 0; i < keys.size(); i++) {
+			List<String> fields = relFields.get(i);
+			if (null == fields.get(0) || null == fields.get(1) || null == fields.get(2) || null == fields.get(3)) {
+				logger.warn("parsing for relation '" + keys.get(i) + "' failed, null values!");
+				relFields.set(i, null);
+				continue;
+			}
+			itemKeys.add(fields.get(0));
+			itemKeys.add(fields.get(1));
+		}
+		Map<String, RedisItem> itemMap = new HashMap<String, RedisItem>();
+		for (RedisItem item : itemParser.createRedisItemsFromIdKeys(itemKeys))
+			itemMap.put(itemParser.getRedisKeyForItem(item), item);
+		RedisRelationTypeRegistry types = context.getRelationTypes();
 		
-		return new RedisRelation(pair, type, confidence);
+		// 3) create relations
+		for (int i = 0; i < keys.size(); i++) {
+			List<String> fields = relFields.get(i);
+			if (null == fields)
+				continue;
+			RedisItem fromItem = itemMap.get(fields.get(0));
+			RedisItem toItem = itemMap.get(fields.get(1));
+			if (null == fromItem || null == toItem) {
+				logger.warn("parsing for relation '" + keys.get(i) + "' failed, items not found!");
+				continue;
+			}
+			relMap.put(keys.get(i), createRelation(keys.get(i), fromItem, toItem, fields.get(2), fields.get(3), types));
+		}
+		return relMap;
+	}
+	private Relation createRelation (final String relKey, final RedisItem fromItem, final RedisItem toItem, 
+			final String relation, final String score, final RedisRelationTypeRegistry types) {
+		Double confidence = Double.parseDouble(score);
+		RedisPair pair = new RedisPair(fromItem, toItem);
+		// shared type instances, unknown relation types have the id 0
+		RelationType type = types.getRelationType(relation, fromItem.getWordclass());
+		if (null == type)
+			type = new RedisRelationType(0L, relation, relation);
 		
+		return new RedisRelation(parseId(relKey), pair, type, confidence);
 	}
-	private Long getTypeId (final String relation, final Item item) {
-		Long id = 0L;
-		// both coord_noun (id 7) and coord_adj (id 8) have
-		// the description "og"
-		if (relation.equals("og")) {
-			if (item.getWordclass().equals("noun"))
-				id = 7L;
-			else
-				id = 8L;
+	/*
+	 * Returns the numeric id at the end of an item or relation key, or 0 if there is none.
+	 */
+	private Long parseId (final String key) {
+		try {
+			return Long.parseLong(key.substring(key.lastIndexOf('_') + 1));
+		} catch (NumberFormatException e) {
+			logger.warn(key + " does not end with an id, parsing failed!");
+			return 0L;
 		}
-		else {
-			try {
-				id = Long.parseLong(jedis.get(MerkorRedisConstants.REL_TYPE_PREFIX + relation));
-			} catch (NumberFormatException e) {
-				logger.warn(e.getMessage());
-			}
+	}
+	/*
+	 * Reads the relation ids of the sorted relation sets of all items in one round-trip,
+	 * each sorted by score descending.
+	 */
+	private List<Set<String>> readRelationIds (final List<? extends Item> items) {
+		List<Response<Set<String>>> responses = new ArrayList<Response<Set<String>>>(items.size());
+		Jedis jedis = context.getResource();
+		try {
+			Pipeline pipeline = jedis.pipelined();
+			for (Item item : items)
+				responses.add(pipeline.zrevrange(
+						MerkorRedisConstants.SORTED_REL_SET_ID + MerkorRedisConstants.ID_KEY_PREFIX_IS + item.getId(), 0, -1));
+			pipeline.sync();
+		} catch (JedisConnectionException e) {
+			context.returnBrokenResource(jedis);
+			throw e;
+		} finally {
+			context.returnResource(jedis);
+		}
+		List<Set<String>> relIds = new ArrayList<Set<String>>(items.size());
+		for (Response<Set<String>> response : responses)
+			relIds.add(response.get());
+		return relIds;
+	}
+	/*
+	 * Returns the ids of ordered that are contained in other, keeping the order of ordered.
+	 */
+	private static Set<String> intersect (final Set<String> ordered, final Set<String> other) {
+		Set<String> common = new LinkedHashSet<String>();
+		for (String relId : ordered) {
+			if (other.contains(relId))
+				common.add(relId);
+		}
+		return common;
+	}
+	/*
+	 * Reads the one-sided relation sets of type and side (see RedisIndexBuilder) of all items 
+	 * in one round-trip. Returns the relation ids of each item, sorted by score descending,
+	 * or null if the one-sided relation sets have not been built or are out of date 
+	 * (see RedisCacheInvalidator).
+	 */
+	private List<Set<String>> readSideRelationSets (final List<? extends Item> items, final RelationType type, final String side) {
+		if (context.isSideRelationsStale())
+			return null;
+		Response<Boolean> indexed;
+		List<Response<Set<String>>> responses = new ArrayList<Response<Set<String>>>(items.size());
+		Jedis jedis = context.getResource();
+		try {
+			Pipeline pipeline = jedis.pipelined();
+			indexed = pipeline.exists(MerkorRedisConstants.INDEX_SIDE_RELATIONS);
+			for (Item item : items)
+				responses.add(pipeline.zrevrange(RedisKeyIndex.sideRelationKey(item.getId().toString(), type.getId(), side), 0, -1));
+			pipeline.sync();
+		} catch (JedisConnectionException e) {
+			context.returnBrokenResource(jedis);
+			throw e;
+		} finally {
+			context.returnResource(jedis);
+		}
+		if (!indexed.get())
+			return null;
+		List<Set<String>> relIds = new ArrayList<Set<String>>(items.size());
+		for (Response<Set<String>> response : responses)
+			relIds.add(response.get());
+		return relIds;
+	}
+	private Set<String> zrevrange (final String key, final int start, final int end) {
+		Jedis jedis = context.getResource();
+		try {
+			return jedis.zrevrange(key, start, end);
+		} catch (JedisConnectionException e) {
+			context.returnBrokenResource(jedis);
+			throw e;
+		} finally {
+			context.returnResource(jedis);
 		}
-		return id;
 	}
 	/*
 	 * Returns a list of relationObjects, each containing an item for parameter lemma and 
@@ -286,22 +817,30 @@ public class RedisRelationParser {
 	 */
 	private List<RelationObject> getOneSidedRelations (final String lemma, final RelationType type, final String side) {
 		List<RelationObject> resultObjects = new ArrayList<RelationObject>();
-		List<RelationObject> relObjects = getRelationsFor (lemma);
-		
-		for (RelationObject relObj : relObjects) {
-			List<Relation> relations = new ArrayList<Relation>();
-			for (Relation rel : relObj.getRelation()) {
-				if (side.equals("LEFT")) {
-					//compare 'from'
-					if (rel.getPair().getFrom().getLemma().equals(lemma) && rel.getType().getId().equals(type.getId()))
-						relations.add(rel);
-				}
-				else {
-					//compare 'to'
-					if (rel.getPair().getTo().getLemma().equals(lemma) && rel.getType().getId().equals(type.getId()))
+		List<? extends Item> itemList = itemParser.getItemsFor(lemma);
+		List<Set<String>> indexedIds = readSideRelationSets(itemList, type, side);
+		if (null != indexedIds) {
+			Set<String> allRelIds = new LinkedHashSet<String>();
+			for (Set<String> relIds : indexedIds)
+				allRelIds.addAll(relIds);
+			Map<String, Relation> relMap = createRelationMap(allRelIds);
+			for (int i = 0; i < itemList.size(); i++) {
+				List<Relation> relations = new ArrayList<Relation>();
+				for (String relId : indexedIds.get(i)) {
+					Relation rel = relMap.get(relId);
+					if (null != rel)
 						relations.add(rel);
 				}
+				if (!relations.isEmpty())
+					resultObjects.add(new RelationObject(itemList.get(i), relations));
 			}
+			return resultObjects;
+		}
+		
+		List<RelationObject> relObjects = getRelationsFor (lemma);
+		
+		for (RelationObject relObj : relObjects) {
+			List<Relation> relations = filterOneSided(relObj.getRelation(), relObj.getItem(), type, side);
 			if (!relations.isEmpty())
 				resultObjects.add(new RelationObject(relObj.getItem(), relations));
 		}
@@ -313,20 +852,175 @@ public class RedisRelationParser {
 	 * and the relationType is 'type'.
 	 */
 	private List<Relation> getOneSidedRelations (final Item item, final RelationType type, final String side) {
-		List<Relation> relList = getRelationsFor(item);
+		// a cached relation list is filtered, otherwise only the relations of the one-sided set are read
+		if (null == context.getRelationCache().get(item.getId())) {
+			List<Set<String>> indexedIds = readSideRelationSets(Collections.singletonList(item), type, side);
+			if (null != indexedIds)
+				return createRelations(indexedIds.get(0));
+		}
+		return filterOneSided(getCachedRelationsFor(item), item, type, side);
+	}
+	/*
+	 * Returns the relations of relList having 'item' as their left or right element (depending
+	 * on 'side') and the relationType 'type'. Items are matched by identity, not by lemma, 
+	 * as in the one-sided relation sets built by RedisIndexBuilder.
+	 */
+	private List<Relation> filterOneSided (final List<? extends Relation> relList, final Item item, final RelationType type, final String side) {
 		List<Relation> relations = new ArrayList<Relation>();
 		for (Relation rel : relList) {
-			if (side.equals("LEFT")) {
-				//compare 'from' item and type
-				if (rel.getPair().getFrom().equals(item) && rel.getType().getId().equals(type.getId()))
-					relations.add(rel);
-			}
-			else {
-				//compare 'to' item and type
-				if (rel.getPair().getTo().equals(item) && rel.getType().getId().equals(type.getId()))
-					relations.add(rel);
-			}	
+			Item element = side.equals("LEFT") ? rel.getPair().getFrom() : rel.getPair().getTo();
+			if (element.equals(item) && rel.getType().getId().equals(type.getId()))
+				relations.add(rel);
 		}
 		return relations;
-	}	
+	}
+	
+	/*
+	 * The relation ids and scores of one item read so far, for the merge in 
+	 * getGlobalMostRelatedWords(). A cached relation list is read completely.
+	 */
+	private static class RelationCursor {
+		// by score descending, then by item id
+		static final Comparator<RelationCursor> BY_HEAD = new Comparator<RelationCursor>() {
+			public int compare (final RelationCursor c1, final RelationCursor c2) {
+				int result = c2.scores.get(c2.position).compareTo(c1.scores.get(c1.position));
+				return result != 0 ? result : c1.itemId.compareTo(c2.itemId);
+			}
+		};
+		
+		final Long itemId;
+		final String setKey;
+		final List<String> keys = new ArrayList<String>();
+		final List<Double> scores = new ArrayList<Double>();
+		// the cached relations, null if the relations are read from Redis
+		final List<Relation> relations;
+		int pageSize;
+		int position = 0;
+		boolean exhausted = false;
+		
+		RelationCursor (final Long itemId, final int pageSize, final String setKey, final List<Relation> cached) {
+			this.itemId = itemId;
+			this.pageSize = pageSize;
+			this.setKey = setKey;
+			relations = cached;
+			if (null != cached) {
+				for (Relation rel : cached) {
+					keys.add(MerkorRedisConstants.REL_ID_PREFIX_IS + rel.getId());
+					scores.add(rel.getConfidence());
+				}
+				exhausted = true;
+			}
+		}
+		boolean hasHead () {
+			return position < keys.size();
+		}
+	}
+	
+	/*
+	 * Iterates over the relations of a sorted relation set in chunks. A chunk is read by rank
+	 * with the scores (ZREVRANGE ... WITHSCORES), so each chunk costs O(log(N) + chunkSize) 
+	 * however deep the iteration goes, and ends at the first score below minConfidence.
+	 * The first chunk is read at once. While the relations of a chunk are handed out, the 
+	 * next chunk is read and materialized on the executor of the context, and handed out 
+	 * relations are released, so at most two chunks are held at a time.
+	 */
+	private class RelationChunkIterator implements Iterator<Relation> {
+		private final String setKey;
+		private final double minConfidence;
+		private final int chunkSize;
+		private List<Relation> chunk;
+		private int position;
+		// the next chunk, null after the last chunk
+		private Future<RelationChunk> next;
+		
+		RelationChunkIterator (final String setKey, final double minConfidence, final int chunkSize) {
+			this.setKey = setKey;
+			this.minConfidence = minConfidence;
+			this.chunkSize = chunkSize;
+			setChunk(readChunk(0));
+		}
+		
+		public boolean hasNext () {
+			while (position >= chunk.size()) {
+				if (null == next)
+					return false;
+				setChunk(await(next));
+			}
+			return true;
+		}
+		public Relation next () {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			Relation rel = chunk.get(position);
+			chunk.set(position++, null);
+			return rel;
+		}
+		public void remove () {
+			throw new UnsupportedOperationException();
+		}
+		
+		private void setChunk (final RelationChunk current) {
+			chunk = current.relations;
+			position = 0;
+			if (current.last) {
+				next = null;
+			} else {
+				final int start = current.end;
+				next = context.getExecutor().submit(new Callable<RelationChunk>() {
+					public RelationChunk call () {
+						return readChunk(start);
+					}
+				});
+			}
+		}
+		private RelationChunk readChunk (final int start) {
+			Set<Tuple> tuples;
+			Jedis jedis = context.getResource();
+			try {
+				tuples = jedis.zrevrangeWithScores(setKey, start, start + chunkSize - 1);
+			} catch (JedisConnectionException e) {
+				context.returnBrokenResource(jedis);
+				throw e;
+			} finally {
+				context.returnResource(jedis);
+			}
+			boolean last = tuples.size() < chunkSize;
+			List<String> relIds = new ArrayList<String>(tuples.size());
+			for (Tuple tuple : tuples) {
+				if (tuple.getScore() < minConfidence) {
+					last = true;
+					break;
+				}
+				relIds.add(tuple.getElement());
+			}
+			return new RelationChunk(createRelations(relIds), start + chunkSize, last);
+		}
+		private RelationChunk await (final Future<RelationChunk> future) {
+			try {
+				return future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new JedisException("interrupted while reading relations of " + setKey, e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException)
+					throw (RuntimeException)e.getCause();
+				throw new JedisException("reading relations of " + setKey + " failed", e.getCause());
+			}
+		}
+	}
+	/*
+	 * The materialized relations of one chunk, the rank following the chunk and whether 
+	 * it is the last chunk.
+	 */
+	private static class RelationChunk {
+		final List<Relation> relations;
+		final int end;
+		final boolean last;
+		
+		RelationChunk (final List<Relation> relations, final int end, final boolean last) {
+			this.relations = relations;
+			this.end = end;
+			this.last = last;
+		}
+	}
 }
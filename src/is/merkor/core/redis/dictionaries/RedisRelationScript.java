@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.redis.dictionaries;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.util.SafeEncoder;
+
+/**
+ * A Lua script collecting all relations of a lexical item on the Redis server.
+ * The script walks the sorted relation set of the item, reads each relation hash and
+ * the hashes of the referenced items, and returns
+ * everything as one flat reply, so a fully hydrated relation list costs one round-trip.
+ * <p>
+ * The script is loaded once with SCRIPT LOAD and invoked with EVALSHA (Redis 2.6 or newer).
+ * The reply contains {@link #FIELDS_PER_RELATION} strings for each relation, in the order:
+ * relation key, from key, from lemma, from wordclass, to key, to lemma, to wordclass,
+ * relation name, score. The relation types are resolved by the client, see
+ * {@link RedisRelationTypeRegistry}.
+ *
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public class RedisRelationScript {
+
+	public static final int FIELDS_PER_RELATION = 9;
+
+	private static final String SCRIPT =
+		"local relIds = redis.call('ZREVRANGE', KEYS[1], 0, -1)\n" +
+		"local items = {}\n" +
+		"local result = {}\n" +
+		"local function item (key)\n" +
+		"  local it = items[key]\n" +
+		"  if it == nil then\n" +
+		"    it = redis.call('HMGET', key, 'lemma', 'wordclass')\n" +
+		"    items[key] = it\n" +
+		"  end\n" +
+		"  return it\n" +
+		"end\n" +
+		"for _, relId in ipairs(relIds) do\n" +
+		"  local rel = redis.call('HMGET', relId, 'from_item', 'to_item', 'relation', 'score')\n" +
+		"  if rel[1] and rel[2] and rel[3] and rel[4] then\n" +
+		"    local from = item(rel[1])\n" +
+		"    local to = item(rel[2])\n" +
+		"    if from[1] and from[2] and to[1] and to[2] then\n" +
+		"      local n = #result\n" +
+		"      result[n + 1] = relId\n" +
+		"      result[n + 2] = rel[1]\n" +
+		"      result[n + 3] = from[1]\n" +
+		"      result[n + 4] = from[2]\n" +
+		"      result[n + 5] = rel[2]\n" +
+		"      result[n + 6] = to[1]\n" +
+		"      result[n + 7] = to[2]\n" +
+		"      result[n + 8] = rel[3]\n" +
+		"      result[n + 9] = rel[4]\n" +
+		"    end\n" +
+		"  end\n" +
+		"end\n" +
+		"return result\n";
+
+	private final RedisContext context;
+	private String sha;
+
+	/*
+	 * Constructs a new script using the connections of {@code context} for SCRIPT LOAD 
+	 * and EVALSHA. The script is loaded on the first call of load() or relationsFor().
+	 */
+	protected RedisRelationScript (final RedisContext context) {
+		this.context = context;
+	}
+
+	/*
+	 * Loads the script into the script cache of the server.
+	 *
+	 * @throws JedisDataException if the server does not support scripting
+	 */
+	protected synchronized void load () {
+		sha = SafeEncoder.encode((byte[])sendCommand("SCRIPT", "LOAD", SCRIPT));
+	}
+
+	/*
+	 * Returns the flat reply of the script for the sorted relation set {@code sortedRelSetKey}.
+	 * If the script has been flushed from the server's script cache, it is loaded again.
+	 */
+	protected List<String> relationsFor (final String sortedRelSetKey) {
+		String currentSha;
+		synchronized (this) {
+			if (null == sha)
+				load();
+			currentSha = sha;
+		}
+		Object reply;
+		try {
+			reply = sendCommand("EVALSHA", currentSha, "1", sortedRelSetKey);
+		} catch (JedisDataException e) {
+			if (null == e.getMessage() || !e.getMessage().startsWith("NOSCRIPT"))
+				throw e;
+			load();
+			reply = sendCommand("EVALSHA", sha, "1", sortedRelSetKey);
+		}
+		List<?> replyList = (List<?>)reply;
+		List<String> fields = new ArrayList<String>(replyList.size());
+		for (Object field : replyList)
+			fields.add(SafeEncoder.encode((byte[])field));
+		return fields;
+	}
+
+	private Object sendCommand (final String... args) {
+		RedisCommandChannel channel = context.getChannel();
+		try {
+			return channel.sendCommand(args);
+		} catch (JedisConnectionException e) {
+			context.returnBrokenChannel(channel);
+			throw e;
+		} finally {
+			context.returnChannel(channel);
+		}
+	}
+}
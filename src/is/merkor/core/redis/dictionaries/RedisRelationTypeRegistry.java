@@ -0,0 +1,260 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.redis.dictionaries;
+
+import is.merkor.core.RelationType;
+import is.merkor.core.redis.data.RedisRelationType;
+import is.merkor.core.util.FileCommunicatorReading;
+import is.merkor.core.util.MerkorLogger;
+import is.merkor.core.util.Wordclass;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+/**
+ * An immutable registry of all relation types, loaded once from Redis or from the
+ * relation type file (merkor_relationTypes.csv), providing lookups by id, name and
+ * description and shared {@link RedisRelationType} instances for the relations parsed
+ * from Redis.
+ * <p>
+ * The relations in Redis name their type by its description, and some types share a
+ * description: "og" is the description of both coord_noun (id 7) and coord_adj (id 8).
+ * These are told apart by the wordclass of the left item, as given in the WORDCLASSES
+ * column of the relation type file. Redis stores only one id for each description,
+ * so a registry loaded from Redis uses the coordination types of the relation type file
+ * for "og".
+ *
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public final class RedisRelationTypeRegistry {
+	/**
+	 * The default name of the relation type file.
+	 */
+	public static final String RELATION_TYPE_FILE = "merkor_relationTypes.csv";
+
+	// the types sharing a description in the relation type file, missing in Redis
+	private static final Definition[] SHARED_DESCRIPTIONS = {
+		new Definition(7L, "coord_noun", "og", Wordclass.NOUN.toString()),
+		new Definition(8L, "coord_adj", "og", Wordclass.ADJECTIVE.toString())
+	};
+
+	private final List<RelationType> types;
+	private final Map<Long, RelationType> typesById = new HashMap<Long, RelationType>();
+	private final Map<String, RelationType> typesByName = new HashMap<String, RelationType>();
+	private final Map<String, RelationType> typesByDescription = new HashMap<String, RelationType>();
+	// description -> the types of parsed relations, named by the description, and their left wordclasses
+	private final Map<String, List<RelationType>> relationTypes = new HashMap<String, List<RelationType>>();
+	private final Map<String, List<String>> leftWordclasses = new HashMap<String, List<String>>();
+
+	private static Logger logger;
+
+	private RedisRelationTypeRegistry (final List<Definition> definitions) {
+		List<RelationType> typeList = new ArrayList<RelationType>(definitions.size());
+		for (Definition def : definitions) {
+			RelationType type = new RedisRelationType(def.id, def.name, def.description);
+			typeList.add(type);
+			typesById.put(def.id, type);
+			typesByName.put(def.name, type);
+			if (!typesByDescription.containsKey(def.description)) {
+				typesByDescription.put(def.description, type);
+				relationTypes.put(def.description, new ArrayList<RelationType>(1));
+				leftWordclasses.put(def.description, new ArrayList<String>(1));
+			}
+			relationTypes.get(def.description).add(new RedisRelationType(def.id, def.description, def.description));
+			leftWordclasses.get(def.description).add(def.leftWordclass);
+		}
+		types = Collections.unmodifiableList(typeList);
+	}
+
+	/**
+	 * Reads the relation types from a tab separated relation type file with a header line
+	 * and the columns ID, NAME, DESCRIPTION, REVERSE and WORDCLASSES (e.g. "adj_noun"),
+	 * values may be quoted.
+	 *
+	 * @throws IOException if the file can not be read
+	 */
+	public static RedisRelationTypeRegistry fromFile (final String fileName) throws IOException {
+		configureLogger();
+		List<Definition> definitions = new ArrayList<Definition>();
+		BufferedReader in = FileCommunicatorReading.createReader(fileName);
+		try {
+			// header
+			String line = in.readLine();
+			while (null != (line = in.readLine())) {
+				if (line.isEmpty())
+					continue;
+				String[] columns = line.replaceAll("\"", "").split("\t");
+				if (columns.length < 3) {
+					logger.warn("relation type '" + line + "' in " + fileName + " has less than 3 columns!");
+					continue;
+				}
+				try {
+					String leftWordclass = columns.length > 4 ? toWordclass(columns[4].split("_")[0]) : null;
+					definitions.add(new Definition(Long.parseLong(columns[0]), columns[1], columns[2], leftWordclass));
+				} catch (NumberFormatException e) {
+					logger.warn("parsing for relation type '" + line + "' failed: " + e.getMessage());
+				}
+			}
+		} finally {
+			in.close();
+		}
+		return new RedisRelationTypeRegistry(definitions);
+	}
+
+	/**
+	 * Creates a registry of the relation types having the ids in {@code idsByDescription},
+	 * as stored in Redis (merkor_is_reltype_DESCRIPTION -> id). The types are named by
+	 * their descriptions, "og" is replaced by the two coordination types.
+	 */
+	public static RedisRelationTypeRegistry fromDescriptions (final Map<String, Long> idsByDescription) {
+		configureLogger();
+		List<Definition> definitions = new ArrayList<Definition>();
+		Map<String, Long> ids = new LinkedHashMap<String, Long>(idsByDescription);
+		for (Definition shared : SHARED_DESCRIPTIONS) {
+			ids.remove(shared.description);
+			definitions.add(shared);
+		}
+		for (Map.Entry<String, Long> entry : ids.entrySet())
+			definitions.add(new Definition(entry.getValue(), entry.getKey(), entry.getKey(), null));
+		return new RedisRelationTypeRegistry(definitions);
+	}
+
+	/**
+	 * Reads the relation types (merkor_is_reltype_DESCRIPTION -> id) from the Redis server
+	 * of {@code context}, see {@link #fromDescriptions(Map)}. The relation type keys are read
+	 * from the index built by {@link RedisIndexBuilder}, or found with SCAN if there is none,
+	 * their ids are read in one round-trip.
+	 */
+	public static RedisRelationTypeRegistry fromRedis (final RedisContext context) {
+		configureLogger();
+		List<String> typeKeys = new ArrayList<String>(new RedisKeyIndex(context).relationTypeKeys());
+		Map<String, Long> ids = new LinkedHashMap<String, Long>();
+		if (!typeKeys.isEmpty()) {
+			List<String> values;
+			Jedis jedis = context.getResource();
+			try {
+				values = jedis.mget(typeKeys.toArray(new String[typeKeys.size()]));
+			} catch (JedisConnectionException e) {
+				context.returnBrokenResource(jedis);
+				throw e;
+			} finally {
+				context.returnResource(jedis);
+			}
+			for (int i = 0; i < typeKeys.size(); i++) {
+				if (null == values.get(i))
+					continue;
+				try {
+					ids.put(typeKeys.get(i).substring(MerkorRedisConstants.REL_TYPE_PREFIX.length()), Long.parseLong(values.get(i)));
+				} catch (NumberFormatException e) {
+					logger.warn("parsing for relation type '" + typeKeys.get(i) + "' failed: " + e.getMessage());
+				}
+			}
+		}
+		return fromDescriptions(ids);
+	}
+
+	/**
+	 * Returns all relation types, in the order they were read.
+	 */
+	public List<RelationType> getTypes () {
+		return types;
+	}
+	/**
+	 * Returns the relation type having {@code id}, or null if there is none.
+	 */
+	public RelationType getById (final Long id) {
+		return typesById.get(id);
+	}
+	/**
+	 * Returns the relation type named {@code name}, or null if there is none.
+	 */
+	public RelationType getByName (final String name) {
+		return typesByName.get(name);
+	}
+	/**
+	 * Returns the (first) relation type described by {@code description}, or null if there is none.
+	 */
+	public RelationType getByDescription (final String description) {
+		return typesByDescription.get(description);
+	}
+
+	/**
+	 * Returns the type of a relation parsed from Redis, having {@code relation} as its relation
+	 * field and a left item of {@code leftWordclass}: a shared instance of the type with
+	 * {@code relation} as its description, named {@code relation}. If several types have this
+	 * description, the one for {@code leftWordclass} is chosen, or the last one if none is
+	 * for {@code leftWordclass}. Returns null for an unknown relation.
+	 */
+	public RelationType getRelationType (final String relation, final String leftWordclass) {
+		List<RelationType> candidates = relationTypes.get(relation);
+		if (null == candidates)
+			return null;
+		if (candidates.size() > 1) {
+			int index = leftWordclasses.get(relation).indexOf(leftWordclass);
+			return candidates.get(index < 0 ? candidates.size() - 1 : index);
+		}
+		return candidates.get(0);
+	}
+
+	/**
+	 * Returns true if several relation types have {@code relation} as their description,
+	 * so the type of a relation depends on the wordclass of its left item.
+	 */
+	public boolean isShared (final String relation) {
+		List<RelationType> candidates = relationTypes.get(relation);
+		return null != candidates && candidates.size() > 1;
+	}
+
+	@Override
+	public String toString () {
+		return "relation type registry: [types=" + types.size() + "]";
+	}
+
+	/*
+	 * Maps the wordclass abbreviations of the relation type file to wordclasses.
+	 */
+	private static String toWordclass (final String abbreviation) {
+		if (abbreviation.equals("adj"))
+			return Wordclass.ADJECTIVE.toString();
+		return Wordclass.VALUES.contains(abbreviation) ? abbreviation : null;
+	}
+	private static void configureLogger () {
+		MerkorLogger.configureLogger();
+		logger = Logger.getLogger(RedisRelationTypeRegistry.class);
+	}
+
+	/*
+	 * A relation type as read, with the wordclass of its left items (null if unknown).
+	 */
+	private static class Definition {
+		final Long id;
+		final String name;
+		final String description;
+		final String leftWordclass;
+
+		Definition (final Long id, final String name, final String description, final String leftWordclass) {
+			this.id = id;
+			this.name = name;
+			this.description = description;
+			this.leftWordclass = leftWordclass;
+		}
+	}
+}
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.redis.dictionaries;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+/*
+ * A bounded pool of connections. At most maxSize connections are created, they are 
+ * created on demand and reused after being returned. A thread borrowing a connection 
+ * while it already holds one gets the same connection again (nested calls of the parsers),
+ * the connection goes back to the pool when the outermost borrow is returned.
+ * Connections marked as broken are destroyed instead of being reused, a thread waiting 
+ * for a connection then creates a new one.
+ * Used by {@link RedisContext}.
+ */
+abstract class RedisResourcePool<T> {
+	
+	private final int maxSize;
+	private final long waitTimeout;
+	// guarded by this, waiting borrowers are notified of each returned or destroyed connection
+	private final Deque<T> idle = new ArrayDeque<T>();
+	private final ThreadLocal<Lease<T>> leases = new ThreadLocal<Lease<T>>();
+	private int size = 0;
+	
+	private static class Lease<T> {
+		private final T resource;
+		private int depth = 1;
+		private boolean broken = false;
+		
+		private Lease (final T resource) {
+			this.resource = resource;
+		}
+	}
+	
+	/*
+	 * Constructs a new pool holding at most {@code maxSize} connections, a borrower 
+	 * waits at most {@code waitTimeout} milliseconds for a connection.
+	 */
+	protected RedisResourcePool (final int maxSize, final long waitTimeout) {
+		this.maxSize = maxSize;
+		this.waitTimeout = waitTimeout;
+	}
+	
+	protected abstract T create ();
+	
+	protected abstract void destroy (T resource);
+	
+	/*
+	 * Adds an existing connection to the pool, counting it against maxSize.
+	 */
+	protected synchronized void add (final T resource) {
+		size++;
+		idle.offer(resource);
+		notify();
+	}
+	
+	protected T borrow () {
+		Lease<T> lease = leases.get();
+		if (null != lease) {
+			lease.depth++;
+			return lease.resource;
+		}
+		T resource = takeIdleOrReserve();
+		if (null == resource) {
+			// a slot for a new connection has been reserved
+			try {
+				resource = create();
+			} catch (RuntimeException e) {
+				release();
+				throw e;
+			}
+		}
+		leases.set(new Lease<T>(resource));
+		return resource;
+	}
+	
+	protected void giveBack (final T resource) {
+		Lease<T> lease = leases.get();
+		if (null == lease || lease.resource != resource)
+			throw new IllegalStateException("connection was not borrowed by this thread");
+		if (--lease.depth > 0)
+			return;
+		
+		leases.remove();
+		if (lease.broken) {
+			destroy(resource);
+			release();
+		}
+		else {
+			synchronized (this) {
+				idle.offer(resource);
+				notify();
+			}
+		}
+	}
+	
+	/*
+	 * Marks the connection borrowed by the current thread as broken, it will be destroyed
+	 * when it is given back.
+	 */
+	protected void markBroken (final T resource) {
+		Lease<T> lease = leases.get();
+		if (null != lease && lease.resource == resource)
+			lease.broken = true;
+	}
+	
+	/*
+	 * Destroys all idle connections.
+	 */
+	protected void close () {
+		T resource;
+		while (null != (resource = pollIdle())) {
+			destroy(resource);
+			release();
+		}
+	}
+	
+	/*
+	 * Returns an idle connection, or null after reserving a slot for a new connection, 
+	 * waiting at most waitTimeout for either.
+	 */
+	private synchronized T takeIdleOrReserve () {
+		long deadline = System.currentTimeMillis() + waitTimeout;
+		while (true) {
+			T resource = idle.poll();
+			if (null != resource)
+				return resource;
+			if (size < maxSize) {
+				size++;
+				return null;
+			}
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0)
+				throw new JedisConnectionException("no Redis connection available after " + waitTimeout + " ms");
+			try {
+				wait(remaining);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new JedisConnectionException("interrupted while waiting for a Redis connection");
+			}
+		}
+	}
+	private synchronized T pollIdle () {
+		return idle.poll();
+	}
+	/*
+	 * Frees the slot of a destroyed (or not created) connection, a waiting borrower may create a new one.
+	 */
+	private synchronized void release () {
+		size--;
+		notify();
+	}
+}
@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.redis.dictionaries;
+
+import is.merkor.core.memory.MemoryStore;
+import is.merkor.core.memory.MemoryStoreBuilder;
+import is.merkor.core.util.MerkorLogger;
+import is.merkor.core.util.Wordclass;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.Tuple;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+/**
+ * Reads the complete MerkOr data from a Redis server into a {@link MemoryStore},
+ * for the dictionaries in {@link is.merkor.core.memory}. The keyspace is iterated
+ * with the indexes of {@link RedisIndexBuilder} if they exist and with SCAN otherwise,
+ * all values are read in pipelined batches of RedisItemParser.PIPELINE_BATCH_SIZE keys.
+ * <p>
+ * Usage:
+ * <pre>
+ * MemoryStore store = new RedisStoreLoader(new RedisContext(host, port)).load();
+ * RelationDictionary relDict = new MemoryRelationDictionary(store);
+ * </pre>
+ *
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public class RedisStoreLoader {
+	// hash fields of a lexical item and of a relation
+	private static final String[] ITEM_FIELDS = {"lemma", "wordclass"};
+	private static final String[] RELATION_FIELDS = {"from_item", "to_item", "relation", "score"};
+
+	private RedisContext context;
+	private RedisKeyIndex keyIndex;
+
+	private static Logger logger;
+
+	/**
+	 * Constructs a new loader using the connections of {@code context}.
+	 */
+	public RedisStoreLoader (final RedisContext context) {
+		MerkorLogger.configureLogger();
+		logger = Logger.getLogger(RedisStoreLoader.class);
+		this.context = context;
+		keyIndex = new RedisKeyIndex(context);
+	}
+
+	/**
+	 * Reads all items, relations, relation types, top relations and clusters and
+	 * returns them as a new store.
+	 */
+	public MemoryStore load () {
+		MemoryStoreBuilder builder = new MemoryStoreBuilder();
+
+		// items
+		List<String> itemKeys = new ArrayList<String>(keyIndex.itemKeys());
+		List<List<String>> itemFields = hmget(itemKeys, ITEM_FIELDS);
+		for (int i = 0; i < itemKeys.size(); i++) {
+			List<String> fields = itemFields.get(i);
+			Long id = parseId(itemKeys.get(i));
+			if (null == id || null == fields.get(0) || !Wordclass.VALUES.contains(fields.get(1))) {
+				logger.warn("parsing for item '" + itemKeys.get(i) + "' failed, non valid values!");
+				continue;
+			}
+			builder.addItem(id, fields.get(0), fields.get(1));
+		}
+		logger.info("loaded " + itemKeys.size() + " lexical items");
+
+		// relation types
+		List<String> typeKeys = new ArrayList<String>(keyIndex.scan(MerkorRedisConstants.REL_TYPE_PREFIX + "*"));
+		List<String> typeIds = get(typeKeys);
+		for (int i = 0; i < typeKeys.size(); i++) {
+			try {
+				builder.addRelationType(typeKeys.get(i).substring(MerkorRedisConstants.REL_TYPE_PREFIX.length()),
+						Long.parseLong(typeIds.get(i)));
+			} catch (NumberFormatException e) {
+				logger.warn("parsing for relation type '" + typeKeys.get(i) + "' failed: " + e.getMessage());
+			}
+		}
+
+		// relations of each item and top relations of each type, collecting the relation keys
+		Set<String> relationKeys = new LinkedHashSet<String>();
+		List<String> relSetKeys = new ArrayList<String>(itemKeys.size());
+		for (String itemKey : itemKeys)
+			relSetKeys.add(MerkorRedisConstants.SORTED_REL_SET_ID + itemKey);
+		List<Set<Tuple>> relSets = zrevrangeWithScores(relSetKeys);
+		for (int i = 0; i < itemKeys.size(); i++) {
+			Long itemId = parseId(itemKeys.get(i));
+			for (Tuple tuple : relSets.get(i)) {
+				Long relId = parseId(tuple.getElement());
+				if (null != itemId && null != relId) {
+					builder.addItemRelation(itemId, relId, tuple.getScore());
+					relationKeys.add(tuple.getElement());
+				}
+			}
+		}
+		List<String> topKeys = new ArrayList<String>(keyIndex.scan(MerkorRedisConstants.REL_TYPE_TOP_RELATIONS + "*"));
+		List<Set<Tuple>> topSets = zrevrangeWithScores(topKeys);
+		for (int i = 0; i < topKeys.size(); i++) {
+			Long typeId = parseId(topKeys.get(i));
+			for (Tuple tuple : topSets.get(i)) {
+				Long relId = parseId(tuple.getElement());
+				if (null != typeId && null != relId) {
+					builder.addTopRelation(typeId, relId, tuple.getScore());
+					relationKeys.add(tuple.getElement());
+				}
+			}
+		}
+
+		// relations
+		List<String> relKeys = new ArrayList<String>(relationKeys);
+		List<List<String>> relFields = hmget(relKeys, RELATION_FIELDS);
+		for (int i = 0; i < relKeys.size(); i++) {
+			List<String> fields = relFields.get(i);
+			if (null == fields.get(0) || null == fields.get(1) || null == fields.get(2) || null == fields.get(3)) {
+				logger.warn("parsing for relation '" + relKeys.get(i) + "' failed, null values!");
+				continue;
+			}
+			Long relId = parseId(relKeys.get(i));
+			Long fromId = parseId(fields.get(0));
+			Long toId = parseId(fields.get(1));
+			try {
+				if (null != relId && null != fromId && null != toId)
+					builder.addRelation(relId, fromId, toId, fields.get(2), Double.parseDouble(fields.get(3)));
+			} catch (NumberFormatException e) {
+				logger.warn("parsing for relation '" + relKeys.get(i) + "' failed: " + e.getMessage());
+			}
+		}
+		logger.info("loaded " + relKeys.size() + " relations");
+
+		// clusters, keys having the format merkor_is_cluster_CLUSTERNAME_ID or merkor_is_cluster_CLUSTER_NAME_ID
+		List<String> clusterKeys = new ArrayList<String>();
+		for (String key : keyIndex.clusterKeysMatching(MerkorRedisConstants.CLUSTER_ID_IS + "*")) {
+			String[] keyArr = key.split("_");
+			Long id = parseId(key);
+			if (null == id || keyArr.length < 5 || keyArr.length > 6)
+				continue;
+			builder.addCluster(id, keyArr.length == 5 ? keyArr[3] : keyArr[3] + "_" + keyArr[4]);
+			clusterKeys.add(key);
+		}
+		List<Set<Tuple>> members = zrevrangeWithScores(clusterKeys);
+		for (int i = 0; i < clusterKeys.size(); i++) {
+			Long clusterId = parseId(clusterKeys.get(i));
+			for (Tuple tuple : members.get(i)) {
+				Long itemId = parseId(tuple.getElement());
+				if (null != itemId)
+					builder.addClusterMember(clusterId, itemId, tuple.getScore());
+			}
+		}
+		logger.info("loaded " + clusterKeys.size() + " clusters");
+
+		return builder.build();
+	}
+
+	private List<List<String>> hmget (final List<String> keys, final String[] fields) {
+		return pipeline(keys, new BatchCommand<List<String>>() {
+			Response<List<String>> send (final Pipeline pipeline, final String key) {
+				return pipeline.hmget(key, fields);
+			}
+		});
+	}
+	private List<String> get (final List<String> keys) {
+		return pipeline(keys, new BatchCommand<String>() {
+			Response<String> send (final Pipeline pipeline, final String key) {
+				return pipeline.get(key);
+			}
+		});
+	}
+	private List<Set<Tuple>> zrevrangeWithScores (final List<String> keys) {
+		return pipeline(keys, new BatchCommand<Set<Tuple>>() {
+			Response<Set<Tuple>> send (final Pipeline pipeline, final String key) {
+				return pipeline.zrevrangeWithScores(key, 0, -1);
+			}
+		});
+	}
+	/*
+	 * Sends command for each key in pipelined batches and returns the replies in the order of keys.
+	 */
+	private <T> List<T> pipeline (final List<String> keys, final BatchCommand<T> command) {
+		List<T> replies = new ArrayList<T>(keys.size());
+		Jedis jedis = context.getResource();
+		try {
+			for (int start = 0; start < keys.size(); start += RedisItemParser.PIPELINE_BATCH_SIZE) {
+				List<String> batch = keys.subList(start, Math.min(start + RedisItemParser.PIPELINE_BATCH_SIZE, keys.size()));
+				List<Response<T>> responses = new ArrayList<Response<T>>(batch.size());
+				Pipeline pipeline = jedis.pipelined();
+				for (String key : batch)
+					responses.add(command.send(pipeline, key));
+				pipeline.sync();
+				for (Response<T> response : responses)
+					replies.add(response.get());
+			}
+		} catch (JedisConnectionException e) {
+			context.returnBrokenResource(jedis);
+			throw e;
+		} finally {
+			context.returnResource(jedis);
+		}
+		return replies;
+	}
+	/*
+	 * Returns the numeric id at the end of a key, or null if there is none.
+	 */
+	private Long parseId (final String key) {
+		try {
+			return Long.parseLong(key.substring(key.lastIndexOf('_') + 1));
+		} catch (NumberFormatException e) {
+			logger.warn(key + " does not end with an id, parsing failed!");
+			return null;
+		}
+	}
+
+	private static abstract class BatchCommand<T> {
+		abstract Response<T> send (Pipeline pipeline, String key);
+	}
+}
@@ -0,0 +1,629 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.redis.rdb;
+
+import is.merkor.core.util.MerkorLogger;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A streaming parser for Redis dump files (RDB), reading the file sequentially once
+ * and passing each key and its elements to a {@link Handler}, without holding more than
+ * one value in memory. All databases of the file are read as one, expire times are ignored.
+ * <p>
+ * Supported are the RDB versions 1 to 12 with strings, lists, sets, sorted sets and hashes
+ * in all their encodings (linked, zipmap, ziplist, intset, quicklist and listpack).
+ * Modules and streams are not supported and raise an {@link IOException}.
+ * <p>
+ * Usage:
+ * <pre>
+ * new RdbParser(new BZip2InputStream(new FileInputStream("dump.rdb.bz2"))).parse(new RdbParser.Handler() {
+ *     public void hashField (String key, String field, String value) {
+ *         ...
+ *     }
+ * });
+ * </pre>
+ *
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public class RdbParser {
+	private static final int MAX_VERSION = 12;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// value types
+	private static final int TYPE_STRING = 0;
+	private static final int TYPE_LIST = 1;
+	private static final int TYPE_SET = 2;
+	private static final int TYPE_ZSET = 3;
+	private static final int TYPE_HASH = 4;
+	private static final int TYPE_ZSET_2 = 5;
+	private static final int TYPE_HASH_ZIPMAP = 9;
+	private static final int TYPE_LIST_ZIPLIST = 10;
+	private static final int TYPE_SET_INTSET = 11;
+	private static final int TYPE_ZSET_ZIPLIST = 12;
+	private static final int TYPE_HASH_ZIPLIST = 13;
+	private static final int TYPE_LIST_QUICKLIST = 14;
+	private static final int TYPE_HASH_LISTPACK = 16;
+	private static final int TYPE_ZSET_LISTPACK = 17;
+	private static final int TYPE_LIST_QUICKLIST_2 = 18;
+	private static final int TYPE_SET_LISTPACK = 20;
+	// opcodes
+	private static final int OPCODE_SLOT_INFO = 244;
+	private static final int OPCODE_FUNCTION2 = 245;
+	private static final int OPCODE_IDLE = 248;
+	private static final int OPCODE_FREQ = 249;
+	private static final int OPCODE_AUX = 250;
+	private static final int OPCODE_RESIZEDB = 251;
+	private static final int OPCODE_EXPIRETIME_MS = 252;
+	private static final int OPCODE_EXPIRETIME = 253;
+	private static final int OPCODE_SELECTDB = 254;
+	private static final int OPCODE_EOF = 255;
+	// the container of a quicklist node holding a single element
+	private static final int QUICKLIST_NODE_PLAIN = 1;
+
+	private final DataInputStream in;
+
+	private static Logger logger;
+
+	/**
+	 * Receives the keys and elements of a dump file. All methods do nothing by default.
+	 */
+	public static abstract class Handler {
+		/**
+		 * Returns true if the value of {@code key} is to be read, false if it is to be skipped.
+		 * Returns true by default.
+		 */
+		public boolean accept (final String key) {
+			return true;
+		}
+		public void string (final String key, final String value) {
+		}
+		public void listElement (final String key, final String element) {
+		}
+		public void setMember (final String key, final String member) {
+		}
+		public void sortedSetMember (final String key, final String member, final double score) {
+		}
+		public void hashField (final String key, final String field, final String value) {
+		}
+		/**
+		 * Called after all elements of the value of an accepted {@code key} have been passed.
+		 */
+		public void endValue (final String key) {
+		}
+	}
+
+	/**
+	 * Constructs a new parser reading the dump from {@code in}, which is buffered by the parser.
+	 */
+	public RdbParser (final InputStream in) {
+		MerkorLogger.configureLogger();
+		logger = Logger.getLogger(RdbParser.class);
+		if (null == in) {
+			IllegalArgumentException e = new IllegalArgumentException();
+			logger.error("param in must not be null!", e);
+			throw e;
+		}
+		this.in = new DataInputStream(new BufferedInputStream(in));
+	}
+
+	/**
+	 * Reads the complete dump, passing all keys and their elements to {@code handler}.
+	 * @throws IOException if reading fails or the dump is not valid
+	 */
+	public void parse (final Handler handler) throws IOException {
+		byte[] header = new byte[9];
+		in.readFully(header);
+		String magic = new String(header, UTF8);
+		int version;
+		try {
+			version = Integer.parseInt(magic.substring(5));
+		} catch (NumberFormatException e) {
+			version = -1;
+		}
+		if (!magic.startsWith("REDIS") || version < 1 || version > MAX_VERSION)
+			throw invalid("unsupported header '" + magic + "'");
+
+		long keys = 0;
+		while (true) {
+			int type = in.readUnsignedByte();
+			switch (type) {
+			case OPCODE_EOF:
+				// followed by a checksum from version 5 on
+				logger.info("parsed " + keys + " keys of RDB version " + version);
+				return;
+			case OPCODE_SELECTDB:
+			case OPCODE_IDLE:
+				readLength();
+				continue;
+			case OPCODE_RESIZEDB:
+				readLength();
+				readLength();
+				continue;
+			case OPCODE_SLOT_INFO:
+				readLength();
+				readLength();
+				readLength();
+				continue;
+			case OPCODE_EXPIRETIME:
+				skip(4);
+				continue;
+			case OPCODE_EXPIRETIME_MS:
+				skip(8);
+				continue;
+			case OPCODE_FREQ:
+				skip(1);
+				continue;
+			case OPCODE_AUX:
+				readString(true);
+				readString(true);
+				continue;
+			case OPCODE_FUNCTION2:
+				readString(true);
+				continue;
+			default:
+				String key = toString(readString(false));
+				boolean accepted = handler.accept(key);
+				readValue(type, key, accepted ? handler : null);
+				if (accepted)
+					handler.endValue(key);
+				keys++;
+			}
+		}
+	}
+
+	/*
+	 * Reads the value of key, passing its elements to handler, or skips it if handler is null.
+	 */
+	private void readValue (final int type, final String key, final Handler handler) throws IOException {
+		boolean skip = null == handler;
+		switch (type) {
+		case TYPE_STRING:
+			byte[] value = readString(skip);
+			if (!skip)
+				handler.string(key, toString(value));
+			return;
+		case TYPE_LIST:
+		case TYPE_SET:
+			for (long i = readLength(); i > 0; i--) {
+				byte[] element = readString(skip);
+				if (skip)
+					continue;
+				if (type == TYPE_LIST)
+					handler.listElement(key, toString(element));
+				else
+					handler.setMember(key, toString(element));
+			}
+			return;
+		case TYPE_ZSET:
+		case TYPE_ZSET_2:
+			for (long i = readLength(); i > 0; i--) {
+				byte[] member = readString(skip);
+				double score = type == TYPE_ZSET ? readDoubleString() : Double.longBitsToDouble(Long.reverseBytes(in.readLong()));
+				if (!skip)
+					handler.sortedSetMember(key, toString(member), score);
+			}
+			return;
+		case TYPE_HASH:
+			for (long i = readLength(); i > 0; i--) {
+				byte[] field = readString(skip);
+				byte[] fieldValue = readString(skip);
+				if (!skip)
+					handler.hashField(key, toString(field), toString(fieldValue));
+			}
+			return;
+		case TYPE_LIST_QUICKLIST:
+		case TYPE_LIST_QUICKLIST_2:
+			for (long i = readLength(); i > 0; i--) {
+				boolean plain = type == TYPE_LIST_QUICKLIST_2 && readLength() == QUICKLIST_NODE_PLAIN;
+				byte[] node = readString(skip);
+				if (skip)
+					continue;
+				if (plain) {
+					handler.listElement(key, toString(node));
+					continue;
+				}
+				for (String element : type == TYPE_LIST_QUICKLIST ? ziplistEntries(node) : listpackEntries(node))
+					handler.listElement(key, element);
+			}
+			return;
+		case TYPE_HASH_ZIPMAP:
+		case TYPE_LIST_ZIPLIST:
+		case TYPE_SET_INTSET:
+		case TYPE_ZSET_ZIPLIST:
+		case TYPE_HASH_ZIPLIST:
+		case TYPE_HASH_LISTPACK:
+		case TYPE_ZSET_LISTPACK:
+		case TYPE_SET_LISTPACK:
+			byte[] blob = readString(skip);
+			if (!skip)
+				readCompactValue(type, key, blob, handler);
+			return;
+		default:
+			throw invalid("unsupported value type " + type + " of key '" + key + "'");
+		}
+	}
+	/*
+	 * Passes the elements of a value stored in one compact encoded string to handler.
+	 */
+	private void readCompactValue (final int type, final String key, final byte[] blob, final Handler handler)
+			throws IOException {
+		List<String> entries;
+		try {
+			switch (type) {
+			case TYPE_HASH_ZIPMAP:
+				entries = zipmapEntries(blob);
+				break;
+			case TYPE_SET_INTSET:
+				entries = intsetEntries(blob);
+				break;
+			case TYPE_LIST_ZIPLIST:
+			case TYPE_ZSET_ZIPLIST:
+			case TYPE_HASH_ZIPLIST:
+				entries = ziplistEntries(blob);
+				break;
+			default:
+				entries = listpackEntries(blob);
+			}
+		} catch (IndexOutOfBoundsException e) {
+			throw invalid("corrupt value of key '" + key + "'");
+		}
+		switch (type) {
+		case TYPE_LIST_ZIPLIST:
+			for (String entry : entries)
+				handler.listElement(key, entry);
+			break;
+		case TYPE_SET_INTSET:
+		case TYPE_SET_LISTPACK:
+			for (String entry : entries)
+				handler.setMember(key, entry);
+			break;
+		case TYPE_ZSET_ZIPLIST:
+		case TYPE_ZSET_LISTPACK:
+			for (int i = 0; i + 1 < entries.size(); i += 2)
+				handler.sortedSetMember(key, entries.get(i), parseScore(entries.get(i + 1)));
+			break;
+		default:
+			for (int i = 0; i + 1 < entries.size(); i += 2)
+				handler.hashField(key, entries.get(i), entries.get(i + 1));
+		}
+	}
+
+	/*
+	 * Reads a length, throws an IOException for an encoded string.
+	 */
+	private long readLength () throws IOException {
+		return readLength(in.readUnsignedByte());
+	}
+	/*
+	 * Reads the rest of a length starting with the byte first.
+	 */
+	private long readLength (final int first) throws IOException {
+		switch (first >> 6) {
+		case 0:
+			return first & 0x3f;
+		case 1:
+			return ((first & 0x3f) << 8) | in.readUnsignedByte();
+		case 2:
+			if (first == 0x80)
+				return in.readInt() & 0xffffffffL;
+			if (first == 0x81)
+				return in.readLong();
+		}
+		throw invalid("wrong length encoding " + first);
+	}
+	/*
+	 * Reads a string, plain, as an integer or LZF compressed. Returns null if skip is true.
+	 */
+	private byte[] readString (final boolean skip) throws IOException {
+		int first = in.readUnsignedByte();
+		if (first >> 6 != 3) {
+			int length = toInt(readLength(first));
+			if (skip)
+				return skipNull(length);
+			byte[] bytes = new byte[length];
+			in.readFully(bytes);
+			return bytes;
+		}
+		switch (first & 0x3f) {
+		case 0:
+			return skip ? skipNull(1) : integer(in.readByte());
+		case 1:
+			return skip ? skipNull(2) : integer(Short.reverseBytes(in.readShort()));
+		case 2:
+			return skip ? skipNull(4) : integer(Integer.reverseBytes(in.readInt()));
+		case 3:
+			int compressedLength = toInt(readLength());
+			int length = toInt(readLength());
+			if (skip)
+				return skipNull(compressedLength);
+			byte[] compressed = new byte[compressedLength];
+			in.readFully(compressed);
+			return decompress(compressed, length);
+		default:
+			throw invalid("wrong string encoding " + first);
+		}
+	}
+	/*
+	 * Reads a score of a sorted set stored as a string.
+	 */
+	private double readDoubleString () throws IOException {
+		int length = in.readUnsignedByte();
+		switch (length) {
+		case 253:
+			return Double.NaN;
+		case 254:
+			return Double.POSITIVE_INFINITY;
+		case 255:
+			return Double.NEGATIVE_INFINITY;
+		default:
+			byte[] bytes = new byte[length];
+			in.readFully(bytes);
+			return parseScore(toString(bytes));
+		}
+	}
+	private double parseScore (final String score) throws IOException {
+		try {
+			if (score.equalsIgnoreCase("inf") || score.equalsIgnoreCase("+inf"))
+				return Double.POSITIVE_INFINITY;
+			if (score.equalsIgnoreCase("-inf"))
+				return Double.NEGATIVE_INFINITY;
+			return Double.parseDouble(score);
+		} catch (NumberFormatException e) {
+			throw invalid("wrong score '" + score + "'");
+		}
+	}
+	/*
+	 * Decompresses LZF compressed data to length bytes.
+	 */
+	private byte[] decompress (final byte[] compressed, final int length) throws IOException {
+		byte[] out = new byte[length];
+		int i = 0;
+		int o = 0;
+		try {
+			while (i < compressed.length) {
+				int control = compressed[i++] & 0xff;
+				if (control < 32) {
+					// literal run of control + 1 bytes
+					System.arraycopy(compressed, i, out, o, control + 1);
+					i += control + 1;
+					o += control + 1;
+				} else {
+					// back reference
+					int runLength = control >> 5;
+					if (runLength == 7)
+						runLength += compressed[i++] & 0xff;
+					int reference = o - ((control & 0x1f) << 8) - (compressed[i++] & 0xff) - 1;
+					for (int j = 0; j < runLength + 2; j++)
+						out[o++] = out[reference++];
+				}
+			}
+		} catch (IndexOutOfBoundsException e) {
+			throw invalid("corrupt LZF compressed string");
+		}
+		if (o != length)
+			throw invalid("corrupt LZF compressed string");
+		return out;
+	}
+
+	/*
+	 * Returns the entries of a ziplist: little endian header (bytes, tail offset, length), then
+	 * entries of previous entry length, encoding and content, terminated by 0xff.
+	 */
+	private List<String> ziplistEntries (final byte[] ziplist) throws IOException {
+		List<String> entries = new ArrayList<String>();
+		int pos = 10;
+		while ((ziplist[pos] & 0xff) != 0xff) {
+			pos += (ziplist[pos] & 0xff) == 254 ? 5 : 1;
+			int encoding = ziplist[pos] & 0xff;
+			int length;
+			switch (encoding >> 6) {
+			case 0:
+				length = encoding & 0x3f;
+				entries.add(new String(ziplist, pos + 1, length, UTF8));
+				pos += 1 + length;
+				continue;
+			case 1:
+				length = ((encoding & 0x3f) << 8) | (ziplist[pos + 1] & 0xff);
+				entries.add(new String(ziplist, pos + 2, length, UTF8));
+				pos += 2 + length;
+				continue;
+			case 2:
+				length = toInt(bigEndian(ziplist, pos + 1, 4));
+				entries.add(new String(ziplist, pos + 5, length, UTF8));
+				pos += 5 + length;
+				continue;
+			}
+			switch (encoding) {
+			case 0xc0:
+				entries.add(String.valueOf(littleEndian(ziplist, pos + 1, 2)));
+				pos += 3;
+				break;
+			case 0xd0:
+				entries.add(String.valueOf(littleEndian(ziplist, pos + 1, 4)));
+				pos += 5;
+				break;
+			case 0xe0:
+				entries.add(String.valueOf(littleEndian(ziplist, pos + 1, 8)));
+				pos += 9;
+				break;
+			case 0xf0:
+				entries.add(String.valueOf(littleEndian(ziplist, pos + 1, 3)));
+				pos += 4;
+				break;
+			case 0xfe:
+				entries.add(String.valueOf(littleEndian(ziplist, pos + 1, 1)));
+				pos += 2;
+				break;
+			default:
+				if (encoding < 0xf1 || encoding > 0xfd)
+					throw invalid("wrong ziplist encoding " + encoding);
+				entries.add(String.valueOf((encoding & 0x0f) - 1));
+				pos += 1;
+			}
+		}
+		return entries;
+	}
+	/*
+	 * Returns the entries of a listpack: little endian header (bytes, length), then entries of
+	 * encoding, content and the backwards encoded entry length, terminated by 0xff.
+	 */
+	private List<String> listpackEntries (final byte[] listpack) throws IOException {
+		List<String> entries = new ArrayList<String>();
+		int pos = 6;
+		while ((listpack[pos] & 0xff) != 0xff) {
+			int encoding = listpack[pos] & 0xff;
+			int entryLength;
+			if ((encoding & 0x80) == 0) {
+				entries.add(String.valueOf(encoding));
+				entryLength = 1;
+			} else if ((encoding & 0xc0) == 0x80) {
+				int length = encoding & 0x3f;
+				entries.add(new String(listpack, pos + 1, length, UTF8));
+				entryLength = 1 + length;
+			} else if ((encoding & 0xe0) == 0xc0) {
+				int value = ((encoding & 0x1f) << 8) | (listpack[pos + 1] & 0xff);
+				entries.add(String.valueOf(value >= 1 << 12 ? value - (1 << 13) : value));
+				entryLength = 2;
+			} else if ((encoding & 0xf0) == 0xe0) {
+				int length = ((encoding & 0x0f) << 8) | (listpack[pos + 1] & 0xff);
+				entries.add(new String(listpack, pos + 2, length, UTF8));
+				entryLength = 2 + length;
+			} else {
+				switch (encoding) {
+				case 0xf0:
+					int length = toInt(littleEndian(listpack, pos + 1, 4) & 0xffffffffL);
+					entries.add(new String(listpack, pos + 5, length, UTF8));
+					entryLength = 5 + length;
+					break;
+				case 0xf1:
+					entries.add(String.valueOf(littleEndian(listpack, pos + 1, 2)));
+					entryLength = 3;
+					break;
+				case 0xf2:
+					entries.add(String.valueOf(littleEndian(listpack, pos + 1, 3)));
+					entryLength = 4;
+					break;
+				case 0xf3:
+					entries.add(String.valueOf(littleEndian(listpack, pos + 1, 4)));
+					entryLength = 5;
+					break;
+				case 0xf4:
+					entries.add(String.valueOf(littleEndian(listpack, pos + 1, 8)));
+					entryLength = 9;
+					break;
+				default:
+					throw invalid("wrong listpack encoding " + encoding);
+				}
+			}
+			// the entry length is stored backwards after the entry, 7 bits per byte
+			int backLength = 1;
+			while (backLength < 5 && entryLength >= 1L << (7 * backLength))
+				backLength++;
+			pos += entryLength + backLength;
+		}
+		return entries;
+	}
+	/*
+	 * Returns the members of an intset: little endian encoding (bytes per member), length and members.
+	 */
+	private List<String> intsetEntries (final byte[] intset) throws IOException {
+		int encoding = (int)littleEndian(intset, 0, 4);
+		int length = (int)littleEndian(intset, 4, 4);
+		if (encoding != 2 && encoding != 4 && encoding != 8)
+			throw invalid("wrong intset encoding " + encoding);
+		List<String> entries = new ArrayList<String>(length);
+		for (int i = 0; i < length; i++)
+			entries.add(String.valueOf(littleEndian(intset, 8 + i * encoding, encoding)));
+		return entries;
+	}
+	/*
+	 * Returns the fields and values of a zipmap: number of entries, then entries of key length,
+	 * key, value length, number of free bytes, value and free bytes, terminated by 0xff.
+	 */
+	private List<String> zipmapEntries (final byte[] zipmap) {
+		List<String> entries = new ArrayList<String>();
+		int pos = 1;
+		while ((zipmap[pos] & 0xff) != 0xff) {
+			for (int i = 0; i < 2; i++) {
+				int length = zipmap[pos] & 0xff;
+				if (length == 253) {
+					length = (int)littleEndian(zipmap, pos + 1, 4);
+					pos += 5;
+				} else {
+					pos += 1;
+				}
+				int free = 0;
+				if (i == 1)
+					free = zipmap[pos++] & 0xff;
+				entries.add(new String(zipmap, pos, length, UTF8));
+				pos += length + free;
+			}
+		}
+		return entries;
+	}
+
+	/*
+	 * Reads a signed little endian integer of length bytes from bytes at offset.
+	 */
+	private static long littleEndian (final byte[] bytes, final int offset, final int length) {
+		long value = 0;
+		for (int i = length - 1; i >= 0; i--)
+			value = (value << 8) | (bytes[offset + i] & 0xff);
+		int shift = 64 - 8 * length;
+		return (value << shift) >> shift;
+	}
+	private static long bigEndian (final byte[] bytes, final int offset, final int length) {
+		long value = 0;
+		for (int i = 0; i < length; i++)
+			value = (value << 8) | (bytes[offset + i] & 0xff);
+		return value;
+	}
+	private static byte[] integer (final long value) {
+		return String.valueOf(value).getBytes(UTF8);
+	}
+	private static String toString (final byte[] bytes) {
+		return new String(bytes, UTF8);
+	}
+	private byte[] skipNull (final int bytes) throws IOException {
+		skip(bytes);
+		return null;
+	}
+	private void skip (final int bytes) throws IOException {
+		int skipped = 0;
+		while (skipped < bytes) {
+			int n = in.skipBytes(bytes - skipped);
+			if (n <= 0) {
+				// skipBytes() returns 0 at the end of the stream as well
+				in.readByte();
+				n = 1;
+			}
+			skipped += n;
+		}
+	}
+	private int toInt (final long length) throws IOException {
+		if (length < 0 || length > Integer.MAX_VALUE)
+			throw invalid("length " + length + " out of range");
+		return (int)length;
+	}
+	private IOException invalid (final String message) {
+		IOException e = new IOException("not a valid RDB file: " + message);
+		logger.error(e.getMessage(), e);
+		return e;
+	}
+}
@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.redis.rdb;
+
+import is.merkor.core.memory.MemoryStore;
+import is.merkor.core.memory.MemoryStoreBuilder;
+import is.merkor.core.redis.dictionaries.MerkorRedisConstants;
+import is.merkor.core.util.BZip2InputStream;
+import is.merkor.core.util.MerkorLogger;
+import is.merkor.core.util.Wordclass;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Reads the complete MerkOr data from a Redis dump file into a {@link MemoryStore},
+ * for the dictionaries in {@link is.merkor.core.memory}, without a Redis server.
+ * The file is read once sequentially, files ending with ".bz2" (as the distributed
+ * {@code dump.rdb.bz2}) are decompressed on the fly. Only the keys of lexical items,
+ * relations, relation types, sorted relation sets, top relations and clusters are
+ * decoded, all other keys are skipped.
+ * <p>
+ * Usage:
+ * <pre>
+ * MemoryStore store = new RdbStoreLoader(new File("dump.rdb.bz2")).load();
+ * RelationDictionary relDict = new MemoryRelationDictionary(store);
+ * </pre>
+ *
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public class RdbStoreLoader {
+	private static final String SORTED_REL_SET_PREFIX = MerkorRedisConstants.SORTED_REL_SET_ID
+			+ MerkorRedisConstants.ID_KEY_PREFIX_IS;
+
+	private final File file;
+
+	private static Logger logger;
+
+	/**
+	 * Constructs a new loader reading the dump file {@code file}.
+	 * @throws IllegalArgumentException if param 'file' is {@code null}
+	 */
+	public RdbStoreLoader (final File file) {
+		MerkorLogger.configureLogger();
+		logger = Logger.getLogger(RdbStoreLoader.class);
+		if (null == file) {
+			IllegalArgumentException e = new IllegalArgumentException();
+			logger.error("param file must not be null!", e);
+			throw e;
+		}
+		this.file = file;
+	}
+
+	/**
+	 * Reads all items, relations, relation types, top relations and clusters of the dump
+	 * file and returns them as a new store.
+	 * @throws IOException if the file can not be read or is not a valid (compressed) dump file
+	 */
+	public MemoryStore load () throws IOException {
+		MemoryStoreBuilder builder = new MemoryStoreBuilder();
+		InputStream in = new FileInputStream(file);
+		try {
+			if (file.getName().endsWith(".bz2"))
+				in = new BZip2InputStream(in);
+			new RdbParser(in).parse(new StoreHandler(builder));
+		} finally {
+			in.close();
+		}
+		MemoryStore store = builder.build();
+		logger.info("loaded " + store + " from " + file);
+		return store;
+	}
+
+	/*
+	 * Returns the numeric id at the end of a key, or null if there is none.
+	 */
+	private static Long parseId (final String key) {
+		try {
+			return Long.parseLong(key.substring(key.lastIndexOf('_') + 1));
+		} catch (NumberFormatException e) {
+			logger.warn(key + " does not end with an id, parsing failed!");
+			return null;
+		}
+	}
+	/*
+	 * Returns the name of a cluster key of the format merkor_is_cluster_CLUSTERNAME_ID or
+	 * merkor_is_cluster_CLUSTER_NAME_ID, or null if key has neither format.
+	 */
+	private static String parseClusterName (final String key) {
+		String[] keyArr = key.split("_");
+		if (keyArr.length < 5 || keyArr.length > 6)
+			return null;
+		return keyArr.length == 5 ? keyArr[3] : keyArr[3] + "_" + keyArr[4];
+	}
+
+	/*
+	 * Adds the MerkOr keys of a dump to a MemoryStoreBuilder, with the same checks as RedisStoreLoader.
+	 */
+	private static class StoreHandler extends RdbParser.Handler {
+		private final MemoryStoreBuilder builder;
+		// the fields of the current hash
+		private final Map<String, String> fields = new HashMap<String, String>();
+
+		StoreHandler (final MemoryStoreBuilder builder) {
+			this.builder = builder;
+		}
+
+		@Override
+		public boolean accept (final String key) {
+			return isItemKey(key)
+				|| key.startsWith(MerkorRedisConstants.REL_ID_PREFIX_IS)
+				|| key.startsWith(MerkorRedisConstants.REL_TYPE_PREFIX)
+				|| key.startsWith(SORTED_REL_SET_PREFIX)
+				|| key.startsWith(MerkorRedisConstants.REL_TYPE_TOP_RELATIONS)
+				|| key.startsWith(MerkorRedisConstants.CLUSTER_ID_IS);
+		}
+		@Override
+		public void string (final String key, final String value) {
+			if (!key.startsWith(MerkorRedisConstants.REL_TYPE_PREFIX))
+				return;
+			try {
+				builder.addRelationType(key.substring(MerkorRedisConstants.REL_TYPE_PREFIX.length()), Long.parseLong(value));
+			} catch (NumberFormatException e) {
+				logger.warn("parsing for relation type '" + key + "' failed: " + e.getMessage());
+			}
+		}
+		@Override
+		public void hashField (final String key, final String field, final String value) {
+			fields.put(field, value);
+		}
+		@Override
+		public void sortedSetMember (final String key, final String member, final double score) {
+			Long id = parseId(key);
+			Long memberId = parseId(member);
+			if (null == id || null == memberId)
+				return;
+			if (key.startsWith(SORTED_REL_SET_PREFIX))
+				builder.addItemRelation(id, memberId, score);
+			else if (key.startsWith(MerkorRedisConstants.REL_TYPE_TOP_RELATIONS))
+				builder.addTopRelation(id, memberId, score);
+			else if (key.startsWith(MerkorRedisConstants.CLUSTER_ID_IS) && null != parseClusterName(key))
+				builder.addClusterMember(id, memberId, score);
+		}
+		@Override
+		public void endValue (final String key) {
+			if (isItemKey(key))
+				addItem(key);
+			else if (key.startsWith(MerkorRedisConstants.REL_ID_PREFIX_IS))
+				addRelation(key);
+			else if (key.startsWith(MerkorRedisConstants.CLUSTER_ID_IS) && null != parseClusterName(key)) {
+				Long id = parseId(key);
+				if (null != id)
+					builder.addCluster(id, parseClusterName(key));
+			}
+			fields.clear();
+		}
+
+		private boolean isItemKey (final String key) {
+			int prefix = MerkorRedisConstants.ID_KEY_PREFIX_IS.length();
+			return key.startsWith(MerkorRedisConstants.ID_KEY_PREFIX_IS) && key.length() > prefix
+				&& Character.isDigit(key.charAt(prefix));
+		}
+		private void addItem (final String key) {
+			Long id = parseId(key);
+			String lemma = fields.get("lemma");
+			String wordclass = fields.get("wordclass");
+			if (null == id || null == lemma || !Wordclass.VALUES.contains(wordclass)) {
+				logger.warn("parsing for item '" + key + "' failed, non valid values!");
+				return;
+			}
+			builder.addItem(id, lemma, wordclass);
+		}
+		private void addRelation (final String key) {
+			String from = fields.get("from_item");
+			String to = fields.get("to_item");
+			String relation = fields.get("relation");
+			String score = fields.get("score");
+			if (null == from || null == to || null == relation || null == score) {
+				logger.warn("parsing for relation '" + key + "' failed, null values!");
+				return;
+			}
+			Long relId = parseId(key);
+			Long fromId = parseId(from);
+			Long toId = parseId(to);
+			try {
+				if (null != relId && null != fromId && null != toId)
+					builder.addRelation(relId, fromId, toId, relation, Double.parseDouble(score));
+			} catch (NumberFormatException e) {
+				logger.warn("parsing for relation '" + key + "' failed: " + e.getMessage());
+			}
+		}
+	}
+}
@@ -0,0 +1,5 @@
+/**
+* Contains a streaming parser for Redis dump files and a loader reading the MerkOr data from a dump file without a Redis server
+*/
+
+package is.merkor.core.redis.rdb;
\ No newline at end of file
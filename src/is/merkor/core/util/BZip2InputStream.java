@@ -0,0 +1,364 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.util;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An input stream decompressing bzip2 data (as written by the bzip2 tool) on the fly,
+ * one block (at most 900k) at a time. Concatenated streams, as written by parallel
+ * bzip2 implementations, are read as one stream. The CRCs of all blocks and streams
+ * are verified, corrupt data raises an {@link IOException}.
+ * <p>
+ * Usage:
+ * <pre>
+ * InputStream in = new BZip2InputStream(new FileInputStream("dump.rdb.bz2"));
+ * </pre>
+ *
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public class BZip2InputStream extends InputStream {
+	private static final long BLOCK_MAGIC = 0x314159265359L;
+	private static final long END_MAGIC = 0x177245385090L;
+	private static final int MAX_GROUPS = 6;
+	private static final int GROUP_SIZE = 50;
+	private static final int MAX_CODE_LENGTH = 20;
+	private static final int MAX_SELECTORS = 18002;
+	private static final int RUNA = 0;
+	private static final int RUNB = 1;
+	private static final int[] CRC_TABLE = new int[256];
+
+	static {
+		for (int i = 0; i < 256; i++) {
+			int crc = i << 24;
+			for (int j = 0; j < 8; j++)
+				crc = (crc & 0x80000000) != 0 ? (crc << 1) ^ 0x04c11db7 : crc << 1;
+			CRC_TABLE[i] = crc;
+		}
+	}
+
+	private InputStream in;
+	private long bitBuffer;
+	private int bitCount;
+	private boolean endOfData = false;
+
+	// the current stream and block
+	private int blockSize;
+	private int streamCrc;
+	private int blockCrc;
+	private boolean inBlock = false;
+	private int computedCrc;
+	private byte[] block;
+	private int[] tt;
+	private int position;
+	private int remaining;
+	// the final run-length decoding: the last byte, its run length and pending repetitions
+	private int lastByte;
+	private int runLength;
+	private int repeat;
+
+	/**
+	 * Constructs a new stream decompressing the bzip2 data read from {@code in}.
+	 * @throws IOException if {@code in} does not start with a bzip2 stream header
+	 */
+	public BZip2InputStream (final InputStream in) throws IOException {
+		this.in = new BufferedInputStream(in);
+		if (!startStream())
+			throw new IOException("not a bzip2 stream: empty input");
+	}
+
+	@Override
+	public int read () throws IOException {
+		while (true) {
+			if (repeat > 0) {
+				repeat--;
+				return output(lastByte);
+			}
+			if (remaining == 0 && !nextBlock())
+				return -1;
+			int b = block[position] & 0xff;
+			position = tt[position];
+			remaining--;
+			if (runLength == 4) {
+				// the byte after 4 equal bytes is the number of further repetitions
+				repeat = b;
+				runLength = 0;
+				continue;
+			}
+			if (b == lastByte) {
+				runLength++;
+			} else {
+				lastByte = b;
+				runLength = 1;
+			}
+			return output(b);
+		}
+	}
+
+	@Override
+	public int read (final byte[] bytes, final int offset, final int length) throws IOException {
+		if (length == 0)
+			return 0;
+		int count = 0;
+		while (count < length) {
+			int b = read();
+			if (b < 0)
+				break;
+			bytes[offset + count++] = (byte)b;
+		}
+		return count == 0 ? -1 : count;
+	}
+
+	@Override
+	public void close () throws IOException {
+		if (null != in) {
+			in.close();
+			in = null;
+		}
+		block = null;
+		tt = null;
+	}
+
+	private int output (final int b) {
+		computedCrc = (computedCrc << 8) ^ CRC_TABLE[((computedCrc >>> 24) ^ b) & 0xff];
+		return b;
+	}
+	/*
+	 * Reads the header of the next stream, returns false at the end of the input.
+	 */
+	private boolean startStream () throws IOException {
+		int b = in.read();
+		if (b < 0)
+			return false;
+		if (b != 'B' || in.read() != 'Z' || in.read() != 'h')
+			throw new IOException("not a bzip2 stream: wrong magic");
+		int level = in.read() - '0';
+		if (level < 1 || level > 9)
+			throw new IOException("not a bzip2 stream: wrong block size");
+		blockSize = level * 100000;
+		if (null == block || block.length < blockSize) {
+			block = new byte[blockSize];
+			tt = new int[blockSize];
+		}
+		streamCrc = 0;
+		bitBuffer = 0;
+		bitCount = 0;
+		return true;
+	}
+	/*
+	 * Verifies the current block and decodes the next block, returns false at the end of the data.
+	 */
+	private boolean nextBlock () throws IOException {
+		if (endOfData)
+			return false;
+		if (inBlock) {
+			if (~computedCrc != blockCrc)
+				throw new IOException("bzip2 block CRC error");
+			streamCrc = ((streamCrc << 1) | (streamCrc >>> 31)) ^ blockCrc;
+			inBlock = false;
+		}
+		while (true) {
+			long magic = ((long)readBits(24) << 24) | readBits(24);
+			if (magic == BLOCK_MAGIC)
+				break;
+			if (magic != END_MAGIC)
+				throw new IOException("bzip2 data corrupt: wrong block magic");
+			if (readBits(32) != streamCrc)
+				throw new IOException("bzip2 stream CRC error");
+			if (!startStream()) {
+				endOfData = true;
+				return false;
+			}
+		}
+		blockCrc = readBits(32);
+		computedCrc = 0xffffffff;
+		if (readBits(1) != 0)
+			throw new IOException("randomised bzip2 blocks are not supported");
+		int origin = readBits(24);
+		int length = decodeBlock();
+		if (origin >= length)
+			throw new IOException("bzip2 data corrupt: wrong origin pointer");
+		position = tt[origin];
+		remaining = length;
+		inBlock = true;
+		lastByte = -1;
+		runLength = 0;
+		repeat = 0;
+		return true;
+	}
+	/*
+	 * Decodes the Huffman coded, move-to-front transformed symbols of a block into block
+	 * and computes the inverse Burrows-Wheeler transformation in tt. Returns the block length.
+	 */
+	private int decodeBlock () throws IOException {
+		// symbols in use
+		int[] symbols = new int[256];
+		int symbolCount = 0;
+		int ranges = readBits(16);
+		for (int i = 0; i < 16; i++) {
+			if ((ranges & (0x8000 >>> i)) != 0) {
+				int used = readBits(16);
+				for (int j = 0; j < 16; j++) {
+					if ((used & (0x8000 >>> j)) != 0)
+						symbols[symbolCount++] = i * 16 + j;
+				}
+			}
+		}
+		if (symbolCount == 0)
+			throw new IOException("bzip2 data corrupt: no symbols");
+		int alphabetSize = symbolCount + 2;
+		int endOfBlock = symbolCount + 1;
+
+		// Huffman table selectors, move-to-front encoded
+		int groupCount = readBits(3);
+		int selectorCount = readBits(15);
+		if (groupCount < 2 || groupCount > MAX_GROUPS || selectorCount < 1)
+			throw new IOException("bzip2 data corrupt: wrong number of Huffman tables");
+		byte[] selectors = new byte[Math.min(selectorCount, MAX_SELECTORS)];
+		byte[] groupOrder = new byte[groupCount];
+		for (int i = 0; i < groupCount; i++)
+			groupOrder[i] = (byte)i;
+		for (int i = 0; i < selectorCount; i++) {
+			int index = 0;
+			while (readBits(1) == 1) {
+				if (++index >= groupCount)
+					throw new IOException("bzip2 data corrupt: wrong selector");
+			}
+			if (i >= MAX_SELECTORS)
+				continue;
+			byte group = groupOrder[index];
+			System.arraycopy(groupOrder, 0, groupOrder, 1, index);
+			groupOrder[0] = group;
+			selectors[i] = group;
+		}
+
+		// Huffman tables, code lengths delta encoded
+		HuffmanTable[] tables = new HuffmanTable[groupCount];
+		int[] lengths = new int[alphabetSize];
+		for (int t = 0; t < groupCount; t++) {
+			int length = readBits(5);
+			for (int i = 0; i < alphabetSize; i++) {
+				while (readBits(1) == 1)
+					length += readBits(1) == 0 ? 1 : -1;
+				if (length < 1 || length > MAX_CODE_LENGTH)
+					throw new IOException("bzip2 data corrupt: wrong code length");
+				lengths[i] = length;
+			}
+			tables[t] = new HuffmanTable(lengths, alphabetSize);
+		}
+
+		// symbols: move-to-front indices with runs of the front symbol coded by RUNA and RUNB
+		int[] order = new int[256];
+		for (int i = 0; i < 256; i++)
+			order[i] = i;
+		int length = 0;
+		int selector = 0;
+		int groupRemaining = 0;
+		HuffmanTable table = null;
+		int run = 0;
+		int runWeight = 1;
+		while (true) {
+			if (groupRemaining == 0) {
+				if (selector >= selectors.length)
+					throw new IOException("bzip2 data corrupt: too few selectors");
+				table = tables[selectors[selector++]];
+				groupRemaining = GROUP_SIZE;
+			}
+			groupRemaining--;
+			int symbol = table.decode();
+			if (symbol == RUNA || symbol == RUNB) {
+				run += (symbol == RUNA ? 1 : 2) * runWeight;
+				runWeight <<= 1;
+				if (run > blockSize)
+					throw new IOException("bzip2 data corrupt: block too long");
+				continue;
+			}
+			if (run > 0) {
+				if (length + run > blockSize)
+					throw new IOException("bzip2 data corrupt: block too long");
+				byte b = (byte)symbols[order[0]];
+				for (int i = 0; i < run; i++)
+					block[length++] = b;
+				run = 0;
+				runWeight = 1;
+			}
+			if (symbol == endOfBlock)
+				break;
+			if (length >= blockSize)
+				throw new IOException("bzip2 data corrupt: block too long");
+			int index = symbol - 1;
+			int front = order[index];
+			System.arraycopy(order, 0, order, 1, index);
+			order[0] = front;
+			block[length++] = (byte)symbols[front];
+		}
+
+		// inverse Burrows-Wheeler transformation
+		int[] starts = new int[257];
+		for (int i = 0; i < length; i++)
+			starts[(block[i] & 0xff) + 1]++;
+		for (int i = 1; i < 257; i++)
+			starts[i] += starts[i - 1];
+		for (int i = 0; i < length; i++)
+			tt[starts[block[i] & 0xff]++] = i;
+		return length;
+	}
+	private int readBits (final int n) throws IOException {
+		while (bitCount < n) {
+			int b = in.read();
+			if (b < 0)
+				throw new IOException("unexpected end of bzip2 data");
+			bitBuffer = (bitBuffer << 8) | b;
+			bitCount += 8;
+		}
+		bitCount -= n;
+		return (int)((bitBuffer >>> bitCount) & ((1L << n) - 1));
+	}
+
+	/*
+	 * A canonical Huffman code, decoded bit by bit: the codes of each length are consecutive
+	 * numbers, assigned to the symbols in ascending order.
+	 */
+	private class HuffmanTable {
+		private final int[] counts = new int[MAX_CODE_LENGTH + 1];
+		private final int[] firstCodes = new int[MAX_CODE_LENGTH + 1];
+		private final int[] firstIndices = new int[MAX_CODE_LENGTH + 1];
+		private final int[] symbols;
+
+		HuffmanTable (final int[] lengths, final int alphabetSize) {
+			symbols = new int[alphabetSize];
+			for (int i = 0; i < alphabetSize; i++)
+				counts[lengths[i]]++;
+			int code = 0;
+			int index = 0;
+			for (int length = 1; length <= MAX_CODE_LENGTH; length++) {
+				firstCodes[length] = code;
+				firstIndices[length] = index;
+				for (int i = 0; i < alphabetSize; i++) {
+					if (lengths[i] == length)
+						symbols[index++] = i;
+				}
+				code = (code + counts[length]) << 1;
+			}
+		}
+		int decode () throws IOException {
+			int code = 0;
+			for (int length = 1; length <= MAX_CODE_LENGTH; length++) {
+				code = (code << 1) | readBits(1);
+				int offset = code - firstCodes[length];
+				if (offset >= 0 && offset < counts[length])
+					return symbols[firstIndices[length] + offset];
+			}
+			throw new IOException("bzip2 data corrupt: wrong Huffman code");
+		}
+	}
+}
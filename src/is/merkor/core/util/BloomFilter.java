@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Bloom filter of strings: a compact, probabilistic set answering "definitely not 
+ * contained" or "probably contained". Strings that were put into the filter are always
+ * reported as contained, other strings are reported as contained with about the false
+ * positive rate the filter was sized for. Strings can not be removed.
+ * <p>
+ * The filter is thread-safe, {@link #put(String)} and {@link #mightContain(String)} 
+ * can be called concurrently without locking.
+ * 
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public class BloomFilter {
+	
+	private final AtomicLongArray bits;
+	private final long bitCount;
+	private final int hashCount;
+	
+	/**
+	 * Constructs a new, empty filter sized for {@code expectedInsertions} strings and a
+	 * false positive rate of {@code falsePositiveRate} at this number of strings.
+	 * 
+	 * @throws IllegalArgumentException if expectedInsertions is negative or 
+	 * 			falsePositiveRate is not between 0 and 1 (exclusive)
+	 */
+	public BloomFilter (final long expectedInsertions, final double falsePositiveRate) {
+		if (expectedInsertions < 0 || !(falsePositiveRate > 0 && falsePositiveRate < 1))
+			throw new IllegalArgumentException("expectedInsertions must not be negative and falsePositiveRate be between 0 and 1!");
+		long n = Math.max(expectedInsertions, 1);
+		// optimal size and number of hash functions: m = -n ln(p) / ln(2)^2, k = m/n ln(2)
+		long m = Math.max(64, (long)Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2))));
+		bits = new AtomicLongArray((int)((m + 63) / 64));
+		bitCount = bits.length() * 64L;
+		hashCount = Math.max(1, (int)Math.round((double)bitCount / n * Math.log(2)));
+	}
+	
+	/**
+	 * Puts {@code value} into the filter.
+	 */
+	public void put (final String value) {
+		long hash = hash(value);
+		int h1 = (int)hash;
+		int h2 = (int)(hash >>> 32);
+		for (int i = 0; i < hashCount; i++) {
+			long bit = index(h1, h2, i);
+			int word = (int)(bit >>> 6);
+			long mask = 1L << bit;
+			long old;
+			do {
+				old = bits.get(word);
+				if ((old & mask) != 0)
+					break;
+			} while (!bits.compareAndSet(word, old, old | mask));
+		}
+	}
+	/**
+	 * Returns false if {@code value} has definitely not been put into the filter, 
+	 * true if it probably has.
+	 */
+	public boolean mightContain (final String value) {
+		long hash = hash(value);
+		int h1 = (int)hash;
+		int h2 = (int)(hash >>> 32);
+		for (int i = 0; i < hashCount; i++) {
+			long bit = index(h1, h2, i);
+			if ((bits.get((int)(bit >>> 6)) & (1L << bit)) == 0)
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Returns the size of the filter in bits.
+	 */
+	public long getBitCount () {
+		return bitCount;
+	}
+	/**
+	 * Returns the number of bits set per string.
+	 */
+	public int getHashCount () {
+		return hashCount;
+	}
+	
+	@Override
+	public String toString () {
+		return "bloom filter: [bits=" + bitCount + ", hashes=" + hashCount + "]";
+	}
+	
+	/*
+	 * Returns the i-th bit of a value from the two halves of its hash (double hashing).
+	 */
+	private long index (final int h1, final int h2, final int i) {
+		long combined = (h1 & 0xffffffffL) + (long)i * (h2 & 0xffffffffL);
+		return combined % bitCount;
+	}
+	/*
+	 * A 64 bit FNV-1a hash of the characters of value, with the final mix of MurmurHash3
+	 * to spread the bits over both halves.
+	 */
+	private static long hash (final String value) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < value.length(); i++) {
+			hash ^= value.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
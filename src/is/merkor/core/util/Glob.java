@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.util;
+
+import java.util.regex.Pattern;
+
+/**
+ * Matching of glob-style patterns as used by Redis (KEYS, SCAN, SSCAN) on the client,
+ * for key and lemma lookups that do not go through the Redis server.
+ *
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public class Glob {
+	
+	private Glob () {
+	}
+	
+	/**
+	 * Converts the glob-style pattern {@code glob} into a regular expression matching
+	 * the same strings as the Redis commands KEYS, SCAN and SSCAN would.
+	 * 
+	 * @param glob a pattern containing *, ?, [...] and \ escapes
+	 * @return the compiled regular expression
+	 */
+	public static Pattern toRegex (final String glob) {
+		StringBuilder regex = new StringBuilder();
+		boolean inBrackets = false;
+		for (int i = 0; i < glob.length(); i++) {
+			char c = glob.charAt(i);
+			if (inBrackets) {
+				if (c == ']')
+					inBrackets = false;
+				if (c == '\\' || c == '[')
+					regex.append('\\');
+				regex.append(c);
+			}
+			else if (c == '*')
+				regex.append(".*");
+			else if (c == '?')
+				regex.append('.');
+			else if (c == '[') {
+				inBrackets = true;
+				regex.append(c);
+				if (i + 1 < glob.length() && glob.charAt(i + 1) == '^') {
+					regex.append('^');
+					i++;
+				}
+			}
+			else if (c == '\\' && i + 1 < glob.length())
+				regex.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+			else
+				regex.append(Pattern.quote(String.valueOf(c)));
+		}
+		if (inBrackets)
+			regex.append(']');
+		return Pattern.compile(regex.toString(), Pattern.DOTALL);
+	}
+	
+	/**
+	 * Returns the literal prefix of {@code glob}: the characters before the first *, ? or [,
+	 * with \ escapes resolved. All strings matching {@code glob} start with this prefix.
+	 * 
+	 * @param glob a pattern containing *, ?, [...] and \ escapes
+	 * @return the literal prefix, the whole pattern if it contains no wildcards
+	 */
+	public static String literalPrefix (final String glob) {
+		StringBuilder prefix = new StringBuilder();
+		for (int i = 0; i < glob.length(); i++) {
+			char c = glob.charAt(i);
+			if (c == '*' || c == '?' || c == '[')
+				break;
+			if (c == '\\' && i + 1 < glob.length())
+				c = glob.charAt(++i);
+			prefix.append(c);
+		}
+		return prefix.toString();
+	}
+	
+	/**
+	 * Returns true if {@code glob} contains no wildcards, i.e. matches only its literal prefix.
+	 */
+	public static boolean isLiteral (final String glob) {
+		for (int i = 0; i < glob.length(); i++) {
+			char c = glob.charAt(i);
+			if (c == '*' || c == '?' || c == '[')
+				return false;
+			if (c == '\\')
+				i++;
+		}
+		return true;
+	}
+}
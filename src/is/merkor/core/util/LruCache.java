@@ -0,0 +1,256 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.util;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A size-bounded, thread-safe in-process cache evicting the least recently used entries.
+ * <p>
+ * The size of the cache is the sum of the weights of its entries: each entry weighs 1 
+ * by default, a {@link Weigher} can be given to weigh entries differently (e.g. lists 
+ * by their length). Entries heavier than the maximum weight are not cached at all. 
+ * Optionally entries expire a fixed time after they were put into the cache.
+ * The numbers of hits, misses and evictions are counted. A {@link RemovalListener} 
+ * can be set to be notified of all entries leaving the cache.
+ * 
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public class LruCache<K, V> {
+	
+	/**
+	 * Computes the weight of a cache value.
+	 */
+	public interface Weigher<V> {
+		public int weigh (V value);
+	}
+	
+	/**
+	 * Is notified of entries removed from the cache: evicted, expired, replaced, removed
+	 * or cleared. Called after the cache has been updated, not holding its lock.
+	 */
+	public interface RemovalListener<K, V> {
+		public void onRemoval (K key, V value);
+	}
+	
+	private static class Entry<V> {
+		private final V value;
+		private final int weight;
+		private final long expires;
+		
+		private Entry (final V value, final int weight, final long expires) {
+			this.value = value;
+			this.weight = weight;
+			this.expires = expires;
+		}
+	}
+	
+	private final long maxWeight;
+	private final long ttlMillis;
+	private final Weigher<? super V> weigher;
+	private final LinkedHashMap<K, Entry<V>> map = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+	private long weight = 0;
+	private volatile RemovalListener<? super K, ? super V> removalListener;
+	
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	
+	/**
+	 * Constructs a new cache holding at most {@code maxSize} entries, entries do not expire.
+	 */
+	public LruCache (final long maxSize) {
+		this(maxSize, 0, null);
+	}
+	/**
+	 * Constructs a new cache holding at most {@code maxSize} entries, 
+	 * expiring {@code ttlMillis} milliseconds after being put into the cache.
+	 * A ttlMillis of 0 means entries do not expire.
+	 */
+	public LruCache (final long maxSize, final long ttlMillis) {
+		this(maxSize, ttlMillis, null);
+	}
+	/**
+	 * Constructs a new cache holding entries with a total weight of at most {@code maxWeight},
+	 * weighed by {@code weigher}, expiring {@code ttlMillis} milliseconds after being put 
+	 * into the cache (0: no expiration). If weigher is null each entry weighs 1.
+	 * 
+	 * @throws IllegalArgumentException if maxWeight or ttlMillis is negative
+	 */
+	public LruCache (final long maxWeight, final long ttlMillis, final Weigher<? super V> weigher) {
+		if (maxWeight < 0 || ttlMillis < 0)
+			throw new IllegalArgumentException("maxWeight and ttlMillis must not be negative!");
+		this.maxWeight = maxWeight;
+		this.ttlMillis = ttlMillis;
+		this.weigher = weigher;
+	}
+	
+	public void setRemovalListener (final RemovalListener<? super K, ? super V> listener) {
+		this.removalListener = listener;
+	}
+	
+	/**
+	 * Returns the value cached for {@code key}, or null if there is none or it has expired.
+	 */
+	public V get (final K key) {
+		Entry<V> entry;
+		Entry<V> expired = null;
+		synchronized (this) {
+			entry = map.get(key);
+			if (null != entry && isExpired(entry)) {
+				map.remove(key);
+				weight -= entry.weight;
+				expired = entry;
+				entry = null;
+			}
+		}
+		if (null != expired)
+			notifyRemoval(key, expired.value);
+		if (null == entry) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return entry.value;
+	}
+	
+	/**
+	 * Caches {@code value} for {@code key}, evicting least recently used entries 
+	 * if the maximum weight is exceeded. Returns false if value is heavier than the
+	 * maximum weight and was not cached (an entry already cached for key is removed anyway).
+	 */
+	public boolean put (final K key, final V value) {
+		if (null == key || null == value)
+			throw new IllegalArgumentException("key and value must not be null!");
+		int valueWeight = (null == weigher) ? 1 : weigher.weigh(value);
+		long expires = (ttlMillis > 0) ? System.currentTimeMillis() + ttlMillis : 0;
+		List<Map.Entry<K, V>> removed = null;
+		boolean stored = valueWeight <= maxWeight;
+		
+		synchronized (this) {
+			Entry<V> old = map.remove(key);
+			if (null != old) {
+				weight -= old.weight;
+				removed = addRemoved(removed, key, old);
+			}
+			if (stored) {
+				map.put(key, new Entry<V>(value, valueWeight, expires));
+				weight += valueWeight;
+				
+				Iterator<Map.Entry<K, Entry<V>>> it = map.entrySet().iterator();
+				while (weight > maxWeight && it.hasNext()) {
+					Map.Entry<K, Entry<V>> eldest = it.next();
+					it.remove();
+					weight -= eldest.getValue().weight;
+					evictions.incrementAndGet();
+					removed = addRemoved(removed, eldest.getKey(), eldest.getValue());
+				}
+			}
+		}
+		if (null != removed) {
+			for (Map.Entry<K, V> entry : removed)
+				notifyRemoval(entry.getKey(), entry.getValue());
+		}
+		return stored;
+	}
+	
+	/**
+	 * Removes the entry for {@code key}, returns the value removed or null.
+	 */
+	public V remove (final K key) {
+		Entry<V> entry;
+		synchronized (this) {
+			entry = map.remove(key);
+			if (null == entry)
+				return null;
+			weight -= entry.weight;
+		}
+		notifyRemoval(key, entry.value);
+		return entry.value;
+	}
+	
+	/**
+	 * Removes all entries.
+	 */
+	public void clear () {
+		List<Map.Entry<K, V>> removed = null;
+		synchronized (this) {
+			for (Map.Entry<K, Entry<V>> entry : map.entrySet())
+				removed = addRemoved(removed, entry.getKey(), entry.getValue());
+			map.clear();
+			weight = 0;
+		}
+		if (null != removed) {
+			for (Map.Entry<K, V> entry : removed)
+				notifyRemoval(entry.getKey(), entry.getValue());
+		}
+	}
+	
+	/**
+	 * Returns the number of entries (including expired entries not yet removed).
+	 */
+	public synchronized int size () {
+		return map.size();
+	}
+	/**
+	 * Returns the sum of the weights of all entries.
+	 */
+	public synchronized long weight () {
+		return weight;
+	}
+	public long getMaxWeight () {
+		return maxWeight;
+	}
+	public long getHitCount () {
+		return hits.get();
+	}
+	public long getMissCount () {
+		return misses.get();
+	}
+	public long getEvictionCount () {
+		return evictions.get();
+	}
+	/**
+	 * Returns hits / (hits + misses), or 0.0 if the cache has not been queried yet.
+	 */
+	public double getHitRate () {
+		long h = hits.get();
+		long total = h + misses.get();
+		return (total == 0) ? 0.0 : (double)h / total;
+	}
+	
+	public String toString () {
+		return "LruCache: [size=" + size() + ", weight=" + weight() + "/" + maxWeight + ", hits=" + getHitCount() 
+				+ ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+	}
+	
+	private List<Map.Entry<K, V>> addRemoved (List<Map.Entry<K, V>> removed, final K key, final Entry<V> entry) {
+		if (null == removalListener)
+			return removed;
+		if (null == removed)
+			removed = new ArrayList<Map.Entry<K, V>>();
+		removed.add(new AbstractMap.SimpleImmutableEntry<K, V>(key, entry.value));
+		return removed;
+	}
+	private void notifyRemoval (final K key, final V value) {
+		RemovalListener<? super K, ? super V> listener = removalListener;
+		if (null != listener)
+			listener.onRemoval(key, value);
+	}
+	private boolean isExpired (final Entry<V> entry) {
+		return entry.expires > 0 && System.currentTimeMillis() >= entry.expires;
+	}
+}
@@ -20,7 +20,9 @@ public class RelationTypeMap {
 	static {
 		NAME_ID_MAP = new HashMap<String, Long>();
 		List<String> relationTypes = FileCommunicatorReading.readListFromFile(relTypesFilename);
-		relationTypes.remove(0);
+		// header, the list is empty if the file could not be read
+		if (!relationTypes.isEmpty())
+			relationTypes.remove(0);
 		String[] lineArr;
 		for (String line : relationTypes) {
 			line = line.replaceAll("\"", "");
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces concurrent computations of the same key: while a value for a key is computed,
+ * all other threads asking for the same key wait for this computation and get its result
+ * (or its exception) instead of computing the value again. Nothing is kept after the
+ * computation has finished, so a later call computes the value anew; combine with a
+ * cache like {@link LruCache} to keep results.
+ * <p>
+ * The number of calls sharing the computation of another call is counted.
+ * 
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public class SingleFlight<K, V> {
+	
+	private final ConcurrentMap<K, FutureTask<V>> calls = new ConcurrentHashMap<K, FutureTask<V>>();
+	private final AtomicLong sharedCalls = new AtomicLong();
+	
+	/**
+	 * Returns the value for {@code key} computed by {@code loader}, or, if another thread
+	 * is computing the value for {@code key}, waits for its result. Runtime exceptions and
+	 * errors of the computation are rethrown to all waiting callers, checked exceptions
+	 * wrapped in a RuntimeException. Waiting is not interrupted, the interrupt status
+	 * is restored afterwards.
+	 * 
+	 * @throws IllegalArgumentException if a param is {@code null}
+	 */
+	public V get (final K key, final Callable<V> loader) {
+		if (null == key || null == loader)
+			throw new IllegalArgumentException("key and loader must not be null!");
+		FutureTask<V> task = new FutureTask<V>(loader);
+		FutureTask<V> running = calls.putIfAbsent(key, task);
+		if (null == running) {
+			try {
+				task.run();
+			} finally {
+				calls.remove(key, task);
+			}
+			running = task;
+		} else {
+			sharedCalls.incrementAndGet();
+		}
+		return await(running);
+	}
+	
+	/**
+	 * Lets all calls from now on start new computations instead of waiting for the 
+	 * computations currently running, e.g. after the data read by them has changed. 
+	 * Callers already waiting still get the results of the running computations.
+	 */
+	public void forgetAll () {
+		calls.clear();
+	}
+	
+	/**
+	 * Returns the number of calls which got the result of a computation started by another call.
+	 */
+	public long getSharedCount () {
+		return sharedCalls.get();
+	}
+	
+	private V await (final FutureTask<V> task) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return task.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof RuntimeException)
+						throw (RuntimeException)cause;
+					if (cause instanceof Error)
+						throw (Error)cause;
+					throw new RuntimeException(cause);
+				}
+			}
+		} finally {
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * MerkOrCore
+ * Copyright (c) 2012 Anna B. Nikulásdóttir
+ * 
+ * License: GNU Lesser General Public License. 
+ * See: <http://www.gnu.org/licenses> and <README.markdown>
+ * 
+ *******************************************************************************/
+package is.merkor.core.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A thread-safe map of canonical instances, holding its values weakly: a value stays in
+ * the map as long as it is referenced elsewhere, e.g. by a cached relation list, and is
+ * removed after it has been garbage collected. Used to share one instance of equal objects
+ * (e.g. lexical items of the same id or equal lemma strings) instead of holding copies.
+ * <p>
+ * A value may be its own key, as in {@code intern(lemma, lemma)}: the key is then only held
+ * weakly as well, otherwise it is held as long as the value.
+ * 
+ * @author Anna B. Nikulasdottir
+ * @version 0.8
+ */
+public class WeakInterner<K, V> {
+	
+	/*
+	 * Refers to a value weakly, and to its key strongly if the key is not the value itself:
+	 * the entries of values being their own keys are removed by the WeakHashMap, all others
+	 * by expunge().
+	 */
+	private static class ValueReference<K, V> extends WeakReference<V> {
+		private final K key;
+		
+		private ValueReference (final K key, final V value, final ReferenceQueue<? super V> queue) {
+			super(value, queue);
+			this.key = (key == value) ? null : key;
+		}
+	}
+	
+	private final Map<K, ValueReference<K, V>> map = new WeakHashMap<K, ValueReference<K, V>>();
+	private final ReferenceQueue<V> queue = new ReferenceQueue<V>();
+	
+	/**
+	 * Returns the canonical instance for {@code key}, or null if there is none.
+	 */
+	public synchronized V get (final K key) {
+		expunge();
+		ValueReference<K, V> ref = map.get(key);
+		return null == ref ? null : ref.get();
+	}
+	/**
+	 * Makes {@code value} the canonical instance for {@code key}, replacing the current one.
+	 * 
+	 * @throws IllegalArgumentException if a param is {@code null}
+	 */
+	public synchronized void put (final K key, final V value) {
+		if (null == key || null == value)
+			throw new IllegalArgumentException("key and value must not be null!");
+		expunge();
+		// the map keeps the key of an existing entry, which may be the replaced value
+		map.remove(key);
+		map.put(key, new ValueReference<K, V>(key, value, queue));
+	}
+	/**
+	 * Returns the canonical instance for {@code key}, making {@code value} the canonical 
+	 * instance if there is none.
+	 * 
+	 * @throws IllegalArgumentException if a param is {@code null}
+	 */
+	public synchronized V intern (final K key, final V value) {
+		V canonical = get(key);
+		if (null != canonical)
+			return canonical;
+		put(key, value);
+		return value;
+	}
+	/**
+	 * Returns the number of canonical instances (including collected ones not yet removed).
+	 */
+	public synchronized int size () {
+		expunge();
+		return map.size();
+	}
+	
+	/*
+	 * Removes the entries of collected values, unless the key has been put again since.
+	 */
+	private void expunge () {
+		Reference<? extends V> ref;
+		while (null != (ref = queue.poll())) {
+			ValueReference<?, ?> valueRef = (ValueReference<?, ?>)ref;
+			if (null != valueRef.key && map.get(valueRef.key) == valueRef)
+				map.remove(valueRef.key);
+		}
+	}
+}
@@ -0,0 +1,195 @@
+package test.core.memory;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import is.merkor.core.Item;
+import is.merkor.core.Relation;
+import is.merkor.core.RelationObject;
+import is.merkor.core.memory.MemoryClusterDictionary;
+import is.merkor.core.memory.MemoryClusterMemberDictionary;
+import is.merkor.core.memory.MemoryItemDictionary;
+import is.merkor.core.memory.MemoryRelationDictionary;
+import is.merkor.core.memory.MemoryStore;
+import is.merkor.core.memory.MemoryStoreBuilder;
+import is.merkor.core.redis.data.RedisItem;
+import is.merkor.core.redis.data.RedisRelationType;
+import is.merkor.core.redis.dictionaries.MerkorRedisConstants;
+import is.merkor.core.redis.dictionaries.RedisClusterDictionary;
+import is.merkor.core.redis.dictionaries.RedisClusterMemberDictionary;
+import is.merkor.core.redis.dictionaries.RedisContext;
+import is.merkor.core.redis.dictionaries.RedisIndexBuilder;
+import is.merkor.core.redis.dictionaries.RedisItemDictionary;
+import is.merkor.core.redis.dictionaries.RedisRelationDictionary;
+import is.merkor.core.redis.dictionaries.RedisStoreLoader;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import redis.clients.jedis.Jedis;
+
+public class MemoryDictionaryTest {
+	
+	static RedisContext context;
+	static MemoryStore store;
+	
+	@BeforeClass
+	public static void setUpClass() throws Exception {
+		context = new RedisContext();
+		store = new RedisStoreLoader(context).load();
+	}
+	@AfterClass
+	public static void tearDownClass() {
+		context.close();
+	}
+	
+	@Test
+	public void testItems() throws Exception {
+		RedisItemDictionary redisDict = new RedisItemDictionary(context);
+		MemoryItemDictionary memoryDict = new MemoryItemDictionary(store);
+		
+		assertEquals(redisDict.getAllItems(), memoryDict.getAllItems());
+		assertEquals(redisDict.getItemsFor("dýr"), memoryDict.getItemsFor("dýr"));
+		assertEquals(redisDict.getItemsFor("dýr", "noun"), memoryDict.getItemsFor("dýr", "noun"));
+		assertEquals(redisDict.getItemsForLemmata(Arrays.asList("dýr", "skúr", "nonsense")), 
+				memoryDict.getItemsForLemmata(Arrays.asList("dýr", "skúr", "nonsense")));
+		assertEquals(redisDict.getItemsMatching("skúr*"), memoryDict.getItemsMatching("skúr*"));
+		assertEquals(redisDict.getItemsMatching("sk?rp*"), memoryDict.getItemsMatching("sk?rp*"));
+		assertEquals(redisDict.getItemsMatching("*ur"), memoryDict.getItemsMatching("*ur"));
+		assertEquals(redisDict.getItemFor(109799L), memoryDict.getItemFor(109799L));
+		assertTrue(memoryDict.getItemsFor("nonsense").isEmpty());
+		assertNull(memoryDict.getItemFor(0L));
+	}
+	@Test
+	public void testRelations() throws Exception {
+		RedisRelationDictionary redisDict = new RedisRelationDictionary(context);
+		MemoryRelationDictionary memoryDict = new MemoryRelationDictionary(store);
+		Item item = memoryDict.getRelationsFor("skúr").get(0).getItem();
+		RedisRelationType coordNoun = new RedisRelationType(7L, "og", "og");
+		
+		for (String lemma : new String[] {"skúr", "skerpa", "opinn", "nonsense"}) {
+			assertEquals(sorted(redisDict.getRelationsFor(lemma)), sorted(memoryDict.getRelationsFor(lemma)));
+			assertEquals(sorted(redisDict.getMostRelatedWords(lemma, 5)), sorted(memoryDict.getMostRelatedWords(lemma, 5)));
+			assertEquals(redisDict.getGlobalMostRelatedWords(lemma, 25), memoryDict.getGlobalMostRelatedWords(lemma, 25));
+			assertEquals(sorted(redisDict.getRelationsFor(lemma, 20.0, 2, 5)), sorted(memoryDict.getRelationsFor(lemma, 20.0, 2, 5)));
+			assertEquals(sorted(redisDict.getRelationsHavingLeft(lemma, coordNoun)), 
+					sorted(memoryDict.getRelationsHavingLeft(lemma, coordNoun)));
+			assertEquals(sorted(redisDict.getRelationsHavingRight(lemma, coordNoun)), 
+					sorted(memoryDict.getRelationsHavingRight(lemma, coordNoun)));
+		}
+		assertEquals(sorted(redisDict.getRelationsFor("skerpa", "birta")), sorted(memoryDict.getRelationsFor("skerpa", "birta")));
+		assertEquals(redisDict.getRelationsFor(item), memoryDict.getRelationsFor(item));
+		assertEquals(redisDict.getMostRelatedWords(item, 3), memoryDict.getMostRelatedWords(item, 3));
+		assertEquals(1, memoryDict.getMostRelatedWords(item, 1).size());
+		List<Relation> iterated = new ArrayList<Relation>();
+		for (Iterator<Relation> it = memoryDict.iterateRelationsFor(item, 20.0); it.hasNext(); )
+			iterated.add(it.next());
+		assertEquals(redisDict.getRelationsFor(item, 20.0, 0, 1000), iterated);
+		assertEquals(redisDict.getRelationsFor(item, 30.0, 1, 4), memoryDict.getRelationsFor(item, 30.0, 1, 4));
+		assertEquals(redisDict.getRelationsFor(item, Double.NEGATIVE_INFINITY, 20, 100), 
+				memoryDict.getRelationsFor(item, Double.NEGATIVE_INFINITY, 20, 100));
+		assertEquals(redisDict.getRelationRecordsFor(item.getId(), 20.0, 1, 50), memoryDict.getRelationRecordsFor(item.getId(), 20.0, 1, 50));
+		assertEquals(redisDict.getRelationRecordsFor(item.getId(), 20.0, 0, 1).get(0).getTypeId(), 
+				memoryDict.getRelationRecordsFor(item.getId(), 20.0, 0, 1).get(0).getTypeId());
+		assertEquals(redisDict.getRelationsHavingLeft(item, coordNoun), memoryDict.getRelationsHavingLeft(item, coordNoun));
+		Item other = ((Relation)memoryDict.getRelationsFor(item).get(0)).getPair().getTo();
+		assertEquals(redisDict.getRelationsFor(item, other), memoryDict.getRelationsFor(item, other));
+		assertEquals(redisDict.getMostRelated(coordNoun, 5), memoryDict.getMostRelated(coordNoun, 5));
+	}
+	@Test
+	public void testOneSidedRelationsBetweenItemsOfOneLemma() throws Exception {
+		// a relation between the two items of 'skúr' is left for one of them and right for the other
+		String relKey = MerkorRedisConstants.REL_ID_PREFIX_IS + "999999";
+		String fromSet = MerkorRedisConstants.SORTED_REL_SET_ID + MerkorRedisConstants.ID_KEY_PREFIX_IS + "109799";
+		String toSet = MerkorRedisConstants.SORTED_REL_SET_ID + MerkorRedisConstants.ID_KEY_PREFIX_IS + "112793";
+		RedisIndexBuilder builder = new RedisIndexBuilder(context);
+		Jedis jedis = new Jedis("localhost", 6379);
+		try {
+			jedis.hset(relKey, "from_item", MerkorRedisConstants.ID_KEY_PREFIX_IS + "109799");
+			jedis.hset(relKey, "to_item", MerkorRedisConstants.ID_KEY_PREFIX_IS + "112793");
+			jedis.hset(relKey, "relation", "og");
+			jedis.hset(relKey, "score", "1.0");
+			jedis.zadd(fromSet, 1.0, relKey);
+			jedis.zadd(toSet, 1.0, relKey);
+			builder.buildIndexes();
+			RedisContext fresh = new RedisContext();
+			try {
+				RedisRelationDictionary redisDict = new RedisRelationDictionary(fresh);
+				MemoryRelationDictionary memoryDict = new MemoryRelationDictionary(new RedisStoreLoader(fresh).load());
+				RedisRelationType coordNoun = new RedisRelationType(7L, "og", "og");
+				List<RelationObject> left = memoryDict.getRelationsHavingLeft("skúr", coordNoun);
+				assertEquals(sorted(redisDict.getRelationsHavingLeft("skúr", coordNoun)), sorted(left));
+				assertEquals(sorted(redisDict.getRelationsHavingRight("skúr", coordNoun)), 
+						sorted(memoryDict.getRelationsHavingRight("skúr", coordNoun)));
+				int shared = 0;
+				for (RelationObject relObj : left) {
+					for (Relation rel : relObj.getRelation()) {
+						if (rel.getId().equals(999999L))
+							shared++;
+					}
+				}
+				assertEquals(1, shared);
+			} finally {
+				fresh.close();
+			}
+		} finally {
+			jedis.del(relKey);
+			jedis.zrem(fromSet, relKey);
+			jedis.zrem(toSet, relKey);
+			jedis.disconnect();
+			builder.buildIndexes();
+		}
+	}
+	@Test
+	public void testClusters() throws Exception {
+		RedisClusterDictionary redisDict = new RedisClusterDictionary(context);
+		MemoryClusterDictionary memoryDict = new MemoryClusterDictionary(store);
+		RedisClusterMemberDictionary redisMemberDict = new RedisClusterMemberDictionary(context);
+		MemoryClusterMemberDictionary memoryMemberDict = new MemoryClusterMemberDictionary(store);
+		
+		assertEquals(redisDict.getAllClusterNames(), memoryDict.getAllClusterNames());
+		assertEquals(sorted(redisDict.getClustersMatching("íþrótt*")), sorted(memoryDict.getClustersMatching("íþrótt*")));
+		assertEquals(String.valueOf(redisDict.getClusterById(25L)), String.valueOf(memoryDict.getClusterById(25L)));
+		assertNull(memoryDict.getClusterById(500L));
+		assertEquals(redisMemberDict.getClusterItemsForCluster(55L).toString(), 
+				memoryMemberDict.getClusterItemsForCluster(55L).toString());
+		assertEquals(sorted(redisMemberDict.getClustersFor("bátur")), sorted(memoryMemberDict.getClustersFor("bátur")));
+		assertEquals(sorted(redisMemberDict.getClustersFor(35273L)), sorted(memoryMemberDict.getClustersFor(35273L)));
+		assertEquals(redisMemberDict.getDomainsFor("skúr"), memoryMemberDict.getDomainsFor("skúr"));
+		List<String> lemmata = Arrays.asList("bátur", "skúr", "nonsense");
+		assertEquals(redisMemberDict.getDomainsForLemmata(lemmata), memoryMemberDict.getDomainsForLemmata(lemmata));
+		assertEquals(redisMemberDict.getClustersForLemmata(lemmata).keySet(), memoryMemberDict.getClustersForLemmata(lemmata).keySet());
+		assertEquals(redisMemberDict.getItemsForDomain("veður"), memoryMemberDict.getItemsForDomain("veður"));
+	}
+	@Test
+	public void testBuilderOrder() {
+		MemoryStore small = new MemoryStoreBuilder()
+			.addItem(1L, "a", "noun").addItem(2L, "b", "noun").addItem(3L, "a", "verb")
+			.addRelation(9L, 1L, 2L, "og", 0.5).addRelation(10L, 1L, 3L, "og", 0.5).addRelation(11L, 2L, 3L, "og", 0.7)
+			.addRelation(12L, 1L, 4L, "og", 0.9)
+			.addItemRelation(1L, 9L, 0.5).addItemRelation(1L, 10L, 0.5).addItemRelation(1L, 12L, 0.9)
+			.build();
+		assertEquals(3, small.getItemCount());
+		// relation 12 refers to an unknown item, equal scores are ordered by key descending
+		List<? extends Relation> relations = new MemoryRelationDictionary(small).getRelationsFor(new RedisItem(1L, "a", "noun"));
+		assertEquals(2, relations.size());
+		assertEquals(Long.valueOf(9L), relations.get(0).getId());
+		assertEquals(Long.valueOf(10L), relations.get(1).getId());
+		assertEquals(Long.valueOf(7L), relations.get(0).getType().getId());
+		assertEquals(2, new MemoryItemDictionary(small).getItemsFor("a").size());
+	}
+	
+	private List<String> sorted (final List<?> objects) {
+		List<String> strings = new ArrayList<String>();
+		for (Object obj : objects)
+			strings.add(obj instanceof RelationObject ? obj.toString() : String.valueOf(obj));
+		Collections.sort(strings);
+		return strings;
+	}
+}
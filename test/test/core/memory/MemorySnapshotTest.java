@@ -0,0 +1,89 @@
+package test.core.memory;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import is.merkor.core.Item;
+import is.merkor.core.memory.MemoryClusterDictionary;
+import is.merkor.core.memory.MemoryClusterMemberDictionary;
+import is.merkor.core.memory.MemoryItemDictionary;
+import is.merkor.core.memory.MemoryRelationDictionary;
+import is.merkor.core.memory.MemorySnapshot;
+import is.merkor.core.memory.MemoryStore;
+import is.merkor.core.redis.data.RedisRelationType;
+import is.merkor.core.redis.dictionaries.RedisContext;
+import is.merkor.core.redis.dictionaries.RedisStoreLoader;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class MemorySnapshotTest {
+	
+	static MemoryStore store;
+	static MemoryStore mapped;
+	static File file;
+	
+	@BeforeClass
+	public static void setUpClass() throws Exception {
+		RedisContext context = new RedisContext();
+		store = new RedisStoreLoader(context).load();
+		context.close();
+		file = File.createTempFile("merkor", ".snapshot");
+		MemorySnapshot.write(store, file);
+		mapped = MemorySnapshot.open(file);
+	}
+	@AfterClass
+	public static void tearDownClass() {
+		file.delete();
+	}
+	
+	@Test
+	public void testCounts() {
+		assertEquals(store.getItemCount(), mapped.getItemCount());
+		assertEquals(store.getRelationCount(), mapped.getRelationCount());
+		assertEquals(store.getClusterCount(), mapped.getClusterCount());
+	}
+	@Test
+	public void testDictionaries() {
+		MemoryItemDictionary itemDict = new MemoryItemDictionary(store);
+		MemoryItemDictionary mappedItemDict = new MemoryItemDictionary(mapped);
+		assertEquals(itemDict.getAllItems(), mappedItemDict.getAllItems());
+		assertEquals(itemDict.getItemsFor("dýr"), mappedItemDict.getItemsFor("dýr"));
+		assertEquals(itemDict.getItemsMatching("skúr*"), mappedItemDict.getItemsMatching("skúr*"));
+		assertTrue(mappedItemDict.getItemsFor("nonsense").isEmpty());
+		
+		MemoryRelationDictionary relDict = new MemoryRelationDictionary(store);
+		MemoryRelationDictionary mappedRelDict = new MemoryRelationDictionary(mapped);
+		RedisRelationType coordNoun = new RedisRelationType(7L, "og", "og");
+		for (String lemma : new String[] {"skúr", "skerpa", "opinn"}) {
+			assertEquals(relDict.getRelationsFor(lemma).toString(), mappedRelDict.getRelationsFor(lemma).toString());
+			assertEquals(relDict.getRelationsHavingLeft(lemma, coordNoun).toString(), 
+					mappedRelDict.getRelationsHavingLeft(lemma, coordNoun).toString());
+		}
+		Item item = relDict.getRelationsFor("skúr").get(0).getItem();
+		assertEquals(relDict.getRelationsFor(item), mappedRelDict.getRelationsFor(item));
+		assertEquals(relDict.getMostRelated(coordNoun, 5), mappedRelDict.getMostRelated(coordNoun, 5));
+		
+		MemoryClusterDictionary clusterDict = new MemoryClusterDictionary(store);
+		MemoryClusterDictionary mappedClusterDict = new MemoryClusterDictionary(mapped);
+		assertEquals(clusterDict.getAllClusterNames(), mappedClusterDict.getAllClusterNames());
+		assertEquals(String.valueOf(clusterDict.getClusterById(25L)), String.valueOf(mappedClusterDict.getClusterById(25L)));
+		MemoryClusterMemberDictionary memberDict = new MemoryClusterMemberDictionary(store);
+		MemoryClusterMemberDictionary mappedMemberDict = new MemoryClusterMemberDictionary(mapped);
+		assertEquals(memberDict.getClusterItemsForCluster(55L).toString(), mappedMemberDict.getClusterItemsForCluster(55L).toString());
+		assertEquals(memberDict.getClustersFor("bátur").toString(), mappedMemberDict.getClustersFor("bátur").toString());
+	}
+	@Test(expected=IOException.class)
+	public void testInvalidFile() throws Exception {
+		File invalid = File.createTempFile("merkor", ".snapshot");
+		invalid.deleteOnExit();
+		FileOutputStream out = new FileOutputStream(invalid);
+		out.write(new byte[1024]);
+		out.close();
+		MemorySnapshot.open(invalid);
+	}
+}
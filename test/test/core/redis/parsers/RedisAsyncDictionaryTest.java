@@ -0,0 +1,112 @@
+package test.core.redis.parsers;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import is.merkor.core.ClusterMember;
+import is.merkor.core.Item;
+import is.merkor.core.RelationObject;
+import is.merkor.core.redis.dictionaries.RedisAsyncClusterDictionary;
+import is.merkor.core.redis.dictionaries.RedisAsyncClusterMemberDictionary;
+import is.merkor.core.redis.dictionaries.RedisAsyncItemDictionary;
+import is.merkor.core.redis.dictionaries.RedisAsyncRelationDictionary;
+import is.merkor.core.redis.dictionaries.RedisClusterDictionary;
+import is.merkor.core.redis.dictionaries.RedisClusterMemberDictionary;
+import is.merkor.core.redis.dictionaries.RedisContext;
+import is.merkor.core.redis.dictionaries.RedisItemDictionary;
+import is.merkor.core.redis.dictionaries.RedisRelationDictionary;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RedisAsyncDictionaryTest {
+	
+	RedisContext context;
+	
+	@Before
+	public void setUp() throws Exception {
+		context = new RedisContext("localhost", 6379, 4);
+	}
+	@After
+	public void tearDown() {
+		context.close();
+	}
+	
+	@Test
+	public void testFanOut() throws Exception {
+		RedisAsyncItemDictionary itemDict = new RedisAsyncItemDictionary(context);
+		RedisAsyncRelationDictionary relDict = new RedisAsyncRelationDictionary(context);
+		RedisAsyncClusterMemberDictionary memberDict = new RedisAsyncClusterMemberDictionary(context);
+		List<String> lemmata = Arrays.asList("skúr", "maður", "dýr", "skerpa", "veður");
+		
+		// start all lookups before waiting for the first one
+		List<Future<List<? extends Item>>> items = new ArrayList<Future<List<? extends Item>>>();
+		List<Future<List<RelationObject>>> relations = new ArrayList<Future<List<RelationObject>>>();
+		List<Future<List<ClusterMember>>> clusters = new ArrayList<Future<List<ClusterMember>>>();
+		for (String lemma : lemmata) {
+			items.add(itemDict.getItemsFor(lemma));
+			relations.add(relDict.getRelationsFor(lemma, 20.0, 0, 10));
+			clusters.add(memberDict.getClustersFor(lemma));
+		}
+		RedisItemDictionary syncItemDict = new RedisItemDictionary(context);
+		RedisRelationDictionary syncRelDict = new RedisRelationDictionary(context);
+		RedisClusterMemberDictionary syncMemberDict = new RedisClusterMemberDictionary(context);
+		for (int i = 0; i < lemmata.size(); i++) {
+			String lemma = lemmata.get(i);
+			assertEquals(syncItemDict.getItemsFor(lemma), items.get(i).get());
+			assertEquals(syncRelDict.getRelationsFor(lemma, 20.0, 0, 10).toString(), relations.get(i).get().toString());
+			assertEquals(syncMemberDict.getClustersFor(lemma).toString(), clusters.get(i).get().toString());
+		}
+	}
+	@Test
+	public void testMoreLookupsThanConnections() throws Exception {
+		// lookups wait for one of the two threads of the executor, not for a connection
+		RedisContext small = new RedisContext("localhost", 6379, 2);
+		small.setRelationCache(0, 0);
+		RedisAsyncRelationDictionary relDict = new RedisAsyncRelationDictionary(small);
+		List<Future<List<RelationObject>>> relations = new ArrayList<Future<List<RelationObject>>>();
+		try {
+			for (int i = 0; i < 3000; i++)
+				relations.add(relDict.getRelationsFor("orð" + (1000 + i), 0.0, 0, 10));
+			for (int i = 0; i < relations.size(); i++)
+				assertNotNull(relations.get(i).get());
+			assertTrue(((ThreadPoolExecutor)small.getExecutor()).getLargestPoolSize() <= 2);
+			assertEquals(new RedisRelationDictionary(small).getRelationsFor("orð1000", 0.0, 0, 10).toString(), 
+					relations.get(0).get().toString());
+		} finally {
+			small.close();
+		}
+	}
+	@Test
+	public void testClusters() throws Exception {
+		RedisAsyncClusterDictionary asyncDict = new RedisAsyncClusterDictionary(context);
+		RedisClusterDictionary dict = new RedisClusterDictionary(context);
+		assertEquals(dict.getAllClusterNames(), asyncDict.getAllClusterNames().get());
+		assertEquals(String.valueOf(dict.getClusterById(25L)), String.valueOf(asyncDict.getClusterById(25L).get()));
+	}
+	@Test
+	public void testNullLemma() throws Exception {
+		Future<List<? extends Item>> future = new RedisAsyncItemDictionary(context).getItemsFor(null);
+		try {
+			future.get();
+			fail("expected an ExecutionException");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalArgumentException);
+		}
+	}
+	@Test
+	public void testAfterClose() throws Exception {
+		RedisAsyncItemDictionary itemDict = new RedisAsyncItemDictionary(context);
+		assertFalse(itemDict.getItemsFor("skúr").get().isEmpty());
+		// the context creates a new executor after close
+		context.close();
+		assertFalse(itemDict.getItemsFor("skúr").get().isEmpty());
+	}
+}
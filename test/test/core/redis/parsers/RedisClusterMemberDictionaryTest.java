@@ -2,6 +2,8 @@ package test.core.redis.parsers;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -36,6 +38,24 @@ public class RedisClusterMemberDictionaryTest {
 		list = dict.getClustersFor("maður");
 		assertTrue(list.size() == 0);
 	}
+	@Test
+	public void testGetClustersForLemmata () {
+		List<String> lemmata = Arrays.asList("bátur", "skúr", "maður", "bátur", "nonsense");
+		Map<String, List<ClusterMember>> clusters = dict.getClustersForLemmata(lemmata);
+		Map<String, Map<String, Item>> domains = dict.getDomainsForLemmata(lemmata);
+		
+		assertEquals(Arrays.asList("bátur", "skúr", "maður", "nonsense"), new ArrayList<String>(clusters.keySet()));
+		assertEquals(clusters.keySet(), domains.keySet());
+		for (String lemma : clusters.keySet()) {
+			assertEquals(dict.getClustersFor(lemma).toString(), clusters.get(lemma).toString());
+			assertEquals(dict.getDomainsFor(lemma), domains.get(lemma));
+		}
+		assertTrue(clusters.get("maður").isEmpty());
+	}
+	@Test (expected=IllegalArgumentException.class)
+	public void testGetClustersForLemmataNull () {
+		dict.getClustersForLemmata(null);
+	}
 	@Test (expected=IllegalArgumentException.class)
 	public void testGetClustersForEmpty () {
 		List<ClusterMember> list = dict.getClustersFor("");
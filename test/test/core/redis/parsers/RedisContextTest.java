@@ -0,0 +1,287 @@
+package test.core.redis.parsers;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import is.merkor.core.Item;
+import is.merkor.core.Relation;
+import is.merkor.core.RelationObject;
+import is.merkor.core.redis.data.RedisItem;
+import is.merkor.core.redis.dictionaries.MerkorRedisConstants;
+import is.merkor.core.redis.dictionaries.RedisCacheInvalidator;
+import is.merkor.core.redis.dictionaries.RedisContext;
+import is.merkor.core.redis.dictionaries.RedisItemDictionary;
+import is.merkor.core.redis.dictionaries.RedisRelationDictionary;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import redis.clients.jedis.Jedis;
+
+public class RedisContextTest {
+	
+	RedisContext context;
+	RedisItemDictionary itemDict;
+	RedisRelationDictionary relDict;
+	
+	@Before
+	public void setUp() throws Exception {
+		context = new RedisContext("localhost", 6379, 2);
+		itemDict = new RedisItemDictionary(context);
+		relDict = new RedisRelationDictionary(context);
+	}
+	@After
+	public void tearDown() {
+		context.close();
+	}
+	
+	@Test (expected=IllegalArgumentException.class)
+	public void testNoConnections() throws Exception {
+		new RedisContext("localhost", 6379, 0);
+	}
+	@Test
+	public void testBrokenConnectionWakesWaiter() throws Exception {
+		final PoolContext single = new PoolContext();
+		final Jedis jedis = single.borrow();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			// the waiter blocks until the only connection is destroyed, then creates a new one
+			Future<Long> waited = executor.submit(new Callable<Long>() {
+				public Long call () {
+					long start = System.currentTimeMillis();
+					single.giveBack(single.borrow(), false);
+					return System.currentTimeMillis() - start;
+				}
+			});
+			Thread.sleep(100);
+			single.giveBack(jedis, true);
+			assertTrue(waited.get() < RedisContext.DEFAULT_WAIT_TIMEOUT / 2);
+		} finally {
+			executor.shutdown();
+			single.close();
+		}
+	}
+	@Test
+	public void testChannelsShareConnections() throws Exception {
+		Jedis probe = new Jedis("localhost", 6379);
+		PoolContext single = null;
+		try {
+			int before = connectedClients(probe);
+			single = new PoolContext();
+			// matching lemmata needs a command unknown to Jedis, the items are read by Jedis commands
+			List<? extends Item> items = new RedisItemDictionary(single).getItemsMatching("skú*");
+			assertEquals(itemDict.getItemsMatching("skú*").toString(), items.toString());
+			assertFalse(items.isEmpty());
+			assertEquals(before + 1, connectedClients(probe));
+		} finally {
+			if (null != single)
+				single.close();
+			probe.disconnect();
+		}
+	}
+	@Test
+	public void testConcurrentQueries() throws Exception {
+		final String[] lemmata = {"skúr", "maður", "dýr", "skerpa"};
+		List<String> expected = new ArrayList<String>();
+		for (String lemma : lemmata)
+			expected.add(query(lemma));
+		
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<String>> futures = new ArrayList<Future<String>>();
+		for (int i = 0; i < 40; i++) {
+			final String lemma = lemmata[i % lemmata.length];
+			futures.add(executor.submit(new Callable<String>() {
+				public String call() {
+					return query(lemma);
+				}
+			}));
+		}
+		for (int i = 0; i < futures.size(); i++)
+			assertEquals(expected.get(i % lemmata.length), futures.get(i).get());
+		executor.shutdown();
+	}
+	
+	@Test
+	public void testCachedRelationLists() throws Exception {
+		RedisContext uncached = new RedisContext();
+		uncached.setRelationCache(0, 0);
+		RedisRelationDictionary uncachedDict = new RedisRelationDictionary(uncached);
+		
+		// fill the cache with the complete lists, then slice the top relations from them
+		relDict.getRelationsFor("skúr");
+		assertTrue(context.getRelationCache().size() > 0);
+		long hits = context.getRelationCache().getHitCount();
+		assertEquals(uncachedDict.getMostRelatedWords("skúr", 5).toString(), 
+				relDict.getMostRelatedWords("skúr", 5).toString());
+		assertTrue(context.getRelationCache().getHitCount() > hits);
+		assertEquals(uncachedDict.getRelationsFor("skerpa", "birta").toString(), 
+				relDict.getRelationsFor("skerpa", "birta").toString());
+		assertEquals(uncachedDict.getRelationsFor("skúr").toString(), relDict.getRelationsFor("skúr").toString());
+		uncached.close();
+	}
+	
+	@Test
+	public void testInvalidation() throws Exception {
+		RedisCacheInvalidator invalidator = new RedisCacheInvalidator(context);
+		invalidator.start(true);
+		Jedis jedis = new Jedis("localhost", 6379);
+		Item item = itemDict.getItemsFor("skúr").get(0);
+		Relation relation = relDict.getRelationsFor(item).get(0);
+		String relKey = MerkorRedisConstants.REL_ID_PREFIX_IS + relation.getId();
+		String score = jedis.hget(relKey, "score");
+		try {
+			waitForSubscription(invalidator);
+			relDict.getRelationsFor(item);
+			assertTrue(context.getRelationCache().size() > 0);
+			jedis.hset(relKey, "score", "0.123");
+			assertEquals(Double.valueOf(0.123), waitForConfidence(item, relation.getId(), 0.123));
+			assertTrue(invalidator.getInvalidationCount() > 0);
+		} finally {
+			jedis.hset(relKey, "score", score);
+			jedis.disconnect();
+			invalidator.stop();
+		}
+		assertFalse(invalidator.isSubscribed());
+	}
+	
+	@Test
+	public void testMissingLemmata() throws Exception {
+		String lemma = "skúrbygging";
+		String lemmaKey = MerkorRedisConstants.LEMMA_KEY_PREFIX_IS + lemma;
+		String itemKey = itemParserKey(itemDict.getItemsFor("skúr").get(0));
+		context.setLemmaFilter(true);
+		assertNotNull(context.getLemmaFilter());
+		assertTrue(itemDict.getItemsFor(lemma).isEmpty());
+		assertFalse(itemDict.getItemsFor("skúr").isEmpty());
+		
+		Jedis jedis = new Jedis("localhost", 6379);
+		try {
+			jedis.sadd(lemmaKey, itemKey);
+			// not in the filter until the caches are cleared
+			assertTrue(itemDict.getItemsFor(lemma).isEmpty());
+			assertTrue(itemDict.getItemsForLemmata(Arrays.asList(lemma)).get(lemma).isEmpty());
+			context.clearCaches();
+			assertEquals(1, itemDict.getItemsFor(lemma).size());
+			
+			// without a filter, lemmata not found are remembered
+			context.setLemmaFilter(false);
+			jedis.del(lemmaKey);
+			context.clearCaches();
+			assertTrue(itemDict.getItemsFor(lemma).isEmpty());
+			jedis.sadd(lemmaKey, itemKey);
+			assertTrue(itemDict.getItemsFor(lemma).isEmpty());
+			assertTrue(context.getMissingLemmaCache().getHitCount() > 0);
+			context.setMissingLemmaCache(0, 0);
+			assertEquals(1, itemDict.getItemsFor(lemma).size());
+		} finally {
+			jedis.del(lemmaKey);
+			jedis.disconnect();
+		}
+	}
+	
+	@Test
+	public void testSharedItems() throws Exception {
+		// without caches every read creates the items anew
+		context.setItemCache(0, 0);
+		context.setRelationCache(0, 0);
+		Item item = itemDict.getItemsFor("skúr").get(0);
+		List<? extends Relation> first = relDict.getRelationsFor(item);
+		List<? extends Relation> second = relDict.getRelationsFor(item);
+		assertEquals(first, second);
+		for (int i = 0; i < first.size(); i++) {
+			assertSame(first.get(i).getPair().getFrom(), second.get(i).getPair().getFrom());
+			assertSame(first.get(i).getPair().getTo(), second.get(i).getPair().getTo());
+		}
+		assertSame(itemDict.getItemsFor("skúr").get(0).getLemma(), item.getLemma());
+	}
+	@Test
+	public void testItemsWithMissingFields() throws Exception {
+		PoolContext pool = new PoolContext();
+		try {
+			pool.item(999998L, null, "noun");
+			fail("expected an IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// items with missing fields are not shared
+		}
+		assertEquals("hálft", pool.item(999998L, "hálft", "noun").getLemma());
+		pool.close();
+		
+		String key = MerkorRedisConstants.ID_KEY_PREFIX_IS + "999998";
+		Jedis jedis = new Jedis("localhost", 6379);
+		try {
+			jedis.hset(key, "lemma", "hálft");
+			assertNull(itemDict.getItemFor(999998L));
+			assertNull(itemDict.getItemFor(999998L));
+			jedis.hset(key, "wordclass", "noun");
+			assertEquals("hálft", itemDict.getItemFor(999998L).getLemma());
+		} finally {
+			jedis.del(key);
+			jedis.disconnect();
+		}
+	}
+	
+	/*
+	 * A context of one connection exposing its pool.
+	 */
+	private static class PoolContext extends RedisContext {
+		PoolContext () throws Exception {
+			super("localhost", 6379, 1);
+		}
+		Jedis borrow () {
+			return getResource();
+		}
+		void giveBack (final Jedis jedis, final boolean broken) {
+			if (broken)
+				returnBrokenResource(jedis);
+			returnResource(jedis);
+		}
+		RedisItem item (final Long id, final String lemma, final String wordclass) {
+			return createItem(id, lemma, wordclass);
+		}
+	}
+	private static int connectedClients (final Jedis jedis) {
+		for (String line : jedis.info().split("\r\n")) {
+			if (line.startsWith("connected_clients:"))
+				return Integer.parseInt(line.substring("connected_clients:".length()));
+		}
+		throw new IllegalStateException("no connected_clients in INFO");
+	}
+	private static String itemParserKey (final Item item) {
+		return MerkorRedisConstants.ID_KEY_PREFIX_IS + item.getId();
+	}
+	private void waitForSubscription (final RedisCacheInvalidator invalidator) throws InterruptedException {
+		for (int i = 0; i < 100 && !invalidator.isSubscribed(); i++)
+			Thread.sleep(20);
+		assertTrue(invalidator.isSubscribed());
+	}
+	private Double waitForConfidence (final Item item, final Long relId, final double expected) throws InterruptedException {
+		Double confidence = null;
+		for (int i = 0; i < 100; i++) {
+			for (Relation rel : relDict.getRelationsFor(item)) {
+				if (rel.getId().equals(relId))
+					confidence = rel.getConfidence();
+			}
+			if (confidence == expected)
+				break;
+			Thread.sleep(20);
+		}
+		return confidence;
+	}
+	
+	private String query (final String lemma) {
+		StringBuilder sb = new StringBuilder();
+		for (Item item : itemDict.getItemsFor(lemma))
+			sb.append(item);
+		for (RelationObject relObj : relDict.getMostRelatedWords(lemma, 10))
+			sb.append(relObj.getRelation());
+		return sb.toString();
+	}
+}
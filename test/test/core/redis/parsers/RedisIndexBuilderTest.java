@@ -0,0 +1,174 @@
+package test.core.redis.parsers;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import is.merkor.core.Cluster;
+import is.merkor.core.Item;
+import is.merkor.core.RelationType;
+import is.merkor.core.redis.data.RedisItem;
+import is.merkor.core.redis.data.RedisRelationType;
+import is.merkor.core.redis.dictionaries.MerkorRedisConstants;
+import is.merkor.core.redis.dictionaries.RedisCacheInvalidator;
+import is.merkor.core.redis.dictionaries.RedisClusterDictionary;
+import is.merkor.core.redis.dictionaries.RedisContext;
+import is.merkor.core.redis.dictionaries.RedisIndexBuilder;
+import is.merkor.core.redis.dictionaries.RedisItemDictionary;
+import is.merkor.core.redis.dictionaries.RedisRelationDictionary;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import redis.clients.jedis.Jedis;
+
+public class RedisIndexBuilderTest {
+	
+	RedisIndexBuilder builder;
+	RedisItemDictionary itemDict;
+	RedisClusterDictionary clusterDict;
+	
+	@Before
+	public void setUp() throws Exception {
+		builder = new RedisIndexBuilder();
+		itemDict = new RedisItemDictionary();
+		clusterDict = new RedisClusterDictionary();
+	}
+	
+	@Test
+	public void testSameResultsWithAndWithoutIndexes() {
+		builder.dropIndexes();
+		List<? extends Item> scannedItems = itemDict.getAllItems();
+		List<? extends Item> scannedMatching = itemDict.getItemsMatching("brauð*");
+		List<String> scannedNames = clusterDict.getAllClusterNames();
+		Cluster scannedCluster = clusterDict.getClusterById(276L);
+		
+		builder.buildIndexes();
+		assertEquals(scannedItems.size(), itemDict.getAllItems().size());
+		assertEquals(scannedMatching.size(), itemDict.getItemsMatching("brauð*").size());
+		assertEquals(scannedNames, clusterDict.getAllClusterNames());
+		assertEquals(scannedCluster.getName(), clusterDict.getClusterById(276L).getName());
+		assertTrue(itemDict.getAllItems().size() > 0);
+	}
+	
+	@Test
+	public void testLemmaPatternsWithAndWithoutIndexes() {
+		String[] patterns = {"brauð*", "sk?rp*", "sk[ae]rpa", "skúr", "*ur", "brauð\\*", "nonsense*"};
+		builder.dropIndexes();
+		List<HashSet<Item>> scanned = new ArrayList<HashSet<Item>>();
+		for (String pattern : patterns)
+			scanned.add(new HashSet<Item>(itemDict.getItemsMatching(pattern)));
+		
+		builder.buildIndexes();
+		for (int i = 0; i < patterns.length; i++)
+			assertEquals(patterns[i], scanned.get(i), new HashSet<Item>(itemDict.getItemsMatching(patterns[i])));
+		assertFalse(scanned.get(1).isEmpty());
+		assertTrue(scanned.get(6).isEmpty());
+	}
+	
+	@Test
+	public void testOneSidedRelationsWithAndWithoutIndexes() throws Exception {
+		String[] lemmata = {"birta", "skerpa", "skúr"};
+		Item item = new RedisItem(109936L, "birta", "noun");
+		builder.dropIndexes();
+		List<String> filtered = oneSidedRelations(new RedisRelationDictionary(), lemmata, item);
+		
+		builder.buildIndexes();
+		assertEquals(filtered, oneSidedRelations(new RedisRelationDictionary(), lemmata, item));
+		assertTrue(filtered.contains("[]"));
+		assertFalse(new HashSet<String>(filtered).size() == 1);
+	}
+	
+	@Test
+	public void testOneSidedRelationsBetweenItemsOfOneLemma() throws Exception {
+		// a relation between the two items of 'skúr' is left for one of them and right for the other
+		String[] lemmata = {"skúr"};
+		Item item = new RedisItem(109799L, "skúr", "noun");
+		String relKey = MerkorRedisConstants.REL_ID_PREFIX_IS + "999999";
+		Jedis jedis = new Jedis("localhost", 6379);
+		try {
+			jedis.hset(relKey, "from_item", MerkorRedisConstants.ID_KEY_PREFIX_IS + "109799");
+			jedis.hset(relKey, "to_item", MerkorRedisConstants.ID_KEY_PREFIX_IS + "112793");
+			jedis.hset(relKey, "relation", "og");
+			jedis.hset(relKey, "score", "1.0");
+			jedis.zadd(MerkorRedisConstants.SORTED_REL_SET_ID + MerkorRedisConstants.ID_KEY_PREFIX_IS + "109799", 1.0, relKey);
+			jedis.zadd(MerkorRedisConstants.SORTED_REL_SET_ID + MerkorRedisConstants.ID_KEY_PREFIX_IS + "112793", 1.0, relKey);
+			builder.dropIndexes();
+			List<String> filtered = oneSidedRelations(new RedisRelationDictionary(), lemmata, item);
+			
+			builder.buildIndexes();
+			assertEquals(filtered, oneSidedRelations(new RedisRelationDictionary(), lemmata, item));
+		} finally {
+			jedis.del(relKey);
+			jedis.zrem(MerkorRedisConstants.SORTED_REL_SET_ID + MerkorRedisConstants.ID_KEY_PREFIX_IS + "109799", relKey);
+			jedis.zrem(MerkorRedisConstants.SORTED_REL_SET_ID + MerkorRedisConstants.ID_KEY_PREFIX_IS + "112793", relKey);
+			jedis.disconnect();
+			builder.buildIndexes();
+		}
+	}
+	
+	@Test
+	public void testChangedRelationsStopReadingSideRelations() throws Exception {
+		RedisContext context = new RedisContext();
+		RedisCacheInvalidator invalidator = new RedisCacheInvalidator(context);
+		RedisRelationDictionary relDict = new RedisRelationDictionary(context);
+		Item item = new RedisItem(109799L, "skúr", "noun");
+		RelationType coordNoun = new RedisRelationType(7L, "og", "og");
+		String relKey = MerkorRedisConstants.REL_ID_PREFIX_IS + "999999";
+		String fromSet = MerkorRedisConstants.SORTED_REL_SET_ID + MerkorRedisConstants.ID_KEY_PREFIX_IS + "109799";
+		Jedis jedis = new Jedis("localhost", 6379);
+		try {
+			builder.buildIndexes();
+			invalidator.start(true);
+			for (int i = 0; i < 100 && !invalidator.isSubscribed(); i++)
+				Thread.sleep(20);
+			int indexed = relDict.getRelationsHavingLeft(item, coordNoun).size();
+			
+			jedis.hset(relKey, "from_item", MerkorRedisConstants.ID_KEY_PREFIX_IS + "109799");
+			jedis.hset(relKey, "to_item", MerkorRedisConstants.ID_KEY_PREFIX_IS + "600");
+			jedis.hset(relKey, "relation", "og");
+			jedis.hset(relKey, "score", "1.0");
+			jedis.zadd(fromSet, 1.0, relKey);
+			assertEquals(indexed + 1, waitForLeftRelations(relDict, item, coordNoun, indexed + 1));
+			// the marker is left to the index builder, other clients still read the sets
+			assertTrue(jedis.exists(MerkorRedisConstants.INDEX_SIDE_RELATIONS));
+			assertEquals(indexed, new RedisRelationDictionary().getRelationsHavingLeft(item, coordNoun).size());
+			
+			builder.buildIndexes();
+			assertEquals(indexed + 1, new RedisRelationDictionary().getRelationsHavingLeft(item, coordNoun).size());
+			assertEquals(indexed + 1, relDict.getRelationsHavingLeft(item, coordNoun).size());
+		} finally {
+			jedis.del(relKey);
+			jedis.zrem(fromSet, relKey);
+			invalidator.stop();
+			jedis.disconnect();
+			context.close();
+			builder.buildIndexes();
+		}
+	}
+	
+	private int waitForLeftRelations (RedisRelationDictionary relDict, Item item, RelationType type, int expected) throws InterruptedException {
+		int size = relDict.getRelationsHavingLeft(item, type).size();
+		for (int i = 0; i < 100 && size != expected; i++) {
+			Thread.sleep(20);
+			size = relDict.getRelationsHavingLeft(item, type).size();
+		}
+		return size;
+	}
+	
+	private List<String> oneSidedRelations (RedisRelationDictionary relDict, String[] lemmata, Item item) {
+		List<String> result = new ArrayList<String>();
+		for (long typeId = 0; typeId < 16; typeId++) {
+			RelationType type = new RedisRelationType(typeId, "type", "type");
+			for (String lemma : lemmata) {
+				result.add(relDict.getRelationsHavingLeft(lemma, type).toString());
+				result.add(relDict.getRelationsHavingRight(lemma, type).toString());
+			}
+			result.add(relDict.getRelationsHavingLeft(item, type).toString());
+			result.add(relDict.getRelationsHavingRight(item, type).toString());
+		}
+		return result;
+	}
+}
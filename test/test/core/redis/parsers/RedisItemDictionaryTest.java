@@ -2,7 +2,10 @@ package test.core.redis.parsers;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import is.merkor.core.Item;
 import is.merkor.core.redis.data.RedisItem;
@@ -37,6 +40,20 @@ public class RedisItemDictionaryTest {
 		List<? extends Item> list = dict.getItemsFor("dýr");
 		assertTrue(list.size() == 2);
 	}
+	@Test
+	public void testGetItemsForLemmata () {
+		Map<String, List<Item>> map = dict.getItemsForLemmata(Arrays.asList("skúr", "dýr", "skúr", "nonsense", "skerpa"));
+		
+		assertEquals(Arrays.asList("skúr", "dýr", "nonsense", "skerpa"), new ArrayList<String>(map.keySet()));
+		for (String lemma : map.keySet())
+			assertEquals(dict.getItemsFor(lemma), map.get(lemma));
+		assertTrue(map.get("nonsense").isEmpty());
+		assertTrue(dict.getItemsForLemmata(new ArrayList<String>()).isEmpty());
+	}
+	@Test (expected=IllegalArgumentException.class)
+	public void testGetItemsForLemmataEmptyLemma () {
+		dict.getItemsForLemmata(Arrays.asList("skúr", ""));
+	}
 	@Test (expected=IllegalArgumentException.class)
 	public void testGetItemsForEmpty () {
 		List<? extends Item> list = dict.getItemsFor("");
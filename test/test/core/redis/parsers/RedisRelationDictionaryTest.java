@@ -2,12 +2,19 @@ package test.core.redis.parsers;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import is.merkor.core.Relation;
 import is.merkor.core.RelationObject;
 import is.merkor.core.redis.data.RedisItem;
 import is.merkor.core.redis.data.RedisRelationType;
+import is.merkor.core.redis.data.RelationRecord;
 import is.merkor.core.redis.dictionaries.RedisRelationDictionary;
 import is.merkor.core.redis.dictionaries.RedisRelationParser;
 
@@ -43,6 +50,24 @@ public class RedisRelationDictionaryTest {
 		assertTrue(list.isEmpty());
 	}
 	
+	@Test
+	public void testGetRelationsForLemmata() throws Exception {
+		List<String> lemmata = Arrays.asList("skúr", "skerpa", "birta", "skúr", "nonsense");
+		// the relation lists of skerpa are cached in dict, no lists are cached in uncachedDict
+		dict.getRelationsFor("skerpa");
+		RedisRelationDictionary uncachedDict = new RedisRelationDictionary();
+		
+		for (RedisRelationDictionary d : new RedisRelationDictionary[] {uncachedDict, dict}) {
+			Map<String, List<RelationObject>> map = d.getRelationsForLemmata(lemmata);
+			assertEquals(Arrays.asList("skúr", "skerpa", "birta", "nonsense"), new ArrayList<String>(map.keySet()));
+			for (String lemma : map.keySet())
+				assertEquals(new RedisRelationDictionary().getRelationsFor(lemma).toString(), map.get(lemma).toString());
+		}
+		// the lists read in the batch are cached
+		RedisItem item = new RedisItem(109799L, "skúr", "noun");
+		assertEquals(uncachedDict.getRelationsFor(item), new RedisRelationDictionary().getRelationsFor(item));
+	}
+	
 	@Test
 	public void testGetRelationsForTwoLemma() {
 		List<RelationObject> list = dict.getRelationsFor("skerpa", "birta");
@@ -76,6 +101,157 @@ public class RedisRelationDictionaryTest {
 		
 	}
 	
+	@Test
+	public void testGetRelationsForTwoItemsIntersectsIds() throws Exception {
+		RedisItem item1 = new RedisItem(81340L, "skerpa", "noun");
+		RedisItem item2 = new RedisItem(109936L, "birta", "noun");
+		// the relation lists are cached in dict, not in uncachedDict
+		List<Relation> expected = new ArrayList<Relation>(dict.getRelationsFor(item1));
+		expected.retainAll(dict.getRelationsFor(item2));
+		RedisRelationDictionary uncachedDict = new RedisRelationDictionary();
+		
+		assertEquals(expected, uncachedDict.getRelationsFor(item1, item2));
+		assertEquals(expected, dict.getRelationsFor(item1, item2));
+		assertEquals(dict.getRelationsFor("skerpa", "birta").toString(), 
+				new RedisRelationDictionary().getRelationsFor("skerpa", "birta").toString());
+		assertTrue(uncachedDict.getRelationsFor(item1, new RedisItem(0L, "nonsense", "noun")).isEmpty());
+	}
+	
+	@Test
+	public void testGetRelationsPage() throws Exception {
+		RedisItem item = new RedisItem(109799L, "skúr", "noun");
+		// the relation list is cached in dict, not in uncachedDict
+		List<? extends Relation> all = dict.getRelationsFor(item);
+		RedisRelationDictionary uncachedDict = new RedisRelationDictionary();
+		
+		for (double minConfidence : new double[] {Double.NEGATIVE_INFINITY, 20.0, 34.75, 1000.0}) {
+			List<Relation> confident = new ArrayList<Relation>();
+			for (Relation rel : all) {
+				if (rel.getConfidence() >= minConfidence)
+					confident.add(rel);
+			}
+			for (int offset : new int[] {0, 3, 10, 100}) {
+				for (int limit : new int[] {1, 5, 100}) {
+					List<Relation> expected = confident.subList(Math.min(offset, confident.size()), 
+							Math.min(offset + limit, confident.size()));
+					assertEquals(expected, uncachedDict.getRelationsFor(item, minConfidence, offset, limit));
+					assertEquals(expected, dict.getRelationsFor(item, minConfidence, offset, limit));
+				}
+			}
+		}
+		assertEquals(dict.getRelationsFor("skúr", 20.0, 2, 5).toString(), 
+				new RedisRelationDictionary().getRelationsFor("skúr", 20.0, 2, 5).toString());
+		assertTrue(dict.getRelationsFor("skúr", 1000.0, 0, 5).isEmpty());
+		assertEquals(1, dict.getMostRelatedWords(item, 1).size());
+		assertEquals(1, uncachedDict.getMostRelatedWords(item, 1).size());
+	}
+	@Test (expected=IllegalArgumentException.class)
+	public void testGetRelationsPageNegativeOffset() {
+		dict.getRelationsFor("skúr", 0.0, -1, 5);
+	}
+	@Test (expected=IllegalArgumentException.class)
+	public void testGetRelationsPageNaN() {
+		dict.getRelationsFor("skúr", Double.NaN, 0, 5);
+	}
+	
+	@Test
+	public void testIterateRelationsFor() throws Exception {
+		// maður has 2500 relations
+		for (RedisItem item : new RedisItem[] {new RedisItem(109799L, "skúr", "noun"), new RedisItem(607L, "maður", "noun")}) {
+			RedisRelationDictionary uncachedDict = new RedisRelationDictionary();
+			List<Relation> all = new ArrayList<Relation>(uncachedDict.getRelationsFor(item, Double.NEGATIVE_INFINITY, 0, 5000));
+			for (double minConfidence : new double[] {Double.NEGATIVE_INFINITY, 20.0, 1000.0}) {
+				List<Relation> expected = new ArrayList<Relation>();
+				for (Relation rel : all) {
+					if (rel.getConfidence() >= minConfidence)
+						expected.add(rel);
+				}
+				for (int chunkSize : new int[] {1, 7, 100}) {
+					if (chunkSize == 1 && all.size() > 100)
+						continue;
+					List<Relation> iterated = new ArrayList<Relation>();
+					Iterator<Relation> it = uncachedDict.iterateRelationsFor(item, minConfidence, chunkSize);
+					while (it.hasNext())
+						iterated.add(it.next());
+					assertEquals(expected, iterated);
+				}
+			}
+		}
+		// cached
+		RedisItem item = new RedisItem(109799L, "skúr", "noun");
+		List<Relation> iterated = new ArrayList<Relation>();
+		dict.getRelationsFor(item);
+		for (Iterator<Relation> it = dict.iterateRelationsFor(item, Double.NEGATIVE_INFINITY); it.hasNext(); )
+			iterated.add(it.next());
+		assertEquals(dict.getRelationsFor(item), iterated);
+		assertFalse(dict.iterateRelationsFor(new RedisItem(0L, "nonsense", "noun"), 0.0).hasNext());
+	}
+	@Test (expected=UnsupportedOperationException.class)
+	public void testIterateRelationsForRemove() throws Exception {
+		Iterator<Relation> it = new RedisRelationDictionary().iterateRelationsFor(new RedisItem(607L, "maður", "noun"), 0.0, 10);
+		it.next();
+		it.remove();
+	}
+	
+	@Test
+	public void testGetRelationRecordsFor() throws Exception {
+		RedisItem item = new RedisItem(109799L, "skúr", "noun");
+		for (double minConfidence : new double[] {Double.NEGATIVE_INFINITY, 20.0, 1000.0}) {
+			List<Relation> relations = dict.getRelationsFor(item, minConfidence, 2, 10);
+			List<RelationRecord> records = dict.getRelationRecordsFor(item.getId(), minConfidence, 2, 10);
+			assertEquals(relations.size(), records.size());
+			for (int i = 0; i < records.size(); i++) {
+				Relation rel = relations.get(i);
+				RelationRecord record = records.get(i);
+				assertEquals(rel.getId().longValue(), record.getId());
+				assertEquals(rel.getConfidence(), record.getConfidence(), 0.0);
+				assertEquals(rel.getType().getId().longValue(), record.getTypeId());
+				assertEquals(rel.getPair().getFrom(), record.getFrom());
+				assertEquals(rel.getPair().getTo(), record.getTo());
+			}
+		}
+		assertTrue(dict.getRelationRecordsFor(0L, 0.0, 0, 10).isEmpty());
+	}
+	@Test (expected=IllegalArgumentException.class)
+	public void testGetRelationRecordsForNull() {
+		dict.getRelationRecordsFor(null, 0.0, 0, 10);
+	}
+	
+	@Test
+	public void testGetGlobalMostRelatedWords() throws Exception {
+		// skúr has two items with interleaved scores
+		for (String lemma : new String[] {"skúr", "skerpa", "birta"}) {
+			List<RelationObject> relObjs = dict.getRelationsFor(lemma);
+			Collections.sort(relObjs, new Comparator<RelationObject>() {
+				public int compare(RelationObject o1, RelationObject o2) {
+					return o1.getItem().getId().compareTo(o2.getItem().getId());
+				}
+			});
+			List<Relation> all = new ArrayList<Relation>();
+			for (RelationObject relObj : relObjs) {
+				for (Relation rel : relObj.getRelation()) {
+					if (!all.contains(rel))
+						all.add(rel);
+				}
+			}
+			Collections.sort(all, new Comparator<Relation>() {
+				public int compare(Relation r1, Relation r2) {
+					return r2.getConfidence().compareTo(r1.getConfidence());
+				}
+			});
+			for (int n : new int[] {1, 3, 10, 30, 100}) {
+				List<Relation> expected = all.subList(0, Math.min(n, all.size()));
+				assertEquals(expected, new RedisRelationDictionary().getGlobalMostRelatedWords(lemma, n));
+				assertEquals(expected, dict.getGlobalMostRelatedWords(lemma, n));
+			}
+		}
+		assertTrue(dict.getGlobalMostRelatedWords("nonsense", 5).isEmpty());
+	}
+	@Test (expected=IllegalArgumentException.class)
+	public void testGetGlobalMostRelatedWordsZero() {
+		dict.getGlobalMostRelatedWords("skúr", 0);
+	}
+	
 	@Test
 	public void testGetRelationsHavingLeft() {
 		RedisRelationType type = new RedisRelationType(7L, "og", "og");
@@ -157,6 +333,7 @@ public class RedisRelationDictionaryTest {
 	public void testGetMostRelated () {
 		RedisRelationType type = new RedisRelationType(7L, "og", "og");
 		List<Relation> list = dict.getMostRelated(type, 10);
+		assertEquals(1, dict.getMostRelated(type, 1).size());
 		assertTrue(list.size() == 10);
 		
 //		for(Relation rel: list)
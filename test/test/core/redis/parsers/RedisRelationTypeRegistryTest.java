@@ -0,0 +1,91 @@
+package test.core.redis.parsers;
+
+import static org.junit.Assert.*;
+
+import is.merkor.core.Relation;
+import is.merkor.core.RelationType;
+import is.merkor.core.redis.data.RedisItem;
+import is.merkor.core.redis.dictionaries.MerkorRedisConstants;
+import is.merkor.core.redis.dictionaries.RedisContext;
+import is.merkor.core.redis.dictionaries.RedisIndexBuilder;
+import is.merkor.core.redis.dictionaries.RedisRelationDictionary;
+import is.merkor.core.redis.dictionaries.RedisRelationTypeRegistry;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import redis.clients.jedis.Jedis;
+
+public class RedisRelationTypeRegistryTest {
+	
+	RedisContext context;
+	
+	@Before
+	public void setUp() throws Exception {
+		context = new RedisContext();
+	}
+	
+	@Test
+	public void testFromFile() throws Exception {
+		RedisRelationTypeRegistry registry = RedisRelationTypeRegistry.fromFile(RedisRelationTypeRegistry.RELATION_TYPE_FILE);
+		assertEquals("hypernym", registry.getById(1L).getName());
+		assertEquals(5L, (long)registry.getByName("attributeOf").getId());
+		assertEquals(3L, (long)registry.getByDescription("er eiginleiki").getId());
+		assertEquals(7L, (long)registry.getRelationType("og", "noun").getId());
+		assertEquals(8L, (long)registry.getRelationType("og", "adjective").getId());
+		assertEquals("og", registry.getRelationType("og", "noun").getName());
+		assertTrue(registry.isShared("og"));
+		assertFalse(registry.isShared("er"));
+		assertNull(registry.getRelationType("nonsense", "noun"));
+	}
+	
+	@Test
+	public void testFromRedis() {
+		RedisRelationTypeRegistry registry = context.getRelationTypes();
+		assertSame(registry, context.getRelationTypes());
+		// Redis stores one id for "og", the coordination types are told apart by wordclass
+		assertEquals(7L, (long)registry.getRelationType("og", "noun").getId());
+		assertEquals(8L, (long)registry.getRelationType("og", "verb").getId());
+		assertEquals(1L, (long)registry.getRelationType("er", "noun").getId());
+		assertEquals(13L, (long)registry.getByDescription("án").getId());
+		assertNull(registry.getByDescription("nonsense"));
+		// the relation types do not change with the cached data
+		context.clearCaches();
+		assertSame(registry, context.getRelationTypes());
+	}
+	
+	@Test
+	public void testTypeMissingInFile() throws Exception {
+		String typeKey = MerkorRedisConstants.REL_TYPE_PREFIX + "nýtt tengsl";
+		RedisIndexBuilder builder = new RedisIndexBuilder(context);
+		Jedis jedis = new Jedis("localhost", 6379);
+		try {
+			jedis.set(typeKey, "999");
+			builder.dropIndexes();
+			assertEquals(999L, (long)RedisRelationTypeRegistry.fromRedis(context).getByDescription("nýtt tengsl").getId());
+			builder.buildIndexes();
+			assertEquals(999L, (long)RedisRelationTypeRegistry.fromRedis(context).getByDescription("nýtt tengsl").getId());
+		} finally {
+			jedis.del(typeKey);
+			jedis.disconnect();
+			builder.buildIndexes();
+		}
+	}
+	
+	@Test
+	public void testSharedTypeInstances() {
+		RedisRelationDictionary dict = new RedisRelationDictionary(context);
+		List<? extends Relation> relations = dict.getRelationsFor(new RedisItem(109936L, "birta", "noun"));
+		RelationType type = context.getRelationTypes().getRelationType("og", "noun");
+		int shared = 0;
+		for (Relation rel : relations) {
+			if (rel.getType().getId() == 7L) {
+				assertSame(type, rel.getType());
+				shared++;
+			}
+		}
+		assertTrue(shared > 1);
+	}
+}
@@ -0,0 +1,86 @@
+package test.core.redis.rdb;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import is.merkor.core.memory.MemoryClusterMemberDictionary;
+import is.merkor.core.memory.MemoryItemDictionary;
+import is.merkor.core.memory.MemoryRelationDictionary;
+import is.merkor.core.memory.MemoryStore;
+import is.merkor.core.redis.data.RedisRelationType;
+import is.merkor.core.redis.dictionaries.RedisContext;
+import is.merkor.core.redis.dictionaries.RedisStoreLoader;
+import is.merkor.core.redis.rdb.RdbParser;
+import is.merkor.core.redis.rdb.RdbStoreLoader;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import redis.clients.jedis.Jedis;
+
+public class RdbStoreLoaderTest {
+	
+	static MemoryStore store;
+	static File dumpFile;
+	
+	@BeforeClass
+	public static void setUpClass() throws Exception {
+		RedisContext context = new RedisContext();
+		store = new RedisStoreLoader(context).load();
+		context.close();
+		Jedis jedis = new Jedis("localhost");
+		jedis.save();
+		dumpFile = new File(jedis.configGet("dir").get(1), jedis.configGet("dbfilename").get(1));
+		jedis.disconnect();
+	}
+	@AfterClass
+	public static void tearDownClass() {
+		store = null;
+	}
+	
+	@Test
+	public void testLoad() throws Exception {
+		MemoryStore rdbStore = new RdbStoreLoader(dumpFile).load();
+		assertEquals(store.getItemCount(), rdbStore.getItemCount());
+		assertEquals(store.getRelationCount(), rdbStore.getRelationCount());
+		assertEquals(store.getClusterCount(), rdbStore.getClusterCount());
+		
+		assertEquals(new MemoryItemDictionary(store).getAllItems(), new MemoryItemDictionary(rdbStore).getAllItems());
+		MemoryRelationDictionary relDict = new MemoryRelationDictionary(store);
+		MemoryRelationDictionary rdbRelDict = new MemoryRelationDictionary(rdbStore);
+		for (String lemma : new String[] {"skúr", "skerpa", "opinn"})
+			assertEquals(relDict.getRelationsFor(lemma).toString(), rdbRelDict.getRelationsFor(lemma).toString());
+		RedisRelationType coordNoun = new RedisRelationType(7L, "og", "og");
+		assertEquals(relDict.getMostRelated(coordNoun, 5), rdbRelDict.getMostRelated(coordNoun, 5));
+		assertEquals(new MemoryClusterMemberDictionary(store).getClusterItemsForCluster(55L).toString(), 
+				new MemoryClusterMemberDictionary(rdbStore).getClusterItemsForCluster(55L).toString());
+	}
+	@Test
+	public void testParser() throws Exception {
+		final Set<String> keys = new HashSet<String>();
+		final Set<String> lemmaSets = new HashSet<String>();
+		new RdbParser(new java.io.FileInputStream(dumpFile)).parse(new RdbParser.Handler() {
+			public boolean accept (final String key) {
+				keys.add(key);
+				return key.startsWith("merkor_is_lemma_");
+			}
+			public void setMember (final String key, final String member) {
+				lemmaSets.add(key);
+			}
+		});
+		Jedis jedis = new Jedis("localhost");
+		assertEquals(jedis.dbSize().intValue(), keys.size());
+		assertEquals(jedis.keys("merkor_is_lemma_*").size(), lemmaSets.size());
+		jedis.disconnect();
+	}
+	@Test(expected=IOException.class)
+	public void testInvalidDump() throws Exception {
+		new RdbParser(new ByteArrayInputStream("REDIS0099".getBytes("UTF-8"))).parse(new RdbParser.Handler() {});
+	}
+}
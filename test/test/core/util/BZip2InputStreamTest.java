@@ -0,0 +1,58 @@
+package test.core.util;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import is.merkor.core.util.BZip2InputStream;
+
+import org.junit.Test;
+
+public class BZip2InputStreamTest {
+	
+	// "MerkOr: skúr og regn, skúr og skin. " 20 times, compressed by bzip2
+	private static final byte[] COMPRESSED = {66, 90, 104, 57, 49, 65, 89, 38, 83, 89, -108, -12, 64, 53, 0, 0, 
+		109, -99, -116, 64, 5, 0, 16, 0, 2, -126, -87, -104, 0, 0, 16, 8, 0, 32, 0, 112, 83, 0, 4, -48, 41, 85, 61, 
+		79, 72, -11, 30, -124, 96, -100, -119, -95, 56, 39, 4, -40, -103, 39, -94, 108, -104, 38, -119, -56, -101, 
+		38, 73, -110, 116, 85, -12, -99, 19, 66, 118, 39, 100, -63, 52, 79, 5, 95, -124, -8, 39, -15, 119, 36, 83, 
+		-123, 9, 9, 79, 68, 3, 80};
+	
+	@Test
+	public void testDecompress () throws IOException {
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 20; i++)
+			expected.append("MerkOr: skúr og regn, skúr og skin. ");
+		assertEquals(expected.toString(), new String(readAll(COMPRESSED), "UTF-8"));
+	}
+	@Test
+	public void testConcatenatedStreams () throws IOException {
+		byte[] twice = new byte[COMPRESSED.length * 2];
+		System.arraycopy(COMPRESSED, 0, twice, 0, COMPRESSED.length);
+		System.arraycopy(COMPRESSED, 0, twice, COMPRESSED.length, COMPRESSED.length);
+		assertEquals(2 * readAll(COMPRESSED).length, readAll(twice).length);
+	}
+	@Test(expected=IOException.class)
+	public void testCorruptData () throws IOException {
+		byte[] corrupt = COMPRESSED.clone();
+		corrupt[60] ^= 0x10;
+		readAll(corrupt);
+	}
+	@Test(expected=IOException.class)
+	public void testNoBZip2 () throws IOException {
+		readAll("merkor".getBytes("UTF-8"));
+	}
+	
+	private byte[] readAll (final byte[] compressed) throws IOException {
+		InputStream in = new BZip2InputStream(new ByteArrayInputStream(compressed));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[64];
+		int n;
+		while ((n = in.read(buffer, 0, buffer.length)) > 0)
+			out.write(buffer, 0, n);
+		in.close();
+		return out.toByteArray();
+	}
+}
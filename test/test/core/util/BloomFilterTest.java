@@ -0,0 +1,44 @@
+package test.core.util;
+
+import static org.junit.Assert.*;
+
+import is.merkor.core.util.BloomFilter;
+
+import org.junit.Test;
+
+public class BloomFilterTest {
+	
+	@Test
+	public void testContainsAllPutValues () {
+		BloomFilter filter = new BloomFilter(10000, 0.01);
+		for (int i = 0; i < 10000; i++)
+			filter.put("lemma" + i);
+		for (int i = 0; i < 10000; i++)
+			assertTrue(filter.mightContain("lemma" + i));
+		assertTrue(filter.mightContain("lemma0"));
+	}
+	@Test
+	public void testFalsePositiveRate () {
+		BloomFilter filter = new BloomFilter(10000, 0.01);
+		for (int i = 0; i < 10000; i++)
+			filter.put("skúr" + i);
+		int falsePositives = 0;
+		for (int i = 0; i < 100000; i++) {
+			if (filter.mightContain("maður" + i))
+				falsePositives++;
+		}
+		assertTrue("false positives: " + falsePositives, falsePositives < 2000);
+	}
+	@Test
+	public void testEmpty () {
+		BloomFilter filter = new BloomFilter(0, 0.01);
+		assertFalse(filter.mightContain(""));
+		assertFalse(filter.mightContain("skúr"));
+		filter.put("skúr");
+		assertTrue(filter.mightContain("skúr"));
+	}
+	@Test (expected=IllegalArgumentException.class)
+	public void testWrongRate () {
+		new BloomFilter(100, 1.0);
+	}
+}
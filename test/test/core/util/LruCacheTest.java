@@ -0,0 +1,95 @@
+package test.core.util;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import is.merkor.core.util.LruCache;
+
+import org.junit.Test;
+
+public class LruCacheTest {
+	
+	@Test
+	public void testEvictsLeastRecentlyUsed () {
+		LruCache<Long, String> cache = new LruCache<Long, String>(2);
+		cache.put(1L, "a");
+		cache.put(2L, "b");
+		assertEquals("a", cache.get(1L));
+		cache.put(3L, "c");
+		
+		assertNull(cache.get(2L));
+		assertEquals("a", cache.get(1L));
+		assertEquals("c", cache.get(3L));
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+	}
+	@Test
+	public void testHitsAndMisses () {
+		LruCache<Long, String> cache = new LruCache<Long, String>(10);
+		cache.put(1L, "a");
+		cache.get(1L);
+		cache.get(1L);
+		cache.get(2L);
+		assertEquals(2, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(2.0 / 3, cache.getHitRate(), 0.0001);
+	}
+	@Test
+	public void testWeigher () {
+		LruCache<Long, List<String>> cache = new LruCache<Long, List<String>>(5, 0, 
+				new LruCache.Weigher<List<String>>() {
+					public int weigh (List<String> value) {
+						return value.size();
+					}
+				});
+		assertTrue(cache.put(1L, Arrays.asList("a", "b")));
+		assertTrue(cache.put(2L, Arrays.asList("c", "d")));
+		// too heavy to be cached at all
+		assertFalse(cache.put(3L, Arrays.asList("a", "b", "c", "d", "e", "f")));
+		assertNull(cache.get(3L));
+		assertEquals(4, cache.weight());
+		
+		cache.put(4L, Arrays.asList("e", "f"));
+		assertNull(cache.get(1L));
+		assertEquals(4, cache.weight());
+	}
+	@Test
+	public void testExpiration () throws InterruptedException {
+		LruCache<Long, String> cache = new LruCache<Long, String>(10, 20);
+		cache.put(1L, "a");
+		assertEquals("a", cache.get(1L));
+		Thread.sleep(40);
+		assertNull(cache.get(1L));
+		assertEquals(0, cache.size());
+	}
+	@Test
+	public void testDisabled () {
+		LruCache<Long, String> cache = new LruCache<Long, String>(0);
+		assertFalse(cache.put(1L, "a"));
+		assertNull(cache.get(1L));
+	}
+	@Test
+	public void testRemovalListener () {
+		final List<String> removed = new ArrayList<String>();
+		LruCache<Long, String> cache = new LruCache<Long, String>(2);
+		cache.setRemovalListener(new LruCache.RemovalListener<Long, String>() {
+			public void onRemoval (final Long key, final String value) {
+				removed.add(key + "=" + value);
+			}
+		});
+		cache.put(1L, "a");
+		cache.put(2L, "b");
+		cache.put(1L, "c");
+		cache.put(3L, "d");
+		cache.remove(1L);
+		cache.clear();
+		assertEquals(Arrays.asList("1=a", "2=b", "1=c", "3=d"), removed);
+	}
+	@Test (expected=IllegalArgumentException.class)
+	public void testNegativeSize () {
+		new LruCache<Long, String>(-1);
+	}
+}
@@ -0,0 +1,86 @@
+package test.core.util;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import is.merkor.core.util.SingleFlight;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SingleFlightTest {
+	
+	ExecutorService executor;
+	
+	@Before
+	public void setUp () {
+		executor = Executors.newCachedThreadPool();
+	}
+	@After
+	public void tearDown () {
+		executor.shutdownNow();
+	}
+	
+	@Test
+	public void testConcurrentCallsShareOneComputation () throws Exception {
+		final SingleFlight<String, Integer> flight = new SingleFlight<String, Integer>();
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger computations = new AtomicInteger();
+		final Callable<Integer> loader = new Callable<Integer>() {
+			public Integer call () throws Exception {
+				computations.incrementAndGet();
+				started.countDown();
+				release.await();
+				return 42;
+			}
+		};
+		Future<Integer> first = executor.submit(new Callable<Integer>() {
+			public Integer call () {
+				return flight.get("skúr", loader);
+			}
+		});
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		Future<Integer> second = executor.submit(new Callable<Integer>() {
+			public Integer call () {
+				return flight.get("skúr", loader);
+			}
+		});
+		// wait until the second call has joined the first one
+		for (int i = 0; i < 500 && flight.getSharedCount() == 0; i++)
+			Thread.sleep(10);
+		release.countDown();
+		
+		assertEquals(Integer.valueOf(42), first.get(5, TimeUnit.SECONDS));
+		assertEquals(Integer.valueOf(42), second.get(5, TimeUnit.SECONDS));
+		assertEquals(1, computations.get());
+		assertEquals(1, flight.getSharedCount());
+		// finished computations are not kept
+		assertEquals(Integer.valueOf(42), flight.get("skúr", loader));
+		assertEquals(2, computations.get());
+	}
+	@Test (expected=IllegalStateException.class)
+	public void testExceptionIsRethrown () {
+		new SingleFlight<String, Integer>().get("skúr", new Callable<Integer>() {
+			public Integer call () {
+				throw new IllegalStateException();
+			}
+		});
+	}
+	@Test (expected=IllegalArgumentException.class)
+	public void testNullKey () {
+		new SingleFlight<String, Integer>().get(null, new Callable<Integer>() {
+			public Integer call () {
+				return 1;
+			}
+		});
+	}
+}
@@ -0,0 +1,71 @@
+package test.core.util;
+
+import static org.junit.Assert.*;
+
+import is.merkor.core.util.WeakInterner;
+
+import org.junit.Test;
+
+public class WeakInternerTest {
+	
+	@Test
+	public void testIntern () {
+		WeakInterner<String, String> interner = new WeakInterner<String, String>();
+		String first = new String("skúr");
+		String second = new String("skúr");
+		assertSame(first, interner.intern(first, first));
+		assertSame(first, interner.intern(second, second));
+		assertSame(first, interner.get("skúr"));
+		assertEquals(1, interner.size());
+		
+		interner.put(second, second);
+		assertSame(second, interner.get("skúr"));
+		assertNull(interner.get("maður"));
+	}
+	@Test
+	public void testCollectedValuesAreRemoved () throws Exception {
+		WeakInterner<Long, Object> interner = new WeakInterner<Long, Object>();
+		for (long i = 0; i < 100; i++)
+			interner.put(i, new Object());
+		for (int i = 0; i < 50 && interner.size() > 0; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		assertEquals(0, interner.size());
+	}
+	@Test
+	public void testCollectedLemmataAreRemoved () throws Exception {
+		// values being their own keys must not be held by their entries
+		WeakInterner<String, String> interner = new WeakInterner<String, String>();
+		for (int i = 0; i < 100; i++) {
+			String lemma = new String("orð" + i);
+			interner.intern(lemma, lemma);
+		}
+		String kept = new String("skúr");
+		interner.intern(kept, kept);
+		for (int i = 0; i < 50 && interner.size() > 1; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		assertEquals(1, interner.size());
+		assertSame(kept, interner.get("skúr"));
+	}
+	@Test
+	public void testReplacedLemmaIsKept () throws Exception {
+		WeakInterner<String, String> interner = new WeakInterner<String, String>();
+		String first = new String("skúr");
+		interner.intern(first, first);
+		String second = new String("skúr");
+		interner.put(second, second);
+		first = null;
+		for (int i = 0; i < 10; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		assertSame(second, interner.get("skúr"));
+	}
+	@Test (expected=IllegalArgumentException.class)
+	public void testNullValue () {
+		new WeakInterner<Long, Object>().put(1L, null);
+	}
+}